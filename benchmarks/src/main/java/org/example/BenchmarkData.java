@@ -0,0 +1,85 @@
+package org.example;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.SplittableRandom;
+import java.util.stream.Stream;
+
+/**
+ * Synthetic catalogs and selections shared by the benchmarks. Everything is derived from fixed seeds,
+ * so every run and every release measures the same data.
+ * Synthetische Kataloge und Auswahlen für die Benchmarks. Alles wird aus festen Startwerten erzeugt,
+ * sodass jeder Lauf und jede Version dieselben Daten misst.
+ */
+final class BenchmarkData {
+
+    private static final int DISTINCT_DESCRIPTIONS = 500; // Real catalogs repeat descriptions / Echte Kataloge wiederholen Beschreibungen
+
+    private BenchmarkData() {
+    }
+
+    static String id(int row) {
+        return "PL6-" + row;
+    }
+
+    /**
+     * Writes a CSV file with a header and the given number of functions, some with quoted fields.
+     * Schreibt eine CSV-Datei mit Kopfzeile und der angegebenen Anzahl Funktionen, einige mit Feldern in Anführungszeichen.
+     */
+    static Path writeCatalog(Path file, int rows) throws IOException {
+        try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            writer.write("id,name,descr\n");
+            for (int row = 0; row < rows; row++) {
+                writer.write(id(row));
+                writer.write(",Function ");
+                writer.write(Integer.toString(row));
+                if (row % 10 == 0) {
+                    writer.write(",\"Enables feature group " + row % DISTINCT_DESCRIPTIONS + ", \"\"extended\"\"\"\n");
+                } else {
+                    writer.write(",Enables feature group " + row % DISTINCT_DESCRIPTIONS + "\n");
+                }
+            }
+        }
+        return file;
+    }
+
+    /**
+     * Builds the same catalog as {@link #writeCatalog(Path, int)} directly in memory.
+     * Baut denselben Katalog wie {@link #writeCatalog(Path, int)} direkt im Speicher.
+     */
+    static FunctionCatalog catalog(int rows) {
+        FunctionCatalog.Builder builder = new FunctionCatalog.Builder();
+        for (int row = 0; row < rows; row++) {
+            String descr = "Enables feature group " + row % DISTINCT_DESCRIPTIONS;
+            builder.add(id(row), "Function " + row, row % 10 == 0 ? descr + ", \"extended\"" : descr);
+        }
+        return builder.build();
+    }
+
+    /**
+     * Selects each of the first rows functions with the given probability.
+     * Wählt jede der ersten rows Funktionen mit der angegebenen Wahrscheinlichkeit aus.
+     */
+    static FunctionSelection selection(int rows, double density, long seed) {
+        SplittableRandom random = new SplittableRandom(seed);
+        FunctionSelection selection = new FunctionSelection();
+        for (int ordinal = 0; ordinal < rows; ordinal++) {
+            if (random.nextDouble() < density) {
+                selection.setSelected(ordinal, true);
+            }
+        }
+        return selection;
+    }
+
+    static void deleteRecursively(Path directory) throws IOException {
+        try (Stream<Path> paths = Files.walk(directory)) {
+            for (Path path : (Iterable<Path>) paths.sorted(Comparator.reverseOrder())::iterator) {
+                Files.deleteIfExists(path);
+            }
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package org.example;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Entry point of benchmarks.jar. Accepts the usual JMH options, but always adds the GC profiler (allocation rate
+ * per operation) and writes the results to jmh-result.json, so runs of different releases can be compared.
+ * Einstiegspunkt von benchmarks.jar. Akzeptiert die üblichen JMH-Optionen, fügt aber immer den GC-Profiler
+ * (Allokationsrate pro Operation) hinzu und schreibt die Ergebnisse nach jmh-result.json, damit Läufe
+ * verschiedener Versionen verglichen werden können.
+ *
+ * <pre>
+ * java -jar benchmarks/target/benchmarks.jar                       all benchmarks / alle Benchmarks
+ * java -jar benchmarks/target/benchmarks.jar CatalogLoad -p rows=1000000
+ * </pre>
+ */
+public class BenchmarkRunner {
+
+    public static void main(String[] args) throws Exception {
+        CommandLineOptions commandLine = new CommandLineOptions(args);
+        if (commandLine.shouldHelp() || commandLine.shouldList() || commandLine.shouldListWithParams()
+                || commandLine.shouldListProfilers() || commandLine.shouldListResultFormats()) {
+            org.openjdk.jmh.Main.main(args);
+            return;
+        }
+        ChainedOptionsBuilder options = new OptionsBuilder().parent(commandLine);
+        if (commandLine.getProfilers().stream().noneMatch(p -> p.getKlass().equals(GCProfiler.class.getName()))) {
+            options.addProfiler(GCProfiler.class);
+        }
+        if (!commandLine.getResult().hasValue()) {
+            options.result("jmh-result.json");
+        }
+        if (!commandLine.getResultFormat().hasValue()) {
+            options.resultFormat(ResultFormatType.JSON);
+        }
+        if (!commandLine.getJvmArgsAppend().hasValue()) {
+            options.jvmArgsAppend("-Djava.awt.headless=true"); // No display needed / Kein Bildschirm nötig
+        }
+        new Runner(options.build()).run();
+    }
+}
@@ -0,0 +1,73 @@
+package org.example;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time to load the function catalog with {@link Modell#loadFunctionsFromCSV(Modell.CatalogListener)}, once by parsing
+ * the CSV file (first start, including writing the snapshot) and once from an up-to-date {@link CatalogSnapshot}.
+ * Zeit zum Laden des Funktionskatalogs mit {@link Modell#loadFunctionsFromCSV(Modell.CatalogListener)}, einmal durch
+ * Lesen der CSV-Datei (erster Start, inklusive Schreiben des Snapshots) und einmal aus einem aktuellen {@link CatalogSnapshot}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CatalogLoadBenchmark {
+
+    @Param({"1000", "10000", "100000", "1000000"})
+    public int rows;
+
+    private Path directory;
+    private Path snapshot;
+    private Modell model;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("catalog-load");
+        Path csv = BenchmarkData.writeCatalog(directory.resolve("functions.csv"), rows);
+        snapshot = CatalogSnapshot.fileFor(csv);
+        model = new Modell(csv.toString(), directory.resolve("licence.file").toString());
+        model.loadFunctionsFromCSV(rows -> {
+        }); // Writes the snapshot / Schreibt den Snapshot
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        model.close();
+        BenchmarkData.deleteRecursively(directory);
+    }
+
+    @Benchmark
+    public FunctionCatalog loadFunctionsFromCSV() throws IOException {
+        Files.deleteIfExists(snapshot);
+        model.loadFunctionsFromCSV(rows -> {
+        });
+        return model.getCatalog();
+    }
+
+    @Benchmark
+    public FunctionCatalog loadFunctionsFromSnapshot() throws IOException {
+        model.loadFunctionsFromCSV(rows -> {
+        });
+        return model.getCatalog();
+    }
+}
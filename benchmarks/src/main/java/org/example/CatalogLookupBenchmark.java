@@ -0,0 +1,92 @@
+package org.example;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Looking up functions by id and iterating over the whole catalog, through the columns and through the
+ * {@link Modell.Function} map view that older code uses.
+ * Nachschlagen von Funktionen über die Id und Iterieren über den ganzen Katalog, über die Spalten und über die
+ * {@link Modell.Function}-Map-Ansicht, die älterer Code verwendet.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class CatalogLookupBenchmark {
+
+    private static final int LOOKUP_KEYS = 4096; // Power of two for masking / Zweierpotenz zum Maskieren
+
+    @Param({"1000", "100000", "1000000"})
+    public int rows;
+
+    private FunctionCatalog catalog;
+    private Map<String, Modell.Function> functions;
+    private String[] hits;
+    private String[] misses;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        catalog = BenchmarkData.catalog(rows);
+        functions = catalog.asMap();
+        SplittableRandom random = new SplittableRandom(42);
+        hits = new String[LOOKUP_KEYS];
+        misses = new String[LOOKUP_KEYS];
+        for (int i = 0; i < LOOKUP_KEYS; i++) {
+            hits[i] = BenchmarkData.id(random.nextInt(rows));
+            misses[i] = "MISSING-" + random.nextInt(rows);
+        }
+    }
+
+    @Benchmark
+    public int ordinalOfHit() {
+        return catalog.ordinalOf(hits[next++ & (LOOKUP_KEYS - 1)]);
+    }
+
+    @Benchmark
+    public int ordinalOfMiss() {
+        return catalog.ordinalOf(misses[next++ & (LOOKUP_KEYS - 1)]);
+    }
+
+    @Benchmark
+    public Modell.Function mapGetHit() {
+        return functions.get(hits[next++ & (LOOKUP_KEYS - 1)]);
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    public long iterateNames() {
+        long length = 0;
+        for (int ordinal = 0; ordinal < catalog.size(); ordinal++) {
+            length += catalog.name(ordinal).length();
+        }
+        return length;
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    public long iterateMapValues() {
+        long length = 0;
+        for (Modell.Function function : functions.values()) {
+            length += function.getName().length();
+        }
+        return length;
+    }
+}
@@ -0,0 +1,76 @@
+package org.example;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time to load the catalogs of several product lines with {@link CatalogRegistry#load(Map, Map)}, all with the same
+ * content as in a new generation of a product line, once by parsing the CSV files and once from their snapshots.
+ * With enough cores the time should stay close to that of a single catalog.
+ * Zeit zum Laden der Kataloge mehrerer Produktlinien mit {@link CatalogRegistry#load(Map, Map)}, alle mit demselben
+ * Inhalt wie bei einer neuen Generation einer Produktlinie, einmal durch Lesen der CSV-Dateien und einmal aus ihren
+ * Snapshots. Mit genug Kernen sollte die Zeit nahe an der eines einzelnen Katalogs bleiben.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CatalogRegistryBenchmark {
+
+    @Param({"1", "4", "16"})
+    public int catalogs;
+
+    @Param({"100000"})
+    public int rows;
+
+    private Path directory;
+    private final Map<String, Path> csvFiles = new TreeMap<>();
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("catalog-registry");
+        for (int i = 0; i < catalogs; i++) {
+            Path csv = BenchmarkData.writeCatalog(directory.resolve("functions-" + i + ".csv"), rows);
+            csvFiles.put(CatalogRegistry.productLineOf(csv), csv);
+        }
+        CatalogRegistry.load(csvFiles, Map.of()); // Writes the snapshots / Schreibt die Snapshots
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        BenchmarkData.deleteRecursively(directory);
+    }
+
+    @Benchmark
+    public CatalogRegistry loadFromCsv() throws IOException {
+        for (Path csv : csvFiles.values()) {
+            Files.deleteIfExists(CatalogSnapshot.fileFor(csv));
+        }
+        return CatalogRegistry.load(csvFiles, Map.of());
+    }
+
+    @Benchmark
+    public CatalogRegistry loadFromSnapshots() {
+        return CatalogRegistry.load(csvFiles, Map.of());
+    }
+}
@@ -0,0 +1,81 @@
+package org.example;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Checking and completing a selection against thousands of rules spread over the whole catalog. The selection keeps
+ * every rule, so each check runs to the end instead of stopping at the first broken rule. The time should depend on how
+ * many rules the selected functions have and how many words hold functions with rules, not on the width of the catalog,
+ * and nothing should be allocated.
+ * Prüfen und Vervollständigen einer Auswahl gegen Tausende über den ganzen Katalog verteilte Regeln. Die Auswahl hält
+ * jede Regel ein, daher läuft jede Prüfung bis zum Ende, statt bei der ersten verletzten Regel aufzuhören. Die Zeit
+ * sollte davon abhängen, wie viele Regeln die ausgewählten Funktionen haben und wie viele Wörter Funktionen mit Regeln
+ * enthalten, nicht von der Breite des Katalogs, und es sollte nichts erzeugt werden.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class FunctionRulesBenchmark {
+
+    private static final String[] KINDS = {"requires", "excludes", "implies"};
+
+    @Param({"1000", "10000", "200000"})
+    public int rows;
+
+    @Param({"3000"})
+    public int rules;
+
+    private FunctionRules compiled;
+    private FunctionSelection selection;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        FunctionCatalog catalog = BenchmarkData.catalog(rows);
+        selection = BenchmarkData.selection(rows, 0.1, 7);
+        SplittableRandom random = new SplittableRandom(8);
+        List<String> lines = new ArrayList<>();
+        while (lines.size() < rules) {
+            int function = random.nextInt(rows);
+            int other = random.nextInt(rows);
+            String kind = KINDS[random.nextInt(KINDS.length)];
+            boolean both = selection.isSelected(function) && selection.isSelected(other);
+            boolean kept = kind.equals("excludes") ? !both : !selection.isSelected(function) || selection.isSelected(other);
+            if (function != other && kept) {
+                lines.add(BenchmarkData.id(function) + " " + kind + " " + BenchmarkData.id(other));
+            }
+        }
+        compiled = FunctionRules.compile(catalog, lines);
+        if (!compiled.isValid(selection) || compiled.complete(selection) != 0) {
+            throw new IllegalStateException("The benchmark selection must keep every rule");
+        }
+    }
+
+    @Benchmark
+    public boolean isValid() {
+        return compiled.isValid(selection);
+    }
+
+    @Benchmark
+    public int complete() {
+        return compiled.complete(selection); // Already complete, so every implication is checked but nothing added / Bereits vollständig, daher wird jede Implikation geprüft, aber nichts hinzugefügt
+    }
+}
@@ -0,0 +1,89 @@
+package org.example;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Exporting the whole license store with {@link LicenceArchive#export(LicenceStore, CatalogVersions, Path, int)} with one and with
+ * several compression threads, and verifying the archive. The export should get faster with the threads up to the
+ * number of cores, while its heap use stays the same.
+ * Export des ganzen Lizenzspeichers mit {@link LicenceArchive#export(LicenceStore, CatalogVersions, Path, int)} mit einem und mit
+ * mehreren Komprimierungs-Threads sowie die Prüfung des Archivs. Der Export sollte mit den Threads bis zur Anzahl der
+ * Kerne schneller werden, während sein Heap-Bedarf gleich bleibt.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class LicenceArchiveBenchmark {
+
+    @Param({"1", "4"})
+    public int threads;
+
+    @Param({"200000"})
+    public int licences;
+
+    private Path directory;
+    private LicenceStore store;
+    private CatalogVersions versions;
+    private Path archive;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("licence-archive");
+        store = new LicenceStore(directory.resolve("licences.log"));
+        FunctionCatalog catalog = BenchmarkData.catalog(200);
+        versions = CatalogVersions.inMemory();
+        versions.add(catalog);
+        versions.persist(catalog.versionHash()); // Held like the version of saved licenses / Gehalten wie die Version gespeicherter Lizenzen
+        FunctionSelection selection = BenchmarkData.selection(200, 0.1, 5);
+        List<Licence> batch = new ArrayList<>();
+        for (int i = 0; i < licences; i++) {
+            LocalDate start = LocalDate.of(2025, 1, 1).plusDays(i % 365);
+            batch.add(new Licence(BenchmarkData.id(i), start, start.plusYears(1), selection, 200, catalog.versionHash()));
+            if (batch.size() == 4096 || i == licences - 1) {
+                store.putAll(batch);
+                batch.clear();
+            }
+        }
+        archive = directory.resolve("licences.gz");
+        LicenceArchive.export(store, versions, archive, threads);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        store.close();
+        BenchmarkData.deleteRecursively(directory);
+    }
+
+    @Benchmark
+    public LicenceArchive.Report export() throws IOException {
+        return LicenceArchive.export(store, versions, archive, threads);
+    }
+
+    @Benchmark
+    public LicenceArchive.Report verify() throws IOException {
+        return LicenceArchive.verify(archive);
+    }
+}
@@ -0,0 +1,79 @@
+package org.example;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.LocalDate;
+import java.time.Period;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bulk changes over a whole {@link LicenceFleet}: a function on all devices of a serial prefix, extending the licenses
+ * that end in a quarter, and counting the devices per function. Each change is undone by the next call, so every call
+ * does the same amount of work.
+ * Massenänderungen über eine ganze {@link LicenceFleet}: eine Funktion auf allen Geräten eines Seriennummernpräfixes,
+ * die Verlängerung der Lizenzen, die in einem Quartal enden, und das Zählen der Geräte pro Funktion. Jede Änderung
+ * wird vom nächsten Aufruf rückgängig gemacht, sodass jeder Aufruf gleich viel Arbeit leistet.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class LicenceFleetBenchmark {
+
+    private static final int ROWS = 200;
+    private static final LocalDate QUARTER = LocalDate.of(2026, 2, 15);
+    private static final Period ONE_QUARTER = Period.ofMonths(3);
+
+    @Param({"1000000"})
+    public int devices;
+
+    @Param({"", "PL6-9"})
+    public String serialPrefix;
+
+    private LicenceFleet fleet;
+    private boolean enable;
+    private boolean extended;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        FunctionCatalog catalog = BenchmarkData.catalog(ROWS);
+        fleet = new LicenceFleet(catalog);
+        FunctionSelection selection = BenchmarkData.selection(ROWS, 0.1, 6);
+        for (int i = 0; i < devices; i++) {
+            LocalDate start = LocalDate.of(2025, 1, 1).plusDays(i % 730);
+            fleet.put(new Licence(BenchmarkData.id(i), start, start.plusYears(1), selection, ROWS, catalog.versionHash()));
+        }
+        fleet.clearChanged();
+    }
+
+    @Benchmark
+    public int setFunction() {
+        enable = !enable;
+        return fleet.setFunction(serialPrefix, 7, enable);
+    }
+
+    @Benchmark
+    public int extendExpiringInQuarter() {
+        extended = !extended;
+        return extended ? fleet.extendExpiringInQuarter(QUARTER, ONE_QUARTER)
+                : fleet.extendExpiringInQuarter(QUARTER.plus(ONE_QUARTER), ONE_QUARTER.negated());
+    }
+
+    @Benchmark
+    public long[] countDevicesPerFunction() {
+        return fleet.countDevicesPerFunction();
+    }
+}
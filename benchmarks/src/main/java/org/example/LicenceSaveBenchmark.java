@@ -0,0 +1,85 @@
+package org.example;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Saving a license: JSON serialization alone, reading it back, and the full {@link Modell#saveLicenceFile()}
+ * (append to the store, sync to disk, atomic export of licence.file).
+ * Speichern einer Lizenz: nur die JSON-Serialisierung, das Zurücklesen und das vollständige {@link Modell#saveLicenceFile()}
+ * (an den Speicher anhängen, auf die Platte synchronisieren, atomarer Export von licence.file).
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class LicenceSaveBenchmark {
+
+    @Param({"1000", "100000"})
+    public int rows;
+
+    private Path directory;
+    private Modell model;
+    private String json;
+    private PrintStream console;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("licence-save");
+        Path csv = BenchmarkData.writeCatalog(directory.resolve("functions.csv"), rows);
+        model = new Modell(csv.toString(), directory.resolve("licence.file").toString());
+        model.loadFunctionsFromCSV(rows -> {
+        });
+        model.setSerinummer("BENCH-0001");
+        model.setStartDatum(LocalDate.of(2024, 1, 1));
+        model.setEndDatum(LocalDate.of(2099, 12, 31));
+        model.setEnabledFunctions(BenchmarkData.selection(rows, 0.5, 3));
+        json = model.toLicence().toJSONString();
+        // Every save logs the license; keep that out of the measurement / Jedes Speichern protokolliert die Lizenz; das gehört nicht zur Messung
+        console = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        System.setOut(console);
+        model.close();
+        BenchmarkData.deleteRecursively(directory);
+    }
+
+    @Benchmark
+    public String toJSONString() {
+        return model.toLicence().toJSONString();
+    }
+
+    @Benchmark
+    public Licence fromJSONString() {
+        return Licence.fromJSONString(json);
+    }
+
+    @Benchmark
+    public boolean saveLicenceFile() {
+        return model.saveLicenceFile();
+    }
+}
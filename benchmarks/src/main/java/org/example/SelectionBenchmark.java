@@ -0,0 +1,70 @@
+package org.example;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * The work {@link Controller#handleSave(FunctionSelection)} does with a selection before and after writing it:
+ * comparing it with the previous license, copying it and listing the first selected names.
+ * Die Arbeit, die {@link Controller#handleSave(FunctionSelection)} vor und nach dem Schreiben mit einer Auswahl macht:
+ * mit der vorherigen Lizenz vergleichen, kopieren und die ersten ausgewählten Namen auflisten.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class SelectionBenchmark {
+
+    private static final int MAX_LISTED_FUNCTIONS = 20; // Same limit as the controller / Dieselbe Grenze wie im Controller
+
+    @Param({"1000", "100000", "1000000"})
+    public int rows;
+
+    @Param({"0.01", "0.5"})
+    public double density;
+
+    private FunctionCatalog catalog;
+    private FunctionSelection previous;
+    private FunctionSelection selection;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        catalog = BenchmarkData.catalog(rows);
+        previous = BenchmarkData.selection(rows, density, 1);
+        selection = BenchmarkData.selection(rows, density, 2);
+    }
+
+    @Benchmark
+    public void collectForSave(Blackhole blackhole) {
+        FunctionSelection.Diff changes = previous.diff(selection);
+        FunctionSelection saved = selection.copy();
+        int count = saved.count();
+        String savedFunctions = saved.ordinals()
+                .limit(MAX_LISTED_FUNCTIONS)
+                .mapToObj(catalog::name)
+                .collect(Collectors.joining(", "));
+        blackhole.consume(changes.getAdded().count() + changes.getRemoved().count() + count);
+        blackhole.consume(savedFunctions);
+    }
+
+    @Benchmark
+    public String encodeForLicence() {
+        return selection.toBase64();
+    }
+}
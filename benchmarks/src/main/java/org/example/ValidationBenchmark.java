@@ -0,0 +1,84 @@
+package org.example;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * "Is function X enabled for serial Y?" through the license file cache and through the query service.
+ * "Ist Funktion X für Seriennummer Y aktiviert?" über den Lizenzdatei-Cache und über den Abfragedienst.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ValidationBenchmark {
+
+    private static final int ROWS = 10_000;
+    private static final String SERIAL = "BENCH-0001";
+
+    private Path directory;
+    private Modell model;
+    private final LocalDate today = LocalDate.now();
+    private String[] ids;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("licence-validation");
+        Path csv = BenchmarkData.writeCatalog(directory.resolve("functions.csv"), ROWS);
+        model = new Modell(csv.toString(), directory.resolve("licence.file").toString());
+        model.loadFunctionsFromCSV(rows -> {
+        });
+        model.setSerinummer(SERIAL);
+        model.setStartDatum(today.minusDays(1));
+        model.setEndDatum(today.plusYears(1));
+        model.setEnabledFunctions(BenchmarkData.selection(ROWS, 0.5, 4));
+        PrintStream console = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        try {
+            model.saveLicenceFile();
+        } finally {
+            System.setOut(console);
+        }
+        ids = new String[1024];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = BenchmarkData.id(i * 7 % ROWS);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        model.close();
+        BenchmarkData.deleteRecursively(directory);
+    }
+
+    @Benchmark
+    public boolean licenceCache() {
+        return model.isFunctionEnabled(SERIAL, ids[next++ & 1023], today);
+    }
+
+    @Benchmark
+    public boolean queryService() {
+        return model.getQueryService().isEnabled(SERIAL, ids[next++ & 1023], today);
+    }
+}
@@ -0,0 +1,144 @@
+package org.example;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Command line entry point for batch license generation; runs without JavaFX.
+ * Kommandozeilen-Einstiegspunkt für die Stapel-Lizenzerzeugung; läuft ohne JavaFX.
+ *
+ * <pre>
+ * java -cp ... org.example.BatchLicenceCli --catalog functions2.csv --input lot.csv --out licences [--parallel 16]
+ * </pre>
+ *
+ * The input file has a header row and the columns `seriennummer,startDatum,endDatum,funktionen`,
+ * where `funktionen` is a `;`-separated list of function ids and dates use ISO format (2025-01-31).
+ * Fields may be quoted as in the catalog CSV (RFC 4180).
+ * Die Eingabedatei hat eine Kopfzeile und die Spalten `seriennummer,startDatum,endDatum,funktionen`,
+ * wobei `funktionen` eine durch `;` getrennte Liste von Funktions-Ids ist und Daten im ISO-Format (2025-01-31) stehen.
+ * Felder dürfen wie in der Katalog-CSV in Anführungszeichen stehen (RFC 4180).
+ */
+public class BatchLicenceCli {
+
+    private static final int DEFAULT_PARALLEL_WRITES = 16;
+    private static final int REQUEST_FIELDS = 4; // seriennummer, startDatum, endDatum, funktionen
+
+    public static void main(String[] args) {
+        try {
+            System.exit(run(args));
+        } catch (IllegalArgumentException e) {
+            System.err.println("Error: " + e.getMessage());
+            System.err.println("Usage: BatchLicenceCli --catalog <functions.csv> --input <requests.csv> --out <directory> [--parallel <n>]");
+            System.exit(2);
+        } catch (IOException e) {
+            System.err.println("Error: " + e.getMessage());
+            System.exit(2);
+        }
+    }
+
+    /**
+     * Runs a batch and returns the process exit code (0 = all licenses written, 1 = some failed).
+     * Führt einen Stapel aus und gibt den Exit-Code zurück (0 = alle Lizenzen geschrieben, 1 = einige fehlgeschlagen).
+     */
+    static int run(String[] args) throws IOException {
+        Path catalogFile = null;
+        Path inputFile = null;
+        Path outputDirectory = null;
+        int parallelWrites = DEFAULT_PARALLEL_WRITES;
+        for (int i = 0; i < args.length; i++) {
+            String value = i + 1 < args.length ? args[i + 1] : null;
+            switch (args[i]) {
+                case "--catalog" -> catalogFile = Paths.get(required(args[i], value));
+                case "--input" -> inputFile = Paths.get(required(args[i], value));
+                case "--out" -> outputDirectory = Paths.get(required(args[i], value));
+                case "--parallel" -> parallelWrites = Integer.parseInt(required(args[i], value));
+                default -> throw new IllegalArgumentException("unknown option " + args[i]);
+            }
+            i++;
+        }
+        if (catalogFile == null || inputFile == null || outputDirectory == null) {
+            throw new IllegalArgumentException("--catalog, --input and --out are required");
+        }
+
+        FunctionCatalog.Builder builder = new FunctionCatalog.Builder();
+        CsvCatalogLoader.Report catalogReport = new CsvCatalogLoader().load(catalogFile, builder);
+        FunctionCatalog catalog = builder.build();
+        System.out.println("Catalog: " + catalog.size() + " functions, version " + catalog.versionHash()
+                + (catalogReport.getMalformedCount() > 0 ? ", " + catalogReport.getMalformedCount() + " malformed rows skipped" : ""));
+
+        FunctionRules rules = FunctionRules.load(catalogFile, catalog); // Optional <catalog>.rules / Optionale <Katalog>.rules
+        if (!rules.isEmpty()) {
+            System.out.println("Rules: " + rules.ruleCount() + " from " + FunctionRules.fileFor(catalogFile));
+        }
+
+        List<String> problems = new ArrayList<>();
+        List<BatchLicenceGenerator.Request> requests = readRequests(inputFile, problems);
+        problems.forEach(problem -> System.err.println("Skipped " + problem));
+
+        long start = System.nanoTime();
+        BatchLicenceGenerator generator = new BatchLicenceGenerator(catalog, rules, outputDirectory, parallelWrites);
+        List<BatchLicenceGenerator.Result> results = generator.generate(requests);
+        long millis = Math.max(1, (System.nanoTime() - start) / 1_000_000);
+
+        int failed = 0;
+        for (BatchLicenceGenerator.Result result : results) {
+            if (!result.isSuccess()) {
+                failed++;
+                System.err.println(result);
+            }
+        }
+        System.out.println("Generated " + (results.size() - failed) + " of " + results.size() + " licenses in "
+                + millis + " ms (" + (results.size() * 60_000L / millis) + " per minute), " + failed + " failed");
+        return failed == 0 && problems.isEmpty() ? 0 : 1;
+    }
+
+    /**
+     * Reads the request file; lines that cannot be read are added to problems.
+     * Liest die Anfragedatei; nicht lesbare Zeilen werden zu problems hinzugefügt.
+     */
+    static List<BatchLicenceGenerator.Request> readRequests(Path inputFile, List<String> problems) throws IOException {
+        List<BatchLicenceGenerator.Request> requests = new ArrayList<>();
+        Map<String, Long> firstLines = new HashMap<>(); // Serial number -> line of its first request / Seriennummer -> Zeile ihrer ersten Anfrage
+        // Same RFC 4180 rules as the catalog, so quoted fields may contain commas
+        // Dieselben RFC-4180-Regeln wie beim Katalog, sodass Felder in Anführungszeichen Kommas enthalten dürfen
+        CsvCatalogLoader.Report report = new CsvCatalogLoader().read(inputFile, REQUEST_FIELDS, (line, fields) -> {
+            String seriennummer = fields[0].strip();
+            Long firstLine = firstLines.get(seriennummer);
+            if (firstLine != null) {
+                problems.add("line " + line + ": duplicate serial number " + seriennummer + " (first on line " + firstLine + ")");
+                return;
+            }
+            try {
+                List<String> functionIds = fields[3].isBlank() ? List.of()
+                        : Arrays.stream(fields[3].split(";")).map(String::strip).filter(id -> !id.isEmpty()).toList();
+                requests.add(new BatchLicenceGenerator.Request(seriennummer,
+                        LocalDate.parse(fields[1].strip()), LocalDate.parse(fields[2].strip()), functionIds));
+            } catch (DateTimeParseException e) {
+                problems.add("line " + line + ": " + e.getMessage());
+                return;
+            }
+            // Only a built request claims its serial number / Nur eine erstellte Anfrage belegt ihre Seriennummer
+            firstLines.put(seriennummer, line);
+        });
+        report.getMalformedRows().forEach(row -> problems.add(row.toString()));
+        if (report.getMalformedCount() > report.getMalformedRows().size()) {
+            problems.add((report.getMalformedCount() - report.getMalformedRows().size()) + " more malformed lines");
+        }
+        return requests;
+    }
+
+    private static String required(String option, String value) {
+        if (value == null) {
+            throw new IllegalArgumentException(option + " needs a value");
+        }
+        return value;
+    }
+}
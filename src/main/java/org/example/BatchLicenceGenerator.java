@@ -0,0 +1,249 @@
+package org.example;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.regex.Pattern;
+
+/**
+ * Generates license files for many devices at once, without the JavaFX toolkit.
+ * Every request runs on its own virtual thread; a semaphore limits how many files are written at the same time.
+ * Each request gets its own {@link Result}, so one bad request does not stop the batch.
+ * Erzeugt Lizenzdateien für viele Geräte auf einmal, ohne das JavaFX-Toolkit.
+ * Jede Anfrage läuft in einem eigenen virtuellen Thread; ein Semaphor begrenzt, wie viele Dateien gleichzeitig geschrieben werden.
+ * Jede Anfrage erhält ein eigenes {@link Result}, sodass eine fehlerhafte Anfrage den Stapel nicht anhält.
+ */
+public class BatchLicenceGenerator {
+
+    // Serial numbers become file names, so only safe characters are allowed.
+    // Seriennummern werden zu Dateinamen, daher sind nur sichere Zeichen erlaubt.
+    private static final Pattern SERIAL_PATTERN = Pattern.compile("[A-Za-z0-9._-]{1,64}");
+
+    private final FunctionCatalog catalog;
+    private final FunctionRules rules;
+    private final Path outputDirectory;
+    private final Semaphore ioPermits; // Bounds parallel file writes / Begrenzt parallele Dateischreibvorgänge
+
+    /**
+     * @param catalog              Catalog the function ids refer to / Katalog, auf den sich die Funktions-Ids beziehen
+     * @param outputDirectory      Directory for the license files / Verzeichnis für die Lizenzdateien
+     * @param maxParallelWrites    Maximum number of files written at the same time / Maximale Anzahl gleichzeitig geschriebener Dateien
+     */
+    public BatchLicenceGenerator(FunctionCatalog catalog, Path outputDirectory, int maxParallelWrites) {
+        this(catalog, FunctionRules.none(), outputDirectory, maxParallelWrites);
+    }
+
+    /**
+     * @param rules Implied functions are added to every request, and requests that break a rule fail
+     *              / Implizierte Funktionen werden jeder Anfrage hinzugefügt, und Anfragen, die eine Regel verletzen, scheitern
+     */
+    public BatchLicenceGenerator(FunctionCatalog catalog, FunctionRules rules, Path outputDirectory, int maxParallelWrites) {
+        if (maxParallelWrites < 1) {
+            throw new IllegalArgumentException("maxParallelWrites must be at least 1");
+        }
+        this.catalog = catalog;
+        this.rules = rules;
+        this.outputDirectory = outputDirectory;
+        this.ioPermits = new Semaphore(maxParallelWrites);
+    }
+
+    /**
+     * Returns the file a license for the given serial number is written to.
+     * Gibt die Datei zurück, in die eine Lizenz für die angegebene Seriennummer geschrieben wird.
+     */
+    public Path licenceFile(String seriennummer) {
+        return outputDirectory.resolve(Licence.fileNameFor(seriennummer));
+    }
+
+    /**
+     * Generates and writes all licenses and returns one result per request, in request order.
+     * A serial number that occurs again in the batch fails; its first request is written.
+     * Erzeugt und schreibt alle Lizenzen und gibt ein Ergebnis pro Anfrage in Anfragereihenfolge zurück.
+     * Eine Seriennummer, die im Stapel erneut vorkommt, scheitert; ihre erste Anfrage wird geschrieben.
+     *
+     * @throws IOException if the output directory cannot be created / wenn das Ausgabeverzeichnis nicht angelegt werden kann
+     */
+    public List<Result> generate(List<Request> requests) throws IOException {
+        Files.createDirectories(outputDirectory);
+        List<Future<Result>> futures = new ArrayList<>(requests.size());
+        Set<String> serials = new HashSet<>();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (Request request : requests) {
+                if (request.seriennummer != null && !serials.add(request.seriennummer)) {
+                    // Both would write the same file / Beide würden dieselbe Datei schreiben
+                    futures.add(CompletableFuture.completedFuture(Result.failure(request.seriennummer, "duplicate serial number in batch")));
+                    continue;
+                }
+                futures.add(executor.submit(() -> process(request)));
+            }
+        } // close() waits for all tasks / close() wartet auf alle Aufgaben
+
+        List<Result> results = new ArrayList<>(futures.size());
+        for (int i = 0; i < futures.size(); i++) {
+            try {
+                results.add(futures.get(i).get());
+            } catch (ExecutionException e) {
+                results.add(Result.failure(requests.get(i).seriennummer, String.valueOf(e.getCause())));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                results.add(Result.failure(requests.get(i).seriennummer, "interrupted"));
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Validates a request and builds its license.
+     * Prüft eine Anfrage und erstellt ihre Lizenz.
+     *
+     * @throws IllegalArgumentException if the serial number, dates or function ids are invalid or the functions break a rule
+     *                                  / wenn Seriennummer, Daten oder Funktions-Ids ungültig sind oder die Funktionen eine Regel verletzen
+     */
+    public Licence toLicence(Request request) {
+        if (request.seriennummer == null || !SERIAL_PATTERN.matcher(request.seriennummer).matches()) {
+            throw new IllegalArgumentException("invalid serial number '" + request.seriennummer + "'");
+        }
+        if (request.startDatum == null || request.endDatum == null) {
+            throw new IllegalArgumentException("start and end date are required");
+        }
+        if (request.endDatum.isBefore(request.startDatum)) {
+            throw new IllegalArgumentException("end date " + request.endDatum + " is before start date " + request.startDatum);
+        }
+        FunctionSelection functions = new FunctionSelection();
+        for (String id : request.functionIds) {
+            int ordinal = catalog.ordinalOf(id);
+            if (ordinal < 0) {
+                throw new IllegalArgumentException("unknown function id '" + id + "'");
+            }
+            functions.setSelected(ordinal, true);
+        }
+        rules.complete(functions);
+        if (!rules.isValid(functions)) {
+            throw new IllegalArgumentException("functions break rules: " + rules.violations(functions));
+        }
+        return new Licence(request.seriennummer, request.startDatum, request.endDatum, functions,
+                catalog.size(), catalog.versionHash());
+    }
+
+    private Result process(Request request) {
+        Licence licence;
+        try {
+            licence = toLicence(request);
+        } catch (IllegalArgumentException e) {
+            return Result.failure(request.seriennummer, e.getMessage());
+        }
+        Path file = licenceFile(licence.getSeriennummer());
+        byte[] json = licence.toJSONString().getBytes(StandardCharsets.UTF_8); // Prepared before taking a permit / Vor dem Belegen einer Erlaubnis vorbereitet
+        try {
+            ioPermits.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return Result.failure(request.seriennummer, "interrupted");
+        }
+        try {
+            LicenceStore.writeAtomically(file, json); // Temp file + rename, never a truncated file / Temporäre Datei + Umbenennen, nie eine abgeschnittene Datei
+            return Result.success(licence, file);
+        } catch (IOException e) {
+            return Result.failure(request.seriennummer, "write failed: " + e.getMessage());
+        } finally {
+            ioPermits.release();
+        }
+    }
+
+    /**
+     * License request for one device.
+     * Lizenzanfrage für ein Gerät.
+     */
+    public static final class Request {
+        private final String seriennummer;
+        private final LocalDate startDatum;
+        private final LocalDate endDatum;
+        private final List<String> functionIds;
+
+        public Request(String seriennummer, LocalDate startDatum, LocalDate endDatum, List<String> functionIds) {
+            this.seriennummer = seriennummer;
+            this.startDatum = startDatum;
+            this.endDatum = endDatum;
+            this.functionIds = List.copyOf(functionIds);
+        }
+
+        public String getSeriennummer() {
+            return seriennummer;
+        }
+
+        public LocalDate getStartDatum() {
+            return startDatum;
+        }
+
+        public LocalDate getEndDatum() {
+            return endDatum;
+        }
+
+        public List<String> getFunctionIds() {
+            return functionIds;
+        }
+    }
+
+    /**
+     * Outcome of one request: the written license and file, or an error message.
+     * Ergebnis einer Anfrage: die geschriebene Lizenz und Datei, oder eine Fehlermeldung.
+     */
+    public static final class Result {
+        private final String seriennummer;
+        private final Licence licence; // null on failure / null bei Fehler
+        private final Path file; // null on failure / null bei Fehler
+        private final String error; // null on success / null bei Erfolg
+
+        private Result(String seriennummer, Licence licence, Path file, String error) {
+            this.seriennummer = seriennummer;
+            this.licence = licence;
+            this.file = file;
+            this.error = error;
+        }
+
+        static Result success(Licence licence, Path file) {
+            return new Result(licence.getSeriennummer(), licence, file, null);
+        }
+
+        static Result failure(String seriennummer, String error) {
+            return new Result(seriennummer, null, null, error);
+        }
+
+        public boolean isSuccess() {
+            return error == null;
+        }
+
+        public String getSeriennummer() {
+            return seriennummer;
+        }
+
+        public Licence getLicence() {
+            return licence;
+        }
+
+        public Path getFile() {
+            return file;
+        }
+
+        public String getError() {
+            return error;
+        }
+
+        @Override
+        public String toString() {
+            return isSuccess() ? seriennummer + ": OK " + file : seriennummer + ": FAILED " + error;
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package org.example;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * Differences between two versions of a function catalog, matched by function id.
+ * Besides the added, removed and changed functions it maps every old ordinal to its new ordinal,
+ * so selections and table rows can be carried over to the new catalog.
+ * Unterschiede zwischen zwei Versionen eines Funktionskatalogs, abgeglichen über die Funktions-Id.
+ * Neben hinzugefügten, entfernten und geänderten Funktionen bildet er jede alte Ordinalzahl auf ihre neue ab,
+ * sodass Auswahlen und Tabellenzeilen in den neuen Katalog übernommen werden können.
+ */
+public final class CatalogDiff {
+
+    private final FunctionCatalog before;
+    private final FunctionCatalog after;
+    private final int[] oldToNew; // New ordinal per old ordinal, -1 if removed / Neue Ordinalzahl je alter Ordinalzahl, -1 wenn entfernt
+    private final int[] added; // New ordinals, ascending / Neue Ordinalzahlen, aufsteigend
+    private final int[] removed; // Old ordinals, ascending / Alte Ordinalzahlen, aufsteigend
+    private final BitSet changed; // New ordinals whose name or description changed / Neue Ordinalzahlen mit geändertem Namen oder geänderter Beschreibung
+    private final boolean orderPreserved; // Kept functions are still in the same relative order / Verbliebene Funktionen stehen noch in derselben Reihenfolge
+
+    private CatalogDiff(FunctionCatalog before, FunctionCatalog after, int[] oldToNew, int[] added, int[] removed,
+                        BitSet changed, boolean orderPreserved) {
+        this.before = before;
+        this.after = after;
+        this.oldToNew = oldToNew;
+        this.added = added;
+        this.removed = removed;
+        this.changed = changed;
+        this.orderPreserved = orderPreserved;
+    }
+
+    /**
+     * Compares two catalogs; runs in linear time and creates no strings.
+     * Vergleicht zwei Kataloge; läuft in linearer Zeit und erzeugt keine Strings.
+     */
+    public static CatalogDiff compute(FunctionCatalog before, FunctionCatalog after) {
+        int[] oldToNew = new int[before.size()];
+        BitSet kept = new BitSet(after.size());
+        BitSet changed = new BitSet();
+        int[] removed = new int[before.size()];
+        int removedCount = 0;
+        boolean orderPreserved = true;
+        int previous = -1;
+        for (int ordinal = 0; ordinal < before.size(); ordinal++) {
+            int newOrdinal = after.ordinalOf(before, ordinal);
+            oldToNew[ordinal] = newOrdinal;
+            if (newOrdinal < 0) {
+                removed[removedCount++] = ordinal;
+                continue;
+            }
+            kept.set(newOrdinal);
+            if (newOrdinal < previous) {
+                orderPreserved = false;
+            }
+            previous = newOrdinal;
+            if (!after.sameContent(newOrdinal, before, ordinal)) {
+                changed.set(newOrdinal);
+            }
+        }
+        int[] added = new int[after.size() - kept.cardinality()];
+        for (int ordinal = kept.nextClearBit(0), i = 0; i < added.length; ordinal = kept.nextClearBit(ordinal + 1)) {
+            added[i++] = ordinal;
+        }
+        return new CatalogDiff(before, after, oldToNew, added, Arrays.copyOf(removed, removedCount), changed, orderPreserved);
+    }
+
+    public FunctionCatalog getBefore() {
+        return before;
+    }
+
+    public FunctionCatalog getAfter() {
+        return after;
+    }
+
+    /**
+     * Returns the new ordinal of an old ordinal, or -1 if the function was removed.
+     * Gibt die neue Ordinalzahl einer alten Ordinalzahl zurück, oder -1, wenn die Funktion entfernt wurde.
+     */
+    public int newOrdinal(int oldOrdinal) {
+        return oldToNew[oldOrdinal];
+    }
+
+    public int[] getAdded() {
+        return added.clone();
+    }
+
+    public int[] getRemoved() {
+        return removed.clone();
+    }
+
+    public int addedCount() {
+        return added.length;
+    }
+
+    public int removedCount() {
+        return removed.length;
+    }
+
+    public int changedCount() {
+        return changed.cardinality();
+    }
+
+    /**
+     * True if the function at the new ordinal existed before with another name or description.
+     * True, wenn die Funktion an der neuen Ordinalzahl vorher mit anderem Namen oder anderer Beschreibung existierte.
+     */
+    public boolean isChanged(int newOrdinal) {
+        return changed.get(newOrdinal);
+    }
+
+    /**
+     * True if the kept functions appear in the same relative order, so rows can be patched in place.
+     * True, wenn die verbliebenen Funktionen in derselben relativen Reihenfolge stehen, sodass Zeilen an Ort und Stelle angepasst werden können.
+     */
+    public boolean isOrderPreserved() {
+        return orderPreserved;
+    }
+
+    public boolean isEmpty() {
+        return added.length == 0 && removed.length == 0 && changed.isEmpty() && orderPreserved;
+    }
+
+    @Override
+    public String toString() {
+        return "+" + added.length + " / -" + removed.length + " / ~" + changed.cardinality()
+                + (orderPreserved ? "" : " (reordered)");
+    }
+}
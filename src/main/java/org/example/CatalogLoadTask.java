@@ -0,0 +1,70 @@
+package org.example;
+
+import javafx.application.Platform;
+import javafx.concurrent.Task;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+/**
+ * Background task that loads the function catalog and hands parsed functions to the JavaFX thread in batches.
+ * Batches that arrive while the UI is busy are combined into one UI update instead of flooding the event queue.
+ * Hintergrundaufgabe, die den Funktionskatalog lädt und gelesene Funktionen paketweise an den JavaFX-Thread übergibt.
+ * Pakete, die eintreffen, während die Oberfläche beschäftigt ist, werden zu einer UI-Aktualisierung zusammengefasst.
+ */
+public class CatalogLoadTask extends Task<CsvCatalogLoader.Report> {
+
+    private final Modell model;
+    private final Consumer<FunctionCatalog.Rows> batchConsumer; // Runs on the FX thread / Läuft im FX-Thread
+    private final Queue<FunctionCatalog.Rows> pending = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean drainScheduled = new AtomicBoolean();
+
+    /**
+     * @param model         Model whose catalog is loaded / Modell, dessen Katalog geladen wird
+     * @param batchConsumer Receives the rows of each batch on the FX thread / Erhält im FX-Thread die Zeilen jedes Pakets
+     */
+    public CatalogLoadTask(Modell model, Consumer<FunctionCatalog.Rows> batchConsumer) {
+        this.model = model;
+        this.batchConsumer = batchConsumer;
+    }
+
+    @Override
+    protected CsvCatalogLoader.Report call() throws Exception {
+        updateMessage("Loading functions...");
+        CsvCatalogLoader.Report report = model.loadFunctionsFromCSV(new Modell.CatalogListener() {
+            @Override
+            public void onBatch(FunctionCatalog.Rows rows) {
+                pending.add(rows); // The queue hands the rows over safely / Die Warteschlange übergibt die Zeilen sicher
+                if (drainScheduled.compareAndSet(false, true)) {
+                    Platform.runLater(CatalogLoadTask.this::drain);
+                }
+            }
+
+            @Override
+            public void onProgress(long bytesDone, long bytesTotal) {
+                updateProgress(bytesDone, bytesTotal);
+            }
+        });
+        updateMessage("Loading product lines...");
+        model.loadProductLines(); // The other catalogs in parallel / Die anderen Kataloge parallel
+        updateMessage("Loading licenses...");
+        model.loadStoredLicences();
+        model.loadLicenceFile(); // Needs the catalog for the function bits / Benötigt den Katalog für die Funktionsbits
+        updateMessage(model.getCatalog().size() + " functions loaded");
+        return report;
+    }
+
+    /**
+     * Passes all queued batches to the consumer. Must be called on the FX thread.
+     * Übergibt alle wartenden Pakete an den Empfänger. Muss im FX-Thread aufgerufen werden.
+     */
+    public void drain() {
+        drainScheduled.set(false);
+        FunctionCatalog.Rows rows;
+        while ((rows = pending.poll()) != null) {
+            batchConsumer.accept(rows);
+        }
+    }
+}
@@ -0,0 +1,550 @@
+package org.example;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The function catalogs of all product lines, one CSV file each, addressed by product-line name (the file name without
+ * extension, e.g. {@code functions-pl7} for {@code functions-pl7.csv}).
+ * The catalogs are loaded in parallel, one per core, each from its {@link CatalogSnapshot} or by parsing its CSV.
+ * Afterwards catalogs whose text had to be parsed onto the heap and that share strings with another catalog are moved
+ * onto one shared {@link PackedStrings}: names and descriptions that several product lines (or generations of one)
+ * have in common are stored only once. Catalogs read from a snapshot keep their mapped text, which takes no heap, and a
+ * single catalog is left as it is. A registry is immutable; {@link #with(String, FunctionCatalog)} returns a copy.
+ * Die Funktionskataloge aller Produktlinien, je eine CSV-Datei, adressiert über den Produktliniennamen (der Dateiname
+ * ohne Endung, z. B. {@code functions-pl7} für {@code functions-pl7.csv}).
+ * Die Kataloge werden parallel geladen, einer pro Kern, jeder aus seinem {@link CatalogSnapshot} oder durch Lesen seiner CSV.
+ * Danach werden Kataloge, deren Text beim Lesen auf den Heap kam und die Strings mit einem anderen Katalog gemeinsam
+ * haben, auf ein gemeinsames {@link PackedStrings} umgestellt: Namen und Beschreibungen, die mehrere Produktlinien (oder
+ * Generationen einer Linie) gemeinsam haben, werden nur einmal gespeichert. Aus einem Snapshot gelesene Kataloge behalten
+ * ihren abgebildeten Text, der keinen Heap belegt, und ein einzelner Katalog bleibt, wie er ist. Eine Registry ist
+ * unveränderlich; {@link #with(String, FunctionCatalog)} gibt eine Kopie zurück.
+ */
+public final class CatalogRegistry {
+
+    private static final Metrics.Timer LOAD_TIME = Metrics.global().timer("catalog_registry_load", "Loading and interning the catalogs of all product lines");
+    private static final CatalogRegistry EMPTY = new CatalogRegistry(new TreeMap<>(), 0);
+
+    private final Map<String, ProductLine> productLines; // Sorted by name, never modified / Nach Namen sortiert, nie verändert
+    private final long textBytes;
+
+    private CatalogRegistry(Map<String, ProductLine> productLines, long textBytes) {
+        this.productLines = productLines;
+        this.textBytes = textBytes;
+    }
+
+    /**
+     * Returns a registry without product lines.
+     * Gibt eine Registry ohne Produktlinien zurück.
+     */
+    public static CatalogRegistry empty() {
+        return EMPTY;
+    }
+
+    /**
+     * The product-line name of a CSV file: its file name without extension.
+     * Der Produktlinienname einer CSV-Datei: ihr Dateiname ohne Endung.
+     */
+    public static String productLineOf(Path csvFile) {
+        String name = csvFile.getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        return dot > 0 ? name.substring(0, dot) : name;
+    }
+
+    /**
+     * Finds the CSV files in a directory that match the glob, e.g. {@code functions*.csv}, by product-line name.
+     * Findet die CSV-Dateien eines Verzeichnisses, die zum Glob passen, z. B. {@code functions*.csv}, nach Produktlinienname.
+     *
+     * @throws IOException if the directory cannot be read / wenn das Verzeichnis nicht gelesen werden kann
+     */
+    public static Map<String, Path> discover(Path directory, String glob) throws IOException {
+        Map<String, Path> csvFiles = new TreeMap<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, glob)) {
+            for (Path file : files) {
+                if (Files.isRegularFile(file)) {
+                    csvFiles.put(productLineOf(file), file);
+                }
+            }
+        }
+        return csvFiles;
+    }
+
+    /**
+     * Loads the catalogs of all product lines in parallel and interns their shared text. A product line whose CSV cannot be
+     * read is reported on stderr and left out, like a malformed row; the others are still loaded.
+     * Lädt die Kataloge aller Produktlinien parallel und übernimmt ihren gemeinsamen Text. Eine Produktlinie, deren CSV
+     * nicht gelesen werden kann, wird auf stderr gemeldet und ausgelassen, wie eine fehlerhafte Zeile; die anderen werden
+     * trotzdem geladen.
+     *
+     * @param csvFiles CSV file per product line / CSV-Datei je Produktlinie
+     * @param loaded   Catalogs that are already loaded and only need to be interned, e.g. the one shown while starting
+     *                 / Bereits geladene Kataloge, die nur noch übernommen werden müssen, z. B. der beim Start angezeigte
+     */
+    public static CatalogRegistry load(Map<String, Path> csvFiles, Map<String, FunctionCatalog> loaded) {
+        long started = System.nanoTime();
+        List<String> names = new ArrayList<>(new TreeMap<>(csvFiles).keySet());
+        int threads = Math.max(1, Math.min(names.size(), Runtime.getRuntime().availableProcessors()));
+        AtomicInteger threadNumber = new AtomicInteger();
+        List<Loaded> catalogs = new ArrayList<>(names.size());
+        PackedStrings text = new PackedStrings();
+        try (ExecutorService executor = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "catalog-loader-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        })) {
+            // 1. Load (or take) each catalog and hash its text, one catalog per task
+            // 1. Jeden Katalog laden (oder übernehmen) und seinen Text hashen, ein Katalog pro Aufgabe
+            List<Callable<Loaded>> loads = new ArrayList<>(names.size());
+            for (String name : names) {
+                Path csvFile = csvFiles.get(name);
+                FunctionCatalog catalog = loaded.get(name);
+                loads.add(() -> {
+                    ProductLine before = ProductLine.of(csvFile, null); // Before reading, so a change while loading is noticed / Vor dem Lesen, damit eine Änderung beim Laden auffällt
+                    Loaded next = new Loaded(name, before, catalog != null ? catalog : loadCatalog(csvFile));
+                    if (names.size() > 1) {
+                        next.hashText(); // A single catalog has nothing to share / Ein einzelner Katalog hat nichts zu teilen
+                    }
+                    return next;
+                });
+            }
+            List<Future<Loaded>> results = executor.invokeAll(loads);
+            for (int i = 0; i < results.size(); i++) {
+                try {
+                    catalogs.add(results.get(i).get());
+                } catch (ExecutionException e) {
+                    System.err.println("Error loading catalog of product line " + names.get(i) + ": " + e.getCause().getMessage());
+                }
+            }
+
+            if (catalogs.size() > 1) {
+                // 2. Find equal strings, one partition of the hash range per task, each with its own table; nothing is copied yet
+                // 2. Gleiche Strings finden, ein Teil des Hash-Bereichs pro Aufgabe, jeder mit eigener Tabelle; noch wird nichts kopiert
+                int partitions = threads;
+                Interner[] interners = new Interner[partitions];
+                List<Callable<Void>> indexes = new ArrayList<>(partitions);
+                for (int p = 0; p < partitions; p++) {
+                    Interner interner = interners[p] = new Interner(partitions, p);
+                    indexes.add(() -> {
+                        interner.index(catalogs);
+                        return null;
+                    });
+                }
+                waitFor(executor.invokeAll(indexes));
+
+                // 3. Move catalogs whose text is on the heap and shares strings; mapped text stays mapped
+                // 3. Kataloge umstellen, deren Text auf dem Heap liegt und Strings teilt; abgebildeter Text bleibt abgebildet
+                for (Loaded next : catalogs) {
+                    next.moved = !next.source.isMapped() && next.sharesText(interners);
+                }
+                List<Callable<Void>> copies = new ArrayList<>(partitions);
+                for (Interner interner : interners) {
+                    copies.add(() -> {
+                        interner.copyUsed(catalogs);
+                        return null;
+                    });
+                }
+                waitFor(executor.invokeAll(copies));
+
+                // 4. Concatenate the partitions (plain copies) and point the moved catalogs at the shared text
+                // 4. Die Teile aneinanderhängen (reine Kopien) und die umgestellten Kataloge auf den gemeinsamen Text zeigen lassen
+                int[] firstSlots = new int[partitions];
+                for (int p = 0; p < partitions; p++) {
+                    firstSlots[p] = text.size();
+                    for (int slot = 0; slot < interners[p].text.size(); slot++) {
+                        text.addFrom(interners[p].text, slot);
+                    }
+                }
+                text.trim();
+                List<Callable<Void>> moves = new ArrayList<>(catalogs.size());
+                for (Loaded next : catalogs) {
+                    if (next.moved) {
+                        moves.add(() -> {
+                            next.moveTo(text, firstSlots, interners);
+                            return null;
+                        });
+                    }
+                }
+                waitFor(executor.invokeAll(moves));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return EMPTY;
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Error interning catalogs", e.getCause()); // A bug, not a file problem / Ein Fehler im Code, kein Dateiproblem
+        }
+
+        Map<String, ProductLine> productLines = new TreeMap<>();
+        long loadedBytes = 0;
+        long ownBytes = 0; // Text of catalogs that were not moved / Text der nicht umgestellten Kataloge
+        for (Loaded next : catalogs) {
+            productLines.put(next.name, new ProductLine(next.file.csvFile, next.catalog, next.file.csvSize, next.file.csvModifiedMillis));
+            loadedBytes += next.textBytes;
+            ownBytes += next.moved ? 0 : next.textBytes;
+        }
+        LOAD_TIME.recordSince(started);
+        System.out.println(productLines.size() + " product-line catalogs loaded in " + (System.nanoTime() - started) / 1_000_000
+                + " ms, text " + (text.byteSize() + ownBytes) / 1024 + " KiB (" + text.byteSize() / 1024 + " KiB shared) instead of "
+                + loadedBytes / 1024 + " KiB");
+        return new CatalogRegistry(productLines, text.byteSize() + ownBytes);
+    }
+
+    private static void waitFor(List<Future<Void>> tasks) throws InterruptedException, ExecutionException {
+        for (Future<Void> task : tasks) {
+            task.get();
+        }
+    }
+
+    /**
+     * Returns a copy in which the product line has the given catalog, e.g. after its CSV was reloaded.
+     * The catalog is not interned; it keeps its own text.
+     * Gibt eine Kopie zurück, in der die Produktlinie den angegebenen Katalog hat, z. B. nachdem ihre CSV neu geladen wurde.
+     * Der Katalog wird nicht übernommen; er behält seinen eigenen Text.
+     *
+     * @throws IllegalArgumentException if the product line is unknown / wenn die Produktlinie unbekannt ist
+     */
+    public CatalogRegistry with(String name, FunctionCatalog catalog) {
+        ProductLine productLine = productLines.get(name);
+        if (productLine == null) {
+            throw new IllegalArgumentException("Unknown product line: " + name);
+        }
+        Map<String, ProductLine> copy = new TreeMap<>(productLines);
+        copy.put(name, ProductLine.of(productLine.csvFile, catalog));
+        return new CatalogRegistry(copy, textBytes);
+    }
+
+    /**
+     * Names of all product lines, sorted.
+     * Namen aller Produktlinien, sortiert.
+     */
+    public List<String> names() {
+        return Collections.unmodifiableList(new ArrayList<>(productLines.keySet()));
+    }
+
+    public boolean contains(String name) {
+        return productLines.containsKey(name);
+    }
+
+    /**
+     * Returns the catalog of a product line, or null if it is unknown.
+     * Gibt den Katalog einer Produktlinie zurück, oder null, wenn sie unbekannt ist.
+     */
+    public FunctionCatalog get(String name) {
+        ProductLine productLine = productLines.get(name);
+        return productLine == null ? null : productLine.catalog;
+    }
+
+    /**
+     * Returns the CSV file of a product line, or null if it is unknown.
+     * Gibt die CSV-Datei einer Produktlinie zurück, oder null, wenn sie unbekannt ist.
+     */
+    public Path csvFile(String name) {
+        ProductLine productLine = productLines.get(name);
+        return productLine == null ? null : productLine.csvFile;
+    }
+
+    /**
+     * True if the CSV file of a product line has the same size and modification time as when its catalog was loaded.
+     * Only product lines that are watched pick up changes, so a false result means the catalog may be out of date.
+     * True, wenn die CSV-Datei einer Produktlinie dieselbe Größe und Änderungszeit hat wie beim Laden ihres Katalogs.
+     * Nur überwachte Produktlinien übernehmen Änderungen, daher bedeutet false, dass der Katalog veraltet sein kann.
+     */
+    public boolean isUpToDate(String name) {
+        ProductLine productLine = productLines.get(name);
+        if (productLine == null) {
+            return false;
+        }
+        try {
+            return Files.size(productLine.csvFile) == productLine.csvSize
+                    && Files.getLastModifiedTime(productLine.csvFile).toMillis() == productLine.csvModifiedMillis;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    public int size() {
+        return productLines.size();
+    }
+
+    /**
+     * Bytes of the text of all catalogs as loaded: the shared text, each distinct string counted once, plus the own
+     * text of catalogs that were not moved onto it.
+     * Bytes des Texts aller Kataloge wie geladen: der gemeinsame Text, jeder verschiedene String einmal gezählt, plus der
+     * eigene Text der Kataloge, die nicht darauf umgestellt wurden.
+     */
+    public long textBytes() {
+        return textBytes;
+    }
+
+    /**
+     * Loads one catalog like {@link Modell#loadFunctionsFromCSV(Modell.CatalogListener)}: from the snapshot if it is
+     * up to date, otherwise by parsing the CSV and writing the snapshot.
+     * Lädt einen Katalog wie {@link Modell#loadFunctionsFromCSV(Modell.CatalogListener)}: aus dem Snapshot, wenn er
+     * aktuell ist, sonst durch Lesen der CSV und Schreiben des Snapshots.
+     */
+    private static FunctionCatalog loadCatalog(Path csvFile) throws IOException {
+        FunctionCatalog snapshot = CatalogSnapshot.load(csvFile);
+        if (snapshot != null) {
+            return snapshot;
+        }
+        CatalogSnapshot.Source source = CatalogSnapshot.Source.of(csvFile); // Before parsing, see Source / Vor dem Lesen, siehe Source
+        FunctionCatalog.Builder builder = new FunctionCatalog.Builder();
+        CsvCatalogLoader.Report report = new CsvCatalogLoader().load(csvFile, builder);
+        FunctionCatalog catalog = builder.build();
+        if (report.getMalformedCount() > 0) {
+            System.err.println("Skipped " + report.getMalformedCount() + " malformed CSV rows in " + csvFile
+                    + " (first: " + report.getMalformedRows().get(0) + ")");
+        } else {
+            CatalogSnapshot.write(csvFile, catalog, source);
+        }
+        return catalog;
+    }
+
+    private static final class ProductLine {
+        private final Path csvFile;
+        private final FunctionCatalog catalog;
+        private final long csvSize; // Of the CSV before its catalog was loaded, -1 if unknown / Der CSV vor dem Laden ihres Katalogs, -1 wenn unbekannt
+        private final long csvModifiedMillis;
+
+        ProductLine(Path csvFile, FunctionCatalog catalog, long csvSize, long csvModifiedMillis) {
+            this.csvFile = csvFile;
+            this.catalog = catalog;
+            this.csvSize = csvSize;
+            this.csvModifiedMillis = csvModifiedMillis;
+        }
+
+        static ProductLine of(Path csvFile, FunctionCatalog catalog) {
+            try {
+                return new ProductLine(csvFile, catalog, Files.size(csvFile), Files.getLastModifiedTime(csvFile).toMillis());
+            } catch (IOException e) {
+                return new ProductLine(csvFile, catalog, -1, -1);
+            }
+        }
+    }
+
+    /**
+     * A catalog on its way into the registry: its columns, the hash of every referenced text slot and, once indexed,
+     * the entry of each of its strings within the partition that holds it.
+     * Ein Katalog auf dem Weg in die Registry: seine Spalten, der Hash jedes referenzierten Text-Slots und, nach dem
+     * Indizieren, der Eintrag jedes seiner Strings innerhalb des Teils, der ihn enthält.
+     */
+    private static final class Loaded {
+        private final String name;
+        private final ProductLine file; // CSV file and its size and time before loading / CSV-Datei und ihre Größe und Zeit vor dem Laden
+        private final long textBytes; // Before interning / Vor dem Übernehmen
+        private final PackedStrings source;
+        private int[] idSlots;
+        private int[] nameSlots;
+        private int[] descrSlots;
+        private int[] referenced; // Referenced source slots, ascending / Referenzierte Quell-Slots, aufsteigend
+        private int[] hashes; // Hash per source slot / Hash je Quell-Slot
+        private int[] entries; // Entry within its partition per source slot / Eintrag innerhalb seines Teils je Quell-Slot
+        private boolean moved; // Points at the shared text / Zeigt auf den gemeinsamen Text
+        private FunctionCatalog catalog;
+
+        Loaded(String name, ProductLine file, FunctionCatalog catalog) {
+            this.name = name;
+            this.file = file;
+            this.catalog = catalog;
+            this.source = catalog.text();
+            this.textBytes = source.byteSize();
+        }
+
+        /**
+         * Copies the columns and hashes every referenced string, so it can be compared with the other catalogs.
+         * Kopiert die Spalten und hasht jeden referenzierten String, damit er mit den anderen Katalogen verglichen werden kann.
+         */
+        void hashText() {
+            idSlots = catalog.idColumn();
+            nameSlots = catalog.nameColumn();
+            descrSlots = catalog.descrColumn();
+            hashes = new int[source.size()];
+            entries = new int[source.size()];
+            boolean[] used = new boolean[source.size()]; // Replaced rows leave unreferenced slots / Ersetzte Zeilen hinterlassen unreferenzierte Slots
+            int count = 0;
+            for (int[] column : new int[][]{idSlots, nameSlots, descrSlots}) {
+                for (int slot : column) {
+                    if (!used[slot]) {
+                        used[slot] = true;
+                        count++;
+                    }
+                }
+            }
+            referenced = new int[count];
+            for (int slot = 0, i = 0; slot < used.length; slot++) {
+                if (used[slot]) {
+                    referenced[i++] = slot;
+                    hashes[slot] = source.hash(slot);
+                }
+            }
+        }
+
+        /**
+         * True if another catalog uses at least one of this catalog's strings.
+         * True, wenn ein anderer Katalog mindestens einen der Strings dieses Katalogs verwendet.
+         */
+        boolean sharesText(Interner[] interners) {
+            for (int slot : referenced) {
+                if (interners[Interner.partitionOf(hashes[slot], interners.length)].isShared(entries[slot])) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * Points the columns at the shared text and replaces the catalog. The id table is reused, since it only depends
+         * on the content of the ids, so ordinals and lookups stay the same.
+         * Lässt die Spalten auf den gemeinsamen Text zeigen und ersetzt den Katalog. Die Id-Tabelle wird wiederverwendet,
+         * da sie nur vom Inhalt der Ids abhängt, daher bleiben Ordinalzahlen und Suchen gleich.
+         */
+        void moveTo(PackedStrings text, int[] firstSlots, Interner[] interners) {
+            for (int[] column : new int[][]{idSlots, nameSlots, descrSlots}) {
+                for (int ordinal = 0; ordinal < column.length; ordinal++) {
+                    int slot = column[ordinal];
+                    int partition = Interner.partitionOf(hashes[slot], interners.length);
+                    column[ordinal] = firstSlots[partition] + interners[partition].slotOf(entries[slot]);
+                }
+            }
+            catalog = FunctionCatalog.fromColumns(text, idSlots, nameSlots, descrSlots, catalog.indexTable());
+        }
+    }
+
+    /**
+     * Finds equal strings of one partition of the hash range, and later copies the ones the moved catalogs use into its
+     * own PackedStrings, each distinct string once. An open-addressing table finds strings that are already known by
+     * content; each entry remembers the catalog and slot it was first seen in and how many catalogs use it. Partitions
+     * never share a string, so they run in parallel without locks.
+     * Findet gleiche Strings eines Teils des Hash-Bereichs und kopiert später die von den umgestellten Katalogen
+     * verwendeten in ein eigenes PackedStrings, jeden verschiedenen String einmal. Eine Hashtabelle mit offener
+     * Adressierung findet bereits bekannte Strings über ihren Inhalt; jeder Eintrag merkt sich Katalog und Slot, in dem er
+     * zuerst vorkam, und wie viele Kataloge ihn verwenden. Teile haben nie einen String gemeinsam, daher laufen sie ohne
+     * Sperren parallel.
+     */
+    private static final class Interner {
+        private final int partitions;
+        private final int partition;
+        private final PackedStrings text = new PackedStrings();
+        private long[] table = new long[1024]; // Hash << 32 | entry + 1, 0 = free; one memory access per probe / 0 = frei; ein Speicherzugriff pro Sondierung
+        private int[] firstCatalog = new int[256]; // Per entry / Je Eintrag
+        private int[] firstSlot = new int[256];
+        private int[] lastCatalog = new int[256];
+        private int[] catalogCount = new int[256];
+        private int[] slots; // Slot in text per entry, -1 if not copied / Slot in text je Eintrag, -1 wenn nicht kopiert
+        private int count; // Entries / Einträge
+
+        Interner(int partitions, int partition) {
+            this.partitions = partitions;
+            this.partition = partition;
+        }
+
+        /**
+         * The partition of a hash. Uses the high bits, the table uses the low ones.
+         * Der Teil eines Hashes. Nutzt die oberen Bits, die Tabelle die unteren.
+         */
+        static int partitionOf(int hash, int partitions) {
+            return (int) ((FunctionCatalog.mix(hash) & 0xFFFFFFFFL) * partitions >>> 32);
+        }
+
+        void index(List<Loaded> catalogs) {
+            for (int c = 0; c < catalogs.size(); c++) {
+                Loaded catalog = catalogs.get(c);
+                for (int slot : catalog.referenced) {
+                    int hash = catalog.hashes[slot];
+                    if (partitionOf(hash, partitions) == partition) {
+                        catalog.entries[slot] = entryOf(catalogs, c, slot, hash); // Only this task writes these elements / Nur diese Aufgabe schreibt diese Elemente
+                    }
+                }
+            }
+        }
+
+        boolean isShared(int entry) {
+            return catalogCount[entry] > 1;
+        }
+
+        /**
+         * Copies the strings used by moved catalogs, in the order they are first used.
+         * Kopiert die von umgestellten Katalogen verwendeten Strings in der Reihenfolge ihrer ersten Verwendung.
+         */
+        void copyUsed(List<Loaded> catalogs) {
+            slots = new int[count];
+            Arrays.fill(slots, -1);
+            for (Loaded catalog : catalogs) {
+                if (!catalog.moved) {
+                    continue;
+                }
+                for (int slot : catalog.referenced) {
+                    int entry = catalog.entries[slot];
+                    if (partitionOf(catalog.hashes[slot], partitions) == partition && slots[entry] < 0) {
+                        slots[entry] = text.addFrom(catalogs.get(firstCatalog[entry]).source, firstSlot[entry]);
+                    }
+                }
+            }
+        }
+
+        int slotOf(int entry) {
+            return slots[entry];
+        }
+
+        private int entryOf(List<Loaded> catalogs, int catalog, int sourceSlot, int hash) {
+            PackedStrings source = catalogs.get(catalog).source;
+            int mask = table.length - 1;
+            int i = FunctionCatalog.mix(hash) & mask;
+            for (long found; (found = table[i]) != 0; i = (i + 1) & mask) {
+                int entry = (int) found - 1;
+                if ((int) (found >>> 32) == hash
+                        && catalogs.get(firstCatalog[entry]).source.contentEquals(firstSlot[entry], source, sourceSlot)) {
+                    if (lastCatalog[entry] != catalog) {
+                        lastCatalog[entry] = catalog;
+                        catalogCount[entry]++;
+                    }
+                    return entry;
+                }
+            }
+            if (count == firstCatalog.length) {
+                firstCatalog = Arrays.copyOf(firstCatalog, count * 2);
+                firstSlot = Arrays.copyOf(firstSlot, count * 2);
+                lastCatalog = Arrays.copyOf(lastCatalog, count * 2);
+                catalogCount = Arrays.copyOf(catalogCount, count * 2);
+            }
+            int added = count++;
+            firstCatalog[added] = catalog;
+            firstSlot[added] = sourceSlot;
+            lastCatalog[added] = catalog;
+            catalogCount[added] = 1;
+            table[i] = (long) hash << 32 | (added + 1L);
+            if (count * 2 > table.length) {
+                rehash(table.length * 2);
+            }
+            return added;
+        }
+
+        private void rehash(int capacity) {
+            long[] grown = new long[capacity];
+            int mask = capacity - 1;
+            for (long entry : table) {
+                if (entry != 0) {
+                    int i = FunctionCatalog.mix((int) (entry >>> 32)) & mask;
+                    while (grown[i] != 0) {
+                        i = (i + 1) & mask;
+                    }
+                    grown[i] = entry;
+                }
+            }
+            table = grown;
+        }
+    }
+}
@@ -0,0 +1,160 @@
+package org.example;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Watches the functions CSV and reloads the catalog when its content changes.
+ * File events are collected until the file has been quiet for a moment (editors often write in several steps).
+ * The file is only parsed again if its content hash differs from the last loaded version; the new catalog is then
+ * compared with the current one and handed to the listener as a {@link CatalogDiff}. Parsing and comparing run on
+ * the watcher thread, so the listener only has to swap the catalog and patch what changed.
+ * Überwacht die Funktions-CSV und lädt den Katalog neu, wenn sich ihr Inhalt ändert.
+ * Dateiereignisse werden gesammelt, bis die Datei einen Moment ruhig war (Editoren schreiben oft in mehreren Schritten).
+ * Die Datei wird nur neu gelesen, wenn ihr Inhalts-Hash von der zuletzt geladenen Version abweicht; der neue Katalog wird
+ * dann mit dem aktuellen verglichen und dem Listener als {@link CatalogDiff} übergeben. Lesen und Vergleichen laufen im
+ * Überwachungs-Thread, sodass der Listener nur noch den Katalog austauschen und die Änderungen einpflegen muss.
+ */
+public class CatalogReloader implements Closeable {
+
+    private static final long QUIET_MILLIS = 250; // Wait for further events before reading / Auf weitere Ereignisse warten, bevor gelesen wird
+
+    private final Path csvFile;
+    private final Supplier<FunctionCatalog> currentCatalog;
+    private final Consumer<CatalogDiff> listener;
+    private final WatchService watchService;
+    private long loadedHash; // Only used on the watcher thread after start / Nach dem Start nur im Überwachungs-Thread verwendet
+    private boolean started;
+    private boolean readFirst; // Read the file once before waiting for events / Die Datei einmal lesen, bevor auf Ereignisse gewartet wird
+
+    /**
+     * @param csvFile        The CSV file to watch / Die zu überwachende CSV-Datei
+     * @param currentCatalog Catalog the changes are computed against / Katalog, gegen den die Änderungen berechnet werden
+     * @param listener       Receives non-empty differences on the watcher thread / Erhält nicht leere Unterschiede im Überwachungs-Thread
+     */
+    public CatalogReloader(Path csvFile, Supplier<FunctionCatalog> currentCatalog, Consumer<CatalogDiff> listener) throws IOException {
+        this.csvFile = csvFile.toAbsolutePath();
+        this.currentCatalog = currentCatalog;
+        this.listener = listener;
+        this.watchService = FileSystems.getDefault().newWatchService();
+        this.csvFile.getParent().register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+    }
+
+    /**
+     * Remembers the hash of the current file and starts watching. Call this after the catalog was loaded from the file.
+     * Merkt sich den Hash der aktuellen Datei und beginnt mit der Überwachung. Aufrufen, nachdem der Katalog aus der Datei geladen wurde.
+     */
+    public void start() {
+        try {
+            loadedHash = CatalogSnapshot.contentHash(csvFile);
+        } catch (IOException e) {
+            loadedHash = 0; // The first change event will load the file / Das erste Änderungsereignis lädt die Datei
+        }
+        startWatcher();
+    }
+
+    /**
+     * Starts watching and reads the file once right away, for a catalog that may be older than the file
+     * (e.g. a product line that was not watched while another one was selected).
+     * Beginnt mit der Überwachung und liest die Datei sofort einmal, für einen Katalog, der älter als die Datei sein kann
+     * (z. B. eine Produktlinie, die nicht überwacht wurde, während eine andere gewählt war).
+     */
+    public void startAndReload() {
+        loadedHash = 0;
+        readFirst = true;
+        startWatcher();
+    }
+
+    // Created here rather than in the constructor, so no thread sees a half-built reloader
+    // Hier statt im Konstruktor erzeugt, damit kein Thread einen halb fertigen Reloader sieht
+    private synchronized void startWatcher() {
+        if (started) {
+            throw new IllegalStateException("Catalog watcher already started");
+        }
+        started = true;
+        Thread watcher = new Thread(this::watch, "catalog-watcher");
+        watcher.setDaemon(true);
+        watcher.start();
+    }
+
+    @Override
+    public void close() throws IOException {
+        watchService.close(); // Ends the watcher thread / Beendet den Überwachungs-Thread
+    }
+
+    private void watch() {
+        if (readFirst) {
+            reloadIfChanged();
+        }
+        try {
+            while (true) {
+                WatchKey key = watchService.take();
+                boolean relevant = drain(key);
+                // Keep collecting until the directory is quiet / Weiter sammeln, bis das Verzeichnis ruhig ist
+                while ((key = watchService.poll(QUIET_MILLIS, TimeUnit.MILLISECONDS)) != null) {
+                    relevant |= drain(key);
+                }
+                if (relevant) {
+                    reloadIfChanged();
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // Reloader closed / Reloader geschlossen
+        }
+    }
+
+    private boolean drain(WatchKey key) {
+        boolean relevant = false;
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW || csvFile.getFileName().equals(event.context())) {
+                relevant = true;
+            }
+        }
+        key.reset();
+        return relevant;
+    }
+
+    /**
+     * Parses the file if its content changed and reports the differences to the current catalog.
+     * Liest die Datei, wenn sich ihr Inhalt geändert hat, und meldet die Unterschiede zum aktuellen Katalog.
+     */
+    void reloadIfChanged() {
+        try {
+            CatalogSnapshot.Source source = CatalogSnapshot.Source.of(csvFile);
+            long hash = source.getHash();
+            if (hash == loadedHash) {
+                return; // Touched or saved without changes / Berührt oder ohne Änderungen gespeichert
+            }
+            FunctionCatalog.Builder builder = new FunctionCatalog.Builder();
+            CsvCatalogLoader.Report report = new CsvCatalogLoader().load(csvFile, builder);
+            if (report.getMalformedCount() > 0) {
+                System.err.println("Skipped " + report.getMalformedCount() + " malformed CSV rows while reloading:");
+                report.getMalformedRows().forEach(row -> System.err.println("  " + row));
+            }
+            loadedHash = hash;
+            FunctionCatalog catalog = builder.build();
+            if (report.getMalformedCount() == 0) {
+                CatalogSnapshot.write(csvFile, catalog, source); // The next start maps the new version / Der nächste Start bildet die neue Version ab
+            }
+            CatalogDiff diff = CatalogDiff.compute(currentCatalog.get(), catalog);
+            if (!diff.isEmpty()) {
+                listener.accept(diff);
+            }
+        } catch (NoSuchFileException e) {
+            // Replaced by rename; the create event follows / Durch Umbenennen ersetzt; das Erstellungsereignis folgt
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Error reloading functions from CSV: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,285 @@
+package org.example;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32C;
+
+/**
+ * Binary copy of a parsed function catalog, stored next to the CSV file as {@code <csv>.catalog}.
+ * The file holds the catalog's columns exactly as they are in memory, so loading it needs no parsing: the int columns
+ * are copied in bulk and the text stays in the mapped file until a string is actually asked for.
+ * The header records size, modification time and content hash of the CSV it was built from; if the CSV changed,
+ * the snapshot is ignored and rewritten after the next parse. A CRC32C over the body catches a damaged file before
+ * its slots and index are trusted.
+ * Binäre Kopie eines gelesenen Funktionskatalogs, neben der CSV-Datei als {@code <csv>.catalog} gespeichert.
+ * Die Datei enthält die Spalten des Katalogs genau so, wie sie im Speicher liegen, daher muss beim Laden nichts
+ * geparst werden: Die int-Spalten werden am Stück kopiert, und der Text bleibt in der abgebildeten Datei, bis ein
+ * String tatsächlich angefordert wird.
+ * Der Kopf enthält Größe, Änderungszeit und Inhalts-Hash der CSV, aus der er gebaut wurde; hat sich die CSV geändert,
+ * wird der Snapshot ignoriert und nach dem nächsten Lesen neu geschrieben. Eine CRC32C über den Rumpf erkennt eine
+ * beschädigte Datei, bevor ihren Slots und ihrem Index vertraut wird.
+ *
+ * <pre>
+ * Header, 64 bytes, little endian / Kopf, 64 Bytes, Little Endian
+ *   0 magic        8 version     12 rows
+ *  16 CSV size    24 CSV mtime   32 CSV hash
+ *  40 text slots  44 index length  48 text bytes
+ *  56 CRC32C of the body   60 CRC32C of bytes 0..59
+ * Body / Rumpf
+ *   starts[text slots + 1], idSlots[rows], nameSlots[rows], descrSlots[rows], index[index length], text bytes
+ * </pre>
+ */
+public final class CatalogSnapshot {
+
+    static final int FORMAT_VERSION = 2; // Increment when the layout or the catalog columns change / Erhöhen, wenn sich Aufbau oder Katalogspalten ändern
+
+    private static final long MAGIC = 0x474C5441_43364C50L; // "PL6CATLG" in file order / in Dateireihenfolge
+    private static final int HEADER_BYTES = 64;
+    private static final String SUFFIX = ".catalog";
+    private static final int HASH_BUFFER_SIZE = 64 * 1024; // Read size for content hashes / Lesegröße für Inhalts-Hashes
+
+    private static final Metrics.Timer LOAD_TIME = Metrics.global().timer("catalog_snapshot_load", "Loading the function catalog from its binary snapshot");
+    private static final Metrics.Counter MISSES = Metrics.global().counter("catalog_snapshot_misses", "Catalog loads that found no usable snapshot and parsed the CSV");
+
+    private CatalogSnapshot() {
+    }
+
+    /**
+     * Identity of a CSV file's content. Take it before parsing, so a change during the parse makes the snapshot stale.
+     * Identität des Inhalts einer CSV-Datei. Vor dem Lesen erfassen, damit eine Änderung während des Lesens den Snapshot veralten lässt.
+     */
+    public static final class Source {
+        private final long size;
+        private final long modifiedMillis;
+        private final long hash;
+
+        private Source(long size, long modifiedMillis, long hash) {
+            this.size = size;
+            this.modifiedMillis = modifiedMillis;
+            this.hash = hash;
+        }
+
+        public static Source of(Path csvFile) throws IOException {
+            long size = Files.size(csvFile);
+            long modified = Files.getLastModifiedTime(csvFile).toMillis();
+            return new Source(size, modified, contentHash(csvFile));
+        }
+
+        public long getHash() {
+            return hash;
+        }
+    }
+
+    /**
+     * The snapshot file belonging to a CSV file.
+     * Die zu einer CSV-Datei gehörende Snapshot-Datei.
+     */
+    public static Path fileFor(Path csvFile) {
+        return csvFile.resolveSibling(csvFile.getFileName() + SUFFIX);
+    }
+
+    /**
+     * Loads the catalog from the snapshot of the CSV file.
+     * If only the modification time of the CSV changed but not its content, the snapshot is still used and its header
+     * is updated, so the content is not hashed again on the next start.
+     * Lädt den Katalog aus dem Snapshot der CSV-Datei.
+     * Hat sich nur die Änderungszeit der CSV geändert, nicht aber ihr Inhalt, wird der Snapshot trotzdem verwendet und
+     * sein Kopf aktualisiert, damit der Inhalt beim nächsten Start nicht erneut gehasht wird.
+     *
+     * @return The catalog, or null if there is no snapshot or it does not match the CSV
+     * / Der Katalog oder null, wenn es keinen Snapshot gibt oder er nicht zur CSV passt
+     */
+    public static FunctionCatalog load(Path csvFile) {
+        long started = System.nanoTime();
+        Path file = fileFor(csvFile);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            while (header.hasRemaining() && channel.read(header, header.position()) > 0) {
+                // Read the whole header / Den ganzen Kopf lesen
+            }
+            if (header.hasRemaining() || header.getLong(0) != MAGIC || header.getInt(8) != FORMAT_VERSION
+                    || header.getInt(60) != headerChecksum(header)) {
+                return miss("unknown format");
+            }
+            int rows = header.getInt(12);
+            int textSlots = header.getInt(40);
+            int indexLength = header.getInt(44);
+            long textBytes = header.getLong(48);
+            long intCount = textSlots + 1L + 3L * rows + indexLength;
+            if (rows < 0 || textSlots < 0 || indexLength < 0 || textBytes < 0
+                    || channel.size() != HEADER_BYTES + 4 * intCount + textBytes) {
+                return miss("truncated");
+            }
+
+            if (Files.size(csvFile) != header.getLong(16)) {
+                return miss("CSV changed");
+            }
+            long modified = Files.getLastModifiedTime(csvFile).toMillis();
+            if (modified != header.getLong(24)) {
+                if (contentHash(csvFile) != header.getLong(32)) {
+                    return miss("CSV changed");
+                }
+                // Touched or copied without changes: remember the new time / Ohne Änderung berührt oder kopiert: neue Zeit merken
+                header.putLong(24, modified);
+                header.putInt(60, headerChecksum(header));
+                try (FileChannel writer = FileChannel.open(file, StandardOpenOption.WRITE)) {
+                    writer.write(header.position(0), 0);
+                } catch (IOException e) {
+                    System.err.println("Error updating catalog snapshot " + file + ": " + e.getMessage()); // Hashed again next time / Nächstes Mal erneut gehasht
+                }
+            }
+
+            MappedByteBuffer body = channel.map(FileChannel.MapMode.READ_ONLY, HEADER_BYTES, channel.size() - HEADER_BYTES);
+            body.order(ByteOrder.LITTLE_ENDIAN);
+            CRC32C bodyCrc = new CRC32C();
+            bodyCrc.update(body.duplicate());
+            if ((int) bodyCrc.getValue() != header.getInt(56)) {
+                return miss("damaged");
+            }
+            IntBuffer ints = body.asIntBuffer();
+            int[] starts = read(ints, textSlots + 1);
+            int[] idSlots = read(ints, rows);
+            int[] nameSlots = read(ints, rows);
+            int[] descrSlots = read(ints, rows);
+            int[] index = read(ints, indexLength);
+            PackedStrings text = PackedStrings.readOnly(body.slice((int) (4 * intCount), (int) textBytes), starts);
+            if (text.byteSize() != textBytes) {
+                return miss("inconsistent");
+            }
+            FunctionCatalog catalog = FunctionCatalog.fromColumns(text, idSlots, nameSlots, descrSlots, index);
+            LOAD_TIME.recordSince(started);
+            return catalog;
+        } catch (NoSuchFileException e) {
+            MISSES.increment();
+            return null; // First start / Erster Start
+        } catch (IOException | RuntimeException e) {
+            return miss(e.toString());
+        }
+    }
+
+    /**
+     * Writes the snapshot of a catalog parsed from the CSV file. It is written to a temporary file first and renamed,
+     * so a reader never sees half a snapshot. Failures are only logged; the next start then parses the CSV again.
+     * Schreibt den Snapshot eines aus der CSV-Datei gelesenen Katalogs. Er wird zuerst in eine temporäre Datei
+     * geschrieben und umbenannt, sodass ein Leser nie einen halben Snapshot sieht. Fehler werden nur protokolliert;
+     * der nächste Start liest dann wieder die CSV.
+     *
+     * @param source The CSV content the catalog was parsed from / Der CSV-Inhalt, aus dem der Katalog gelesen wurde
+     */
+    public static void write(Path csvFile, FunctionCatalog catalog, Source source) {
+        Path file = fileFor(csvFile).toAbsolutePath();
+        PackedStrings text = catalog.text();
+        int[] starts = text.starts();
+        int[] idSlots = catalog.idColumn();
+        int[] nameSlots = catalog.nameColumn();
+        int[] descrSlots = catalog.descrColumn();
+        int[] index = catalog.indexTable();
+        ByteBuffer textBytes = text.bytes();
+
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        header.putLong(0, MAGIC);
+        header.putInt(8, FORMAT_VERSION);
+        header.putInt(12, catalog.size());
+        header.putLong(16, source.size);
+        header.putLong(24, source.modifiedMillis);
+        header.putLong(32, source.hash);
+        header.putInt(40, starts.length - 1);
+        header.putInt(44, index.length);
+        header.putLong(48, textBytes.remaining());
+
+        int[][] columns = {starts, idSlots, nameSlots, descrSlots, index};
+        ByteBuffer[] columnBytes = new ByteBuffer[columns.length];
+        CRC32C bodyCrc = new CRC32C();
+        for (int i = 0; i < columns.length; i++) {
+            columnBytes[i] = ByteBuffer.allocate(4 * columns[i].length).order(ByteOrder.LITTLE_ENDIAN);
+            columnBytes[i].asIntBuffer().put(columns[i]);
+            bodyCrc.update(columnBytes[i].duplicate());
+        }
+        bodyCrc.update(textBytes.duplicate());
+        header.putInt(56, (int) bodyCrc.getValue());
+        header.putInt(60, headerChecksum(header));
+
+        Path temp = null;
+        try {
+            temp = Files.createTempFile(file.getParent(), file.getFileName() + ".", ".tmp");
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                writeFully(channel, header);
+                for (ByteBuffer bytes : columnBytes) {
+                    writeFully(channel, bytes);
+                }
+                writeFully(channel, textBytes);
+                channel.force(true);
+            }
+            try {
+                Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException | RuntimeException e) {
+            // E.g. read-only directory, or on Windows the old snapshot is still mapped
+            // Z. B. schreibgeschütztes Verzeichnis, oder unter Windows ist der alte Snapshot noch abgebildet
+            System.err.println("Error writing catalog snapshot " + file + ": " + e.getMessage());
+        } finally {
+            if (temp != null) {
+                try {
+                    Files.deleteIfExists(temp);
+                } catch (IOException e) {
+                    System.err.println("Error deleting " + temp + ": " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    /**
+     * CRC32C over the file content, combined with its length.
+     * The file is read rather than mapped: on Windows a mapping stays open until GC and blocks the next save of the CSV.
+     * CRC32C über den Dateiinhalt, kombiniert mit seiner Länge.
+     * Die Datei wird gelesen statt abgebildet: unter Windows bleibt eine Abbildung bis zur GC offen und blockiert das nächste Speichern der CSV.
+     */
+    static long contentHash(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = 0;
+            CRC32C crc = new CRC32C();
+            ByteBuffer buffer = ByteBuffer.allocate(HASH_BUFFER_SIZE); // Reused for every read / Für jedes Lesen wiederverwendet
+            while (channel.read(buffer.clear()) >= 0) {
+                size += buffer.position();
+                crc.update(buffer.flip());
+            }
+            return crc.getValue() << 32 ^ size;
+        }
+    }
+
+    private static FunctionCatalog miss(String reason) {
+        MISSES.increment();
+        System.out.println("Catalog snapshot not used (" + reason + "), reading CSV");
+        return null;
+    }
+
+    private static int[] read(IntBuffer ints, int count) {
+        int[] values = new int[count];
+        ints.get(values);
+        return values;
+    }
+
+    private static int headerChecksum(ByteBuffer header) {
+        CRC32C crc = new CRC32C();
+        crc.update(header.duplicate().position(0).limit(60));
+        return (int) crc.getValue();
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+}
@@ -0,0 +1,188 @@
+package org.example;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UTFDataFormatException;
+import java.lang.ref.WeakReference;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+/**
+ * The catalogs licenses were issued for, keyed by {@link FunctionCatalog#versionHash()}.
+ * A license stores its functions as bits by ordinal, so they can only be read with the ids of the catalog version that
+ * issued it. Keeping those versions lets a license stay readable after the CSV was edited or another product line was
+ * selected: its bits are resolved by function id against its own catalog, never against whichever catalog is current.
+ * Versions that issued saved licenses are also written to a directory (only their ids, one small file per version),
+ * so they are still known after a restart. Only those versions are held here; any other registered version is only
+ * held weakly, so the versions of repeated CSV edits are dropped once nothing else uses them.
+ * Die Kataloge, für die Lizenzen ausgestellt wurden, nach {@link FunctionCatalog#versionHash()}.
+ * Eine Lizenz speichert ihre Funktionen als Bits nach Ordinalzahl, daher lassen sie sich nur mit den Ids der
+ * ausstellenden Katalogversion lesen. Werden diese Versionen behalten, bleibt eine Lizenz lesbar, nachdem die CSV
+ * bearbeitet oder eine andere Produktlinie gewählt wurde: Ihre Bits werden über die Funktions-Id gegen ihren eigenen
+ * Katalog aufgelöst, nie gegen den gerade aktuellen.
+ * Versionen, die gespeicherte Lizenzen ausgestellt haben, werden zusätzlich in ein Verzeichnis geschrieben (nur ihre Ids,
+ * eine kleine Datei pro Version), damit sie auch nach einem Neustart bekannt sind. Nur diese Versionen werden hier
+ * gehalten; jede andere registrierte Version wird nur schwach gehalten, sodass die Versionen wiederholter
+ * CSV-Bearbeitungen entfallen, sobald nichts anderes sie mehr verwendet.
+ *
+ * <pre>
+ * file := magic(4) count(4) id(modified UTF-8)*     named {@code <versionHash>.ids} / benannt {@code <versionHash>.ids}
+ * </pre>
+ */
+public final class CatalogVersions {
+
+    private static final int MAGIC = 0x43564944; // "CVID"
+    private static final Pattern VERSION_PATTERN = Pattern.compile("[0-9a-f]{16}"); // Comes from license files / Stammt aus Lizenzdateien
+
+    private final Path directory; // null = in memory only / null = nur im Speicher
+    private final ConcurrentHashMap<String, FunctionCatalog> catalogs = new ConcurrentHashMap<>(); // Versions of saved licenses / Versionen gespeicherter Lizenzen
+    private final ConcurrentHashMap<String, WeakReference<FunctionCatalog>> registered = new ConcurrentHashMap<>(); // Until persisted / Bis zum Aufbewahren
+    private final Set<String> persisted = ConcurrentHashMap.newKeySet();
+    private final Set<String> unknown = ConcurrentHashMap.newKeySet(); // Not in the directory either / Auch nicht im Verzeichnis
+
+    /**
+     * @param directory Where versions of saved licenses are kept, or null to keep them in memory only
+     *                  / Wo Versionen gespeicherter Lizenzen aufbewahrt werden, oder null, um sie nur im Speicher zu halten
+     */
+    public CatalogVersions(Path directory) {
+        this.directory = directory == null ? null : directory.toAbsolutePath();
+    }
+
+    public static CatalogVersions inMemory() {
+        return new CatalogVersions(null);
+    }
+
+    /**
+     * The directory used for a license store: {@code catalog-versions} next to its log file.
+     * Das für einen Lizenzspeicher verwendete Verzeichnis: {@code catalog-versions} neben seiner Logdatei.
+     */
+    public static Path directoryFor(Path storeLogFile) {
+        return storeLogFile.toAbsolutePath().resolveSibling("catalog-versions");
+    }
+
+    /**
+     * Registers a catalog that licenses may be issued for. Until {@link #persist(String)} it is only held weakly, i.e. as
+     * long as the caller (the current catalog, the registry or a published license) still uses it.
+     * A newer copy of a known version replaces the older one, e.g. the copy interned by {@link CatalogRegistry}.
+     * Registriert einen Katalog, für den Lizenzen ausgestellt werden können. Bis {@link #persist(String)} wird er nur
+     * schwach gehalten, also solange der Aufrufer (der aktuelle Katalog, die Registry oder eine veröffentlichte Lizenz)
+     * ihn noch verwendet.
+     * Eine neuere Kopie einer bekannten Version ersetzt die ältere, z. B. die von {@link CatalogRegistry} übernommene.
+     */
+    public void add(FunctionCatalog catalog) {
+        String version = catalog.versionHash();
+        if (catalogs.containsKey(version)) {
+            catalogs.put(version, catalog);
+        } else {
+            registered.values().removeIf(reference -> reference.get() == null); // Versions nobody uses any more / Versionen, die niemand mehr verwendet
+            registered.put(version, new WeakReference<>(catalog));
+        }
+        unknown.remove(version);
+    }
+
+    /**
+     * Returns the catalog of a version, or null if it is not known here or in the directory.
+     * Gibt den Katalog einer Version zurück oder null, wenn sie weder hier noch im Verzeichnis bekannt ist.
+     */
+    public FunctionCatalog get(String versionHash) {
+        FunctionCatalog catalog = catalogs.get(versionHash);
+        if (catalog == null) {
+            catalog = registeredCatalog(versionHash);
+        }
+        if (catalog != null || directory == null || unknown.contains(versionHash)) {
+            return catalog;
+        }
+        catalog = read(versionHash);
+        if (catalog == null) {
+            unknown.add(versionHash);
+            return null;
+        }
+        persisted.add(versionHash);
+        FunctionCatalog raced = catalogs.putIfAbsent(versionHash, catalog);
+        return raced != null ? raced : catalog;
+    }
+
+    /**
+     * Keeps a registered version for good, e.g. after licenses for it were saved: it is held here from now on and
+     * written to the directory unless it is already there.
+     * Failures are only logged; the version then stays known until the application ends.
+     * Behält eine registrierte Version dauerhaft, z. B. nachdem Lizenzen für sie gespeichert wurden: Sie wird ab jetzt
+     * hier gehalten und in das Verzeichnis geschrieben, sofern sie dort noch nicht liegt.
+     * Fehler werden nur protokolliert; die Version bleibt dann bis zum Programmende bekannt.
+     */
+    public void persist(String versionHash) {
+        FunctionCatalog catalog = catalogs.get(versionHash);
+        if (catalog == null) {
+            catalog = registeredCatalog(versionHash);
+            if (catalog == null) {
+                return;
+            }
+            catalogs.putIfAbsent(versionHash, catalog);
+            registered.remove(versionHash);
+        }
+        if (directory == null || persisted.contains(versionHash)) {
+            return;
+        }
+        Path file = fileFor(versionHash);
+        try {
+            if (!Files.exists(file)) {
+                ByteArrayOutputStream bytes = new ByteArrayOutputStream(16 * catalog.size() + 8);
+                DataOutputStream out = new DataOutputStream(bytes);
+                out.writeInt(MAGIC);
+                out.writeInt(catalog.size());
+                for (int ordinal = 0; ordinal < catalog.size(); ordinal++) {
+                    out.writeUTF(catalog.id(ordinal));
+                }
+                LicenceStore.writeAtomically(file, bytes.toByteArray());
+            }
+            persisted.add(versionHash);
+        } catch (UTFDataFormatException e) {
+            System.err.println("Catalog version " + versionHash + " has an id too long to keep: " + e.getMessage());
+            persisted.add(versionHash); // Do not try again / Nicht erneut versuchen
+        } catch (IOException e) {
+            System.err.println("Error keeping catalog version " + versionHash + ": " + e.getMessage());
+        }
+    }
+
+    private FunctionCatalog registeredCatalog(String versionHash) {
+        WeakReference<FunctionCatalog> reference = registered.get(versionHash);
+        return reference == null ? null : reference.get();
+    }
+
+    private FunctionCatalog read(String versionHash) {
+        if (!VERSION_PATTERN.matcher(versionHash).matches()) {
+            return null;
+        }
+        Path file = fileFor(versionHash);
+        try (DataInputStream in = new DataInputStream(Files.newInputStream(file))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("unknown format");
+            }
+            int count = in.readInt();
+            FunctionCatalog.Builder builder = new FunctionCatalog.Builder();
+            for (int i = 0; i < count; i++) {
+                builder.add(in.readUTF(), "", ""); // Names are not needed to read bits / Namen werden zum Lesen der Bits nicht gebraucht
+            }
+            FunctionCatalog catalog = builder.build();
+            if (!catalog.versionHash().equals(versionHash)) {
+                throw new IOException("content does not match its version");
+            }
+            return catalog;
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException e) {
+            System.err.println("Error reading catalog version " + file + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    private Path fileFor(String versionHash) {
+        return directory.resolve(versionHash + ".ids");
+    }
+}
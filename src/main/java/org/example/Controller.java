@@ -1,7 +1,7 @@
 package org.example;
 
+import javafx.application.Platform;
 import javafx.scene.control.Alert;
-import javafx.scene.control.CheckBox;
 
 import java.time.LocalDate;
 import java.util.List;
@@ -26,6 +26,10 @@ public class Controller {
     // Referenz auf die Ansicht, die für die Anzeige der Benutzeroberfläche verantwortlich ist.
     private final View view;
 
+    // Number of function names listed in the save confirmation
+    // Anzahl der in der Speicherbestätigung aufgelisteten Funktionsnamen
+    private static final int MAX_LISTED_FUNCTIONS = 20;
+
     /**
      * Constructor for initializing the controller with the model and the view.
      * Konstruktor zur Initialisierung des Controllers mit dem Modell und der Ansicht.
@@ -40,55 +44,124 @@ public class Controller {
 
     /**
      * Saves the functions selected by the user and stores them in a license file.
+     * The file is written on the model's save thread; the result is shown in the view's status line when it is done,
+     * so the window stays responsive even if the disk is slow.
      * Speichert die vom Benutzer ausgewählten Funktionen und speichert sie in einer Lizenzdatei.
+     * Die Datei wird im Speicher-Thread des Modells geschrieben; das Ergebnis erscheint nach Abschluss in der Statuszeile
+     * der Ansicht, sodass das Fenster auch bei einer langsamen Platte bedienbar bleibt.
      *
-     * @param checkBoxes List of checkboxes representing available functions
-     *                   / Liste der Kontrollkästchen, die verfügbare Funktionen darstellen
+     * @param selection Selection state of the available functions
+     *                  / Auswahlzustand der verfügbaren Funktionen
      */
-    public void handleSave(List<CheckBox> checkBoxes) {
-        // Filters selected checkboxes and retrieves their labels.
-        //Filtert ausgewählte Kontrollkästchen und ruft deren Beschriftungen ab.
-        List<String> selectedFunctions = checkBoxes.stream()
-                .filter(CheckBox::isSelected)
-                .map(CheckBox::getText)
-                .collect(Collectors.toList());
-
-        if (!selectedFunctions.isEmpty()) {
+    public void handleSave(FunctionSelection selection) {
+        List<FunctionRules.Violation> violations = model.getRules().violations(selection);
+        if (!violations.isEmpty()) {
+            // Selections that break a dependency or conflict rule are not saved.
+            // Auswahlen, die eine Abhängigkeits- oder Konfliktregel verletzen, werden nicht gespeichert.
+            view.showSaveStatus("Not saved: " + violations.size() + " rule(s) broken", violations.stream()
+                    .limit(MAX_LISTED_FUNCTIONS).map(String::valueOf).collect(Collectors.joining("\n")), true);
+            return;
+        }
+        if (!selection.isEmpty()) {
             // Sets the serial number, start date, and end date for the license.
             // Setzt die Seriennummer, das Startdatum und das Enddatum für die Lizenz.
             model.setSerinummer("123456789"); // Example serial number / Beispiel-Seriennummer
             model.setStartDatum(LocalDate.now());
             model.setEndDatum(LocalDate.now().plusYears(1));
 
-            // English: Saves the license file and checks if the operation was successful.
-            // Deutsch: Speichert die Lizenzdatei und prüft, ob die Operation erfolgreich war.
-            boolean saved = model.saveLicenceFile();
-            if (saved) {
-                // English: Joins selected function names into a string and updates the view with license information.
-                // Deutsch: Verbindet die Namen der ausgewählten Funktionen zu einem String und aktualisiert die Ansicht mit Lizenzinformationen.
-                String savedFunctions = String.join(", ", selectedFunctions);
-                view.updateLicenceInfo(model.getSeriennummer(), model.getStartDatum(), model.getEndDatum());
-                showAlert("Success", "Selected functions saved successfully:\n" + savedFunctions +
-                        "\n\nSaved to: \nPath: C:\\Temp \\Licencekey.json" + model.getLicenceFilePath());
+            // Compares the selection with the previous license; the model adopts it only once the save succeeded.
+            // Vergleicht die Auswahl mit der vorherigen Lizenz; das Modell übernimmt sie erst, wenn das Speichern gelungen ist.
+            FunctionSelection.Diff changes = model.getEnabledFunctions().diff(selection);
+
+            // English: Queues the license; repeated clicks while the disk is busy are written once.
+            // Deutsch: Reiht die Lizenz ein; wiederholte Klicks, während die Platte beschäftigt ist, werden einmal geschrieben.
+            view.showSaveStatus("Saving " + selection.count() + " functions...", null, false);
+            boolean queued = model.saveLicenceFileAsync(selection, result -> Platform.runLater(() -> saveFinished(result, changes)));
+            if (!queued) {
+                view.showSaveStatus("License data is incomplete.", null, true);
             }
         } else {
             //  Displays a warning if no functions were selected.
             // Zeigt eine Warnung an, wenn keine Funktionen ausgewählt wurden.
-            showAlert("Warning", "No functions selected!");
+            view.showSaveStatus("No functions selected!", null, true);
+        }
+    }
+
+    /**
+     * Shows the outcome of a save; runs on the FX thread.
+     * Zeigt das Ergebnis eines Speichervorgangs an; läuft im FX-Thread.
+     */
+    private void saveFinished(LicenceSaveQueue.Result result, FunctionSelection.Diff changes) {
+        if (!result.isSaved()) {
+            view.showSaveStatus("Saving failed: " + result.getError().getMessage(), null, true);
+            return;
+        }
+        // English: Joins the first saved function names into a string and updates the view with license information.
+        // Deutsch: Verbindet die ersten gespeicherten Funktionsnamen zu einem String und aktualisiert die Ansicht mit Lizenzinformationen.
+        Licence licence = result.getLicence();
+        FunctionSelection saved = licence.getFunctions();
+        model.setEnabledFunctions(licence.getFunctions()); // Now on disk / Jetzt auf der Platte
+        int count = saved.count();
+        String savedFunctions = saved.ordinals()
+                .filter(ordinal -> ordinal < model.getCatalog().size())
+                .limit(MAX_LISTED_FUNCTIONS)
+                .mapToObj(model.getCatalog()::name)
+                .collect(Collectors.joining(", "));
+        if (count > MAX_LISTED_FUNCTIONS) {
+            savedFunctions += " ... (" + (count - MAX_LISTED_FUNCTIONS) + " more)";
         }
+        view.updateLicenceInfo(licence.getSeriennummer(), licence.getStartDatum(), licence.getEndDatum());
+        view.showSaveStatus(count + " functions saved (+" + changes.getAdded().count() + " / -" + changes.getRemoved().count()
+                + ") to " + model.getLicenceFilePath(), savedFunctions, false);
+    }
+
+    /**
+     * Enables or disables one function. Enabling also enables the functions it implies; the rules the selection
+     * breaks afterwards are shown at once.
+     * Aktiviert oder deaktiviert eine Funktion. Beim Aktivieren werden auch die von ihr implizierten Funktionen
+     * aktiviert; die danach verletzten Regeln werden sofort angezeigt.
+     */
+    public void handleToggle(FunctionSelection selection, int ordinal, boolean enabled) {
+        selection.setSelected(ordinal, enabled);
+        if (enabled && model.getRules().complete(selection) > 0) {
+            view.refreshFunctionRows(); // Shows the implied functions / Zeigt die implizierten Funktionen
+        }
+        checkRules(selection);
+    }
+
+    /**
+     * Shows the rules the selection breaks.
+     * Zeigt die Regeln, die die Auswahl verletzt.
+     */
+    public void checkRules(FunctionSelection selection) {
+        view.showRuleViolations(model.getRules().violations(selection));
+    }
+
+    /**
+     * Selects all functions of the catalog.
+     * Wählt alle Funktionen des Katalogs aus.
+     *
+     * @param selection Selection state to be filled / Auswahlzustand, der gefüllt werden soll
+     */
+    public void handleSelectAll(FunctionSelection selection) {
+        selection.selectAll(model.getCatalog().size());
+        view.refreshFunctionRows();
+        checkRules(selection);
     }
 
     /**
      * Resets all selected functions to their default (unselected) state.
      *  Setzt alle ausgewählten Funktionen auf ihren Standardzustand (nicht ausgewählt) zurück.
      *a
-     * @param checkBoxes List of checkboxes to be reset
-     *                   / Liste der Kontrollkästchen, die zurückgesetzt werden sollen
+     * @param selection Selection state to be reset
+     *                  / Auswahlzustand, der zurückgesetzt werden soll
      */
-    public void handleDelete(List<CheckBox> checkBoxes) {
-        //  Deselects all checkboxes.
-        // Hebt die Auswahl aller Kontrollkästchen auf.
-        checkBoxes.forEach(box -> box.setSelected(false));
+    public void handleDelete(FunctionSelection selection) {
+        //  Deselects all functions and redraws the visible rows.
+        // Hebt die Auswahl aller Funktionen auf und zeichnet die sichtbaren Zeilen neu.
+        selection.clear();
+        view.refreshFunctionRows();
+        checkRules(selection);
 
         //  Clears license information displayed in the view.
         // Löscht die in der Ansicht angezeigten Lizenzinformationen.
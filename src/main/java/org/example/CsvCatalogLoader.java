@@ -0,0 +1,397 @@
+package org.example;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Reads a function catalog (`id,name,descr`) from a CSV file.
+ * The file is read in one piece and parsed in a single pass following RFC 4180 quoting rules,
+ * so descriptions may contain delimiters, quotes and line breaks when they are quoted.
+ * Rows that cannot be parsed are collected in the {@link Report} instead of aborting the load.
+ * Liest einen Funktionskatalog (`id,name,descr`) aus einer CSV-Datei.
+ * Die Datei wird am Stück eingelesen und in einem Durchlauf nach den Quoting-Regeln von RFC 4180 gelesen,
+ * sodass Beschreibungen in Anführungszeichen Trennzeichen, Anführungszeichen und Zeilenumbrüche enthalten dürfen.
+ * Fehlerhafte Zeilen werden im {@link Report} gesammelt, statt das Laden abzubrechen.
+ */
+public class CsvCatalogLoader {
+
+    private static final int CATALOG_FIELDS = 3; // id, name, descr
+    private static final int MAX_REPORTED_ROWS = 1000; // Upper bound for stored malformed rows / Obergrenze gespeicherter fehlerhafter Zeilen
+    private static final int PROGRESS_INTERVAL = 8192; // Rows between progress callbacks / Zeilen zwischen Fortschrittsmeldungen
+
+    private static final byte QUOTE = '"';
+    private static final byte CR = '\r';
+    private static final byte LF = '\n';
+
+    private static final Metrics.Timer LOAD_TIME = Metrics.global().timer("csv_load", "Reading and parsing a functions CSV file");
+    private static final Metrics.Counter ROWS = Metrics.global().counter("csv_rows", "Functions read from CSV files");
+    private static final Metrics.Counter MALFORMED_ROWS = Metrics.global().counter("csv_malformed_rows", "Malformed CSV rows that were skipped");
+
+    private final byte delimiter; // Field delimiter as a single byte / Feldtrennzeichen als einzelnes Byte
+    private final Charset charset; // Charset of the file / Zeichensatz der Datei
+    private final boolean skipHeader; // Whether the first record is a header / Ob der erste Datensatz eine Kopfzeile ist
+
+    /**
+     * Creates a loader for comma separated UTF-8 files with a header row.
+     * Erstellt einen Lader für kommagetrennte UTF-8-Dateien mit Kopfzeile.
+     */
+    public CsvCatalogLoader() {
+        this(',', StandardCharsets.UTF_8, true);
+    }
+
+    /**
+     * Creates a loader with a custom delimiter and charset.
+     * Erstellt einen Lader mit eigenem Trennzeichen und Zeichensatz.
+     *
+     * @param delimiter  ASCII field delimiter, e.g. ',' or ';' / ASCII-Feldtrennzeichen, z. B. ',' oder ';'
+     * @param charset    ASCII-compatible charset such as UTF-8 or windows-1252
+     *                   / ASCII-kompatibler Zeichensatz wie UTF-8 oder windows-1252
+     * @param skipHeader true if the first record is a header / true, wenn der erste Datensatz eine Kopfzeile ist
+     */
+    public CsvCatalogLoader(char delimiter, Charset charset, boolean skipHeader) {
+        if (delimiter >= 0x80 || delimiter == '"' || delimiter == '\r' || delimiter == '\n') {
+            throw new IllegalArgumentException("Unsupported CSV delimiter: '" + delimiter + "'");
+        }
+        // The parser works on raw bytes, so the structural characters must be single ASCII bytes in this charset.
+        // Der Parser arbeitet auf Bytes, daher müssen die Strukturzeichen in diesem Zeichensatz einzelne ASCII-Bytes sein.
+        String probe = "a\"\r\n" + delimiter;
+        if (!Arrays.equals(probe.getBytes(charset), probe.getBytes(StandardCharsets.US_ASCII))) {
+            throw new IllegalArgumentException("Charset is not ASCII-compatible: " + charset.name());
+        }
+        this.delimiter = (byte) delimiter;
+        this.charset = charset;
+        this.skipHeader = skipHeader;
+    }
+
+    /**
+     * Receives the parsed rows of a catalog.
+     * Empfängt die gelesenen Zeilen eines Katalogs.
+     */
+    public interface RowSink {
+        void row(String id, String name, String descr);
+
+        /**
+         * Called periodically with the number of bytes consumed so far.
+         * Wird regelmäßig mit der Anzahl bereits gelesener Bytes aufgerufen.
+         */
+        default void progress(long bytesDone, long bytesTotal) {
+        }
+    }
+
+    /**
+     * Receives the parsed records of a CSV file with any number of columns.
+     * Empfängt die gelesenen Datensätze einer CSV-Datei mit beliebig vielen Spalten.
+     */
+    public interface RecordSink {
+        /**
+         * Called for every valid record; the array is reused for the next record.
+         * Wird für jeden gültigen Datensatz aufgerufen; das Array wird für den nächsten Datensatz wiederverwendet.
+         *
+         * @param line   1-based line where the record starts / Zeile (ab 1), in der der Datensatz beginnt
+         * @param fields Decoded fields / Dekodierte Felder
+         */
+        void record(long line, String[] fields);
+
+        /**
+         * Called periodically with the number of bytes consumed so far.
+         * Wird regelmäßig mit der Anzahl bereits gelesener Bytes aufgerufen.
+         */
+        default void progress(long bytesDone, long bytesTotal) {
+        }
+    }
+
+    /**
+     * Parses the given CSV file and passes every valid row to the sink.
+     * Liest die angegebene CSV-Datei und übergibt jede gültige Zeile an den Empfänger.
+     *
+     * @param csvFile Path to the CSV file / Pfad zur CSV-Datei
+     * @param sink    Receiver of the parsed rows / Empfänger der gelesenen Zeilen
+     * @return Summary of the load including malformed rows / Zusammenfassung inklusive fehlerhafter Zeilen
+     * @throws IOException if the file cannot be read / wenn die Datei nicht gelesen werden kann
+     */
+    public Report load(Path csvFile, RowSink sink) throws IOException {
+        long started = System.nanoTime();
+        Report report = read(csvFile, CATALOG_FIELDS, new RecordSink() {
+            @Override
+            public void record(long line, String[] fields) {
+                sink.row(fields[0], fields[1], fields[2]);
+            }
+
+            @Override
+            public void progress(long bytesDone, long bytesTotal) {
+                sink.progress(bytesDone, bytesTotal);
+            }
+        });
+        LOAD_TIME.recordSince(started);
+        ROWS.add(report.getRows());
+        MALFORMED_ROWS.add(report.getMalformedCount());
+        return report;
+    }
+
+    /**
+     * Parses a CSV file with exactly `fieldCount` columns by the same rules and passes every valid record to the sink.
+     * Liest eine CSV-Datei mit genau `fieldCount` Spalten nach denselben Regeln und übergibt jeden gültigen Datensatz an den Empfänger.
+     *
+     * @param file       Path to the CSV file / Pfad zur CSV-Datei
+     * @param fieldCount Number of columns of every record / Anzahl der Spalten jedes Datensatzes
+     * @param sink       Receiver of the parsed records / Empfänger der gelesenen Datensätze
+     * @return Summary of the read including malformed rows / Zusammenfassung inklusive fehlerhafter Zeilen
+     * @throws IOException if the file cannot be read / wenn die Datei nicht gelesen werden kann
+     */
+    public Report read(Path file, int fieldCount, RecordSink sink) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("CSV file too large: " + file + " (" + size + " bytes)");
+            }
+            // Read, not mapped: on Windows a mapping stays open until GC and the next save of the watched CSV fails
+            // Gelesen, nicht abgebildet: unter Windows bleibt eine Abbildung bis zur GC offen und das nächste Speichern der überwachten CSV scheitert
+            ByteBuffer buffer = ByteBuffer.allocate((int) size);
+            while (buffer.hasRemaining() && channel.read(buffer) > 0) {
+                // Fill the buffer / Puffer füllen
+            }
+            buffer.flip();
+            return new Parser(buffer, fieldCount, sink).run();
+        }
+    }
+
+    /**
+     * Single-use parser state for one file.
+     * Einmalig verwendeter Parserzustand für eine Datei.
+     */
+    private final class Parser {
+        private final ByteBuffer buf;
+        private final RecordSink sink;
+        private final int limit;
+        private final String[] fields;
+        private byte[] scratch = new byte[256]; // Reused for field bytes / Wiederverwendet für Feldbytes
+        private int pos;
+        private long line = 1; // Current physical line (1-based) / Aktuelle physische Zeile (ab 1)
+        private long rows;
+        private long malformedCount;
+        private final List<MalformedRow> malformed = new ArrayList<>();
+
+        Parser(ByteBuffer buf, int fieldCount, RecordSink sink) {
+            this.buf = buf;
+            this.sink = sink;
+            this.fields = new String[fieldCount];
+            this.limit = buf.limit();
+        }
+
+        Report run() {
+            skipByteOrderMark();
+            boolean header = skipHeader;
+            while (pos < limit) {
+                byte b = buf.get(pos);
+                if (b == CR || b == LF) { // Blank line / Leerzeile
+                    consumeLineBreak();
+                    continue;
+                }
+                long recordLine = line;
+                String error = parseRecord();
+                skipRestOfLine(); // Ends the record, or drops the rest of a malformed one / Beendet den Datensatz oder verwirft den Rest eines fehlerhaften
+                if (header) {
+                    header = false;
+                    continue;
+                }
+                if (error != null) {
+                    malformed(recordLine, error);
+                } else {
+                    sink.record(recordLine, fields);
+                    if (++rows % PROGRESS_INTERVAL == 0) {
+                        sink.progress(pos, limit);
+                    }
+                }
+            }
+            sink.progress(limit, limit);
+            return new Report(rows, malformedCount, malformed);
+        }
+
+        /**
+         * Parses one record starting at `pos` up to (not including) its line break.
+         * Returns an error message or null on success.
+         * Liest einen Datensatz ab `pos` bis vor seinen Zeilenumbruch.
+         * Gibt eine Fehlermeldung oder bei Erfolg null zurück.
+         */
+        private String parseRecord() {
+            int count = 0;
+            while (true) {
+                String value;
+                if (pos < limit && buf.get(pos) == QUOTE) {
+                    value = parseQuoted();
+                    if (value == null) {
+                        return "unterminated quoted field";
+                    }
+                    if (pos < limit) {
+                        byte next = buf.get(pos);
+                        if (next != delimiter && next != CR && next != LF) {
+                            return "unexpected character after closing quote in field " + (count + 1);
+                        }
+                    }
+                } else {
+                    int start = pos;
+                    while (pos < limit) {
+                        byte b = buf.get(pos);
+                        if (b == delimiter || b == CR || b == LF) {
+                            break;
+                        }
+                        if (b == QUOTE) {
+                            return "quote inside unquoted field " + (count + 1);
+                        }
+                        pos++;
+                    }
+                    value = count < fields.length ? decode(start, pos - start) : null;
+                }
+                if (count < fields.length) {
+                    fields[count] = value;
+                }
+                count++;
+                if (pos < limit && buf.get(pos) == delimiter) {
+                    pos++;
+                    continue;
+                }
+                break;
+            }
+            if (count != fields.length) {
+                return "expected " + fields.length + " fields but found " + count;
+            }
+            return null;
+        }
+
+        /**
+         * Parses a quoted field; doubled quotes become one quote. Returns null if the closing quote is missing.
+         * Liest ein Feld in Anführungszeichen; doppelte Anführungszeichen werden zu einem. Gibt null zurück, wenn das schließende fehlt.
+         */
+        private String parseQuoted() {
+            pos++; // Opening quote / Öffnendes Anführungszeichen
+            int length = 0;
+            while (pos < limit) {
+                byte b = buf.get(pos++);
+                if (b == QUOTE) {
+                    if (pos < limit && buf.get(pos) == QUOTE) {
+                        pos++;
+                    } else {
+                        return new String(scratch, 0, length, charset);
+                    }
+                } else if (b == LF) {
+                    line++;
+                }
+                if (length == scratch.length) {
+                    scratch = Arrays.copyOf(scratch, length * 2);
+                }
+                scratch[length++] = b;
+            }
+            return null;
+        }
+
+        private String decode(int start, int length) {
+            if (length == 0) {
+                return "";
+            }
+            if (length > scratch.length) {
+                scratch = new byte[Math.max(length, scratch.length * 2)];
+            }
+            buf.get(start, scratch, 0, length);
+            return new String(scratch, 0, length, charset);
+        }
+
+        private void consumeLineBreak() {
+            if (pos < limit && buf.get(pos) == CR) {
+                pos++;
+            }
+            if (pos < limit && buf.get(pos) == LF) {
+                pos++;
+            }
+            line++;
+        }
+
+        private void skipRestOfLine() {
+            while (pos < limit) {
+                byte b = buf.get(pos);
+                if (b == CR || b == LF) {
+                    consumeLineBreak();
+                    return;
+                }
+                pos++;
+            }
+        }
+
+        private void skipByteOrderMark() {
+            if (charset.equals(StandardCharsets.UTF_8) && limit >= 3
+                    && buf.get(0) == (byte) 0xEF && buf.get(1) == (byte) 0xBB && buf.get(2) == (byte) 0xBF) {
+                pos = 3;
+            }
+        }
+
+        private void malformed(long recordLine, String reason) {
+            malformedCount++;
+            if (malformed.size() < MAX_REPORTED_ROWS) {
+                malformed.add(new MalformedRow(recordLine, reason));
+            }
+        }
+    }
+
+    /**
+     * Describes a row that was skipped because it could not be parsed.
+     * Beschreibt eine Zeile, die übersprungen wurde, weil sie nicht gelesen werden konnte.
+     */
+    public static final class MalformedRow {
+        private final long line; // 1-based line where the record starts / Zeile (ab 1), in der der Datensatz beginnt
+        private final String reason;
+
+        public MalformedRow(long line, String reason) {
+            this.line = line;
+            this.reason = reason;
+        }
+
+        public long getLine() {
+            return line;
+        }
+
+        public String getReason() {
+            return reason;
+        }
+
+        @Override
+        public String toString() {
+            return "line " + line + ": " + reason;
+        }
+    }
+
+    /**
+     * Result of a catalog load.
+     * Ergebnis eines Katalog-Ladevorgangs.
+     */
+    public static final class Report {
+        private final long rows; // Number of rows passed to the sink / Anzahl an den Empfänger übergebener Zeilen
+        private final long malformedCount; // Total malformed rows / Gesamtzahl fehlerhafter Zeilen
+        private final List<MalformedRow> malformedRows; // First malformed rows / Erste fehlerhafte Zeilen
+
+        public Report(long rows, long malformedCount, List<MalformedRow> malformedRows) {
+            this.rows = rows;
+            this.malformedCount = malformedCount;
+            this.malformedRows = Collections.unmodifiableList(malformedRows);
+        }
+
+        public long getRows() {
+            return rows;
+        }
+
+        public long getMalformedCount() {
+            return malformedCount;
+        }
+
+        public List<MalformedRow> getMalformedRows() {
+            return malformedRows;
+        }
+    }
+}
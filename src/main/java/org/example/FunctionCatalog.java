@@ -0,0 +1,448 @@
+package org.example;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * Read-only, column-oriented catalog of device functions.
+ * Each function is addressed by its ordinal (position in load order). Id, name and description
+ * are kept in {@link PackedStrings}, repeated descriptions are stored only once, and an
+ * open-addressing table maps ids to ordinals. {@link Modell.Function} objects are created on demand.
+ * Schreibgeschützter, spaltenorientierter Katalog von Gerätefunktionen.
+ * Jede Funktion wird über ihre Ordinalzahl (Position in Ladereihenfolge) adressiert. Id, Name und Beschreibung
+ * liegen in {@link PackedStrings}, wiederholte Beschreibungen werden nur einmal gespeichert, und eine
+ * Hashtabelle mit offener Adressierung bildet Ids auf Ordinalzahlen ab. {@link Modell.Function}-Objekte entstehen bei Bedarf.
+ */
+public class FunctionCatalog {
+
+    private static final Metrics.Timer BUILD_TIME = Metrics.global().timer("catalog_build", "Turning a finished builder into a catalog");
+    private static final FunctionCatalog EMPTY = new Builder().build();
+
+    private final PackedStrings text; // Text of all ids, names and descriptions / Text aller Ids, Namen und Beschreibungen
+    private final int[] idSlots; // Column: slot of the id per ordinal / Spalte: Slot der Id je Ordinalzahl
+    private final int[] nameSlots; // Column: slot of the name per ordinal / Spalte: Slot des Namens je Ordinalzahl
+    private final int[] descrSlots; // Column: slot of the description per ordinal / Spalte: Slot der Beschreibung je Ordinalzahl
+    private final int[] index; // Open addressing: ordinal + 1, 0 = free / Offene Adressierung: Ordinalzahl + 1, 0 = frei
+    private final int size;
+    private Map<String, Modell.Function> mapView; // Created lazily / Wird bei Bedarf erzeugt
+    private String versionHash; // Computed lazily / Wird bei Bedarf berechnet
+
+    private FunctionCatalog(PackedStrings text, int[] idSlots, int[] nameSlots, int[] descrSlots, int[] index, int size) {
+        this.text = text;
+        this.idSlots = idSlots;
+        this.nameSlots = nameSlots;
+        this.descrSlots = descrSlots;
+        this.index = index;
+        this.size = size;
+    }
+
+    /**
+     * Returns a catalog without functions.
+     * Gibt einen Katalog ohne Funktionen zurück.
+     */
+    public static FunctionCatalog empty() {
+        return EMPTY;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the ordinal of the function with the given id, or -1 if it is unknown.
+     * Gibt die Ordinalzahl der Funktion mit der angegebenen Id zurück, oder -1, wenn sie unbekannt ist.
+     */
+    public int ordinalOf(String id) {
+        return find(text, idSlots, index, id);
+    }
+
+    /**
+     * Returns the ordinal of the function that has the same id as the given function of another catalog, or -1.
+     * Used to map ordinals between two versions of a catalog without creating strings.
+     * Gibt die Ordinalzahl der Funktion mit derselben Id wie die angegebene Funktion eines anderen Katalogs zurück, oder -1.
+     * Dient zum Abbilden von Ordinalzahlen zwischen zwei Katalogversionen, ohne Strings zu erzeugen.
+     */
+    public int ordinalOf(FunctionCatalog other, int otherOrdinal) {
+        if (size == 0) {
+            return -1;
+        }
+        int otherSlot = other.idSlots[other.checkOrdinal(otherOrdinal)];
+        int mask = index.length - 1;
+        for (int i = mix(other.text.hash(otherSlot)) & mask; ; i = (i + 1) & mask) {
+            int entry = index[i];
+            if (entry == 0) {
+                return -1;
+            }
+            if (text.contentEquals(idSlots[entry - 1], other.text, otherSlot)) {
+                return entry - 1;
+            }
+        }
+    }
+
+    /**
+     * True if name and description of a function equal those of a function in another catalog.
+     * True, wenn Name und Beschreibung einer Funktion denen einer Funktion in einem anderen Katalog entsprechen.
+     */
+    public boolean sameContent(int ordinal, FunctionCatalog other, int otherOrdinal) {
+        checkOrdinal(ordinal);
+        other.checkOrdinal(otherOrdinal);
+        return text.contentEquals(nameSlots[ordinal], other.text, other.nameSlots[otherOrdinal])
+                && text.contentEquals(descrSlots[ordinal], other.text, other.descrSlots[otherOrdinal]);
+    }
+
+    public String id(int ordinal) {
+        return text.get(idSlots[checkOrdinal(ordinal)]);
+    }
+
+    public String name(int ordinal) {
+        return text.get(nameSlots[checkOrdinal(ordinal)]);
+    }
+
+    public String descr(int ordinal) {
+        return text.get(descrSlots[checkOrdinal(ordinal)]);
+    }
+
+    /**
+     * Creates a {@link Modell.Function} view of the function at the given ordinal.
+     * Erzeugt eine {@link Modell.Function}-Ansicht der Funktion an der angegebenen Ordinalzahl.
+     */
+    public Modell.Function function(int ordinal) {
+        checkOrdinal(ordinal);
+        return new Modell.Function(text.get(idSlots[ordinal]), text.get(nameSlots[ordinal]), text.get(descrSlots[ordinal]));
+    }
+
+    /**
+     * Returns a hash over all ids in load order (64-bit FNV-1a, hex). Two catalogs with the same
+     * version hash assign the same ordinals to the same ids, so stored selections stay valid.
+     * Gibt einen Hash über alle Ids in Ladereihenfolge zurück (64-Bit FNV-1a, hex). Zwei Kataloge mit gleichem
+     * Versions-Hash vergeben dieselben Ordinalzahlen an dieselben Ids, sodass gespeicherte Auswahlen gültig bleiben.
+     */
+    public String versionHash() {
+        if (versionHash == null) {
+            long hash = 0xcbf29ce484222325L;
+            for (int ordinal = 0; ordinal < size; ordinal++) {
+                int slot = idSlots[ordinal];
+                int length = text.length(slot);
+                for (int i = 0; i < length; i++) {
+                    hash = (hash ^ text.charAt(slot, i)) * 0x100000001b3L;
+                }
+                hash = (hash ^ '\n') * 0x100000001b3L; // Separator between ids / Trennzeichen zwischen Ids
+            }
+            versionHash = String.format("%016x", hash);
+        }
+        return versionHash;
+    }
+
+    /**
+     * Returns a read-only map view (id to function) that iterates in load order.
+     * Gibt eine schreibgeschützte Map-Ansicht (Id auf Funktion) zurück, die in Ladereihenfolge iteriert.
+     */
+    public Map<String, Modell.Function> asMap() {
+        if (mapView == null) {
+            mapView = new MapView();
+        }
+        return mapView;
+    }
+
+    /**
+     * Creates a catalog from columns read back from a {@link CatalogSnapshot}.
+     * Erzeugt einen Katalog aus Spalten, die aus einem {@link CatalogSnapshot} zurückgelesen wurden.
+     */
+    static FunctionCatalog fromColumns(PackedStrings text, int[] idSlots, int[] nameSlots, int[] descrSlots, int[] index) {
+        return new FunctionCatalog(text, idSlots, nameSlots, descrSlots, index, idSlots.length);
+    }
+
+    // Package-private access to the columns for snapshots / Paketinterner Zugriff auf die Spalten für Snapshots
+    int[] idColumn() {
+        return Arrays.copyOf(idSlots, size);
+    }
+
+    int[] nameColumn() {
+        return Arrays.copyOf(nameSlots, size);
+    }
+
+    int[] descrColumn() {
+        return Arrays.copyOf(descrSlots, size);
+    }
+
+    int[] indexTable() {
+        return index;
+    }
+
+    // Package-private access to the packed text for indexes built on top of the catalog.
+    // Paketinterner Zugriff auf den gepackten Text für Indizes, die auf dem Katalog aufbauen.
+    PackedStrings text() {
+        return text;
+    }
+
+    int idSlot(int ordinal) {
+        return idSlots[ordinal];
+    }
+
+    int nameSlot(int ordinal) {
+        return nameSlots[ordinal];
+    }
+
+    int descrSlot(int ordinal) {
+        return descrSlots[ordinal];
+    }
+
+    private int checkOrdinal(int ordinal) {
+        if (ordinal < 0 || ordinal >= size) {
+            throw new IndexOutOfBoundsException("Ordinal " + ordinal + " outside catalog of size " + size);
+        }
+        return ordinal;
+    }
+
+    /**
+     * Linear probing lookup shared by the catalog and its builder.
+     * Suche mit linearer Sondierung, gemeinsam genutzt von Katalog und Builder.
+     */
+    private static int find(PackedStrings text, int[] idSlots, int[] index, String id) {
+        int mask = index.length - 1;
+        for (int i = mix(id.hashCode()) & mask; ; i = (i + 1) & mask) {
+            int entry = index[i];
+            if (entry == 0) {
+                return -1;
+            }
+            if (text.contentEquals(idSlots[entry - 1], id)) {
+                return entry - 1;
+            }
+        }
+    }
+
+    /**
+     * Spreads sequential ids such as `PL6-1`, `PL6-2` over the table (Fibonacci hashing).
+     * Verteilt fortlaufende Ids wie `PL6-1`, `PL6-2` über die Tabelle (Fibonacci-Hashing).
+     */
+    static int mix(int h) {
+        h *= 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * Adapter that lets existing callers keep using `Map<String, Function>`.
+     * Adapter, damit bestehende Aufrufer weiterhin `Map<String, Function>` nutzen können.
+     */
+    private final class MapView extends AbstractMap<String, Modell.Function> {
+        private Set<Entry<String, Modell.Function>> entries;
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return key instanceof String && ordinalOf((String) key) >= 0;
+        }
+
+        @Override
+        public Modell.Function get(Object key) {
+            if (!(key instanceof String)) {
+                return null;
+            }
+            int ordinal = ordinalOf((String) key);
+            return ordinal < 0 ? null : function(ordinal);
+        }
+
+        @Override
+        public Set<Entry<String, Modell.Function>> entrySet() {
+            if (entries == null) {
+                entries = new AbstractSet<>() {
+                    @Override
+                    public Iterator<Entry<String, Modell.Function>> iterator() {
+                        return new Iterator<>() {
+                            private int next;
+
+                            @Override
+                            public boolean hasNext() {
+                                return next < size;
+                            }
+
+                            @Override
+                            public Entry<String, Modell.Function> next() {
+                                if (next >= size) {
+                                    throw new NoSuchElementException();
+                                }
+                                Modell.Function function = function(next++);
+                                return new SimpleImmutableEntry<>(function.getId(), function);
+                            }
+                        };
+                    }
+
+                    @Override
+                    public int size() {
+                        return size;
+                    }
+                };
+            }
+            return entries;
+        }
+    }
+
+    /**
+     * Collects functions in load order and builds the immutable catalog.
+     * A repeated id replaces the earlier function but keeps its position, like a `LinkedHashMap`.
+     * Sammelt Funktionen in Ladereihenfolge und erstellt den unveränderlichen Katalog.
+     * Eine wiederholte Id ersetzt die frühere Funktion, behält aber ihre Position, wie bei einer `LinkedHashMap`.
+     */
+    public static class Builder implements CsvCatalogLoader.RowSink {
+        private final PackedStrings text = new PackedStrings();
+        private final Map<String, Integer> sharedSlots = new HashMap<>(); // Deduplicates descriptions / Dedupliziert Beschreibungen
+        private int[] idSlots = new int[64];
+        private int[] nameSlots = new int[64];
+        private int[] descrSlots = new int[64];
+        private int[] index = new int[128];
+        private int size;
+        private boolean built;
+
+        /**
+         * Adds a function and returns its ordinal.
+         * Fügt eine Funktion hinzu und gibt ihre Ordinalzahl zurück.
+         */
+        public int add(String id, String name, String descr) {
+            if (built) {
+                throw new IllegalStateException("Catalog has already been built");
+            }
+            int existing = find(text, idSlots, index, id);
+            if (existing >= 0) {
+                nameSlots[existing] = text.add(name);
+                descrSlots[existing] = shared(descr);
+                return existing;
+            }
+            if (size == idSlots.length) {
+                idSlots = Arrays.copyOf(idSlots, size * 2);
+                nameSlots = Arrays.copyOf(nameSlots, size * 2);
+                descrSlots = Arrays.copyOf(descrSlots, size * 2);
+            }
+            idSlots[size] = text.add(id);
+            nameSlots[size] = text.add(name);
+            descrSlots[size] = shared(descr);
+            if ((size + 1) * 2 > index.length) {
+                rehash(index.length * 2);
+            }
+            insert(index, size);
+            return size++;
+        }
+
+        @Override
+        public void row(String id, String name, String descr) {
+            add(id, name, descr);
+        }
+
+        /**
+         * Returns a read-only copy of the rows from the given ordinal to the current end, e.g. to show them while loading.
+         * Only the slot numbers are copied; the text is shared with the builder.
+         * Gibt eine schreibgeschützte Kopie der Zeilen ab der angegebenen Ordinalzahl bis zum aktuellen Ende zurück, z. B. um sie beim Laden anzuzeigen.
+         * Nur die Slot-Nummern werden kopiert; der Text wird mit dem Builder geteilt.
+         */
+        public Rows rows(int from) {
+            return new Rows(text.view(), from, Arrays.copyOfRange(idSlots, from, size),
+                    Arrays.copyOfRange(nameSlots, from, size), Arrays.copyOfRange(descrSlots, from, size));
+        }
+
+        public int size() {
+            return size;
+        }
+
+        /**
+         * Finishes the catalog. The builder cannot be used afterwards.
+         * Schließt den Katalog ab. Der Builder kann danach nicht mehr verwendet werden.
+         */
+        public FunctionCatalog build() {
+            long started = System.nanoTime();
+            built = true;
+            sharedSlots.clear();
+            text.trim();
+            FunctionCatalog catalog = new FunctionCatalog(text, Arrays.copyOf(idSlots, size), Arrays.copyOf(nameSlots, size),
+                    Arrays.copyOf(descrSlots, size), index, size);
+            BUILD_TIME.recordSince(started);
+            return catalog;
+        }
+
+        private int shared(String s) {
+            Integer slot = sharedSlots.get(s);
+            if (slot == null) {
+                slot = text.add(s);
+                sharedSlots.put(s, slot);
+            }
+            return slot;
+        }
+
+        private void rehash(int capacity) {
+            int[] table = new int[capacity];
+            for (int ordinal = 0; ordinal < size; ordinal++) {
+                insert(table, ordinal);
+            }
+            index = table;
+        }
+
+        private void insert(int[] table, int ordinal) {
+            int mask = table.length - 1;
+            int i = mix(text.hash(idSlots[ordinal])) & mask;
+            while (table[i] != 0) {
+                i = (i + 1) & mask;
+            }
+            table[i] = ordinal + 1;
+        }
+    }
+
+    /**
+     * A range of rows of a catalog that is still being built, see {@link Builder#rows(int)}.
+     * Safe to read on another thread once handed over through a concurrent queue. A repeated id that updates
+     * one of these rows later is not reflected; the finished catalog has the final values.
+     * Ein Bereich von Zeilen eines noch entstehenden Katalogs, siehe {@link Builder#rows(int)}.
+     * Kann in einem anderen Thread gelesen werden, sobald er über eine nebenläufige Warteschlange übergeben wurde. Eine
+     * wiederholte Id, die eine dieser Zeilen später ändert, wird nicht berücksichtigt; der fertige Katalog hat die endgültigen Werte.
+     */
+    public static final class Rows {
+        private final PackedStrings text;
+        private final int first; // Ordinal of the first row / Ordinalzahl der ersten Zeile
+        private final int[] idSlots;
+        private final int[] nameSlots;
+        private final int[] descrSlots;
+
+        private Rows(PackedStrings text, int first, int[] idSlots, int[] nameSlots, int[] descrSlots) {
+            this.text = text;
+            this.first = first;
+            this.idSlots = idSlots;
+            this.nameSlots = nameSlots;
+            this.descrSlots = descrSlots;
+        }
+
+        public int first() {
+            return first;
+        }
+
+        /**
+         * Returns the ordinal after the last row.
+         * Gibt die Ordinalzahl nach der letzten Zeile zurück.
+         */
+        public int end() {
+            return first + idSlots.length;
+        }
+
+        public int size() {
+            return idSlots.length;
+        }
+
+        public String id(int ordinal) {
+            return text.get(idSlots[ordinal - first]);
+        }
+
+        public String name(int ordinal) {
+            return text.get(nameSlots[ordinal - first]);
+        }
+
+        public String descr(int ordinal) {
+            return text.get(descrSlots[ordinal - first]);
+        }
+    }
+}
@@ -0,0 +1,474 @@
+package org.example;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Dependencies and conflicts between catalog functions, read from an optional rules file next to the CSV file
+ * ({@code functions.rules} for {@code functions.csv}), one rule per line:
+ * <pre>
+ * # comment
+ * PL6-10 requires PL6-2          PL6-10 may only be enabled together with PL6-2
+ * PL6-11 excludes PL6-12, PL6-13 never together (in both directions)
+ * PL6-20 implies PL6-21          enabling PL6-20 enables PL6-21 as well
+ * </pre>
+ * The rules are compiled against one catalog into sparse rows, one per function that has rules: each row is a short list
+ * of (word index, bit mask) pairs for the functions it requires, excludes and implies. Checking a selection therefore
+ * costs one AND per word that holds ruled functions, plus one per word touched by the rows of the selected ones,
+ * however large the catalog is. The selection's words are read in place. "implies" rows hold the transitive closure,
+ * so completing a selection is one OR per pair of the selected functions.
+ * Abhängigkeiten und Konflikte zwischen Katalogfunktionen, gelesen aus einer optionalen Regeldatei neben der CSV-Datei
+ * ({@code functions.rules} für {@code functions.csv}), eine Regel pro Zeile (siehe oben).
+ * Die Regeln werden für einen Katalog in dünn besetzte Zeilen übersetzt, eine pro Funktion mit Regeln: Jede Zeile ist
+ * eine kurze Liste von Paaren (Wortindex, Bitmaske) für die Funktionen, die sie benötigt, ausschließt und impliziert.
+ * Die Prüfung einer Auswahl kostet daher eine UND-Operation pro Wort mit Funktionen mit Regeln, plus eine pro Wort, das
+ * die Zeilen der ausgewählten berühren, egal wie groß der Katalog ist. Die Wörter der Auswahl werden an Ort und Stelle
+ * gelesen. Zeilen für "implies" enthalten die transitive Hülle, daher ist das Vervollständigen einer Auswahl ein ODER
+ * pro Paar der ausgewählten Funktionen.
+ */
+public final class FunctionRules {
+
+    private static final FunctionRules NONE = new FunctionRules(FunctionCatalog.empty(), new int[0], new long[0], new int[0],
+            Rows.EMPTY, Rows.EMPTY, 0);
+
+    private final int[] ruledWords; // Indexes of the words that hold functions with rules / Indizes der Wörter mit Funktionen mit Regeln
+    private final long[] ruledMasks; // Functions with rules in each of those words / Funktionen mit Regeln in jedem dieser Wörter
+    private final int[] firstRow; // Row of the first function with rules in each of those words / Zeile der ersten Funktion mit Regeln in jedem dieser Wörter
+    private final Rows checks; // Functions that must (first) and must not (second) be enabled too / Funktionen, die mit aktiviert sein müssen (first) und nicht dürfen (second)
+    private final Rows implied; // First: functions enabled by completion, transitive / First: beim Vervollständigen aktivierte Funktionen, transitiv
+    private final int ruleCount;
+    private final FunctionCatalog catalog; // For the ids in violations / Für die Ids in Verletzungen
+
+    private FunctionRules(FunctionCatalog catalog, int[] ruledWords, long[] ruledMasks, int[] firstRow,
+                          Rows checks, Rows implied, int ruleCount) {
+        this.catalog = catalog;
+        this.ruledWords = ruledWords;
+        this.ruledMasks = ruledMasks;
+        this.firstRow = firstRow;
+        this.checks = checks;
+        this.implied = implied;
+        this.ruleCount = ruleCount;
+    }
+
+    /**
+     * Rules that allow every selection.
+     * Regeln, die jede Auswahl erlauben.
+     */
+    public static FunctionRules none() {
+        return NONE;
+    }
+
+    /**
+     * The rules file belonging to a CSV file: same name with the extension {@code .rules}.
+     * Die zu einer CSV-Datei gehörende Regeldatei: gleicher Name mit der Endung {@code .rules}.
+     */
+    public static Path fileFor(Path csvFile) {
+        String name = csvFile.getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        return csvFile.resolveSibling((dot > 0 ? name.substring(0, dot) : name) + ".rules");
+    }
+
+    /**
+     * Reads and compiles the rules file of a CSV file. Lines that cannot be understood or name unknown functions are
+     * skipped and reported on stderr, like malformed CSV rows.
+     * Liest und übersetzt die Regeldatei einer CSV-Datei. Unverständliche Zeilen oder Zeilen mit unbekannten Funktionen
+     * werden übersprungen und auf stderr gemeldet, wie fehlerhafte CSV-Zeilen.
+     *
+     * @return The rules, or {@link #none()} if there is no rules file / Die Regeln oder {@link #none()}, wenn es keine Regeldatei gibt
+     * @throws IOException if the file exists but cannot be read / wenn die Datei existiert, aber nicht gelesen werden kann
+     */
+    public static FunctionRules load(Path csvFile, FunctionCatalog catalog) throws IOException {
+        Path file = fileFor(csvFile);
+        List<String> lines;
+        try {
+            lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+        } catch (NoSuchFileException e) {
+            return NONE;
+        }
+        Compiler compiler = new Compiler(catalog);
+        for (int i = 0; i < lines.size(); i++) {
+            String problem = compiler.add(lines.get(i));
+            if (problem != null) {
+                System.err.println("Skipped rule " + file.getFileName() + ":" + (i + 1) + ": " + problem);
+            }
+        }
+        return compiler.compile();
+    }
+
+    /**
+     * Compiles rules given as lines in the file format, e.g. for tools that keep the rules elsewhere.
+     * Übersetzt Regeln, die als Zeilen im Dateiformat übergeben werden, z. B. für Werkzeuge, die die Regeln anderswo halten.
+     *
+     * @throws IllegalArgumentException for the first line that cannot be compiled / für die erste nicht übersetzbare Zeile
+     */
+    public static FunctionRules compile(FunctionCatalog catalog, List<String> lines) {
+        Compiler compiler = new Compiler(catalog);
+        for (String line : lines) {
+            String problem = compiler.add(line);
+            if (problem != null) {
+                throw new IllegalArgumentException(problem);
+            }
+        }
+        return compiler.compile();
+    }
+
+    public int ruleCount() {
+        return ruleCount;
+    }
+
+    public boolean isEmpty() {
+        return ruleCount == 0;
+    }
+
+    /**
+     * True if the selection breaks no rule. Allocates nothing.
+     * True, wenn die Auswahl keine Regel verletzt. Erzeugt keine Objekte.
+     *
+     * @param selection Bit i of word i / 64 = function i, see {@link FunctionSelection#toWords()}
+     *                  / Bit i von Wort i / 64 = Funktion i, siehe {@link FunctionSelection#toWords()}
+     */
+    public boolean isValid(long[] selection) {
+        for (int k = 0; k < ruledWords.length; k++) {
+            long ruled = ruledMasks[k];
+            for (long bits = word(selection, ruledWords[k]) & ruled; bits != 0; bits &= bits - 1) {
+                int row = firstRow[k] + Long.bitCount(ruled & ((bits & -bits) - 1));
+                for (int p = checks.start[row], end = checks.start[row + 1]; p < end; p++) {
+                    long selected = word(selection, checks.word[p]);
+                    if ((checks.first[p] & ~selected | checks.second[p] & selected) != 0) {
+                        return false;
+                    }
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Same as {@link #isValid(long[])}, reading the selection's words in place. Allocates nothing.
+     * Wie {@link #isValid(long[])}, liest die Wörter der Auswahl an Ort und Stelle. Erzeugt keine Objekte.
+     */
+    public boolean isValid(FunctionSelection selection) {
+        return isValid(selection.words());
+    }
+
+    /**
+     * Lists every broken rule; a conflict is listed once for both functions.
+     * Listet jede verletzte Regel auf; ein Konflikt wird für beide Funktionen einmal aufgeführt.
+     */
+    public List<Violation> violations(FunctionSelection selection) {
+        long[] selected = selection.words();
+        List<Violation> violations = new ArrayList<>();
+        for (int k = 0; k < ruledWords.length; k++) {
+            long ruled = ruledMasks[k];
+            for (long bits = word(selected, ruledWords[k]) & ruled; bits != 0; bits &= bits - 1) {
+                int function = (ruledWords[k] << 6) + Long.numberOfTrailingZeros(bits);
+                int row = firstRow[k] + Long.bitCount(ruled & ((bits & -bits) - 1));
+                for (int p = checks.start[row]; p < checks.start[row + 1]; p++) {
+                    for (long missing = checks.first[p] & ~word(selected, checks.word[p]); missing != 0; missing &= missing - 1) {
+                        violations.add(new Violation(false, catalog.id(function), catalog.id((checks.word[p] << 6) + Long.numberOfTrailingZeros(missing))));
+                    }
+                }
+                for (int p = checks.start[row]; p < checks.start[row + 1]; p++) {
+                    for (long conflict = checks.second[p] & word(selected, checks.word[p]); conflict != 0; conflict &= conflict - 1) {
+                        int other = (checks.word[p] << 6) + Long.numberOfTrailingZeros(conflict);
+                        if (function < other) {
+                            violations.add(new Violation(true, catalog.id(function), catalog.id(other)));
+                        }
+                    }
+                }
+            }
+        }
+        return violations;
+    }
+
+    /**
+     * Enables all functions implied by the enabled ones, directly or through other implied functions.
+     * Functions it enables are only checked again if they have rules themselves, which then add nothing new.
+     * Aktiviert alle Funktionen, die von den aktivierten direkt oder über andere implizierte Funktionen impliziert werden.
+     * Von ihr aktivierte Funktionen werden nur erneut geprüft, wenn sie selbst Regeln haben, die dann nichts Neues hinzufügen.
+     *
+     * @return Number of functions that were added / Anzahl der hinzugefügten Funktionen
+     */
+    public int complete(FunctionSelection selection) {
+        int added = 0;
+        for (int k = 0; k < ruledWords.length; k++) {
+            long ruled = ruledMasks[k];
+            for (long bits = word(selection.words(), ruledWords[k]) & ruled; bits != 0; bits &= bits - 1) {
+                int row = firstRow[k] + Long.bitCount(ruled & ((bits & -bits) - 1));
+                for (int p = implied.start[row]; p < implied.start[row + 1]; p++) {
+                    for (long missing = implied.first[p] & ~word(selection.words(), implied.word[p]); missing != 0; missing &= missing - 1) {
+                        selection.setSelected((implied.word[p] << 6) + Long.numberOfTrailingZeros(missing), true);
+                        added++;
+                    }
+                }
+            }
+        }
+        return added;
+    }
+
+    private static long word(long[] words, int index) {
+        return index < words.length ? words[index] : 0;
+    }
+
+    /**
+     * A broken rule.
+     * Eine verletzte Regel.
+     */
+    public static final class Violation {
+        private final boolean conflict;
+        private final String functionId;
+        private final String otherId;
+
+        private Violation(boolean conflict, String functionId, String otherId) {
+            this.conflict = conflict;
+            this.functionId = functionId;
+            this.otherId = otherId;
+        }
+
+        /**
+         * True for two functions that exclude each other, false for a missing required function.
+         * True für zwei Funktionen, die sich ausschließen, false für eine fehlende benötigte Funktion.
+         */
+        public boolean isConflict() {
+            return conflict;
+        }
+
+        public String getFunctionId() {
+            return functionId;
+        }
+
+        public String getOtherId() {
+            return otherId;
+        }
+
+        @Override
+        public String toString() {
+            return conflict ? functionId + " excludes " + otherId : functionId + " requires " + otherId;
+        }
+    }
+
+    /**
+     * Collects rules as pairs of ordinals and turns them into bit mask rows.
+     * Sammelt Regeln als Paare von Ordinalzahlen und macht daraus Bitmaskenzeilen.
+     */
+    private static final class Compiler {
+        private static final int REQUIRES = 0;
+        private static final int EXCLUDES = 1;
+        private static final int IMPLIES = 2;
+
+        private final FunctionCatalog catalog;
+        private int[] pairs = new int[48]; // kind, function, other / Art, Funktion, andere
+        private int count;
+
+        Compiler(FunctionCatalog catalog) {
+            this.catalog = catalog;
+        }
+
+        /**
+         * Adds the rules of one line; returns a problem description or null.
+         * Fügt die Regeln einer Zeile hinzu; gibt eine Problembeschreibung oder null zurück.
+         */
+        String add(String line) {
+            int comment = line.indexOf('#');
+            String[] tokens = (comment >= 0 ? line.substring(0, comment) : line).trim().split("[\\s,]+");
+            if (tokens.length == 1 && tokens[0].isEmpty()) {
+                return null; // Empty or comment line / Leer- oder Kommentarzeile
+            }
+            if (tokens.length < 3) {
+                return "expected '<id> requires|excludes|implies <id>[, <id>...]'";
+            }
+            int kind = switch (tokens[1]) {
+                case "requires" -> REQUIRES;
+                case "excludes" -> EXCLUDES;
+                case "implies" -> IMPLIES;
+                default -> -1;
+            };
+            if (kind < 0) {
+                return "unknown rule '" + tokens[1] + "'";
+            }
+            int function = catalog.ordinalOf(tokens[0]);
+            if (function < 0) {
+                return "unknown function id '" + tokens[0] + "'";
+            }
+            int[] others = new int[tokens.length - 2];
+            for (int i = 2; i < tokens.length; i++) {
+                others[i - 2] = catalog.ordinalOf(tokens[i]);
+                if (others[i - 2] < 0) {
+                    return "unknown function id '" + tokens[i] + "'";
+                }
+                if (others[i - 2] == function) {
+                    return tokens[0] + " cannot refer to itself";
+                }
+            }
+            for (int other : others) {
+                if (count + 3 > pairs.length) {
+                    pairs = Arrays.copyOf(pairs, pairs.length * 2);
+                }
+                pairs[count++] = kind;
+                pairs[count++] = function;
+                pairs[count++] = other;
+            }
+            return null;
+        }
+
+        FunctionRules compile() {
+            long[] ruled = new long[(catalog.size() + 63) >>> 6];
+            for (int p = 0; p < count; p += 3) {
+                ruled[pairs[p + 1] >>> 6] |= 1L << pairs[p + 1];
+                if (pairs[p] == EXCLUDES) {
+                    ruled[pairs[p + 2] >>> 6] |= 1L << pairs[p + 2]; // Excludes works both ways / Ausschluss gilt in beide Richtungen
+                }
+            }
+            int words = 0;
+            for (long mask : ruled) {
+                words += mask != 0 ? 1 : 0;
+            }
+            int[] ruledWords = new int[words];
+            long[] ruledMasks = new long[words];
+            int[] firstRow = new int[words];
+            int rows = 0;
+            for (int w = 0, k = 0; w < ruled.length; w++) {
+                if (ruled[w] != 0) {
+                    ruledWords[k] = w;
+                    ruledMasks[k] = ruled[w];
+                    firstRow[k++] = rows;
+                    rows += Long.bitCount(ruled[w]);
+                }
+            }
+
+            // Rows are numbered by ordinal; only needed while compiling / Zeilen sind nach Ordinalzahl nummeriert; nur beim Übersetzen gebraucht
+            int[] rowOf = new int[catalog.size()];
+            Arrays.fill(rowOf, -1);
+            for (int w = 0, row = 0; w < ruled.length; w++) {
+                for (long bits = ruled[w]; bits != 0; bits &= bits - 1) {
+                    rowOf[(w << 6) + Long.numberOfTrailingZeros(bits)] = row++;
+                }
+            }
+            Rows.Builder checks = new Rows.Builder();
+            Rows.Builder implies = new Rows.Builder();
+            for (int p = 0; p < count; p += 3) {
+                int function = pairs[p + 1];
+                int other = pairs[p + 2];
+                switch (pairs[p]) {
+                    case REQUIRES -> checks.add(rowOf[function], other, false);
+                    case EXCLUDES -> {
+                        checks.add(rowOf[function], other, true);
+                        checks.add(rowOf[other], function, true);
+                    }
+                    default -> {
+                        checks.add(rowOf[function], other, false);
+                        implies.add(rowOf[function], other, false);
+                    }
+                }
+            }
+            Rows direct = implies.build(rows);
+            return new FunctionRules(catalog, ruledWords, ruledMasks, firstRow, checks.build(rows),
+                    closeImplications(direct, rowOf, rows), count / 3);
+        }
+
+        /**
+         * Follows the implications from every row, so each row lists everything it implies directly or indirectly.
+         * Verfolgt die Implikationen von jeder Zeile aus, sodass jede Zeile alles enthält, was sie direkt oder indirekt impliziert.
+         */
+        private Rows closeImplications(Rows direct, int[] rowOf, int rows) {
+            Rows.Builder closed = new Rows.Builder();
+            int[] visitedBy = new int[catalog.size()]; // Row + 1 that reached a function / Zeile + 1, die eine Funktion erreicht hat
+            int[] stack = new int[16];
+            for (int row = 0; row < rows; row++) {
+                int depth = 0;
+                stack[depth++] = row;
+                while (depth > 0) {
+                    int from = stack[--depth];
+                    for (int p = direct.start[from]; p < direct.start[from + 1]; p++) {
+                        for (long bits = direct.first[p]; bits != 0; bits &= bits - 1) {
+                            int function = (direct.word[p] << 6) + Long.numberOfTrailingZeros(bits);
+                            if (visitedBy[function] == row + 1) {
+                                continue;
+                            }
+                            visitedBy[function] = row + 1;
+                            closed.add(row, function, false);
+                            if (rowOf[function] >= 0) {
+                                if (depth == stack.length) {
+                                    stack = Arrays.copyOf(stack, depth * 2);
+                                }
+                                stack[depth++] = rowOf[function];
+                            }
+                        }
+                    }
+                }
+            }
+            return closed.build(rows);
+        }
+    }
+
+    /**
+     * Sparse bit mask rows: the pairs of row r are at start[r] to start[r + 1], each a word index and two masks of bits
+     * set in it, so two kinds of rule cost one read of the selection.
+     * Dünn besetzte Bitmaskenzeilen: Die Paare von Zeile r liegen bei start[r] bis start[r + 1], je ein Wortindex und zwei
+     * Masken der darin gesetzten Bits, sodass zwei Regelarten einen Lesezugriff auf die Auswahl kosten.
+     */
+    private static final class Rows {
+        static final Rows EMPTY = new Rows(new int[1], new int[0], new long[0], new long[0]);
+
+        final int[] start;
+        final int[] word;
+        final long[] first;
+        final long[] second;
+
+        private Rows(int[] start, int[] word, long[] first, long[] second) {
+            this.start = start;
+            this.word = word;
+            this.first = first;
+            this.second = second;
+        }
+
+        /**
+         * Collects (row, function) entries in any order and merges them into rows.
+         * Sammelt Einträge (Zeile, Funktion) in beliebiger Reihenfolge und fasst sie zu Zeilen zusammen.
+         */
+        static final class Builder {
+            private long[] entries = new long[16]; // row << 32 | function << 1 | second
+            private int count;
+
+            void add(int row, int function, boolean second) {
+                if (count == entries.length) {
+                    entries = Arrays.copyOf(entries, count * 2);
+                }
+                entries[count++] = (long) row << 32 | (long) function << 1 | (second ? 1 : 0);
+            }
+
+            Rows build(int rows) {
+                Arrays.sort(entries, 0, count);
+                int[] start = new int[rows + 1];
+                int[] word = new int[count];
+                long[] first = new long[count];
+                long[] second = new long[count];
+                int pairs = 0;
+                for (int i = 0; i < count; i++) {
+                    int row = (int) (entries[i] >>> 32);
+                    int function = (int) entries[i] >>> 1;
+                    if (start[row + 1] == 0 || word[pairs - 1] != function >>> 6) {
+                        word[pairs] = function >>> 6;
+                        pairs++;
+                    }
+                    if ((entries[i] & 1) != 0) {
+                        second[pairs - 1] |= 1L << function;
+                    } else {
+                        first[pairs - 1] |= 1L << function;
+                    }
+                    start[row + 1] = pairs;
+                }
+                for (int row = 0; row < rows; row++) {
+                    start[row + 1] = Math.max(start[row + 1], start[row]); // Rows without pairs / Zeilen ohne Paare
+                }
+                return new Rows(start, Arrays.copyOf(word, pairs), Arrays.copyOf(first, pairs), Arrays.copyOf(second, pairs));
+            }
+        }
+    }
+}
@@ -0,0 +1,604 @@
+package org.example;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Search index over the id, name and description of all functions in a {@link FunctionCatalog}.
+ * Substring terms are answered from an inverted index of bigrams and trigrams, prefix terms (`PL6-1*`) from a table of
+ * all texts sorted case-insensitively. The index works on text slots, so a description shared by many
+ * functions is indexed once. Terms may be limited to one field: `id:`, `name:` or `descr:`.
+ * Suchindex über Id, Name und Beschreibung aller Funktionen eines {@link FunctionCatalog}.
+ * Teilstring-Begriffe werden über einen invertierten Index aus Bigrammen und Trigrammen beantwortet, Präfix-Begriffe (`PL6-1*`)
+ * über eine Tabelle aller Texte, sortiert ohne Beachtung der Groß-/Kleinschreibung. Der Index arbeitet auf
+ * Text-Slots, sodass eine von vielen Funktionen geteilte Beschreibung nur einmal indiziert wird.
+ * Begriffe können auf ein Feld beschränkt werden: `id:`, `name:` oder `descr:`.
+ */
+public class FunctionSearchIndex {
+
+    private static final int FIELD_ID = 0;
+    private static final int FIELD_NAME = 1;
+    private static final int FIELD_DESCR = 2;
+    private static final int ANY_FIELD = -1;
+
+    private final FunctionCatalog catalog;
+    private final PackedStrings text;
+    private final GramTable grams; // Bigram or trigram -> position in gramStarts / Bigramm oder Trigramm -> Position in gramStarts
+    private final int[] gramStarts; // Postings of gram g: postings[gramStarts[g]..gramStarts[g + 1]] / Postings des Trigramms g
+    private final int[] postings; // Text slots, ascending per gram / Text-Slots, aufsteigend je Trigramm
+    private final int[] refStarts; // References of slot s: refs[refStarts[s]..refStarts[s + 1]] / Verweise des Slots s
+    private final int[] refs; // ordinal << 2 | field
+    private final int[] sortedSlots; // All referenced slots, sorted by lower-case text / Alle Slots, nach Kleinbuchstaben sortiert
+    private final long[] charMasks; // Per slot: bit (c % 64) set for each lower-case character c / Je Slot: Bit (c % 64) für jedes Zeichen c
+    private final int[] gramRefs; // Functions referencing the texts of each gram / Funktionen, die auf die Texte eines Gramms verweisen
+    private final int[] sortedRefSums; // Running total of references along sortedSlots / Laufende Summe der Verweise entlang sortedSlots
+
+    private FunctionSearchIndex(FunctionCatalog catalog, GramTable grams, int[] gramStarts, int[] postings,
+                                int[] refStarts, int[] refs, int[] sortedSlots, long[] charMasks,
+                                int[] gramRefs, int[] sortedRefSums) {
+        this.catalog = catalog;
+        this.text = catalog.text();
+        this.grams = grams;
+        this.gramStarts = gramStarts;
+        this.postings = postings;
+        this.refStarts = refStarts;
+        this.refs = refs;
+        this.sortedSlots = sortedSlots;
+        this.charMasks = charMasks;
+        this.gramRefs = gramRefs;
+        this.sortedRefSums = sortedRefSums;
+    }
+
+    /**
+     * Builds the index for the given catalog. Takes time proportional to the catalog text; call it off the FX thread.
+     * Erstellt den Index für den angegebenen Katalog. Dauert proportional zum Katalogtext; außerhalb des FX-Threads aufrufen.
+     */
+    public static FunctionSearchIndex build(FunctionCatalog catalog) {
+        PackedStrings text = catalog.text();
+        int slotCount = text.size();
+        int size = catalog.size();
+
+        // Slot -> (ordinal, field) references in compressed rows.
+        // Slot -> (Ordinalzahl, Feld)-Verweise in komprimierten Zeilen.
+        int[] refStarts = new int[slotCount + 1];
+        for (int ordinal = 0; ordinal < size; ordinal++) {
+            refStarts[catalog.idSlot(ordinal) + 1]++;
+            refStarts[catalog.nameSlot(ordinal) + 1]++;
+            refStarts[catalog.descrSlot(ordinal) + 1]++;
+        }
+        for (int s = 0; s < slotCount; s++) {
+            refStarts[s + 1] += refStarts[s];
+        }
+        int[] refs = new int[refStarts[slotCount]];
+        int[] fill = Arrays.copyOf(refStarts, slotCount);
+        for (int ordinal = 0; ordinal < size; ordinal++) {
+            refs[fill[catalog.idSlot(ordinal)]++] = ordinal << 2 | FIELD_ID;
+            refs[fill[catalog.nameSlot(ordinal)]++] = ordinal << 2 | FIELD_NAME;
+            refs[fill[catalog.descrSlot(ordinal)]++] = ordinal << 2 | FIELD_DESCR;
+        }
+
+        // Bigram and trigram postings in two passes: count, then fill. Slots without references (replaced rows) are skipped.
+        // Bigramm- und Trigramm-Postings in zwei Durchläufen: zählen, dann füllen. Slots ohne Verweise (ersetzte Zeilen) werden übersprungen.
+        GramTable grams = new GramTable();
+        IntList counts = new IntList();
+        IntList lastSlot = new IntList();
+        for (int s = 0; s < slotCount; s++) {
+            if (refStarts[s] == refStarts[s + 1]) {
+                continue;
+            }
+            int length = text.length(s);
+            for (int i = 0; i + 2 <= length; i++) {
+                for (int n = 2; n <= 3 && i + n <= length; n++) {
+                    int g = grams.indexOrAdd(gram(text, s, i, n));
+                    if (g == counts.size()) {
+                        counts.add(0);
+                        lastSlot.add(-1);
+                    }
+                    if (lastSlot.get(g) != s) { // Count each gram once per slot / Jedes Gramm einmal pro Slot zählen
+                        lastSlot.set(g, s);
+                        counts.set(g, counts.get(g) + 1);
+                    }
+                }
+            }
+        }
+        int gramCount = counts.size();
+        int[] gramStarts = new int[gramCount + 1];
+        for (int g = 0; g < gramCount; g++) {
+            gramStarts[g + 1] = gramStarts[g] + counts.get(g);
+        }
+        int[] postings = new int[gramStarts[gramCount]];
+        int[] next = Arrays.copyOf(gramStarts, gramCount);
+        for (int s = 0; s < slotCount; s++) {
+            if (refStarts[s] == refStarts[s + 1]) {
+                continue;
+            }
+            int length = text.length(s);
+            for (int i = 0; i + 2 <= length; i++) {
+                for (int n = 2; n <= 3 && i + n <= length; n++) {
+                    int g = grams.indexOf(gram(text, s, i, n));
+                    if (next[g] == gramStarts[g] || postings[next[g] - 1] != s) {
+                        postings[next[g]++] = s;
+                    }
+                }
+            }
+        }
+
+        // Reference counts per gram, used to estimate how many functions a term selects.
+        // Anzahl Verweise je Gramm, um zu schätzen, wie viele Funktionen ein Begriff auswählt.
+        int[] gramRefs = new int[gramCount];
+        for (int g = 0; g < gramCount; g++) {
+            for (int p = gramStarts[g]; p < gramStarts[g + 1]; p++) {
+                gramRefs[g] += refStarts[postings[p] + 1] - refStarts[postings[p]];
+            }
+        }
+
+        // Prefix table: referenced slots sorted by their lower-case text.
+        // Präfix-Tabelle: referenzierte Slots, sortiert nach ihrem Text in Kleinbuchstaben.
+        String[] lower = new String[slotCount];
+        long[] charMasks = new long[slotCount];
+        List<Integer> slots = new ArrayList<>();
+        for (int s = 0; s < slotCount; s++) {
+            if (refStarts[s] != refStarts[s + 1]) {
+                lower[s] = toLower(text.get(s));
+                for (int i = 0; i < lower[s].length(); i++) {
+                    charMasks[s] |= 1L << lower[s].charAt(i); // Shift uses the low 6 bits / Verschiebung nutzt die unteren 6 Bits
+                }
+                slots.add(s);
+            }
+        }
+        slots.sort((a, b) -> lower[a].compareTo(lower[b]));
+        int[] sortedSlots = slots.stream().mapToInt(Integer::intValue).toArray();
+        int[] sortedRefSums = new int[sortedSlots.length + 1];
+        for (int i = 0; i < sortedSlots.length; i++) {
+            sortedRefSums[i + 1] = sortedRefSums[i] + refStarts[sortedSlots[i] + 1] - refStarts[sortedSlots[i]];
+        }
+
+        return new FunctionSearchIndex(catalog, grams, gramStarts, postings, refStarts, refs, sortedSlots, charMasks,
+                gramRefs, sortedRefSums);
+    }
+
+    public FunctionCatalog getCatalog() {
+        return catalog;
+    }
+
+    /**
+     * Returns the ordinals of all functions matching the query in ascending order, or null if the query is empty.
+     * All whitespace separated terms must match.
+     * Gibt die Ordinalzahlen aller passenden Funktionen aufsteigend zurück, oder null, wenn die Abfrage leer ist.
+     * Alle durch Leerzeichen getrennten Begriffe müssen passen.
+     */
+    public int[] search(String query) {
+        List<Term> terms = parse(query);
+        if (terms.isEmpty()) {
+            return null;
+        }
+        // Only the most selective term uses the index; the others are checked against its matches.
+        // Single characters are not indexed and are scanned only if the query has nothing else.
+        // Nur der selektivste Begriff nutzt den Index; die übrigen werden gegen seine Treffer geprüft.
+        // Einzelne Zeichen sind nicht indiziert und werden nur durchsucht, wenn die Abfrage nichts anderes enthält.
+        Term driver = null;
+        int best = Integer.MAX_VALUE;
+        for (Term term : terms) {
+            if (term.prefix || term.text.length() > 1) {
+                int estimate = estimate(term);
+                if (estimate < best) {
+                    best = estimate;
+                    driver = term;
+                }
+            }
+        }
+        int[] ordinals = toOrdinals(driver != null ? match(driver) : scan(terms.get(0)));
+        if (terms.size() == 1) {
+            return ordinals;
+        }
+        return filter(ordinals, terms);
+    }
+
+    /**
+     * Creates a search session that reuses its previous result when the query is only extended.
+     * Erstellt eine Suchsitzung, die ihr vorheriges Ergebnis wiederverwendet, wenn die Abfrage nur verlängert wird.
+     */
+    public Session newSession() {
+        return new Session();
+    }
+
+    /**
+     * Incremental search for one search box; not thread-safe, use it from one thread.
+     * Inkrementelle Suche für ein Suchfeld; nicht threadsicher, nur aus einem Thread verwenden.
+     */
+    public final class Session {
+        private List<Term> lastTerms = List.of();
+        private int[] lastResult;
+
+        public int[] search(String query) {
+            List<Term> terms = parse(query);
+            int[] result;
+            if (terms.isEmpty()) {
+                result = null;
+            } else if (lastResult != null && narrows(lastTerms, terms)) {
+                // Every match of the new query also matched the old one: only re-check the old result.
+                // Jeder Treffer der neuen Abfrage passte auch zur alten: nur das alte Ergebnis erneut prüfen.
+                result = filter(lastResult, terms);
+            } else {
+                result = FunctionSearchIndex.this.search(query);
+            }
+            lastTerms = terms;
+            lastResult = result;
+            return result;
+        }
+    }
+
+    /**
+     * Returns a bitmap over ordinals with the functions matching one term.
+     * Gibt eine Bitmap über Ordinalzahlen mit den Funktionen zurück, die zu einem Begriff passen.
+     */
+    private long[] match(Term term) {
+        long[] bits = new long[(catalog.size() + 63) >>> 6];
+        if (term.prefix) {
+            int from = lowerBound(term.text);
+            for (int i = from; i < sortedSlots.length && text.startsWithIgnoreCase(sortedSlots[i], term.text); i++) {
+                markRefs(sortedSlots[i], term.field, bits);
+            }
+        } else {
+            int[] candidates = candidates(term.text);
+            for (int slot : candidates) {
+                if (text.containsIgnoreCase(slot, term.text)) { // Grams may match out of order / Gramme können verstreut passen
+                    markRefs(slot, term.field, bits);
+                }
+            }
+        }
+        return bits;
+    }
+
+    /**
+     * Upper bound for the number of functions a term can match, used to pick the most selective term.
+     * Obergrenze für die Anzahl Funktionen, die ein Begriff treffen kann; dient zur Wahl des selektivsten Begriffs.
+     */
+    private int estimate(Term term) {
+        if (term.prefix) {
+            return sortedRefSums[lowerBound(term.text + Character.MAX_VALUE)] - sortedRefSums[lowerBound(term.text)];
+        }
+        int n = Math.min(term.text.length(), 3);
+        int estimate = Integer.MAX_VALUE;
+        for (int i = 0; i + n <= term.text.length(); i++) {
+            int g = grams.indexOf(gram(term.text, i, n));
+            estimate = Math.min(estimate, g < 0 ? 0 : gramRefs[g]);
+        }
+        return estimate;
+    }
+
+    /**
+     * Matches a single-character term by scanning the distinct texts once.
+     * The per-text character masks skip most texts without looking at their characters.
+     * Prüft einen Begriff aus einem Zeichen, indem die unterschiedlichen Texte einmal durchsucht werden.
+     * Die Zeichenmasken je Text überspringen die meisten Texte, ohne ihre Zeichen anzusehen.
+     */
+    private long[] scan(Term term) {
+        long[] bits = new long[(catalog.size() + 63) >>> 6];
+        long bit = 1L << term.text.charAt(0);
+        for (int slot : sortedSlots) {
+            if ((charMasks[slot] & bit) != 0 && slotMatches(slot, term)) {
+                markRefs(slot, term.field, bits);
+            }
+        }
+        return bits;
+    }
+
+    /**
+     * Intersects the postings of all grams of the text, starting with the shortest list.
+     * A two-character text is a single bigram; longer texts use their trigrams.
+     * Schneidet die Postings aller Gramme des Textes, beginnend mit der kürzesten Liste.
+     * Ein Text aus zwei Zeichen ist ein einzelnes Bigramm; längere Texte verwenden ihre Trigramme.
+     */
+    private int[] candidates(String lower) {
+        int n = Math.min(lower.length(), 3);
+        int gramCount = lower.length() - n + 1;
+        int[] ids = new int[gramCount];
+        for (int i = 0; i < gramCount; i++) {
+            int g = grams.indexOf(gram(lower, i, n));
+            if (g < 0) {
+                return new int[0];
+            }
+            ids[i] = g;
+        }
+        Arrays.sort(ids); // Groups equal grams so they are intersected only once / Gleiche Trigramme nur einmal schneiden
+        int shortest = ids[0];
+        for (int g : ids) {
+            if (postingCount(g) < postingCount(shortest)) {
+                shortest = g;
+            }
+        }
+        int[] result = Arrays.copyOfRange(postings, gramStarts[shortest], gramStarts[shortest + 1]);
+        int size = result.length;
+        for (int i = 0; i < gramCount && size > 0; i++) {
+            int g = ids[i];
+            if (g == shortest || (i > 0 && ids[i - 1] == g)) {
+                continue;
+            }
+            int kept = 0;
+            int p = gramStarts[g];
+            int end = gramStarts[g + 1];
+            for (int k = 0; k < size && p < end; k++) {
+                int slot = result[k];
+                while (p < end && postings[p] < slot) {
+                    p++;
+                }
+                if (p < end && postings[p] == slot) {
+                    result[kept++] = slot;
+                }
+            }
+            size = kept;
+        }
+        return Arrays.copyOf(result, size);
+    }
+
+    private int postingCount(int g) {
+        return gramStarts[g + 1] - gramStarts[g];
+    }
+
+    private void markRefs(int slot, int field, long[] bits) {
+        for (int r = refStarts[slot]; r < refStarts[slot + 1]; r++) {
+            int ref = refs[r];
+            if (field == ANY_FIELD || (ref & 3) == field) {
+                int ordinal = ref >>> 2;
+                bits[ordinal >>> 6] |= 1L << ordinal;
+            }
+        }
+    }
+
+    /**
+     * First position in the prefix table whose text is not smaller than the prefix.
+     * Erste Position in der Präfix-Tabelle, deren Text nicht kleiner als das Präfix ist.
+     */
+    private int lowerBound(String lowerPrefix) {
+        int low = 0;
+        int high = sortedSlots.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (text.compareIgnoreCase(sortedSlots[mid], lowerPrefix) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Keeps the ordinals of a previous result that match all terms.
+     * Behält die Ordinalzahlen eines früheren Ergebnisses, die zu allen Begriffen passen.
+     */
+    private int[] filter(int[] ordinals, List<Term> terms) {
+        int[] result = new int[ordinals.length];
+        int size = 0;
+        for (int ordinal : ordinals) {
+            boolean all = true;
+            for (Term term : terms) {
+                if (!matches(ordinal, term)) {
+                    all = false;
+                    break;
+                }
+            }
+            if (all) {
+                result[size++] = ordinal;
+            }
+        }
+        return Arrays.copyOf(result, size);
+    }
+
+    private boolean matches(int ordinal, Term term) {
+        return (term.field == ANY_FIELD || term.field == FIELD_ID) && slotMatches(catalog.idSlot(ordinal), term)
+                || (term.field == ANY_FIELD || term.field == FIELD_NAME) && slotMatches(catalog.nameSlot(ordinal), term)
+                || (term.field == ANY_FIELD || term.field == FIELD_DESCR) && slotMatches(catalog.descrSlot(ordinal), term);
+    }
+
+    private boolean slotMatches(int slot, Term term) {
+        return term.prefix ? text.startsWithIgnoreCase(slot, term.text) : text.containsIgnoreCase(slot, term.text);
+    }
+
+    /**
+     * True if every result of the new terms is guaranteed to be a result of the old terms.
+     * True, wenn jedes Ergebnis der neuen Begriffe sicher auch ein Ergebnis der alten Begriffe ist.
+     */
+    private static boolean narrows(List<Term> oldTerms, List<Term> newTerms) {
+        if (oldTerms.isEmpty() || newTerms.size() < oldTerms.size()) {
+            return false;
+        }
+        for (int i = 0; i < oldTerms.size(); i++) {
+            Term before = oldTerms.get(i);
+            Term after = newTerms.get(i);
+            if (before.field != after.field || (before.prefix && !after.prefix)) {
+                return false;
+            }
+            // A longer prefix or substring only removes matches. / Ein längeres Präfix oder Teilstring entfernt nur Treffer.
+            if (!(before.prefix ? after.text.startsWith(before.text) : after.text.contains(before.text))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int[] toOrdinals(long[] bits) {
+        int count = 0;
+        for (long word : bits) {
+            count += Long.bitCount(word);
+        }
+        int[] ordinals = new int[count];
+        int i = 0;
+        for (int w = 0; w < bits.length; w++) {
+            long word = bits[w];
+            while (word != 0) {
+                ordinals[i++] = (w << 6) + Long.numberOfTrailingZeros(word);
+                word &= word - 1;
+            }
+        }
+        return ordinals;
+    }
+
+    /**
+     * Splits a query into terms. `field:` limits a term to one field, a trailing `*` makes it a prefix term.
+     * Zerlegt eine Abfrage in Begriffe. `field:` beschränkt einen Begriff auf ein Feld, ein abschließendes `*` macht ihn zum Präfix.
+     */
+    private static List<Term> parse(String query) {
+        List<Term> terms = new ArrayList<>();
+        for (String token : query.trim().split("\\s+")) {
+            int field = ANY_FIELD;
+            int colon = token.indexOf(':');
+            if (colon > 0) {
+                String name = toLower(token.substring(0, colon));
+                switch (name) {
+                    case "id" -> field = FIELD_ID;
+                    case "name" -> field = FIELD_NAME;
+                    case "descr", "description" -> field = FIELD_DESCR;
+                    default -> colon = -1; // Not a field name, search the whole token / Kein Feldname, ganzen Begriff suchen
+                }
+                if (colon > 0) {
+                    token = token.substring(colon + 1);
+                }
+            }
+            boolean prefix = token.endsWith("*");
+            if (prefix) {
+                token = token.substring(0, token.length() - 1);
+            }
+            if (!token.isEmpty()) {
+                terms.add(new Term(field, toLower(token), prefix));
+            }
+        }
+        return terms;
+    }
+
+    /**
+     * Lower-cases character by character, the same way the index compares text.
+     * Wandelt Zeichen für Zeichen in Kleinbuchstaben um, so wie der Index Text vergleicht.
+     */
+    private static String toLower(String s) {
+        char[] chars = s.toCharArray();
+        for (int i = 0; i < chars.length; i++) {
+            chars[i] = Character.toLowerCase(chars[i]);
+        }
+        return new String(chars);
+    }
+
+    /**
+     * Packs n (2 or 3) lower-case characters into one key; bit 48 tells bigrams from trigrams.
+     * Packt n (2 oder 3) Kleinbuchstaben in einen Schlüssel; Bit 48 unterscheidet Bigramme von Trigrammen.
+     */
+    private static long gram(PackedStrings text, int slot, int i, int n) {
+        long key = 0;
+        for (int k = 0; k < n; k++) {
+            key = key << 16 | Character.toLowerCase(text.charAt(slot, i + k));
+        }
+        return n == 2 ? key | 1L << 48 : key;
+    }
+
+    private static long gram(String lower, int i, int n) {
+        long key = 0;
+        for (int k = 0; k < n; k++) {
+            key = key << 16 | lower.charAt(i + k);
+        }
+        return n == 2 ? key | 1L << 48 : key;
+    }
+
+    private static final class Term {
+        private final int field;
+        private final String text; // Lower case / Kleinbuchstaben
+        private final boolean prefix;
+
+        Term(int field, String text, boolean prefix) {
+            this.field = field;
+            this.text = text;
+            this.prefix = prefix;
+        }
+    }
+
+    /**
+     * Open-addressing map from trigram to a dense index.
+     * Hashtabelle mit offener Adressierung von Trigramm auf einen fortlaufenden Index.
+     */
+    private static final class GramTable {
+        private long[] keys = new long[1024];
+        private int[] values = new int[1024];
+        private int size;
+
+        int indexOf(long key) {
+            int mask = keys.length - 1;
+            for (int i = hash(key) & mask; ; i = (i + 1) & mask) {
+                if (values[i] == 0) {
+                    return -1;
+                }
+                if (keys[i] == key) {
+                    return values[i] - 1;
+                }
+            }
+        }
+
+        int indexOrAdd(long key) {
+            int mask = keys.length - 1;
+            int i = hash(key) & mask;
+            while (values[i] != 0) {
+                if (keys[i] == key) {
+                    return values[i] - 1;
+                }
+                i = (i + 1) & mask;
+            }
+            keys[i] = key;
+            values[i] = ++size;
+            if (size * 2 > keys.length) {
+                grow();
+            }
+            return size - 1;
+        }
+
+        private void grow() {
+            long[] oldKeys = keys;
+            int[] oldValues = values;
+            keys = new long[oldKeys.length * 2];
+            values = new int[oldValues.length * 2];
+            int mask = keys.length - 1;
+            for (int j = 0; j < oldKeys.length; j++) {
+                if (oldValues[j] != 0) {
+                    int i = hash(oldKeys[j]) & mask;
+                    while (values[i] != 0) {
+                        i = (i + 1) & mask;
+                    }
+                    keys[i] = oldKeys[j];
+                    values[i] = oldValues[j];
+                }
+            }
+        }
+
+        private static int hash(long key) {
+            long h = key * 0x9E3779B97F4A7C15L;
+            return (int) (h ^ (h >>> 32));
+        }
+    }
+
+    /**
+     * Growable int array used while building.
+     * Wachsendes int-Array für den Aufbau.
+     */
+    private static final class IntList {
+        private int[] values = new int[1024];
+        private int size;
+
+        void add(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        int get(int i) {
+            return values[i];
+        }
+
+        void set(int i, int value) {
+            values[i] = value;
+        }
+
+        int size() {
+            return size;
+        }
+    }
+}
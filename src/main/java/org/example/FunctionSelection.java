@@ -0,0 +1,258 @@
+package org.example;
+
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.stream.IntStream;
+
+/**
+ * Remembers which catalog functions are enabled, keyed by their ordinal in the {@link FunctionCatalog}.
+ * The state lives outside the UI, so table cells can be recycled without losing selections.
+ * All bulk operations (select all, clear, diff, encode) work on 64-bit words, not on single functions.
+ * Merkt sich, welche Katalogfunktionen aktiviert sind, adressiert über ihre Ordinalzahl im {@link FunctionCatalog}.
+ * Der Zustand liegt außerhalb der Oberfläche, sodass Tabellenzellen wiederverwendet werden können, ohne Auswahlen zu verlieren.
+ * Alle Massenoperationen (alle auswählen, leeren, vergleichen, kodieren) arbeiten auf 64-Bit-Wörtern, nicht auf einzelnen Funktionen.
+ */
+public class FunctionSelection {
+
+    private static final long[] NO_WORDS = new long[0];
+
+    private long[] words; // Bit i of word i / 64 set = function with ordinal i enabled, grows on demand / Bit i von Wort i / 64 gesetzt = Funktion mit Ordinalzahl i aktiviert, wächst bei Bedarf
+
+    public FunctionSelection() {
+        this(NO_WORDS);
+    }
+
+    private FunctionSelection(long[] words) {
+        this.words = words;
+    }
+
+    public boolean isSelected(int ordinal) {
+        if (ordinal < 0) {
+            throw new IndexOutOfBoundsException("ordinal < 0: " + ordinal);
+        }
+        int word = ordinal >>> 6;
+        return word < words.length && (words[word] & (1L << ordinal)) != 0;
+    }
+
+    public void setSelected(int ordinal, boolean selected) {
+        if (ordinal < 0) {
+            throw new IndexOutOfBoundsException("ordinal < 0: " + ordinal);
+        }
+        int word = ordinal >>> 6;
+        if (selected) {
+            ensureWords(word + 1);
+            words[word] |= 1L << ordinal;
+        } else if (word < words.length) {
+            words[word] &= ~(1L << ordinal);
+        }
+    }
+
+    /**
+     * Selects the functions with the ordinals 0 to count - 1.
+     * Wählt die Funktionen mit den Ordinalzahlen 0 bis count - 1 aus.
+     */
+    public void selectAll(int count) {
+        if (count <= 0) {
+            return;
+        }
+        int full = count >>> 6;
+        ensureWords((count + 63) >>> 6);
+        Arrays.fill(words, 0, full, -1L);
+        if ((count & 63) != 0) {
+            words[full] |= -1L >>> (64 - (count & 63));
+        }
+    }
+
+    /**
+     * Deselects all functions.
+     * Hebt die Auswahl aller Funktionen auf.
+     */
+    public void clear() {
+        Arrays.fill(words, 0);
+    }
+
+    public boolean isEmpty() {
+        return usedWords() == 0;
+    }
+
+    public int count() {
+        int count = 0;
+        for (long word : words) {
+            count += Long.bitCount(word);
+        }
+        return count;
+    }
+
+    /**
+     * Returns the ordinals of all selected functions in ascending order.
+     * Gibt die Ordinalzahlen aller ausgewählten Funktionen aufsteigend zurück.
+     */
+    public IntStream ordinals() {
+        int[] ordinals = new int[count()];
+        int next = 0;
+        for (int w = 0; w < words.length; w++) {
+            for (long bits = words[w]; bits != 0; bits &= bits - 1) {
+                ordinals[next++] = (w << 6) + Long.numberOfTrailingZeros(bits);
+            }
+        }
+        return IntStream.of(ordinals);
+    }
+
+    /**
+     * Returns an independent copy, e.g. to store it in a license.
+     * Gibt eine unabhängige Kopie zurück, z. B. um sie in einer Lizenz zu speichern.
+     */
+    public FunctionSelection copy() {
+        return new FunctionSelection(Arrays.copyOf(words, usedWords()));
+    }
+
+    /**
+     * Compares this selection (before) with another one (after).
+     * Vergleicht diese Auswahl (vorher) mit einer anderen (nachher).
+     */
+    public Diff diff(FunctionSelection after) {
+        int length = Math.max(words.length, after.words.length);
+        long[] added = new long[length];
+        long[] removed = new long[length];
+        for (int w = 0; w < length; w++) {
+            long before = w < words.length ? words[w] : 0;
+            long now = w < after.words.length ? after.words[w] : 0;
+            added[w] = now & ~before;
+            removed[w] = before & ~now;
+        }
+        return new Diff(new FunctionSelection(added), new FunctionSelection(removed));
+    }
+
+    /**
+     * Moves the selection to the ordinals of a new catalog version; removed functions are deselected.
+     * Verschiebt die Auswahl auf die Ordinalzahlen einer neuen Katalogversion; entfernte Funktionen werden abgewählt.
+     */
+    public void remap(CatalogDiff diff) {
+        long[] moved = new long[(diff.getAfter().size() + 63) >>> 6];
+        int limit = diff.getBefore().size();
+        for (int w = 0; w < words.length; w++) {
+            for (long bits = words[w]; bits != 0; bits &= bits - 1) {
+                int ordinal = (w << 6) + Long.numberOfTrailingZeros(bits);
+                int newOrdinal = ordinal < limit ? diff.newOrdinal(ordinal) : -1;
+                if (newOrdinal >= 0) {
+                    moved[newOrdinal >>> 6] |= 1L << newOrdinal;
+                }
+            }
+        }
+        words = moved;
+    }
+
+    /**
+     * Returns the selection as 64-bit words; bit i of word i / 64 is ordinal i.
+     * Gibt die Auswahl als 64-Bit-Wörter zurück; Bit i von Wort i / 64 ist Ordinalzahl i.
+     */
+    public long[] toWords() {
+        return Arrays.copyOf(words, usedWords());
+    }
+
+    public static FunctionSelection fromWords(long[] words) {
+        return new FunctionSelection(words.clone());
+    }
+
+    /**
+     * The words themselves, not a copy, for checks that must not allocate. Only valid until the next change, which may
+     * replace the array; callers must not write to it. Words past its end are 0.
+     * Die Wörter selbst, keine Kopie, für Prüfungen, die nichts erzeugen dürfen. Nur bis zur nächsten Änderung gültig,
+     * die das Array ersetzen kann; Aufrufer dürfen nicht hineinschreiben. Wörter hinter seinem Ende sind 0.
+     */
+    long[] words() {
+        return words;
+    }
+
+    /**
+     * Encodes the selection as Base64 of its little-endian bit bytes, for the license file.
+     * Kodiert die Auswahl als Base64 ihrer Little-Endian-Bitbytes für die Lizenzdatei.
+     */
+    public String toBase64() {
+        int used = usedWords();
+        int length = used == 0 ? 0 : ((used - 1) << 3) + (71 - Long.numberOfLeadingZeros(words[used - 1])) / 8;
+        byte[] bytes = new byte[length];
+        for (int i = 0; i < length; i++) {
+            bytes[i] = (byte) (words[i >>> 3] >>> ((i & 7) << 3));
+        }
+        return Base64.getEncoder().encodeToString(bytes);
+    }
+
+    /**
+     * Decodes a selection written by {@link #toBase64()}.
+     * Dekodiert eine mit {@link #toBase64()} geschriebene Auswahl.
+     *
+     * @throws IllegalArgumentException if the text is not valid Base64 / wenn der Text kein gültiges Base64 ist
+     */
+    public static FunctionSelection fromBase64(String encoded) {
+        byte[] bytes = Base64.getDecoder().decode(encoded);
+        long[] words = new long[(bytes.length + 7) >>> 3];
+        for (int i = 0; i < bytes.length; i++) {
+            words[i >>> 3] |= (bytes[i] & 0xFFL) << ((i & 7) << 3);
+        }
+        return new FunctionSelection(words);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (!(o instanceof FunctionSelection)) {
+            return false;
+        }
+        FunctionSelection other = (FunctionSelection) o;
+        int used = usedWords();
+        return used == other.usedWords() && Arrays.equals(words, 0, used, other.words, 0, used);
+    }
+
+    @Override
+    public int hashCode() {
+        long hash = 1234; // Same as BitSet, so hashes did not change / Wie BitSet, damit sich Hashes nicht geändert haben
+        for (int w = usedWords(); --w >= 0; ) {
+            hash ^= words[w] * (w + 1);
+        }
+        return (int) ((hash >> 32) ^ hash);
+    }
+
+    /**
+     * Number of words up to the last one with a selected function.
+     * Anzahl der Wörter bis zum letzten mit einer ausgewählten Funktion.
+     */
+    private int usedWords() {
+        int used = words.length;
+        while (used > 0 && words[used - 1] == 0) {
+            used--;
+        }
+        return used;
+    }
+
+    private void ensureWords(int count) {
+        if (count > words.length) {
+            words = Arrays.copyOf(words, Math.max(count, words.length * 2));
+        }
+    }
+
+    /**
+     * Functions added and removed between two selections.
+     * Zwischen zwei Auswahlen hinzugefügte und entfernte Funktionen.
+     */
+    public static final class Diff {
+        private final FunctionSelection added;
+        private final FunctionSelection removed;
+
+        Diff(FunctionSelection added, FunctionSelection removed) {
+            this.added = added;
+            this.removed = removed;
+        }
+
+        public FunctionSelection getAdded() {
+            return added;
+        }
+
+        public FunctionSelection getRemoved() {
+            return removed;
+        }
+
+        public boolean isEmpty() {
+            return added.isEmpty() && removed.isEmpty();
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package org.example;
+
+import javafx.application.Platform;
+
+import java.io.Closeable;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Notices when the JavaFX application thread is busy for longer than a frame, e.g. because an event handler like
+ * {@link Controller#handleSave(FunctionSelection)} does slow work. A watchdog thread posts a small task to the FX thread
+ * once per frame and measures how long it takes to run. If it has not run after the threshold, the watchdog reads the
+ * FX thread's stack and reports the application method it is stuck in; the full delay is reported when it recovers.
+ * Bemerkt, wenn der JavaFX-Anwendungsthread länger als ein Frame beschäftigt ist, z. B. weil ein Event-Handler wie
+ * {@link Controller#handleSave(FunctionSelection)} langsame Arbeit erledigt. Ein Wachhund-Thread gibt einmal pro Frame
+ * eine kleine Aufgabe an den FX-Thread und misst, wie lange es bis zu ihrer Ausführung dauert. Ist sie nach dem
+ * Schwellwert nicht gelaufen, liest der Wachhund den Stack des FX-Threads und meldet die Anwendungsmethode, in der er
+ * hängt; die gesamte Verzögerung wird gemeldet, sobald er wieder frei ist.
+ */
+public class FxStallDetector implements Closeable {
+
+    public static final long FRAME_NANOS = TimeUnit.SECONDS.toNanos(1) / 60;
+
+    private static final long CHECK_NANOS = FRAME_NANOS / 4; // Watchdog resolution / Auflösung des Wachhunds
+
+    private final long thresholdNanos;
+    private final Metrics.Timer delay;
+    private final Metrics.Counter stalls;
+    private final Runnable probe = this::probeRan; // Posted again and again without allocating / Wiederholt gesendet, ohne Objekte zu erzeugen
+    private final Thread watchdog;
+    private volatile long postedAt;
+    private volatile boolean pending;
+    private volatile boolean reported;
+    private volatile boolean closed;
+    private volatile Thread fxThread;
+
+    /**
+     * @param metrics        Receives the delay timer and stall counter / Erhält den Verzögerungs-Timer und den Hänger-Zähler
+     * @param thresholdNanos Delay from which the FX thread counts as stalled / Verzögerung, ab der der FX-Thread als hängend gilt
+     */
+    public FxStallDetector(Metrics metrics, long thresholdNanos) {
+        this.thresholdNanos = thresholdNanos;
+        this.delay = metrics.timer("fx_event_delay", "Time until a task posted to the FX thread runs");
+        this.stalls = metrics.counter("fx_stalls", "Times the FX thread was busy longer than the stall threshold");
+        this.watchdog = new Thread(this::watch, "fx-stall-detector");
+        this.watchdog.setDaemon(true);
+    }
+
+    public void start() {
+        watchdog.start();
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        LockSupport.unpark(watchdog);
+    }
+
+    private void watch() {
+        long lastPost = 0;
+        while (!closed) {
+            long now = System.nanoTime();
+            if (!pending) {
+                if (now - lastPost >= FRAME_NANOS) {
+                    lastPost = now;
+                    reported = false;
+                    postedAt = now;
+                    pending = true;
+                    Platform.runLater(probe);
+                }
+            } else if (!reported && now - postedAt > thresholdNanos && fxThread != null) {
+                reported = true;
+                stalls.increment();
+                System.err.println("FX thread busy for " + TimeUnit.NANOSECONDS.toMillis(now - postedAt) + " ms in "
+                        + location(fxThread.getStackTrace()));
+            }
+            LockSupport.parkNanos(CHECK_NANOS);
+        }
+    }
+
+    /**
+     * Runs on the FX thread.
+     * Läuft im FX-Thread.
+     */
+    private void probeRan() {
+        fxThread = Thread.currentThread();
+        long took = System.nanoTime() - postedAt;
+        delay.recordNanos(took);
+        if (reported) {
+            System.err.println("FX thread free again after " + TimeUnit.NANOSECONDS.toMillis(took) + " ms");
+        }
+        pending = false;
+    }
+
+    /**
+     * The innermost frame of application code and, if different, the outermost one, which is usually the event handler
+     * (lambdas that only forward to a handler are skipped).
+     * Der innerste Frame von Anwendungscode und, falls verschieden, der äußerste, meist der Event-Handler
+     * (Lambdas, die nur an einen Handler weiterleiten, werden übersprungen).
+     */
+    private static String location(StackTraceElement[] stack) {
+        StackTraceElement innermost = null;
+        StackTraceElement outermost = null;
+        for (StackTraceElement frame : stack) {
+            if (frame.getClassName().startsWith("org.example.") && !frame.getMethodName().startsWith("lambda$")) {
+                if (innermost == null) {
+                    innermost = frame;
+                }
+                outermost = frame;
+            }
+        }
+        if (innermost == null) {
+            return stack.length > 0 ? stack[0].toString() : "unknown code";
+        }
+        return innermost == outermost ? innermost.toString() : innermost + " via " + outermost;
+    }
+}
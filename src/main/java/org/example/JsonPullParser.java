@@ -0,0 +1,290 @@
+package org.example;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Small streaming JSON reader over UTF-8 bytes. The caller pulls names and values one at a time,
+ * so no maps or intermediate objects are built; values the caller does not need are skipped.
+ * Kleiner Streaming-JSON-Leser über UTF-8-Bytes. Der Aufrufer holt Namen und Werte einzeln ab,
+ * daher werden keine Maps oder Zwischenobjekte aufgebaut; nicht benötigte Werte werden übersprungen.
+ *
+ * <pre>
+ * parser.beginObject();
+ * while (parser.hasNext()) {
+ *     switch (parser.nextName()) {
+ *         case "name" -> name = parser.nextString();
+ *         default -> parser.skipValue();
+ *     }
+ * }
+ * parser.endObject();
+ * parser.finish();
+ * </pre>
+ *
+ * Malformed input is reported with an {@link IllegalArgumentException} that names the byte offset.
+ * Fehlerhafte Eingaben werden mit einer {@link IllegalArgumentException} gemeldet, die den Byte-Offset nennt.
+ */
+final class JsonPullParser {
+
+    private final byte[] data;
+    private final int end;
+    private int position;
+    private boolean afterValue; // A value was just read, so ',' or a closing bracket must follow / Ein Wert wurde gerade gelesen, daher muss ',' oder eine schließende Klammer folgen
+
+    JsonPullParser(byte[] data) {
+        this(data, 0, data.length);
+    }
+
+    JsonPullParser(byte[] data, int offset, int length) {
+        this.data = data;
+        this.position = offset;
+        this.end = offset + length;
+    }
+
+    void beginObject() {
+        expect('{');
+        afterValue = false;
+    }
+
+    void endObject() {
+        expect('}');
+        afterValue = true;
+    }
+
+    void beginArray() {
+        expect('[');
+        afterValue = false;
+    }
+
+    void endArray() {
+        expect(']');
+        afterValue = true;
+    }
+
+    /**
+     * True if the current object or array has another element; consumes the separating comma.
+     * True, wenn das aktuelle Objekt oder Array ein weiteres Element hat; verbraucht das trennende Komma.
+     */
+    boolean hasNext() {
+        int c = peekNonWhitespace();
+        if (c == '}' || c == ']') {
+            return false;
+        }
+        if (afterValue) {
+            if (c != ',') {
+                throw error("expected ',' but found " + describe(c));
+            }
+            position++;
+            afterValue = false;
+            c = peekNonWhitespace();
+            if (c == '}' || c == ']') {
+                throw error("trailing comma");
+            }
+        }
+        return true;
+    }
+
+    String nextName() {
+        String name = nextString();
+        expect(':');
+        afterValue = false;
+        return name;
+    }
+
+    String nextString() {
+        expect('"');
+        int start = position;
+        boolean ascii = true;
+        while (position < end) {
+            byte b = data[position];
+            if (b == '"') {
+                String value = ascii
+                        ? new String(data, start, position - start, StandardCharsets.ISO_8859_1) // Fast path / Schneller Weg
+                        : new String(data, start, position - start, StandardCharsets.UTF_8);
+                position++;
+                afterValue = true;
+                return value;
+            }
+            if (b == '\\') {
+                return nextEscapedString(start);
+            }
+            if (b < 0) {
+                ascii = false;
+            } else if (b < 0x20) {
+                throw error("control character in string");
+            }
+            position++;
+        }
+        throw error("unterminated string");
+    }
+
+    long nextLong() {
+        peekNonWhitespace();
+        int start = position;
+        boolean negative = position < end && data[position] == '-';
+        if (negative) {
+            position++;
+        }
+        long value = 0;
+        int digits = 0;
+        while (position < end && data[position] >= '0' && data[position] <= '9') {
+            int digit = data[position++] - '0';
+            if (value < (Long.MIN_VALUE + digit) / 10) {
+                throw error("number out of range");
+            }
+            value = value * 10 - digit; // Accumulate negatively to reach Long.MIN_VALUE / Negativ aufsummieren, um Long.MIN_VALUE zu erreichen
+            digits++;
+        }
+        if (digits == 0 || (position < end && (data[position] == '.' || data[position] == 'e' || data[position] == 'E'))) {
+            position = start;
+            throw error("expected an integer");
+        }
+        if (!negative && value == Long.MIN_VALUE) {
+            throw error("number out of range");
+        }
+        afterValue = true;
+        return negative ? value : -value;
+    }
+
+    int nextInt() {
+        long value = nextLong();
+        if (value != (int) value) {
+            throw error("number out of int range");
+        }
+        return (int) value;
+    }
+
+    /**
+     * Skips the next value including nested objects and arrays.
+     * Überspringt den nächsten Wert einschließlich verschachtelter Objekte und Arrays.
+     */
+    void skipValue() {
+        int c = peekNonWhitespace();
+        switch (c) {
+            case '"' -> nextString();
+            case '{' -> {
+                beginObject();
+                while (hasNext()) {
+                    nextName();
+                    skipValue();
+                }
+                endObject();
+            }
+            case '[' -> {
+                beginArray();
+                while (hasNext()) {
+                    skipValue();
+                }
+                endArray();
+            }
+            case 't' -> literal("true");
+            case 'f' -> literal("false");
+            case 'n' -> literal("null");
+            default -> {
+                if (c != '-' && (c < '0' || c > '9')) {
+                    throw error("unexpected " + describe(c));
+                }
+                while (position < end && "+-.eE0123456789".indexOf(data[position]) >= 0) {
+                    position++;
+                }
+                afterValue = true;
+            }
+        }
+    }
+
+    /**
+     * Checks that only whitespace follows the parsed value.
+     * Prüft, dass nach dem gelesenen Wert nur noch Leerraum folgt.
+     */
+    void finish() {
+        int c = peekNonWhitespace();
+        if (c != -1) {
+            throw error("unexpected " + describe(c) + " after the value");
+        }
+    }
+
+    private String nextEscapedString(int start) {
+        StringBuilder text = new StringBuilder(position - start + 16);
+        int segment = start; // Start of the unescaped run not yet copied / Beginn des noch nicht kopierten unmaskierten Abschnitts
+        while (position < end) {
+            byte b = data[position];
+            if (b == '"' || b == '\\') {
+                text.append(new String(data, segment, position - segment, StandardCharsets.UTF_8));
+                if (b == '"') {
+                    position++;
+                    afterValue = true;
+                    return text.toString();
+                }
+                if (++position >= end) {
+                    break;
+                }
+                byte escaped = data[position++];
+                switch (escaped) {
+                    case '"', '\\', '/' -> text.append((char) escaped);
+                    case 'b' -> text.append('\b');
+                    case 'f' -> text.append('\f');
+                    case 'n' -> text.append('\n');
+                    case 'r' -> text.append('\r');
+                    case 't' -> text.append('\t');
+                    case 'u' -> {
+                        if (position + 4 > end) {
+                            throw error("incomplete unicode escape");
+                        }
+                        int code = 0;
+                        for (int i = 0; i < 4; i++) {
+                            int digit = Character.digit(data[position++], 16);
+                            if (digit < 0) {
+                                throw error("invalid unicode escape");
+                            }
+                            code = code << 4 | digit;
+                        }
+                        text.append((char) code);
+                    }
+                    default -> throw error("invalid escape \\" + (char) escaped);
+                }
+                segment = position;
+            } else if (b >= 0 && b < 0x20) {
+                throw error("control character in string");
+            } else {
+                position++;
+            }
+        }
+        throw error("unterminated string");
+    }
+
+    private void literal(String word) {
+        for (int i = 0; i < word.length(); i++) {
+            if (position >= end || data[position] != word.charAt(i)) {
+                throw error("expected " + word);
+            }
+            position++;
+        }
+        afterValue = true;
+    }
+
+    private void expect(char c) {
+        int found = peekNonWhitespace();
+        if (found != c) {
+            throw error("expected '" + c + "' but found " + describe(found));
+        }
+        position++;
+    }
+
+    private int peekNonWhitespace() {
+        while (position < end) {
+            byte b = data[position];
+            if (b != ' ' && b != '\n' && b != '\r' && b != '\t') {
+                return b & 0xFF;
+            }
+            position++;
+        }
+        return -1;
+    }
+
+    private static String describe(int c) {
+        return c == -1 ? "end of input" : "'" + (char) c + "'";
+    }
+
+    private IllegalArgumentException error(String message) {
+        return new IllegalArgumentException("Invalid JSON at offset " + position + ": " + message);
+    }
+}
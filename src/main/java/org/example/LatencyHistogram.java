@@ -0,0 +1,104 @@
+package org.example;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Histogram of durations in nanoseconds with log-linear buckets, in the style of HdrHistogram.
+ * Values below 64 ns get their own bucket; above that every power of two is split into 32 buckets,
+ * so a percentile is off by at most about 3% of its value. All buckets exist from the start,
+ * so {@link #record(long)} never allocates and never locks; it can be called from any thread.
+ * Histogramm von Dauern in Nanosekunden mit log-linearen Buckets, im Stil von HdrHistogram.
+ * Werte unter 64 ns haben eigene Buckets; darüber wird jede Zweierpotenz in 32 Buckets geteilt,
+ * sodass ein Perzentil höchstens etwa 3 % von seinem Wert abweicht. Alle Buckets existieren von Anfang an,
+ * daher erzeugt {@link #record(long)} nie Objekte und sperrt nie; es kann aus jedem Thread aufgerufen werden.
+ */
+public final class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 5; // 32 buckets per power of two / 32 Buckets pro Zweierpotenz
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int LINEAR_LIMIT = 2 * SUB_BUCKETS; // Values below get one bucket each / Werte darunter haben je einen Bucket
+    private static final int BUCKETS = LINEAR_LIMIT + (63 - SUB_BUCKET_BITS - 1) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * Adds one duration; negative values count as 0.
+     * Fügt eine Dauer hinzu; negative Werte zählen als 0.
+     */
+    public void record(long nanos) {
+        long value = Math.max(0, nanos);
+        counts.incrementAndGet(bucketOf(value));
+        count.increment();
+        sum.add(value);
+        if (value > max.get()) {
+            max.accumulateAndGet(value, Math::max);
+        }
+    }
+
+    public long count() {
+        return count.sum();
+    }
+
+    public long sumNanos() {
+        return sum.sum();
+    }
+
+    public long maxNanos() {
+        return max.get();
+    }
+
+    public double meanNanos() {
+        long n = count.sum();
+        return n == 0 ? 0 : (double) sum.sum() / n;
+    }
+
+    /**
+     * Returns the value below which the given fraction of the recorded durations lie, e.g. 0.99 for p99;
+     * 0 if nothing was recorded.
+     * Gibt den Wert zurück, unter dem der angegebene Anteil der aufgezeichneten Dauern liegt, z. B. 0.99 für p99;
+     * 0, wenn nichts aufgezeichnet wurde.
+     */
+    public long percentileNanos(double fraction) {
+        // The buckets are read one by one while others keep recording; the result is close enough for monitoring.
+        // Die Buckets werden einzeln gelesen, während andere weiter aufzeichnen; das Ergebnis ist für die Überwachung genau genug.
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            total += counts.get(i);
+        }
+        if (total == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(fraction * total));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts.get(i);
+            if (seen >= rank) {
+                return Math.min(highestValueIn(i), max.get());
+            }
+        }
+        return max.get();
+    }
+
+    static int bucketOf(long value) {
+        if (value < LINEAR_LIMIT) {
+            return (int) value;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS; // Keeps the top 6 bits / Behält die obersten 6 Bits
+        int subBucket = (int) (value >>> shift) - SUB_BUCKETS; // 0..31
+        return LINEAR_LIMIT + (shift - 1) * SUB_BUCKETS + subBucket;
+    }
+
+    static long highestValueIn(int bucket) {
+        if (bucket < LINEAR_LIMIT) {
+            return bucket;
+        }
+        int shift = (bucket - LINEAR_LIMIT) / SUB_BUCKETS + 1;
+        long subBucket = (bucket - LINEAR_LIMIT) % SUB_BUCKETS + SUB_BUCKETS;
+        return ((subBucket + 1) << shift) - 1;
+    }
+}
@@ -0,0 +1,208 @@
+package org.example;
+
+import org.json.simple.JSONObject;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.Objects;
+
+/**
+ * Immutable license of one device: serial number, validity window and enabled functions.
+ * The functions are a bit field over the ordinals of the catalog identified by its size and version hash.
+ * Unveränderliche Lizenz eines Geräts: Seriennummer, Gültigkeitszeitraum und aktivierte Funktionen.
+ * Die Funktionen sind ein Bitfeld über die Ordinalzahlen des Katalogs, der über Größe und Versions-Hash bestimmt ist.
+ */
+public final class Licence {
+
+    // JSON keys of the license file / JSON-Schlüssel der Lizenzdatei
+    public static final String KEY_SERIAL = "seriennummer";
+    public static final String KEY_START = "startDatum";
+    public static final String KEY_END = "endDatum";
+    public static final String KEY_FUNCTIONS = "funktionen";
+    public static final String KEY_FUNCTION_COUNT = "funktionenAnzahl";
+    public static final String KEY_CATALOG_VERSION = "katalogVersion";
+
+    private final String seriennummer; // Printer serial number / Druckerseriennummer
+    private final LocalDate startDatum; // License start date / Lizenzstartdatum
+    private final LocalDate endDatum; // License end date / Lizenzenddatum
+    private final FunctionSelection functions; // Enabled functions / Aktivierte Funktionen
+    private final int catalogSize; // Number of functions in the catalog / Anzahl der Funktionen im Katalog
+    private final String catalogVersion; // FunctionCatalog.versionHash() of that catalog / Versions-Hash dieses Katalogs
+
+    public Licence(String seriennummer, LocalDate startDatum, LocalDate endDatum,
+                   FunctionSelection functions, int catalogSize, String catalogVersion) {
+        this.seriennummer = Objects.requireNonNull(seriennummer, "seriennummer");
+        this.startDatum = Objects.requireNonNull(startDatum, "startDatum");
+        this.endDatum = Objects.requireNonNull(endDatum, "endDatum");
+        this.functions = functions.copy(); // Defensive copy, selections are mutable / Defensive Kopie, Auswahlen sind veränderlich
+        this.catalogSize = catalogSize;
+        this.catalogVersion = Objects.requireNonNull(catalogVersion, "catalogVersion");
+    }
+
+    public String getSeriennummer() {
+        return seriennummer;
+    }
+
+    public LocalDate getStartDatum() {
+        return startDatum;
+    }
+
+    public LocalDate getEndDatum() {
+        return endDatum;
+    }
+
+    /**
+     * Returns a copy of the enabled functions.
+     * Gibt eine Kopie der aktivierten Funktionen zurück.
+     */
+    public FunctionSelection getFunctions() {
+        return functions.copy();
+    }
+
+    /**
+     * Tests a single function without copying the bit field.
+     * Prüft eine einzelne Funktion, ohne das Bitfeld zu kopieren.
+     */
+    public boolean isFunctionEnabled(int ordinal) {
+        return functions.isSelected(ordinal);
+    }
+
+    public int getCatalogSize() {
+        return catalogSize;
+    }
+
+    public String getCatalogVersion() {
+        return catalogVersion;
+    }
+
+    /**
+     * True if the license is valid on the given day (start and end inclusive).
+     * True, wenn die Lizenz am angegebenen Tag gültig ist (Start und Ende inklusive).
+     */
+    public boolean isValidOn(LocalDate day) {
+        return !day.isBefore(startDatum) && !day.isAfter(endDatum);
+    }
+
+    /**
+     * Converts the license into the JSON text of a license file.
+     * Wandelt die Lizenz in den JSON-Text einer Lizenzdatei um.
+     */
+    @SuppressWarnings("unchecked")
+    public String toJSONString() {
+        JSONObject jsonObject = new JSONObject();
+        jsonObject.put(KEY_SERIAL, seriennummer);
+        jsonObject.put(KEY_START, startDatum.toString());
+        jsonObject.put(KEY_END, endDatum.toString());
+        jsonObject.put(KEY_FUNCTIONS, functions.toBase64()); // Enabled functions as bit field / Aktivierte Funktionen als Bitfeld
+        jsonObject.put(KEY_FUNCTION_COUNT, catalogSize);
+        jsonObject.put(KEY_CATALOG_VERSION, catalogVersion);
+        return jsonObject.toJSONString();
+    }
+
+    /**
+     * Reads a license from the JSON text written by {@link #toJSONString()}.
+     * Liest eine Lizenz aus dem von {@link #toJSONString()} geschriebenen JSON-Text.
+     *
+     * @throws IllegalArgumentException if the text is not a complete license / wenn der Text keine vollständige Lizenz ist
+     */
+    public static Licence fromJSONString(String json) {
+        byte[] utf8 = json.getBytes(StandardCharsets.UTF_8);
+        return fromJSON(utf8, 0, utf8.length);
+    }
+
+    /**
+     * Reads a license from UTF-8 JSON bytes with a streaming parser, without building a JSON object.
+     * Unknown keys are skipped, so files written by newer versions can still be read.
+     * Liest eine Lizenz aus UTF-8-JSON-Bytes mit einem Streaming-Parser, ohne ein JSON-Objekt aufzubauen.
+     * Unbekannte Schlüssel werden übersprungen, damit auch von neueren Versionen geschriebene Dateien lesbar bleiben.
+     *
+     * @throws IllegalArgumentException if the bytes are not a complete license / wenn die Bytes keine vollständige Lizenz sind
+     */
+    public static Licence fromJSON(byte[] utf8, int offset, int length) {
+        String serial = null;
+        String start = null;
+        String end = null;
+        String functions = null;
+        int functionCount = -1;
+        String catalogVersion = null;
+
+        JsonPullParser parser = new JsonPullParser(utf8, offset, length);
+        parser.beginObject();
+        while (parser.hasNext()) {
+            switch (parser.nextName()) {
+                case KEY_SERIAL -> serial = parser.nextString();
+                case KEY_START -> start = parser.nextString();
+                case KEY_END -> end = parser.nextString();
+                case KEY_FUNCTIONS -> functions = parser.nextString();
+                case KEY_FUNCTION_COUNT -> functionCount = parser.nextInt();
+                case KEY_CATALOG_VERSION -> catalogVersion = parser.nextString();
+                default -> parser.skipValue();
+            }
+        }
+        parser.endObject();
+        parser.finish();
+
+        if (serial == null || start == null || end == null || functions == null || functionCount < 0 || catalogVersion == null) {
+            throw new IllegalArgumentException("Invalid license JSON: missing one of " + KEY_SERIAL + ", " + KEY_START + ", "
+                    + KEY_END + ", " + KEY_FUNCTIONS + ", " + KEY_FUNCTION_COUNT + ", " + KEY_CATALOG_VERSION);
+        }
+        try {
+            return new Licence(serial, LocalDate.parse(start), LocalDate.parse(end),
+                    FunctionSelection.fromBase64(functions), functionCount, catalogVersion);
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("Invalid license JSON: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Reads only the catalog version from UTF-8 license JSON, skipping the other values.
+     * Liest nur die Katalogversion aus UTF-8-Lizenz-JSON und überspringt die anderen Werte.
+     *
+     * @throws IllegalArgumentException if the bytes are not a license object with a catalog version / wenn die Bytes kein Lizenzobjekt mit Katalogversion sind
+     */
+    static String catalogVersionOf(byte[] utf8, int offset, int length) {
+        JsonPullParser parser = new JsonPullParser(utf8, offset, length);
+        parser.beginObject();
+        while (parser.hasNext()) {
+            if (parser.nextName().equals(KEY_CATALOG_VERSION)) {
+                return parser.nextString();
+            }
+            parser.skipValue();
+        }
+        throw new IllegalArgumentException("Invalid license JSON: missing " + KEY_CATALOG_VERSION);
+    }
+
+    /**
+     * File name of the license file of one device, e.g. for batch generation.
+     * Dateiname der Lizenzdatei eines Geräts, z. B. für die Stapelerzeugung.
+     */
+    public static String fileNameFor(String seriennummer) {
+        return seriennummer + ".licence.file";
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof Licence)) {
+            return false;
+        }
+        Licence other = (Licence) o;
+        return catalogSize == other.catalogSize && seriennummer.equals(other.seriennummer)
+                && startDatum.equals(other.startDatum) && endDatum.equals(other.endDatum)
+                && functions.equals(other.functions) && catalogVersion.equals(other.catalogVersion);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(seriennummer, startDatum, endDatum, functions, catalogSize, catalogVersion);
+    }
+
+    @Override
+    public String toString() {
+        return "Licence{seriennummer='" + seriennummer + "', start=" + startDatum + ", end=" + endDatum
+                + ", functions=" + functions.count() + "}";
+    }
+}
@@ -0,0 +1,637 @@
+package org.example;
+
+import org.json.simple.JSONArray;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.zip.CRC32C;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipException;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Bulk export and import of licenses as one compressed archive, e.g. for shipping a shift's licenses to the service department.
+ * Both directions stream: the export reads the store record by record and compresses blocks of about 1 MiB in parallel,
+ * with only a few blocks per core in flight; the import decompresses, checks and saves the entries in batches.
+ * The archive also carries the ids of every catalog version its licenses were issued for, so another installation
+ * can read their function bits even if it never had that version of the CSV.
+ * Massenexport und -import von Lizenzen als ein komprimiertes Archiv, z. B. um die Lizenzen einer Schicht an den Service zu schicken.
+ * Beide Richtungen arbeiten als Strom: Der Export liest den Speicher Datensatz für Datensatz und komprimiert Blöcke von
+ * etwa 1 MiB parallel, mit nur wenigen Blöcken pro Kern gleichzeitig; der Import entpackt, prüft und speichert die Einträge in Paketen.
+ * Das Archiv enthält außerdem die Ids jeder Katalogversion, für die seine Lizenzen ausgestellt wurden, damit eine
+ * andere Installation deren Funktionsbits lesen kann, auch wenn sie diese Version der CSV nie hatte.
+ *
+ * <pre>
+ * archive  := gzipMember+                       each block is a complete gzip stream / jeder Block ist ein vollständiger gzip-Strom
+ * content  := header entry* catalog* manifest   all members unpacked and concatenated / alle Mitglieder entpackt und aneinandergehängt
+ * header   := "#licence-archive version=2 created=" instant "\n"
+ * entry    := crc32c(8 hex) " " licenceJson "\n"
+ * catalog  := "#catalog " versionHash " " idsJsonArray "\n"     since version 2 / seit Version 2
+ * manifest := "#manifest entries=" count " crc32c=" crc32c(8 hex, over all entry and catalog lines) "\n"
+ * </pre>
+ *
+ * Concatenated gzip members are a valid gzip file again, so {@code zcat archive.gz} shows the content.
+ * Aneinandergehängte gzip-Mitglieder sind wieder eine gültige gzip-Datei, daher zeigt {@code zcat archive.gz} den Inhalt.
+ */
+public final class LicenceArchive {
+
+    private static final Metrics.Timer EXPORT_TIME = Metrics.global().timer("licence_archive_export", "Exporting all licenses of the store to a compressed archive");
+    private static final Metrics.Timer IMPORT_TIME = Metrics.global().timer("licence_archive_import", "Importing a compressed license archive into the store");
+    private static final Metrics.Counter REJECTED = Metrics.global().counter("licence_archive_rejected", "License archive imports and verifications that failed");
+
+    static final int FORMAT_VERSION = 2;
+    private static final int OLDEST_FORMAT_VERSION = 1; // Without catalog lines / Ohne Katalogzeilen
+    private static final String HEADER = "#licence-archive";
+    private static final String CATALOG = "#catalog";
+    private static final String MANIFEST = "#manifest";
+    private static final int BLOCK_SIZE = 1 << 20; // Uncompressed bytes per gzip member / Unkomprimierte Bytes pro gzip-Mitglied
+    private static final int BLOCKS_PER_THREAD = 2; // Blocks in flight per compression thread / Gleichzeitige Blöcke pro Komprimierungs-Thread
+    private static final int IMPORT_BATCH = 4096; // Licenses per store append when importing / Lizenzen pro Anhängen beim Import
+    private static final int MAX_LINE = 1 << 24; // Larger than any license record of the store / Größer als jeder Lizenzdatensatz des Speichers
+    private static final int CHECKSUM_LENGTH = 8;
+    private static final byte[] HEX = "0123456789abcdef".getBytes(UTF_8);
+
+    private static final AtomicInteger threadNumber = new AtomicInteger();
+
+    private LicenceArchive() {
+    }
+
+    /**
+     * Exports the newest license of every device in the store, using one compression thread per core.
+     * Exportiert die neueste Lizenz jedes Geräts im Speicher, mit einem Komprimierungs-Thread pro Kern.
+     *
+     * @see #export(LicenceStore, CatalogVersions, Path, int)
+     */
+    public static Report export(LicenceStore store, CatalogVersions versions, Path target) throws IOException {
+        return export(store, versions, target, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Exports the newest license of every device in the store to an archive.
+     * The archive is written to a temporary file, synced and then renamed over the target, so a failed export
+     * never leaves a half-written archive behind.
+     * Exportiert die neueste Lizenz jedes Geräts im Speicher in ein Archiv.
+     * Das Archiv wird in eine temporäre Datei geschrieben, synchronisiert und dann über das Ziel umbenannt, sodass ein
+     * fehlgeschlagener Export nie ein halb geschriebenes Archiv hinterlässt.
+     *
+     * @param versions Catalog versions of the licenses, written into the archive; unknown versions are left out
+     *                 / Katalogversionen der Lizenzen, die ins Archiv geschrieben werden; unbekannte Versionen fehlen
+     * @param threads  Number of compression threads / Anzahl der Komprimierungs-Threads
+     * @throws IOException if the store cannot be read or the archive cannot be written / wenn der Speicher nicht gelesen oder das Archiv nicht geschrieben werden kann
+     */
+    public static Report export(LicenceStore store, CatalogVersions versions, Path target, int threads) throws IOException {
+        long started = System.nanoTime();
+        Path file = target.toAbsolutePath();
+        Files.createDirectories(file.getParent());
+        Path temp = Files.createTempFile(file.getParent(), file.getFileName() + ".", ".tmp");
+        try {
+            Report report;
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE);
+                 Writer writer = new Writer(Channels.newOutputStream(channel), threads, versions)) {
+                store.forEachLatest(writer::add);
+                report = writer.finish();
+                channel.force(true);
+            }
+            try {
+                Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+            EXPORT_TIME.recordSince(started);
+            return report;
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * Verifies an archive and then imports it into the store in batches that share one sync each.
+     * The archive is read twice, once to check every entry and the manifest like {@link #verify(Path)} and once to save
+     * the entries, so a damaged or truncated archive is rejected before anything is saved and memory stays bounded.
+     * Only a store that cannot be written stops the import halfway; licenses of earlier batches then stay saved.
+     * The catalog versions in the archive are kept in the given versions before the first license is saved, unless
+     * they are already known there.
+     * Prüft ein Archiv und importiert es danach in Paketen, die sich je eine Synchronisierung teilen, in den Speicher.
+     * Das Archiv wird zweimal gelesen, einmal, um wie {@link #verify(Path)} jeden Eintrag und das Manifest zu prüfen, und
+     * einmal, um die Einträge zu speichern, daher wird ein beschädigtes oder abgeschnittenes Archiv abgelehnt, bevor etwas
+     * gespeichert wird, und der Speicherbedarf bleibt begrenzt. Nur ein nicht beschreibbarer Speicher beendet den Import
+     * mittendrin; Lizenzen früherer Pakete bleiben dann gespeichert.
+     * Die Katalogversionen im Archiv werden vor dem ersten Speichern einer Lizenz in den angegebenen Versionen
+     * aufbewahrt, sofern sie dort noch nicht bekannt sind.
+     *
+     * @param versions Receives the catalog versions of the archive / Erhält die Katalogversionen des Archivs
+     * @param onSaved Called with each saved batch, e.g. to update caches / Wird mit jedem gespeicherten Paket aufgerufen, z. B. um Caches zu aktualisieren
+     * @throws IOException if the archive is damaged or the store cannot be written / wenn das Archiv beschädigt ist oder der Speicher nicht geschrieben werden kann
+     */
+    public static Report importInto(Path archive, LicenceStore store, CatalogVersions versions, Consumer<List<Licence>> onSaved) throws IOException {
+        long started = System.nanoTime();
+        List<FunctionCatalog> catalogs = new ArrayList<>();
+        read(archive, licence -> {
+        }, catalogs::add); // Nothing is saved from a damaged archive / Aus einem beschädigten Archiv wird nichts gespeichert
+        for (FunctionCatalog catalog : catalogs) {
+            String version = catalog.versionHash();
+            if (versions.get(version) == null) { // A known version keeps its names / Eine bekannte Version behält ihre Namen
+                versions.add(catalog);
+            }
+            versions.persist(version);
+        }
+        List<Licence> batch = new ArrayList<>(IMPORT_BATCH);
+        Report report = read(archive, licence -> {
+            batch.add(licence);
+            if (batch.size() == IMPORT_BATCH) {
+                save(batch, store, onSaved);
+            }
+        }, catalog -> {
+        });
+        save(batch, store, onSaved);
+        IMPORT_TIME.recordSince(started);
+        return report;
+    }
+
+    /**
+     * Reads a whole archive and checks the entry checksums, the license JSON and the manifest, without saving anything.
+     * Liest ein ganzes Archiv und prüft die Eintragsprüfsummen, das Lizenz-JSON und das Manifest, ohne etwas zu speichern.
+     *
+     * @throws IOException if the archive is damaged, incomplete or unreadable / wenn das Archiv beschädigt, unvollständig oder nicht lesbar ist
+     */
+    public static Report verify(Path archive) throws IOException {
+        return read(archive, licence -> {
+        }, catalog -> {
+        });
+    }
+
+    private static void save(List<Licence> batch, LicenceStore store, Consumer<List<Licence>> onSaved) throws IOException {
+        if (batch.isEmpty()) {
+            return;
+        }
+        store.putAll(batch);
+        onSaved.accept(List.copyOf(batch));
+        batch.clear();
+    }
+
+    private interface EntryHandler {
+        void entry(Licence licence) throws IOException;
+    }
+
+    /**
+     * Decompresses the archive line by line and passes every checked entry and catalog version to the handlers.
+     * Entpackt das Archiv Zeile für Zeile und übergibt jeden geprüften Eintrag und jede Katalogversion an die Handler.
+     */
+    private static Report read(Path archive, EntryHandler handler, Consumer<FunctionCatalog> onCatalog) throws IOException {
+        try (InputStream in = new GZIPInputStream(Files.newInputStream(archive), 1 << 16)) {
+            LineReader lines = new LineReader(in);
+            String header = lines.next() < 0 ? "" : lines.text();
+            if (!header.startsWith(HEADER + " version=")) {
+                throw new IOException("Not a license archive: " + archive);
+            }
+            if (!isSupported(header)) {
+                throw new IOException("Unsupported license archive version in " + archive + ": " + header);
+            }
+
+            CRC32C entryCrc = new CRC32C();
+            CRC32C archiveCrc = new CRC32C();
+            long entries = 0;
+            String manifest = null;
+            int length;
+            while ((length = lines.next()) >= 0) {
+                byte[] buffer = lines.buffer();
+                int start = lines.start();
+                if (length > CATALOG.length() && buffer[start] == '#' && lines.text().startsWith(CATALOG + " ")) {
+                    archiveCrc.update(buffer, start, length + 1);
+                    onCatalog.accept(parseCatalog(lines.text(), archive));
+                    continue;
+                }
+                if (length > 0 && buffer[start] == '#') {
+                    manifest = lines.text();
+                    if (lines.next() >= 0) {
+                        throw new IOException("Unexpected data after the manifest of " + archive);
+                    }
+                    break;
+                }
+                long entry = entries + 1;
+                long checksum = length > CHECKSUM_LENGTH && buffer[start + CHECKSUM_LENGTH] == ' ' ? parseHex(buffer, start) : -1;
+                entryCrc.reset();
+                entryCrc.update(buffer, start + CHECKSUM_LENGTH + 1, Math.max(0, length - CHECKSUM_LENGTH - 1));
+                if (checksum < 0 || entryCrc.getValue() != checksum) {
+                    throw new IOException("Corrupt entry " + entry + " in " + archive + ": checksum mismatch");
+                }
+                archiveCrc.update(buffer, start, length + 1); // Including the line break / Einschließlich Zeilenumbruch
+                Licence licence;
+                try {
+                    licence = Licence.fromJSON(buffer, start + CHECKSUM_LENGTH + 1, length - CHECKSUM_LENGTH - 1);
+                } catch (IllegalArgumentException e) {
+                    throw new IOException("Unreadable entry " + entry + " in " + archive + ": " + e.getMessage(), e);
+                }
+                handler.entry(licence);
+                entries = entry;
+            }
+
+            if (manifest == null) {
+                throw new IOException("License archive is incomplete, the manifest is missing: " + archive);
+            }
+            if (!manifest.equals(manifestLine(entries, (int) archiveCrc.getValue()))) {
+                throw new IOException("Manifest of " + archive + " does not match its entries: '" + manifest + "', found " + entries + " entries");
+            }
+            return new Report(entries, lines.totalBytes(), Files.size(archive));
+        } catch (EOFException | ZipException e) {
+            REJECTED.increment();
+            throw new IOException("License archive " + archive + " is damaged or truncated: " + e.getMessage(), e);
+        } catch (IOException e) {
+            REJECTED.increment();
+            throw e;
+        }
+    }
+
+    private static boolean isSupported(String header) {
+        for (int version = OLDEST_FORMAT_VERSION; version <= FORMAT_VERSION; version++) {
+            if ((" " + header + " ").contains(" version=" + version + " ")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String catalogLine(FunctionCatalog catalog) {
+        List<String> ids = new ArrayList<>(catalog.size());
+        for (int ordinal = 0; ordinal < catalog.size(); ordinal++) {
+            ids.add(catalog.id(ordinal));
+        }
+        return CATALOG + " " + catalog.versionHash() + " " + JSONArray.toJSONString(ids);
+    }
+
+    /**
+     * Reads a catalog version from its line; only the ids are kept, which is all that is needed to read license bits.
+     * Liest eine Katalogversion aus ihrer Zeile; nur die Ids werden behalten, mehr braucht es zum Lesen von Lizenzbits nicht.
+     */
+    private static FunctionCatalog parseCatalog(String line, Path archive) throws IOException {
+        int idsStart = line.indexOf(' ', CATALOG.length() + 1);
+        if (idsStart < 0) {
+            throw new IOException("Unreadable catalog version in " + archive + ": " + line);
+        }
+        String version = line.substring(CATALOG.length() + 1, idsStart);
+        FunctionCatalog.Builder builder = new FunctionCatalog.Builder();
+        try {
+            JsonPullParser parser = new JsonPullParser(line.substring(idsStart + 1).getBytes(UTF_8));
+            parser.beginArray();
+            while (parser.hasNext()) {
+                builder.add(parser.nextString(), "", "");
+            }
+            parser.endArray();
+            parser.finish();
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Unreadable catalog version " + version + " in " + archive + ": " + e.getMessage(), e);
+        }
+        FunctionCatalog catalog = builder.build();
+        if (!catalog.versionHash().equals(version)) {
+            throw new IOException("Catalog version " + version + " in " + archive + " does not match its ids");
+        }
+        return catalog;
+    }
+
+    private static String manifestLine(long entries, int checksum) {
+        return MANIFEST + " entries=" + entries + " crc32c=" + String.format("%08x", checksum);
+    }
+
+    /**
+     * Parses the 8 lower-case hex digits of an entry checksum, or returns -1 if they are not.
+     * Liest die 8 Hexziffern (Kleinbuchstaben) einer Eintragsprüfsumme oder gibt -1 zurück, wenn es keine sind.
+     */
+    private static long parseHex(byte[] buffer, int start) {
+        long value = 0;
+        for (int i = start; i < start + CHECKSUM_LENGTH; i++) {
+            int digit = Character.digit(buffer[i], 16);
+            if (digit < 0 || Character.isUpperCase(buffer[i])) {
+                return -1;
+            }
+            value = (value << 4) | digit;
+        }
+        return value;
+    }
+
+    /**
+     * Streams licenses into an archive. Entries are collected into blocks; every full block is compressed on a
+     * compression thread while the next one is filled, and the compressed blocks are written in order.
+     * At most two blocks per thread are in flight, so memory stays bounded however many licenses are added.
+     * The catalog versions of the added licenses are collected and written before the manifest.
+     * Schreibt Lizenzen als Strom in ein Archiv. Einträge werden in Blöcken gesammelt; jeder volle Block wird in einem
+     * Komprimierungs-Thread komprimiert, während der nächste gefüllt wird, und die komprimierten Blöcke werden der Reihe nach geschrieben.
+     * Höchstens zwei Blöcke pro Thread sind gleichzeitig in Arbeit, daher bleibt der Speicherbedarf unabhängig von der Anzahl der Lizenzen begrenzt.
+     * Die Katalogversionen der hinzugefügten Lizenzen werden gesammelt und vor dem Manifest geschrieben.
+     */
+    public static final class Writer implements Closeable {
+        private final OutputStream out;
+        private final CatalogVersions versions;
+        private final Set<String> usedVersions = new LinkedHashSet<>();
+        private final ExecutorService compressors;
+        private final ArrayDeque<Future<byte[]>> pending = new ArrayDeque<>();
+        private final int maxPending;
+        private final CRC32C entryCrc = new CRC32C();
+        private final CRC32C archiveCrc = new CRC32C(); // Over all entry lines / Über alle Eintragszeilen
+        private byte[] block = new byte[BLOCK_SIZE];
+        private int blockLength;
+        private long entries;
+        private long bytes;
+        private long compressedBytes;
+        private boolean finished;
+
+        /**
+         * @param out      Receives the compressed archive; it is not closed by the writer / Empfängt das komprimierte Archiv; wird vom Writer nicht geschlossen
+         * @param threads  Number of compression threads / Anzahl der Komprimierungs-Threads
+         * @param versions Catalog versions of the licenses / Katalogversionen der Lizenzen
+         */
+        public Writer(OutputStream out, int threads, CatalogVersions versions) {
+            if (threads < 1) {
+                throw new IllegalArgumentException("threads must be at least 1");
+            }
+            this.out = out;
+            this.versions = versions;
+            this.maxPending = BLOCKS_PER_THREAD * threads;
+            this.compressors = Executors.newFixedThreadPool(threads, runnable -> {
+                Thread thread = new Thread(runnable, "licence-archive-compressor-" + threadNumber.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+            byte[] header = (HEADER + " version=" + FORMAT_VERSION + " created=" + Instant.now() + "\n").getBytes(UTF_8);
+            System.arraycopy(header, 0, block, 0, header.length);
+            blockLength = header.length;
+        }
+
+        public void add(Licence licence) throws IOException {
+            byte[] json = licence.toJSONString().getBytes(UTF_8);
+            addEntry(json, 0, json.length);
+            usedVersions.add(licence.getCatalogVersion());
+        }
+
+        /**
+         * Adds one license as UTF-8 JSON; the bytes are copied, so the array may be reused afterwards.
+         * Fügt eine Lizenz als UTF-8-JSON hinzu; die Bytes werden kopiert, das Array darf danach wiederverwendet werden.
+         *
+         * @throws IllegalArgumentException if the JSON is not a single license line / wenn das JSON keine einzeilige Lizenz ist
+         */
+        public void add(byte[] json, int offset, int length) throws IOException {
+            String version = Licence.catalogVersionOf(json, offset, length);
+            addEntry(json, offset, length);
+            usedVersions.add(version);
+        }
+
+        private void addEntry(byte[] json, int offset, int length) throws IOException {
+            if (finished) {
+                throw new IllegalStateException("Archive is already finished");
+            }
+            for (int i = offset; i < offset + length; i++) {
+                if (json[i] == '\n') {
+                    throw new IllegalArgumentException("License JSON must be a single line");
+                }
+            }
+            int lineLength = CHECKSUM_LENGTH + 1 + length + 1;
+            if (lineLength > MAX_LINE) {
+                throw new IllegalArgumentException("License too large for an archive: " + length + " bytes");
+            }
+            makeRoom(lineLength);
+            entryCrc.reset();
+            entryCrc.update(json, offset, length);
+            int checksum = (int) entryCrc.getValue();
+            int start = blockLength;
+            for (int i = 0; i < CHECKSUM_LENGTH; i++) {
+                block[start + i] = HEX[(checksum >>> (28 - 4 * i)) & 0xF];
+            }
+            block[start + CHECKSUM_LENGTH] = ' ';
+            System.arraycopy(json, offset, block, start + CHECKSUM_LENGTH + 1, length);
+            block[start + lineLength - 1] = '\n';
+            archiveCrc.update(block, start, lineLength);
+            blockLength += lineLength;
+            entries++;
+        }
+
+        /**
+         * Appends the catalog versions and the manifest, writes the remaining blocks and flushes the stream.
+         * Hängt die Katalogversionen und das Manifest an, schreibt die restlichen Blöcke und leert den Strom.
+         */
+        public Report finish() throws IOException {
+            if (finished) {
+                throw new IllegalStateException("Archive is already finished");
+            }
+            for (String version : usedVersions) {
+                FunctionCatalog catalog = versions.get(version);
+                if (catalog == null) {
+                    System.err.println("Catalog version " + version + " is not known; its licenses in the archive can only be read where it is");
+                    continue;
+                }
+                byte[] line = (catalogLine(catalog) + "\n").getBytes(UTF_8);
+                if (line.length > MAX_LINE) {
+                    throw new IOException("Catalog version " + version + " is too large for an archive: " + line.length + " bytes");
+                }
+                makeRoom(line.length);
+                System.arraycopy(line, 0, block, blockLength, line.length);
+                archiveCrc.update(block, blockLength, line.length);
+                blockLength += line.length;
+            }
+            byte[] manifest = (manifestLine(entries, (int) archiveCrc.getValue()) + "\n").getBytes(UTF_8);
+            if (blockLength + manifest.length > block.length) {
+                submitBlock();
+            }
+            System.arraycopy(manifest, 0, block, blockLength, manifest.length);
+            blockLength += manifest.length;
+            submitBlock();
+            while (!pending.isEmpty()) {
+                writeFirst();
+            }
+            out.flush();
+            finished = true;
+            return new Report(entries, bytes, compressedBytes);
+        }
+
+        /**
+         * Stops the compression threads; an archive that was not finished is incomplete and fails verification.
+         * Beendet die Komprimierungs-Threads; ein nicht abgeschlossenes Archiv ist unvollständig und besteht die Prüfung nicht.
+         */
+        @Override
+        public void close() {
+            compressors.shutdownNow();
+            pending.clear();
+        }
+
+        /**
+         * Starts a new block if the current one has no room for a line of the given length.
+         * Beginnt einen neuen Block, wenn der aktuelle keinen Platz für eine Zeile der angegebenen Länge hat.
+         */
+        private void makeRoom(int lineLength) throws IOException {
+            if (blockLength + lineLength > block.length) {
+                submitBlock();
+                if (lineLength > block.length) {
+                    block = new byte[lineLength];
+                }
+            }
+        }
+
+        private void submitBlock() throws IOException {
+            byte[] data = block;
+            int length = blockLength;
+            pending.addLast(compressors.submit(() -> gzip(data, length)));
+            bytes += length;
+            block = new byte[BLOCK_SIZE];
+            blockLength = 0;
+            // Write finished blocks right away and wait once the window is full
+            // Fertige Blöcke sofort schreiben und warten, sobald das Fenster voll ist
+            while (!pending.isEmpty() && (pending.size() >= maxPending || pending.peekFirst().isDone())) {
+                writeFirst();
+            }
+        }
+
+        private void writeFirst() throws IOException {
+            byte[] compressed;
+            try {
+                compressed = pending.removeFirst().get();
+            } catch (ExecutionException e) {
+                throw new IOException("Compressing an archive block failed", e.getCause());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while compressing the archive");
+            }
+            out.write(compressed);
+            compressedBytes += compressed.length;
+        }
+
+        private static byte[] gzip(byte[] data, int length) throws IOException {
+            ByteArrayOutputStream buffer = new ByteArrayOutputStream(length / 4 + 64);
+            try (GZIPOutputStream gzip = new GZIPOutputStream(buffer, 1 << 16)) {
+                gzip.write(data, 0, length);
+            }
+            return buffer.toByteArray();
+        }
+    }
+
+    /**
+     * Splits a stream into lines without decoding it, reusing one buffer that grows to the longest line.
+     * Teilt einen Strom in Zeilen, ohne ihn zu dekodieren, mit einem wiederverwendeten Puffer, der bis zur längsten Zeile wächst.
+     */
+    private static final class LineReader {
+        private final InputStream in;
+        private byte[] buffer = new byte[1 << 16];
+        private int start; // Start of the current line / Anfang der aktuellen Zeile
+        private int length; // Length of the current line without the line break / Länge der aktuellen Zeile ohne Zeilenumbruch
+        private int consumed; // Start of the next line / Anfang der nächsten Zeile
+        private int end; // End of the buffered bytes / Ende der gepufferten Bytes
+        private long totalBytes;
+
+        LineReader(InputStream in) {
+            this.in = in;
+        }
+
+        /**
+         * Advances to the next line and returns its length, or -1 at the end of the stream.
+         * Geht zur nächsten Zeile und gibt ihre Länge zurück oder -1 am Ende des Stroms.
+         */
+        int next() throws IOException {
+            start = consumed;
+            length = 0;
+            int scan = start;
+            while (true) {
+                for (; scan < end; scan++) {
+                    if (buffer[scan] == '\n') {
+                        length = scan - start;
+                        consumed = scan + 1;
+                        return length;
+                    }
+                }
+                if (start > 0) { // Move the partial line to the front / Angefangene Zeile nach vorne schieben
+                    System.arraycopy(buffer, start, buffer, 0, end - start);
+                    scan -= start;
+                    end -= start;
+                    consumed = start = 0;
+                }
+                if (end == buffer.length) {
+                    if (buffer.length >= MAX_LINE) {
+                        throw new IOException("License archive line longer than " + MAX_LINE + " bytes");
+                    }
+                    buffer = Arrays.copyOf(buffer, buffer.length * 2);
+                }
+                int read = in.read(buffer, end, buffer.length - end);
+                if (read < 0) {
+                    if (end > start) {
+                        throw new EOFException("License archive ends in the middle of a line");
+                    }
+                    return -1;
+                }
+                end += read;
+                totalBytes += read;
+            }
+        }
+
+        byte[] buffer() {
+            return buffer;
+        }
+
+        int start() {
+            return start;
+        }
+
+        String text() {
+            return new String(buffer, start, length, UTF_8);
+        }
+
+        long totalBytes() {
+            return totalBytes;
+        }
+    }
+
+    /**
+     * Result of an export, import or verification.
+     * Ergebnis eines Exports, Imports oder einer Prüfung.
+     */
+    public static final class Report {
+        private final long entries; // Number of licenses / Anzahl der Lizenzen
+        private final long bytes; // Uncompressed size / Unkomprimierte Größe
+        private final long compressedBytes; // Archive size / Archivgröße
+
+        public Report(long entries, long bytes, long compressedBytes) {
+            this.entries = entries;
+            this.bytes = bytes;
+            this.compressedBytes = compressedBytes;
+        }
+
+        public long getEntries() {
+            return entries;
+        }
+
+        public long getBytes() {
+            return bytes;
+        }
+
+        public long getCompressedBytes() {
+            return compressedBytes;
+        }
+
+        @Override
+        public String toString() {
+            return entries + " licenses, " + bytes + " bytes, " + compressedBytes + " bytes compressed";
+        }
+    }
+}
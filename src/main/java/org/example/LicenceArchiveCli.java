@@ -0,0 +1,94 @@
+package org.example;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Command line entry point for exporting, importing and verifying license archives; runs without JavaFX.
+ * Kommandozeilen-Einstiegspunkt zum Exportieren, Importieren und Prüfen von Lizenzarchiven; läuft ohne JavaFX.
+ *
+ * <pre>
+ * java -cp ... org.example.LicenceArchiveCli export --store licences.log --archive shift.licences.gz [--threads 8]
+ * java -cp ... org.example.LicenceArchiveCli import --store licences.log --archive shift.licences.gz
+ * java -cp ... org.example.LicenceArchiveCli verify --archive shift.licences.gz
+ * </pre>
+ *
+ * See {@link LicenceArchive} for the archive format.
+ * Zum Archivformat siehe {@link LicenceArchive}.
+ */
+public class LicenceArchiveCli {
+
+    private static final String USAGE = "Usage: LicenceArchiveCli export|import|verify [--store <licences.log>] --archive <file> [--threads <n>]";
+
+    public static void main(String[] args) {
+        try {
+            System.exit(run(args));
+        } catch (IllegalArgumentException e) {
+            System.err.println("Error: " + e.getMessage());
+            System.err.println(USAGE);
+            System.exit(2);
+        } catch (IOException e) {
+            System.err.println("Error: " + e.getMessage());
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Runs a command and returns the process exit code (0 = done; a damaged archive ends with an IOException).
+     * Führt einen Befehl aus und gibt den Exit-Code zurück (0 = erledigt; ein beschädigtes Archiv endet mit einer IOException).
+     */
+    static int run(String[] args) throws IOException {
+        if (args.length == 0) {
+            throw new IllegalArgumentException("a command is required");
+        }
+        String command = args[0];
+        Path storeFile = null;
+        Path archive = null;
+        int threads = Runtime.getRuntime().availableProcessors();
+        for (int i = 1; i < args.length; i++) {
+            String value = i + 1 < args.length ? args[i + 1] : null;
+            switch (args[i]) {
+                case "--store" -> storeFile = Paths.get(required(args[i], value));
+                case "--archive" -> archive = Paths.get(required(args[i], value));
+                case "--threads" -> threads = Integer.parseInt(required(args[i], value));
+                default -> throw new IllegalArgumentException("unknown option " + args[i]);
+            }
+            i++;
+        }
+        if (archive == null) {
+            throw new IllegalArgumentException("--archive is required");
+        }
+
+        long start = System.nanoTime();
+        LicenceArchive.Report report;
+        switch (command) {
+            case "verify" -> report = LicenceArchive.verify(archive);
+            case "export", "import" -> {
+                if (storeFile == null) {
+                    throw new IllegalArgumentException("--store is required for " + command);
+                }
+                // The catalog versions the application keeps next to the store / Die Katalogversionen, die die Anwendung neben dem Speicher aufbewahrt
+                CatalogVersions versions = new CatalogVersions(CatalogVersions.directoryFor(storeFile));
+                try (LicenceStore store = new LicenceStore(storeFile)) {
+                    report = command.equals("export")
+                            ? LicenceArchive.export(store, versions, archive, threads)
+                            : LicenceArchive.importInto(archive, store, versions, batch -> {
+                            });
+                }
+            }
+            default -> throw new IllegalArgumentException("unknown command " + command);
+        }
+        long millis = Math.max(1, (System.nanoTime() - start) / 1_000_000);
+        System.out.println(Character.toUpperCase(command.charAt(0)) + command.substring(1) + " of " + archive + ": "
+                + report + " in " + millis + " ms");
+        return 0;
+    }
+
+    private static String required(String option, String value) {
+        if (value == null) {
+            throw new IllegalArgumentException(option + " needs a value");
+        }
+        return value;
+    }
+}
@@ -0,0 +1,271 @@
+package org.example;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+import java.util.function.Function;
+import java.util.zip.CRC32C;
+
+/**
+ * Answers "is function X enabled for serial number Y on day D?" from parsed license files.
+ * Licenses are parsed once and kept in a bounded cache keyed by serial number. A cached license is checked against
+ * its file at most once per revalidation interval: an unchanged modification time and size keep it, otherwise the
+ * content hash decides whether the file is parsed again. Missing and foreign files are cached the same way.
+ * When the cache is full, expired licenses and missing files are evicted first, then the least recently used ones.
+ * A check that hits the cache does not lock, allocate or touch the file system.
+ * Beantwortet "Ist Funktion X für Seriennummer Y am Tag D aktiviert?" anhand gelesener Lizenzdateien.
+ * Lizenzen werden einmal gelesen und in einem begrenzten Cache nach Seriennummer gehalten. Eine zwischengespeicherte
+ * Lizenz wird höchstens einmal pro Prüfintervall mit ihrer Datei abgeglichen: Unveränderte Änderungszeit und Größe
+ * behalten sie, sonst entscheidet der Inhalts-Hash, ob die Datei neu gelesen wird. Fehlende und fremde Dateien werden
+ * ebenso zwischengespeichert. Ist der Cache voll, werden zuerst abgelaufene Lizenzen und fehlende Dateien verdrängt,
+ * danach die am längsten nicht verwendeten.
+ * Eine Prüfung, die den Cache trifft, sperrt nicht, erzeugt keine Objekte und greift nicht auf das Dateisystem zu.
+ */
+public class LicenceCache {
+
+    // Every check is counted; only every 16th is timed, so the hit path stays at a few nanoseconds.
+    // Jede Prüfung wird gezählt; nur jede 16. wird gemessen, damit der Trefferpfad bei wenigen Nanosekunden bleibt.
+    private static final Metrics.Counter CHECKS = Metrics.global().counter("licence_checks", "License checks answered by the license cache");
+    private static final Metrics.Timer CHECK_TIME = Metrics.global().timer("licence_check", "License check latency (every 16th check)");
+    private static final Metrics.Counter FILE_READS = Metrics.global().counter("licence_file_reads", "License files read because they were not cached or had changed");
+    private static final int CHECK_SAMPLE_MASK = 15;
+
+    private final Function<String, Path> fileResolver;
+    private final Function<String, FunctionCatalog> catalogs;
+    private final int maxEntries;
+    private final long revalidateNanos;
+    private final ConcurrentHashMap<String, Entry> entries = new ConcurrentHashMap<>();
+    private final Object evictionLock = new Object();
+
+    /**
+     * @param fileResolver     License file of a serial number / Lizenzdatei einer Seriennummer
+     * @param catalogs         Catalog of a version hash, or null if unknown; function ids are resolved against the catalog
+     *                         a license was issued for / Katalog zu einem Versions-Hash oder null, wenn unbekannt; Funktions-Ids
+     *                         werden gegen den Katalog aufgelöst, für den eine Lizenz ausgestellt wurde
+     * @param maxEntries       Maximum number of cached serial numbers / Maximale Anzahl zwischengespeicherter Seriennummern
+     * @param revalidateMillis How long a cached license is trusted before its file is checked again
+     *                         / Wie lange einer zwischengespeicherten Lizenz vertraut wird, bevor ihre Datei erneut geprüft wird
+     */
+    public LicenceCache(Function<String, Path> fileResolver, Function<String, FunctionCatalog> catalogs, int maxEntries, long revalidateMillis) {
+        if (maxEntries < 1) {
+            throw new IllegalArgumentException("maxEntries must be at least 1");
+        }
+        this.fileResolver = fileResolver;
+        this.catalogs = catalogs;
+        this.maxEntries = maxEntries;
+        this.revalidateNanos = TimeUnit.MILLISECONDS.toNanos(revalidateMillis);
+    }
+
+    /**
+     * True if the device has a license that is valid on the given day, was issued for a known catalog version
+     * and enables the function.
+     * True, wenn das Gerät eine am angegebenen Tag gültige Lizenz für eine bekannte Katalogversion hat,
+     * die die Funktion aktiviert.
+     */
+    public boolean isFunctionEnabled(String seriennummer, String functionId, LocalDate day) {
+        CHECKS.increment();
+        if ((ThreadLocalRandom.current().nextInt() & CHECK_SAMPLE_MASK) != 0) {
+            return check(seriennummer, functionId, day);
+        }
+        long started = System.nanoTime();
+        boolean enabled = check(seriennummer, functionId, day);
+        CHECK_TIME.recordSince(started);
+        return enabled;
+    }
+
+    private boolean check(String seriennummer, String functionId, LocalDate day) {
+        Entry entry = entry(seriennummer);
+        if (entry.licence == null) {
+            return false;
+        }
+        long epochDay = day.toEpochDay();
+        if (epochDay < entry.startDay || epochDay > entry.endDay) {
+            return false;
+        }
+        FunctionCatalog issued = entry.catalog;
+        if (issued == null) {
+            issued = catalogs.apply(entry.catalogVersion);
+            if (issued == null) {
+                return false; // Bits refer to an unknown catalog / Bits beziehen sich auf einen unbekannten Katalog
+            }
+            entry.catalog = issued;
+        }
+        int ordinal = issued.ordinalOf(functionId);
+        if (ordinal < 0) {
+            return false;
+        }
+        int word = ordinal >>> 6;
+        return word < entry.words.length && (entry.words[word] & (1L << ordinal)) != 0;
+    }
+
+    /**
+     * Returns the license of a device, or null if there is no readable license file.
+     * Gibt die Lizenz eines Geräts zurück oder null, wenn es keine lesbare Lizenzdatei gibt.
+     */
+    public Licence get(String seriennummer) {
+        return entry(seriennummer).licence;
+    }
+
+    /**
+     * Drops a cached license, e.g. after the application wrote its file.
+     * Verwirft eine zwischengespeicherte Lizenz, z. B. nachdem die Anwendung ihre Datei geschrieben hat.
+     */
+    public void invalidate(String seriennummer) {
+        entries.remove(seriennummer);
+    }
+
+    public void invalidateAll() {
+        entries.clear();
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    private Entry entry(String seriennummer) {
+        Entry entry = entries.get(seriennummer);
+        long now = System.nanoTime();
+        if (entry == null) {
+            entry = load(seriennummer, null, now);
+            Entry raced = entries.putIfAbsent(seriennummer, entry);
+            if (raced != null) {
+                entry = raced;
+            } else if (entries.size() > maxEntries) {
+                evict();
+            }
+        } else {
+            long checkedAt = entry.checkedAt;
+            if (now - checkedAt > revalidateNanos && entry.claimRevalidation(checkedAt, now)) {
+                // Only the thread that won the claim checks the file; the others keep using the cached entry.
+                // Nur der Thread, der den Anspruch gewonnen hat, prüft die Datei; die anderen verwenden weiter den Eintrag im Cache.
+                Entry fresh = load(seriennummer, entry, now);
+                if (fresh != entry) {
+                    entries.replace(seriennummer, entry, fresh);
+                    entry = fresh;
+                }
+            }
+        }
+        if (now - entry.lastAccess > 1_000_000) { // Coarse LRU stamp, written at most once per millisecond / Grober LRU-Stempel, höchstens einmal pro Millisekunde geschrieben
+            entry.lastAccess = now;
+        }
+        return entry;
+    }
+
+    /**
+     * Reads the license file of a serial number, reusing the previous entry if the file did not change.
+     * This also holds for a file that is missing, unreadable or holds another device's license (such as the shared
+     * license file), so revalidating an unknown serial number costs one attribute read, and errors are logged once.
+     * Liest die Lizenzdatei einer Seriennummer und verwendet den vorherigen Eintrag weiter, wenn sich die Datei nicht geändert hat.
+     * Das gilt auch für eine Datei, die fehlt, nicht lesbar ist oder die Lizenz eines anderen Geräts enthält (etwa die
+     * gemeinsame Lizenzdatei), daher kostet die erneute Prüfung einer unbekannten Seriennummer einen Attributzugriff,
+     * und Fehler werden einmal protokolliert.
+     */
+    private Entry load(String seriennummer, Entry previous, long now) {
+        Path file = fileResolver.apply(seriennummer);
+        long modified = -1;
+        long size = -1;
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+            modified = attributes.lastModifiedTime().toMillis();
+            size = attributes.size();
+            if (previous != null && previous.modified == modified && previous.size == size) {
+                return previous;
+            }
+            FILE_READS.increment();
+            byte[] content = Files.readAllBytes(file);
+            CRC32C crc = new CRC32C();
+            crc.update(content);
+            long hash = crc.getValue() << 32 | content.length;
+            if (previous != null && previous.size >= 0 && previous.hash == hash) {
+                return new Entry(previous.licence, modified, size, hash, now); // Touched but not changed / Berührt, aber nicht geändert
+            }
+            Licence licence = Licence.fromJSON(content, 0, content.length);
+            if (!licence.getSeriennummer().equals(seriennummer)) {
+                return new Entry(null, modified, size, hash, now); // Another device's license, not an error / Lizenz eines anderen Geräts, kein Fehler
+            }
+            return new Entry(licence, modified, size, hash, now);
+        } catch (NoSuchFileException e) {
+            return previous != null && previous.licence == null && previous.size < 0 ? previous : Entry.missing(-1, -1, now);
+        } catch (IOException | IllegalArgumentException e) {
+            System.err.println("Error reading license file " + file + ": " + e.getMessage());
+            return Entry.missing(modified, size, now); // Not read again until the file changes / Nicht erneut gelesen, bis sich die Datei ändert
+        }
+    }
+
+    /**
+     * Shrinks the cache to 90% of its capacity: missing and expired licenses first, then least recently used.
+     * Verkleinert den Cache auf 90 % seiner Kapazität: fehlende und abgelaufene Lizenzen zuerst, dann die am längsten nicht verwendeten.
+     */
+    private void evict() {
+        synchronized (evictionLock) {
+            int excess = entries.size() - maxEntries * 9 / 10;
+            if (excess <= 0) {
+                return;
+            }
+            long today = LocalDate.now().toEpochDay();
+            List<Map.Entry<String, Entry>> candidates = new ArrayList<>(entries.entrySet());
+            candidates.sort(Comparator
+                    .comparing((Map.Entry<String, Entry> e) -> !e.getValue().isUselessOn(today))
+                    .thenComparingLong(e -> e.getValue().lastAccess));
+            for (int i = 0; i < excess && i < candidates.size(); i++) {
+                entries.remove(candidates.get(i).getKey(), candidates.get(i).getValue());
+            }
+        }
+    }
+
+    /**
+     * Cached state of one license file. The validity window and bit words are unpacked for fast checks.
+     * Zwischengespeicherter Zustand einer Lizenzdatei. Gültigkeitszeitraum und Bitwörter sind für schnelle Prüfungen entpackt.
+     */
+    private static final class Entry {
+        private static final AtomicLongFieldUpdater<Entry> CHECKED_AT = AtomicLongFieldUpdater.newUpdater(Entry.class, "checkedAt");
+
+        final Licence licence; // null if there is no readable file / null, wenn es keine lesbare Datei gibt
+        final long startDay;
+        final long endDay;
+        final long[] words;
+        final String catalogVersion;
+        volatile FunctionCatalog catalog; // Of catalogVersion, resolved on the first check / Zu catalogVersion, bei der ersten Prüfung aufgelöst
+        final long modified;
+        final long size;
+        final long hash;
+        volatile long checkedAt;
+        volatile long lastAccess;
+
+        Entry(Licence licence, long modified, long size, long hash, long now) {
+            this.licence = licence;
+            this.startDay = licence == null ? Long.MAX_VALUE : licence.getStartDatum().toEpochDay();
+            this.endDay = licence == null ? Long.MIN_VALUE : licence.getEndDatum().toEpochDay();
+            this.words = licence == null ? new long[0] : licence.getFunctions().toWords();
+            this.catalogVersion = licence == null ? "" : licence.getCatalogVersion();
+            this.modified = modified;
+            this.size = size;
+            this.hash = hash;
+            this.checkedAt = now;
+            this.lastAccess = now;
+        }
+
+        static Entry missing(long modified, long size, long now) {
+            return new Entry(null, modified, size, 0, now);
+        }
+
+        boolean claimRevalidation(long seen, long now) {
+            return CHECKED_AT.compareAndSet(this, seen, now);
+        }
+
+        boolean isUselessOn(long epochDay) {
+            return licence == null || endDay < epochDay;
+        }
+    }
+}
@@ -0,0 +1,376 @@
+package org.example;
+
+import java.io.Closeable;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reports when licenses become valid, when their end comes close and when they expire, without scanning all licenses.
+ * Every license has one entry that waits for its next event in a hierarchical timing wheel with one tick per day:
+ * level 0 has a slot for each of the next days of the current 64-day block, level 1 a slot for each 64-day block of
+ * the current 4096-day block, and so on. When a block begins, the entries of its slot move down one level; an entry
+ * moves at most three times before it fires, so scheduling, cancelling and firing cost O(1) per license.
+ * The wheel is kept only in memory and is rebuilt from the stored licenses on start.
+ * Meldet, wann Lizenzen gültig werden, wann ihr Ende näher rückt und wann sie ablaufen, ohne alle Lizenzen zu durchsuchen.
+ * Jede Lizenz hat einen Eintrag, der in einem hierarchischen Zeitrad mit einem Takt pro Tag auf ihr nächstes Ereignis
+ * wartet: Ebene 0 hat einen Slot für jeden der nächsten Tage des aktuellen 64-Tage-Blocks, Ebene 1 einen Slot für jeden
+ * 64-Tage-Block des aktuellen 4096-Tage-Blocks und so weiter. Beginnt ein Block, rücken die Einträge seines Slots eine
+ * Ebene nach unten; ein Eintrag rückt höchstens dreimal, bevor er auslöst, daher kosten Planen, Abbrechen und Auslösen
+ * O(1) pro Lizenz. Das Rad liegt nur im Speicher und wird beim Start aus den gespeicherten Lizenzen neu aufgebaut.
+ */
+public class LicenceExpiryScheduler implements Closeable {
+
+    private static final int SLOT_BITS = 6;
+    private static final int SLOTS = 1 << SLOT_BITS;
+    private static final int LEVELS = 4; // 64^4 days reach beyond the year 40000 / 64^4 Tage reichen über das Jahr 40000 hinaus
+    private static final long LAST_DAY = (1L << (SLOT_BITS * LEVELS)) - 1; // Later events never fire / Spätere Ereignisse lösen nie aus
+
+    /**
+     * What happened to a license.
+     * Was mit einer Lizenz geschehen ist.
+     */
+    public enum EventType {
+        ACTIVATED, // The start date was reached / Das Startdatum wurde erreicht
+        WARNING, // The license expires within the warning period / Die Lizenz läuft innerhalb der Warnfrist ab
+        EXPIRED // The day after the end date was reached / Der Tag nach dem Enddatum wurde erreicht
+    }
+
+    /**
+     * Receives the events of one day, or of one scheduling call, together. Called without holding the scheduler's lock.
+     * Erhält die Ereignisse eines Tages oder eines Planungsaufrufs gemeinsam. Wird ohne die Sperre des Planers aufgerufen.
+     */
+    public interface Listener {
+        void onEvents(List<Event> events);
+    }
+
+    private final int warningDays;
+    private final Entry[] slots = new Entry[LEVELS * SLOTS]; // Heads of doubly linked lists / Köpfe doppelt verketteter Listen
+    private final Map<String, Entry> entries = new HashMap<>(); // Waiting or warned entry per serial number / Wartender oder gewarnter Eintrag je Seriennummer
+    private final TreeSet<Entry> warned = new TreeSet<>(Comparator.comparingLong((Entry entry) -> entry.expiryDay).thenComparing(entry -> entry.seriennummer));
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+    private ScheduledExecutorService clock; // Started by start() / Durch start() gestartet
+    private long today; // Guarded by this / Geschützt durch this
+
+    /**
+     * @param today       Day up to which all events count as past / Tag, bis zu dem alle Ereignisse als vergangen gelten
+     * @param warningDays Days before the expiry on which the warning fires / Tage vor dem Ablauf, an denen die Warnung ausgelöst wird
+     */
+    public LicenceExpiryScheduler(LocalDate today, int warningDays) {
+        if (warningDays < 0) {
+            throw new IllegalArgumentException("warningDays must not be negative");
+        }
+        this.today = today.toEpochDay();
+        this.warningDays = warningDays;
+    }
+
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Advances to the current day once after every midnight, on a daemon thread.
+     * Rückt nach jeder Mitternacht einmal auf den aktuellen Tag vor, in einem Daemon-Thread.
+     */
+    public synchronized void start() {
+        if (clock != null) {
+            return;
+        }
+        clock = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "licence-expiry");
+            thread.setDaemon(true);
+            return thread;
+        });
+        clock.execute(this::tick);
+    }
+
+    @Override
+    public synchronized void close() {
+        if (clock != null) {
+            clock.shutdownNow();
+            clock = null;
+        }
+    }
+
+    private void tick() {
+        try {
+            advanceTo(LocalDate.now());
+        } catch (RuntimeException e) {
+            System.err.println("Error processing license expiry: " + e);
+        }
+        ZonedDateTime now = ZonedDateTime.now();
+        ZonedDateTime nextDay = now.toLocalDate().plusDays(1).atStartOfDay(now.getZone());
+        synchronized (this) {
+            if (clock != null) {
+                clock.schedule(this::tick, Duration.between(now, nextDay).toMillis() + 1000, TimeUnit.MILLISECONDS);
+            }
+        }
+    }
+
+    /**
+     * Schedules the events of a license, replacing those of an earlier license for the same device.
+     * Events on or before the current day are not reported, except the warning of a license that expires within
+     * the warning period: it is reported at once, so it is not lost after a restart.
+     * Plant die Ereignisse einer Lizenz und ersetzt die einer früheren Lizenz desselben Geräts.
+     * Ereignisse am aktuellen Tag oder davor werden nicht gemeldet, außer der Warnung einer Lizenz, die innerhalb der
+     * Warnfrist abläuft: Sie wird sofort gemeldet, damit sie nach einem Neustart nicht verloren geht.
+     */
+    public void schedule(Licence licence) {
+        scheduleAll(List.of(licence));
+    }
+
+    /**
+     * Schedules several licenses, e.g. all stored ones after a start; see {@link #schedule(Licence)}.
+     * Plant mehrere Lizenzen, z. B. alle gespeicherten nach einem Start; siehe {@link #schedule(Licence)}.
+     */
+    public void scheduleAll(Collection<Licence> licences) {
+        List<Event> events = new ArrayList<>();
+        synchronized (this) {
+            for (Licence licence : licences) {
+                Entry entry = entries.remove(licence.getSeriennummer());
+                if (entry != null) {
+                    cancel(entry);
+                }
+                entry = new Entry(licence.getSeriennummer(), licence.getStartDatum().toEpochDay(), licence.getEndDatum().toEpochDay() + 1);
+                entry.next = entry.activationDay > today ? EventType.ACTIVATED
+                        : entry.warningDay() > today ? EventType.WARNING
+                        : EventType.EXPIRED;
+                if (entry.next == EventType.EXPIRED && entry.expiryDay > today) {
+                    entry.next = EventType.WARNING; // Already within the warning period / Bereits innerhalb der Warnfrist
+                    fire(entry, events);
+                } else if (entry.day() > today) {
+                    entries.put(entry.seriennummer, entry);
+                    insert(entry);
+                }
+            }
+        }
+        notifyListeners(events);
+    }
+
+    /**
+     * Fires all events up to and including the given day, one day after the other.
+     * Löst alle Ereignisse bis einschließlich des angegebenen Tages aus, einen Tag nach dem anderen.
+     */
+    public void advanceTo(LocalDate day) {
+        List<Event> events = new ArrayList<>();
+        synchronized (this) {
+            long target = day.toEpochDay();
+            while (today < target) {
+                today++;
+                for (int level = LEVELS - 1; level > 0; level--) {
+                    if ((today & ((1L << (SLOT_BITS * level)) - 1)) == 0) {
+                        // A new block of this level begins: move its entries down / Ein neuer Block dieser Ebene beginnt: seine Einträge nach unten verschieben
+                        for (Entry entry = detach(level, slotOf(today, level)); entry != null; ) {
+                            Entry following = entry.following;
+                            insert(entry);
+                            entry = following;
+                        }
+                    }
+                }
+                for (Entry entry = detach(0, slotOf(today, 0)); entry != null; ) {
+                    Entry following = entry.following;
+                    fire(entry, events);
+                    entry = following;
+                }
+            }
+        }
+        notifyListeners(events);
+    }
+
+    /**
+     * Licenses whose warning fired and that have not expired yet, by expiry day.
+     * Lizenzen, deren Warnung ausgelöst wurde und die noch nicht abgelaufen sind, nach Ablauftag sortiert.
+     */
+    public synchronized List<Event> upcomingExpirations() {
+        List<Event> upcoming = new ArrayList<>(warned.size());
+        for (Entry entry : warned) {
+            upcoming.add(new Event(EventType.WARNING, entry.seriennummer, entry.warningDay(), entry.expiryDay));
+        }
+        return upcoming;
+    }
+
+    /**
+     * Number of licenses waiting for an event.
+     * Anzahl der Lizenzen, die auf ein Ereignis warten.
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * Reports the entry's due events and puts it back into the wheel for its next one.
+     * Meldet die fälligen Ereignisse des Eintrags und setzt ihn für das nächste wieder in das Rad.
+     */
+    private void fire(Entry entry, List<Event> events) {
+        while (entry.next != null && entry.day() <= today) {
+            events.add(new Event(entry.next, entry.seriennummer, today, entry.expiryDay));
+            switch (entry.next) {
+                case ACTIVATED -> entry.next = EventType.WARNING;
+                case WARNING -> {
+                    warned.add(entry);
+                    entry.next = EventType.EXPIRED;
+                }
+                case EXPIRED -> {
+                    warned.remove(entry);
+                    entries.remove(entry.seriennummer);
+                    entry.next = null;
+                }
+            }
+        }
+        if (entry.next != null) {
+            entries.put(entry.seriennummer, entry);
+            insert(entry);
+        }
+    }
+
+    private void insert(Entry entry) {
+        long day = entry.day();
+        if (day > LAST_DAY) {
+            return; // Never due; only kept for cancelling / Nie fällig; nur für das Abbrechen gemerkt
+        }
+        int level = 0;
+        while (level < LEVELS - 1 && day >>> (SLOT_BITS * (level + 1)) != today >>> (SLOT_BITS * (level + 1))) {
+            level++;
+        }
+        int slot = level * SLOTS + slotOf(day, level);
+        entry.slot = slot;
+        entry.preceding = null;
+        entry.following = slots[slot];
+        if (slots[slot] != null) {
+            slots[slot].preceding = entry;
+        }
+        slots[slot] = entry;
+    }
+
+    private void cancel(Entry entry) {
+        warned.remove(entry);
+        if (entry.slot < 0) {
+            return;
+        }
+        if (entry.preceding != null) {
+            entry.preceding.following = entry.following;
+        } else {
+            slots[entry.slot] = entry.following;
+        }
+        if (entry.following != null) {
+            entry.following.preceding = entry.preceding;
+        }
+        entry.slot = -1;
+    }
+
+    private Entry detach(int level, int slot) {
+        Entry first = slots[level * SLOTS + slot];
+        slots[level * SLOTS + slot] = null;
+        for (Entry entry = first; entry != null; entry = entry.following) {
+            entry.slot = -1;
+        }
+        return first;
+    }
+
+    private static int slotOf(long day, int level) {
+        return (int) (day >>> (SLOT_BITS * level)) & (SLOTS - 1);
+    }
+
+    private void notifyListeners(List<Event> events) {
+        if (events.isEmpty()) {
+            return;
+        }
+        for (Listener listener : listeners) {
+            try {
+                listener.onEvents(events);
+            } catch (RuntimeException e) {
+                System.err.println("Error in license expiry listener: " + e);
+            }
+        }
+    }
+
+    /**
+     * An event of one license.
+     * Ein Ereignis einer Lizenz.
+     */
+    public static final class Event {
+        private final EventType type;
+        private final String seriennummer;
+        private final long day;
+        private final long expiryDay;
+
+        private Event(EventType type, String seriennummer, long day, long expiryDay) {
+            this.type = type;
+            this.seriennummer = seriennummer;
+            this.day = day;
+            this.expiryDay = expiryDay;
+        }
+
+        public EventType getType() {
+            return type;
+        }
+
+        public String getSeriennummer() {
+            return seriennummer;
+        }
+
+        /**
+         * The day the event is due.
+         * Der Tag, an dem das Ereignis fällig ist.
+         */
+        public LocalDate getDay() {
+            return LocalDate.ofEpochDay(day);
+        }
+
+        /**
+         * The license's end date, i.e. the last day it is valid.
+         * Das Enddatum der Lizenz, also der letzte Tag, an dem sie gültig ist.
+         */
+        public LocalDate getEndDatum() {
+            return LocalDate.ofEpochDay(expiryDay - 1);
+        }
+
+        @Override
+        public String toString() {
+            return type + " " + seriennummer + " on " + getDay() + " (ends " + getEndDatum() + ")";
+        }
+    }
+
+    private final class Entry {
+        final String seriennummer;
+        final long activationDay;
+        final long expiryDay; // Day after the end date / Tag nach dem Enddatum
+        EventType next; // Next event to fire, null when done / Nächstes auszulösendes Ereignis, null wenn fertig
+        int slot = -1; // Wheel slot, -1 if not in the wheel / Slot im Rad, -1 wenn nicht im Rad
+        Entry preceding;
+        Entry following;
+
+        Entry(String seriennummer, long activationDay, long expiryDay) {
+            this.seriennummer = seriennummer;
+            this.activationDay = activationDay;
+            this.expiryDay = expiryDay;
+        }
+
+        /**
+         * The warning fires warningDays before the expiry, but not before the activation.
+         * Die Warnung wird warningDays vor dem Ablauf ausgelöst, aber nicht vor der Aktivierung.
+         */
+        long warningDay() {
+            return Math.min(expiryDay, Math.max(activationDay, expiryDay - warningDays));
+        }
+
+        long day() {
+            return switch (next) {
+                case ACTIVATED -> activationDay;
+                case WARNING -> warningDay();
+                case EXPIRED -> expiryDay;
+            };
+        }
+    }
+}
@@ -0,0 +1,412 @@
+package org.example;
+
+import java.time.LocalDate;
+import java.time.Period;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.Function;
+
+/**
+ * License state of a whole fleet of devices, kept in columns instead of one {@link Licence} object per device.
+ * Each device is addressed by its ordinal (position in insertion order). Serial numbers are kept in {@link PackedStrings}
+ * with an open-addressing table from serial to ordinal, start and end dates are epoch days in int arrays, and the enabled
+ * functions are one bit field of {@code words} 64-bit words per device, laid out one device after the other.
+ * Bulk operations split the devices into ranges and run them in parallel on the common fork-join pool; each range only
+ * writes its own devices, so no locks are needed. Changed devices are remembered until {@link #clearChanged()}, so only
+ * they have to be saved. Not safe for use by several threads at once.
+ * Lizenzzustand einer ganzen Geräteflotte, in Spalten statt in einem {@link Licence}-Objekt pro Gerät gehalten.
+ * Jedes Gerät wird über seine Ordinalzahl (Position in Einfügereihenfolge) adressiert. Seriennummern liegen in
+ * {@link PackedStrings} mit einer Hashtabelle mit offener Adressierung von Seriennummer zu Ordinalzahl, Start- und
+ * Enddatum sind Epochentage in int-Arrays, und die aktivierten Funktionen sind ein Bitfeld aus {@code words}
+ * 64-Bit-Wörtern pro Gerät, Gerät hinter Gerät abgelegt.
+ * Massenoperationen teilen die Geräte in Bereiche und führen diese parallel im gemeinsamen Fork-Join-Pool aus; jeder
+ * Bereich schreibt nur seine eigenen Geräte, daher sind keine Sperren nötig. Geänderte Geräte werden bis
+ * {@link #clearChanged()} gemerkt, sodass nur sie gespeichert werden müssen. Nicht für gleichzeitige Verwendung durch
+ * mehrere Threads geeignet.
+ */
+public class LicenceFleet {
+
+    private static final Metrics.Timer BULK_TIME = Metrics.global().timer("fleet_bulk", "Running a bulk operation over all devices of the fleet");
+
+    private static final int RANGE_DEVICES = 16_384; // Devices per parallel range, a multiple of 64 / Geräte pro parallelem Bereich, ein Vielfaches von 64
+
+    private final FunctionCatalog catalog;
+    private final int words; // Words of the function bit field per device / Wörter des Funktionsbitfelds pro Gerät
+    private final PackedStrings serials = new PackedStrings(); // Slot = ordinal / Slot = Ordinalzahl
+    private int[] index = new int[1024]; // Open addressing: ordinal + 1, 0 = free / Offene Adressierung: Ordinalzahl + 1, 0 = frei
+    private int[] startDays = new int[512];
+    private int[] endDays = new int[512];
+    private long[] functionWords; // Device-major bit fields / Bitfelder Gerät für Gerät
+    private long[] changed = new long[8]; // Bit per device changed since clearChanged() / Bit pro seit clearChanged() geändertem Gerät
+    private int size;
+    private final List<String> skipped = new ArrayList<>(); // Serials left out by of() / Von of() ausgelassene Seriennummern
+
+    /**
+     * @param catalog Catalog the function bits refer to / Katalog, auf den sich die Funktionsbits beziehen
+     */
+    public LicenceFleet(FunctionCatalog catalog) {
+        this.catalog = catalog;
+        this.words = Math.max(1, (catalog.size() + 63) >>> 6);
+        this.functionWords = new long[wordOffset(startDays.length)];
+    }
+
+    /**
+     * Builds a fleet from stored licenses, e.g. {@link LicenceStore#latest()}. The functions of licenses issued for
+     * another catalog version are moved to this catalog by id, like a hot reload does; functions that no longer exist
+     * are dropped. Such a license is saved for this catalog only once a bulk operation changes it. Licenses whose
+     * version is not known are left out and listed in {@link #getSkipped()}.
+     * Baut eine Flotte aus gespeicherten Lizenzen, z. B. {@link LicenceStore#latest()}. Die Funktionen von Lizenzen für
+     * eine andere Katalogversion werden wie beim Neuladen über die Id auf diesen Katalog verschoben; nicht mehr
+     * vorhandene Funktionen entfallen. Eine solche Lizenz wird erst für diesen Katalog gespeichert, wenn eine
+     * Massenoperation sie ändert. Lizenzen, deren Version nicht bekannt ist, werden ausgelassen und in
+     * {@link #getSkipped()} aufgeführt.
+     *
+     * @param versions Returns the catalog of a version, or null if it is unknown, e.g. {@link CatalogVersions#get(String)}
+     *                 / Gibt den Katalog einer Version zurück oder null, wenn sie unbekannt ist, z. B. {@link CatalogVersions#get(String)}
+     */
+    public static LicenceFleet of(FunctionCatalog catalog, Iterable<Licence> licences, Function<String, FunctionCatalog> versions) {
+        LicenceFleet fleet = new LicenceFleet(catalog);
+        Map<String, CatalogDiff> diffs = new HashMap<>(); // One per other version / Einer pro anderer Version
+        for (Licence licence : licences) {
+            String version = licence.getCatalogVersion();
+            if (version.equals(catalog.versionHash())) {
+                fleet.put(licence);
+                continue;
+            }
+            CatalogDiff diff = diffs.get(version);
+            if (diff == null) {
+                FunctionCatalog issued = versions.apply(version);
+                if (issued == null) {
+                    fleet.skipped.add(licence.getSeriennummer());
+                    continue;
+                }
+                diff = CatalogDiff.compute(issued, catalog);
+                diffs.put(version, diff);
+            }
+            FunctionSelection functions = licence.getFunctions();
+            functions.remap(diff);
+            fleet.put(new Licence(licence.getSeriennummer(), licence.getStartDatum(), licence.getEndDatum(),
+                    functions, catalog.size(), catalog.versionHash()));
+        }
+        if (!fleet.skipped.isEmpty()) {
+            System.err.println(fleet.skipped.size() + " licenses were issued for an unknown catalog version and are not part of the fleet");
+        }
+        fleet.clearChanged();
+        return fleet;
+    }
+
+    public FunctionCatalog getCatalog() {
+        return catalog;
+    }
+
+    /**
+     * Serial numbers of the stored licenses that {@link #of} left out, because their catalog version is not known.
+     * Seriennummern der gespeicherten Lizenzen, die {@link #of} ausgelassen hat, weil ihre Katalogversion nicht bekannt ist.
+     */
+    public List<String> getSkipped() {
+        return Collections.unmodifiableList(skipped);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the ordinal of the device with the given serial number, or -1 if it is not in the fleet.
+     * Gibt die Ordinalzahl des Geräts mit der angegebenen Seriennummer zurück, oder -1, wenn es nicht zur Flotte gehört.
+     */
+    public int ordinalOf(String seriennummer) {
+        int mask = index.length - 1;
+        for (int i = FunctionCatalog.mix(seriennummer.hashCode()) & mask; ; i = (i + 1) & mask) {
+            int entry = index[i];
+            if (entry == 0) {
+                return -1;
+            }
+            if (serials.contentEquals(entry - 1, seriennummer)) {
+                return entry - 1;
+            }
+        }
+    }
+
+    /**
+     * Adds the license of a device or replaces it, and returns the device's ordinal.
+     * Fügt die Lizenz eines Geräts hinzu oder ersetzt sie und gibt die Ordinalzahl des Geräts zurück.
+     *
+     * @throws IllegalArgumentException if the license was issued for another catalog version
+     *                                  / wenn die Lizenz für eine andere Katalogversion ausgestellt wurde
+     */
+    public int put(Licence licence) {
+        if (!licence.getCatalogVersion().equals(catalog.versionHash())) {
+            throw new IllegalArgumentException("License " + licence.getSeriennummer() + " was issued for catalog "
+                    + licence.getCatalogVersion() + ", not " + catalog.versionHash());
+        }
+        int device = ordinalOf(licence.getSeriennummer());
+        if (device < 0) {
+            device = append(licence.getSeriennummer());
+        }
+        startDays[device] = (int) licence.getStartDatum().toEpochDay();
+        endDays[device] = (int) licence.getEndDatum().toEpochDay();
+        long[] bits = licence.getFunctions().toWords();
+        int base = wordOffset(device);
+        Arrays.fill(functionWords, base, base + words, 0);
+        System.arraycopy(bits, 0, functionWords, base, Math.min(bits.length, words));
+        markChanged(device);
+        return device;
+    }
+
+    public String seriennummer(int device) {
+        return serials.get(checkDevice(device));
+    }
+
+    public LocalDate startDatum(int device) {
+        return LocalDate.ofEpochDay(startDays[checkDevice(device)]);
+    }
+
+    public LocalDate endDatum(int device) {
+        return LocalDate.ofEpochDay(endDays[checkDevice(device)]);
+    }
+
+    public boolean isFunctionEnabled(int device, int function) {
+        checkDevice(device);
+        return function >= 0 && function < catalog.size()
+                && (functionWords[device * words + (function >>> 6)] & (1L << function)) != 0;
+    }
+
+    /**
+     * Creates the {@link Licence} of a device, e.g. to save it.
+     * Erzeugt die {@link Licence} eines Geräts, z. B. um sie zu speichern.
+     */
+    public Licence licence(int device) {
+        checkDevice(device);
+        int base = wordOffset(device);
+        FunctionSelection functions = FunctionSelection.fromWords(Arrays.copyOfRange(functionWords, base, base + words));
+        return new Licence(serials.get(device), LocalDate.ofEpochDay(startDays[device]), LocalDate.ofEpochDay(endDays[device]),
+                functions, catalog.size(), catalog.versionHash());
+    }
+
+    /**
+     * Enables or disables a function on all devices whose serial number starts with the given prefix.
+     * Aktiviert oder deaktiviert eine Funktion auf allen Geräten, deren Seriennummer mit dem angegebenen Präfix beginnt.
+     *
+     * @param serialPrefix Case-sensitive, "" for all devices / Mit Beachtung der Groß-/Kleinschreibung, "" für alle Geräte
+     * @return Number of devices that changed / Anzahl der geänderten Geräte
+     */
+    public int setFunction(String serialPrefix, int function, boolean enabled) {
+        Objects.checkIndex(function, catalog.size());
+        int word = function >>> 6;
+        long bit = 1L << function;
+        return (int) runInParallel(1, (from, to, result) -> {
+            for (int device = from; device < to; device++) {
+                int position = device * words + word;
+                long before = functionWords[position];
+                long after = enabled ? before | bit : before & ~bit;
+                if (after != before && serials.startsWith(device, serialPrefix)) {
+                    functionWords[position] = after;
+                    markChanged(device);
+                    result[0]++;
+                }
+            }
+        })[0];
+    }
+
+    /**
+     * Moves the end date of all licenses that end between from and to (inclusive) by the given period.
+     * Verschiebt das Enddatum aller Lizenzen, die zwischen from und to (inklusive) enden, um den angegebenen Zeitraum.
+     *
+     * @return Number of extended licenses / Anzahl der verlängerten Lizenzen
+     */
+    public int extendExpiring(LocalDate from, LocalDate to, Period extension) {
+        int first = (int) from.toEpochDay();
+        int last = (int) to.toEpochDay();
+        boolean daysOnly = extension.getYears() == 0 && extension.getMonths() == 0;
+        return (int) runInParallel(1, (begin, end, result) -> {
+            for (int device = begin; device < end; device++) {
+                int day = endDays[device];
+                if (day >= first && day <= last) {
+                    endDays[device] = daysOnly ? day + extension.getDays()
+                            : (int) LocalDate.ofEpochDay(day).plus(extension).toEpochDay();
+                    markChanged(device);
+                    result[0]++;
+                }
+            }
+        })[0];
+    }
+
+    /**
+     * Extends all licenses that end in the calendar quarter of the given day, see {@link #extendExpiring}.
+     * Verlängert alle Lizenzen, die im Kalenderquartal des angegebenen Tages enden, siehe {@link #extendExpiring}.
+     */
+    public int extendExpiringInQuarter(LocalDate day, Period extension) {
+        LocalDate quarterStart = day.withDayOfMonth(1).withMonth((day.getMonthValue() - 1) / 3 * 3 + 1);
+        return extendExpiring(quarterStart, quarterStart.plusMonths(3).minusDays(1), extension);
+    }
+
+    /**
+     * Counts for every function of the catalog on how many devices it is enabled, regardless of the license dates.
+     * Zählt für jede Funktion des Katalogs, auf wie vielen Geräten sie aktiviert ist, unabhängig von den Lizenzdaten.
+     *
+     * @return Device count per function ordinal / Geräteanzahl je Funktions-Ordinalzahl
+     */
+    public long[] countDevicesPerFunction() {
+        return runInParallel(catalog.size(), (from, to, result) -> {
+            for (int position = from * words, end = to * words; position < end; position++) {
+                long bits = functionWords[position];
+                int offset = (position % words) << 6;
+                while (bits != 0) {
+                    result[offset + Long.numberOfTrailingZeros(bits)]++;
+                    bits &= bits - 1;
+                }
+            }
+        });
+    }
+
+    /**
+     * Number of devices changed since the fleet was built or {@link #clearChanged()} was called.
+     * Anzahl der Geräte, die seit dem Aufbau der Flotte oder dem Aufruf von {@link #clearChanged()} geändert wurden.
+     */
+    public int changedCount() {
+        int count = 0;
+        for (long word : changed) {
+            count += Long.bitCount(word);
+        }
+        return count;
+    }
+
+    /**
+     * Creates the licenses of all changed devices, in device order.
+     * Erzeugt die Lizenzen aller geänderten Geräte in Gerätereihenfolge.
+     */
+    public List<Licence> changedLicences() {
+        List<Licence> licences = new ArrayList<>(changedCount());
+        for (int i = 0; i < changed.length; i++) {
+            for (long bits = changed[i]; bits != 0; bits &= bits - 1) {
+                licences.add(licence((i << 6) + Long.numberOfTrailingZeros(bits)));
+            }
+        }
+        return licences;
+    }
+
+    public void clearChanged() {
+        Arrays.fill(changed, 0);
+    }
+
+    private int append(String seriennummer) {
+        if (size == startDays.length) {
+            int capacity = size * 2;
+            startDays = Arrays.copyOf(startDays, capacity);
+            endDays = Arrays.copyOf(endDays, capacity);
+            functionWords = Arrays.copyOf(functionWords, wordOffset(capacity));
+            changed = Arrays.copyOf(changed, (capacity + 63) >>> 6);
+        }
+        serials.add(seriennummer);
+        if ((size + 1) * 2 > index.length) {
+            rehash(index.length * 2);
+        }
+        insert(index, size);
+        return size++;
+    }
+
+    private void rehash(int capacity) {
+        int[] table = new int[capacity];
+        for (int device = 0; device < size; device++) {
+            insert(table, device);
+        }
+        index = table;
+    }
+
+    private void insert(int[] table, int device) {
+        int mask = table.length - 1;
+        int i = FunctionCatalog.mix(serials.hash(device)) & mask;
+        while (table[i] != 0) {
+            i = (i + 1) & mask;
+        }
+        table[i] = device + 1;
+    }
+
+    private void markChanged(int device) {
+        changed[device >>> 6] |= 1L << device;
+    }
+
+    /**
+     * Position of the first function word of a device, which is also the number of words for that many devices.
+     * Only checked when the bit fields grow; below their length, device * words cannot overflow.
+     * Position des ersten Funktionsworts eines Geräts, zugleich die Anzahl der Wörter für so viele Geräte.
+     * Nur beim Wachsen der Bitfelder geprüft; unterhalb ihrer Länge kann device * words nicht überlaufen.
+     *
+     * @throws IllegalStateException if the bit fields of that many devices do not fit into one array
+     *                               / wenn die Bitfelder so vieler Geräte nicht in ein Array passen
+     */
+    private int wordOffset(int devices) {
+        try {
+            return Math.multiplyExact(devices, words);
+        } catch (ArithmeticException e) {
+            throw new IllegalStateException("Fleet too large: " + devices + " devices with " + words
+                    + " function words each do not fit into one array", e);
+        }
+    }
+
+    private int checkDevice(int device) {
+        return Objects.checkIndex(device, size);
+    }
+
+    /**
+     * Runs an operation over all devices in ranges on the common fork-join pool and adds up their results.
+     * Ranges start at multiples of 64, so two ranges never write the same word of {@link #changed}.
+     * Führt eine Operation bereichsweise im gemeinsamen Fork-Join-Pool über alle Geräte aus und addiert ihre Ergebnisse.
+     * Bereiche beginnen bei Vielfachen von 64, daher schreiben zwei Bereiche nie dasselbe Wort von {@link #changed}.
+     */
+    private long[] runInParallel(int resultLength, RangeOperation operation) {
+        long started = System.nanoTime();
+        long[] result = ForkJoinPool.commonPool().invoke(new RangeTask(operation, resultLength, 0, size));
+        BULK_TIME.recordSince(started);
+        return result;
+    }
+
+    /**
+     * Work on the devices from (inclusive) to to (exclusive), adding its counts to result.
+     * Arbeit an den Geräten von from (inklusive) bis to (exklusive), die ihre Zählungen zu result addiert.
+     */
+    private interface RangeOperation {
+        void apply(int from, int to, long[] result);
+    }
+
+    @SuppressWarnings("serial") // Never serialized / Wird nie serialisiert
+    private static final class RangeTask extends RecursiveTask<long[]> {
+        private final RangeOperation operation;
+        private final int resultLength;
+        private final int from;
+        private final int to;
+
+        RangeTask(RangeOperation operation, int resultLength, int from, int to) {
+            this.operation = operation;
+            this.resultLength = resultLength;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected long[] compute() {
+            if (to - from <= RANGE_DEVICES) {
+                long[] result = new long[resultLength];
+                operation.apply(from, to, result);
+                return result;
+            }
+            int middle = (from + (to - from) / 2) & ~63;
+            RangeTask left = new RangeTask(operation, resultLength, from, middle);
+            left.fork();
+            long[] result = new RangeTask(operation, resultLength, middle, to).compute();
+            long[] leftResult = left.join();
+            for (int i = 0; i < resultLength; i++) {
+                result[i] += leftResult[i];
+            }
+            return result;
+        }
+    }
+}
@@ -0,0 +1,229 @@
+package org.example;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.json.simple.JSONValue;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Serves a {@link LicenceQueryService} over HTTP on the loopback interface only; every request runs on a virtual thread.
+ * Stellt einen {@link LicenceQueryService} per HTTP nur auf der Loopback-Schnittstelle bereit; jede Anfrage läuft in einem virtuellen Thread.
+ *
+ * <pre>
+ * GET  /licences/{serial}/functions/{functionId}  {"seriennummer":"...","funktion":"...","enabled":true}
+ * GET  /licences/{serial}/functions               {"seriennummer":"...","enabled":["F1","F2"]}
+ * POST /licences/query                            [{"seriennummer":"...","funktion":"..."}, ...]
+ *                                                 -> {"results":[true,false,...]} in request order / in Anfragereihenfolge
+ * </pre>
+ *
+ * All answers of a batch come from the same snapshot.
+ * Alle Antworten eines Stapels stammen aus demselben Snapshot.
+ */
+public class LicenceHttpServer {
+
+    public static final int DEFAULT_PORT = 8085;
+
+    private static final String PREFIX = "/licences/";
+    private static final int MAX_BATCH_BYTES = 4 << 20; // Upper bound for a batch request body / Obergrenze für den Body einer Stapelanfrage
+    private static final int MAX_BATCH_SIZE = 100_000;
+
+    private final LicenceQueryService service;
+    private final HttpServer server;
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    /**
+     * Binds the server to 127.0.0.1 (or ::1); call {@link #start()} to accept requests.
+     * Bindet den Server an 127.0.0.1 (bzw. ::1); {@link #start()} aufrufen, um Anfragen anzunehmen.
+     *
+     * @param port Port, 0 for any free port / Port, 0 für einen beliebigen freien Port
+     */
+    public LicenceHttpServer(LicenceQueryService service, int port) throws IOException {
+        // Small responses must not wait for delayed ACKs (Nagle); read once when the JDK server is first used.
+        // Kleine Antworten dürfen nicht auf verzögerte ACKs warten (Nagle); wird einmal bei der ersten Verwendung des JDK-Servers gelesen.
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+        this.service = service;
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 1024);
+        server.createContext(PREFIX, this::handle);
+        server.setExecutor(executor);
+    }
+
+    public void start() {
+        server.start();
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * Stops accepting requests and gives running ones up to a second to finish.
+     * Nimmt keine Anfragen mehr an und gibt laufenden bis zu einer Sekunde zum Beenden.
+     */
+    public void stop() {
+        server.stop(1);
+        executor.shutdown();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            String path = exchange.getRequestURI().getPath();
+            String method = exchange.getRequestMethod();
+            if (path.equals(PREFIX + "query")) {
+                if (!method.equals("POST")) {
+                    send(exchange, 405, error("use POST"));
+                } else {
+                    handleBatch(exchange);
+                }
+                return;
+            }
+            if (!method.equals("GET")) {
+                send(exchange, 405, error("use GET"));
+                return;
+            }
+            // {serial}/functions[/{functionId}]
+            String[] parts = path.substring(PREFIX.length()).split("/", 3);
+            if (parts.length < 2 || parts[0].isEmpty() || !parts[1].equals("functions")) {
+                send(exchange, 404, error("unknown path " + path));
+            } else if (parts.length == 2 || parts[2].isEmpty()) {
+                handleList(exchange, parts[0]);
+            } else {
+                boolean enabled = service.isEnabled(parts[0], parts[2]);
+                send(exchange, 200, "{\"seriennummer\":\"" + JSONValue.escape(parts[0]) + "\",\"funktion\":\""
+                        + JSONValue.escape(parts[2]) + "\",\"enabled\":" + enabled + "}");
+            }
+        } catch (RuntimeException e) {
+            System.err.println("Error answering license query: " + e);
+            send(exchange, 500, error("internal error"));
+        }
+    }
+
+    private void handleList(HttpExchange exchange, String seriennummer) throws IOException {
+        List<String> ids = service.listEnabled(seriennummer);
+        StringBuilder json = new StringBuilder(32 + ids.size() * 12);
+        json.append("{\"seriennummer\":\"").append(JSONValue.escape(seriennummer)).append("\",\"enabled\":[");
+        for (int i = 0; i < ids.size(); i++) {
+            json.append(i == 0 ? "\"" : ",\"").append(JSONValue.escape(ids.get(i))).append('"');
+        }
+        send(exchange, 200, json.append("]}").toString());
+    }
+
+    private void handleBatch(HttpExchange exchange) throws IOException {
+        byte[] body;
+        try (InputStream in = exchange.getRequestBody()) {
+            body = in.readNBytes(MAX_BATCH_BYTES + 1);
+        }
+        if (body.length > MAX_BATCH_BYTES) {
+            send(exchange, 413, error("batch larger than " + MAX_BATCH_BYTES + " bytes"));
+            return;
+        }
+        LicenceQueryService.Snapshot snapshot = service.snapshot(); // One snapshot for the whole batch / Ein Snapshot für den ganzen Stapel
+        long today = LocalDate.now().toEpochDay();
+        StringBuilder json = new StringBuilder(16 + body.length / 8);
+        json.append("{\"results\":[");
+        try {
+            JsonPullParser parser = new JsonPullParser(body);
+            parser.beginArray();
+            int count = 0;
+            while (parser.hasNext()) {
+                if (++count > MAX_BATCH_SIZE) {
+                    send(exchange, 413, error("more than " + MAX_BATCH_SIZE + " queries"));
+                    return;
+                }
+                String seriennummer = null;
+                String functionId = null;
+                parser.beginObject();
+                while (parser.hasNext()) {
+                    switch (parser.nextName()) {
+                        case Licence.KEY_SERIAL -> seriennummer = parser.nextString();
+                        case "funktion" -> functionId = parser.nextString();
+                        default -> parser.skipValue();
+                    }
+                }
+                parser.endObject();
+                if (seriennummer == null || functionId == null) {
+                    throw new IllegalArgumentException("query " + count + " needs seriennummer and funktion");
+                }
+                json.append(count == 1 ? "" : ",").append(snapshot.isEnabled(seriennummer, functionId, today));
+            }
+            parser.endArray();
+            parser.finish();
+        } catch (IllegalArgumentException e) {
+            send(exchange, 400, error(e.getMessage()));
+            return;
+        }
+        send(exchange, 200, json.append("]}").toString());
+    }
+
+    private static String error(String message) {
+        return "{\"error\":\"" + JSONValue.escape(message) + "\"}";
+    }
+
+    private static void send(HttpExchange exchange, int status, String json) throws IOException {
+        byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    /**
+     * Runs the query server without the GUI, serving the licenses of a store against a catalog.
+     * Startet den Abfrageserver ohne Oberfläche und beantwortet Anfragen zu den Lizenzen eines Speichers anhand eines Katalogs.
+     *
+     * <pre>
+     * java -cp ... org.example.LicenceHttpServer --catalog functions2.csv --store licences.log [--port 8085]
+     * </pre>
+     */
+    public static void main(String[] args) throws IOException {
+        Path catalogFile = null;
+        Path storeFile = null;
+        int port = DEFAULT_PORT;
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            switch (args[i]) {
+                case "--catalog" -> catalogFile = Paths.get(args[i + 1]);
+                case "--store" -> storeFile = Paths.get(args[i + 1]);
+                case "--port" -> port = Integer.parseInt(args[i + 1]);
+                default -> {
+                    System.err.println("Unknown option " + args[i]);
+                    System.exit(2);
+                }
+            }
+        }
+        if (catalogFile == null || storeFile == null) {
+            System.err.println("Usage: LicenceHttpServer --catalog <functions.csv> --store <licences.log> [--port <n>]");
+            System.exit(2);
+        }
+
+        FunctionCatalog.Builder builder = new FunctionCatalog.Builder();
+        new CsvCatalogLoader().load(catalogFile, builder);
+        // Licenses issued for earlier versions of the CSV are read with the versions the application kept
+        // Für frühere Versionen der CSV ausgestellte Lizenzen werden mit den von der Anwendung aufbewahrten Versionen gelesen
+        LicenceQueryService service = new LicenceQueryService(new CatalogVersions(CatalogVersions.directoryFor(storeFile)));
+        try (LicenceStore store = new LicenceStore(storeFile)) {
+            service.publishAll(store.latest());
+        }
+        // Added after the licenses, which then hold it; the versions only hold it weakly
+        // Nach den Lizenzen hinzugefügt, die ihn dann halten; die Versionen halten ihn nur schwach
+        service.addCatalog(builder.build());
+
+        LicenceHttpServer server = new LicenceHttpServer(service, port);
+        server.start();
+        System.out.println("Serving " + service.snapshot().size() + " licenses on http://"
+                + InetAddress.getLoopbackAddress().getHostAddress() + ":" + server.getPort() + PREFIX);
+    }
+}
@@ -0,0 +1,245 @@
+package org.example;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Answers which functions a device may use, for tools other than the GUI.
+ * Each license is read against the catalog version it was issued for, looked up in {@link CatalogVersions}, so the
+ * answers do not change when the CSV is edited or another product line is selected. The service has no current catalog;
+ * every catalog a license may refer to is only registered with {@link #addCatalogs(Collection)}.
+ * All queries read one immutable {@link Snapshot} of the licenses, so they never lock or wait.
+ * Changes build a new snapshot from a copy of the old one and swap it in atomically (copy-on-write);
+ * a query that is already running finishes on the snapshot it started with.
+ * Beantwortet, welche Funktionen ein Gerät verwenden darf, für Werkzeuge außer der Oberfläche.
+ * Jede Lizenz wird gegen die Katalogversion gelesen, für die sie ausgestellt wurde, nachgeschlagen in {@link CatalogVersions},
+ * daher ändern sich die Antworten nicht, wenn die CSV bearbeitet oder eine andere Produktlinie gewählt wird. Der Dienst
+ * hat keinen aktuellen Katalog; jeder Katalog, auf den sich eine Lizenz beziehen kann, wird nur mit
+ * {@link #addCatalogs(Collection)} registriert.
+ * Alle Abfragen lesen einen unveränderlichen {@link Snapshot} der Lizenzen, daher sperren oder warten sie nie.
+ * Änderungen bauen einen neuen Snapshot aus einer Kopie des alten und tauschen ihn atomar aus (Copy-on-Write);
+ * eine bereits laufende Abfrage endet auf dem Snapshot, mit dem sie begonnen hat.
+ */
+public class LicenceQueryService {
+
+    private final CatalogVersions catalogs;
+    private final AtomicReference<Snapshot> current = new AtomicReference<>(new Snapshot(Map.of()));
+
+    public LicenceQueryService() {
+        this(CatalogVersions.inMemory());
+    }
+
+    /**
+     * @param catalogs Catalog versions the licenses are read against / Katalogversionen, gegen die die Lizenzen gelesen werden
+     */
+    public LicenceQueryService(CatalogVersions catalogs) {
+        this.catalogs = catalogs;
+    }
+
+    /**
+     * True if the device has a license that is valid today and enables the function.
+     * True, wenn das Gerät eine heute gültige Lizenz hat, die die Funktion aktiviert.
+     */
+    public boolean isEnabled(String seriennummer, String functionId) {
+        return isEnabled(seriennummer, functionId, LocalDate.now());
+    }
+
+    public boolean isEnabled(String seriennummer, String functionId, LocalDate day) {
+        return current.get().isEnabled(seriennummer, functionId, day.toEpochDay());
+    }
+
+    /**
+     * Returns the ids of all functions the device may use today, in catalog order; empty without a valid license.
+     * Gibt die Ids aller Funktionen zurück, die das Gerät heute verwenden darf, in Katalogreihenfolge; leer ohne gültige Lizenz.
+     */
+    public List<String> listEnabled(String seriennummer) {
+        return listEnabled(seriennummer, LocalDate.now());
+    }
+
+    public List<String> listEnabled(String seriennummer, LocalDate day) {
+        return current.get().listEnabled(seriennummer, day.toEpochDay());
+    }
+
+    /**
+     * Returns the snapshot that queries currently read, e.g. to answer several questions consistently.
+     * Gibt den Snapshot zurück, den Abfragen gerade lesen, z. B. um mehrere Fragen konsistent zu beantworten.
+     */
+    public Snapshot snapshot() {
+        return current.get();
+    }
+
+    /**
+     * Adds or replaces the license of one device.
+     * Fügt die Lizenz eines Geräts hinzu oder ersetzt sie.
+     */
+    public void publish(Licence licence) {
+        publishAll(List.of(licence));
+    }
+
+    /**
+     * Adds or replaces several licenses with a single snapshot swap.
+     * Fügt mehrere Lizenzen mit einem einzigen Snapshot-Austausch hinzu oder ersetzt sie.
+     */
+    public void publishAll(Collection<Licence> licences) {
+        Snapshot before;
+        Snapshot after;
+        do {
+            before = current.get();
+            Map<String, Entry> copy = new HashMap<>(before.licences);
+            for (Licence licence : licences) {
+                copy.put(licence.getSeriennummer(), new Entry(licence, catalogs.get(licence.getCatalogVersion())));
+            }
+            after = new Snapshot(copy);
+        } while (!current.compareAndSet(before, after)); // Another writer won; redo on its snapshot / Ein anderer Schreiber war schneller; auf seinem Snapshot wiederholen
+    }
+
+    /**
+     * Removes the license of a device.
+     * Entfernt die Lizenz eines Geräts.
+     */
+    public void remove(String seriennummer) {
+        Snapshot before;
+        Snapshot after;
+        do {
+            before = current.get();
+            if (!before.licences.containsKey(seriennummer)) {
+                return;
+            }
+            Map<String, Entry> copy = new HashMap<>(before.licences);
+            copy.remove(seriennummer);
+            after = new Snapshot(copy);
+        } while (!current.compareAndSet(before, after));
+    }
+
+    public void addCatalog(FunctionCatalog catalog) {
+        addCatalogs(List.of(catalog));
+    }
+
+    /**
+     * Registers catalog versions licenses may refer to, e.g. the catalogs of all product lines or a reloaded CSV.
+     * Licenses keep being read against their own version; only licenses whose version was unknown until now are
+     * unpacked again, with a single snapshot swap.
+     * Registriert Katalogversionen, auf die sich Lizenzen beziehen können, z. B. die Kataloge aller Produktlinien oder
+     * eine neu geladene CSV. Lizenzen werden weiter gegen ihre eigene Version gelesen; nur Lizenzen, deren Version bisher
+     * unbekannt war, werden mit einem einzigen Snapshot-Austausch neu entpackt.
+     */
+    public void addCatalogs(Collection<FunctionCatalog> added) {
+        added.forEach(catalogs::add);
+        Snapshot before;
+        Snapshot after;
+        do {
+            before = current.get();
+            Map<String, Entry> licences = null; // Copied only if something changes / Nur kopiert, wenn sich etwas ändert
+            for (Map.Entry<String, Entry> entry : before.licences.entrySet()) {
+                Licence licence = entry.getValue().licence;
+                FunctionCatalog catalog = entry.getValue().catalog == null ? catalogs.get(licence.getCatalogVersion()) : null;
+                if (catalog != null) {
+                    if (licences == null) {
+                        licences = new HashMap<>(before.licences);
+                    }
+                    licences.put(entry.getKey(), new Entry(licence, catalog));
+                }
+            }
+            if (licences == null) {
+                return;
+            }
+            after = new Snapshot(licences);
+        } while (!current.compareAndSet(before, after));
+    }
+
+    public CatalogVersions getCatalogVersions() {
+        return catalogs;
+    }
+
+    /**
+     * Immutable state of the service: the licenses, each unpacked with the catalog of its version.
+     * Unveränderlicher Zustand des Dienstes: die Lizenzen, jede mit dem Katalog ihrer Version entpackt.
+     */
+    public static final class Snapshot {
+        private final Map<String, Entry> licences; // Never modified after construction / Nach dem Erzeugen nie verändert
+
+        private Snapshot(Map<String, Entry> licences) {
+            this.licences = licences;
+        }
+
+        public int size() {
+            return licences.size();
+        }
+
+        /**
+         * Returns the stored license of a device, or null.
+         * Gibt die gespeicherte Lizenz eines Geräts zurück oder null.
+         */
+        public Licence getLicence(String seriennummer) {
+            Entry entry = licences.get(seriennummer);
+            return entry == null ? null : entry.licence;
+        }
+
+        public boolean isEnabled(String seriennummer, String functionId, long epochDay) {
+            Entry entry = licences.get(seriennummer);
+            if (entry == null || !entry.isUsableOn(epochDay)) {
+                return false;
+            }
+            int ordinal = entry.catalog.ordinalOf(functionId);
+            return ordinal >= 0 && entry.isSet(ordinal);
+        }
+
+        public List<String> listEnabled(String seriennummer, long epochDay) {
+            Entry entry = licences.get(seriennummer);
+            if (entry == null || !entry.isUsableOn(epochDay)) {
+                return Collections.emptyList();
+            }
+            List<String> ids = new ArrayList<>();
+            long[] words = entry.words;
+            FunctionCatalog issued = entry.catalog;
+            int limit = issued.size();
+            for (int w = 0; w < words.length; w++) {
+                long word = words[w];
+                while (word != 0) {
+                    int ordinal = (w << 6) + Long.numberOfTrailingZeros(word);
+                    if (ordinal >= limit) {
+                        return ids;
+                    }
+                    ids.add(issued.id(ordinal));
+                    word &= word - 1;
+                }
+            }
+            return ids;
+        }
+    }
+
+    /**
+     * One license with its validity days and bit words unpacked for fast checks, and the catalog its bits refer to.
+     * Eine Lizenz mit entpackten Gültigkeitstagen und Bitwörtern für schnelle Prüfungen und dem Katalog, auf den sich ihre Bits beziehen.
+     */
+    private static final class Entry {
+        final Licence licence;
+        final long startDay;
+        final long endDay;
+        final long[] words;
+        final FunctionCatalog catalog; // Of the license's version, null while unknown / Der Version der Lizenz, null solange unbekannt
+
+        Entry(Licence licence, FunctionCatalog catalog) {
+            this.licence = licence;
+            this.startDay = licence.getStartDatum().toEpochDay();
+            this.endDay = licence.getEndDatum().toEpochDay();
+            this.words = licence.getFunctions().toWords();
+            this.catalog = catalog;
+        }
+
+        boolean isUsableOn(long epochDay) {
+            return catalog != null && epochDay >= startDay && epochDay <= endDay;
+        }
+
+        boolean isSet(int ordinal) {
+            int word = ordinal >>> 6;
+            return word < words.length && (words[word] & (1L << ordinal)) != 0;
+        }
+    }
+}
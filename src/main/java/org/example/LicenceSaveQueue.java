@@ -0,0 +1,191 @@
+package org.example;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Saves licenses on one background thread, so callers (e.g. a button handler on the FX thread) never wait for the disk.
+ * While a write is running, new saves collect in a queue. A save for a serial number that is already waiting replaces
+ * the waiting license (repeated clicks become one write), and everything that collected is then written as one batch.
+ * Every caller is told the outcome of the write that covered its save.
+ * Speichert Lizenzen in einem Hintergrund-Thread, sodass Aufrufer (z. B. ein Button-Handler im FX-Thread) nie auf die
+ * Platte warten. Während ein Schreibvorgang läuft, sammeln sich neue Speicheraufträge in einer Warteschlange. Ein Auftrag
+ * für eine bereits wartende Seriennummer ersetzt die wartende Lizenz (wiederholte Klicks werden zu einem Schreibvorgang),
+ * und alles Gesammelte wird danach als ein Paket geschrieben. Jeder Aufrufer erfährt das Ergebnis des Schreibvorgangs,
+ * der seinen Auftrag abgedeckt hat.
+ */
+public class LicenceSaveQueue implements Closeable {
+
+    private static final Metrics.Counter COALESCED = Metrics.global().counter("licence_saves_coalesced", "Saves replaced by a newer save of the same serial number before they were written");
+    private static final Metrics.Timer QUEUE_TIME = Metrics.global().timer("licence_save_queue", "Time from requesting a save until its write finished");
+
+    /**
+     * Writes one batch of licenses, in the order they were first requested.
+     * Schreibt ein Paket von Lizenzen in der Reihenfolge, in der sie zuerst angefordert wurden.
+     */
+    public interface BatchWriter {
+        void write(List<Licence> batch) throws IOException;
+    }
+
+    private final BatchWriter batchWriter;
+    private final Map<String, Pending> pending = new LinkedHashMap<>(); // Guarded by this / Geschützt durch this
+    private final Thread writer;
+    private boolean closed; // Guarded by this / Geschützt durch this
+
+    public LicenceSaveQueue(BatchWriter batchWriter) {
+        this.batchWriter = batchWriter;
+        this.writer = new Thread(this::writeLoop, "licence-saver");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    /**
+     * Queues a license and returns at once. The callback runs on the writer thread after the write.
+     * Stellt eine Lizenz in die Warteschlange und kehrt sofort zurück. Der Callback läuft nach dem Schreiben im Schreib-Thread.
+     *
+     * @throws IllegalStateException if the queue was closed / wenn die Warteschlange geschlossen wurde
+     */
+    public synchronized void submit(Licence licence, Consumer<Result> callback) {
+        if (closed) {
+            throw new IllegalStateException("License save queue is closed");
+        }
+        Pending waiting = pending.get(licence.getSeriennummer());
+        if (waiting == null) {
+            pending.put(licence.getSeriennummer(), new Pending(licence, callback));
+            notifyAll();
+        } else {
+            waiting.licence = licence; // The newer state wins / Der neuere Stand gewinnt
+            waiting.callbacks.add(callback);
+            COALESCED.increment();
+        }
+    }
+
+    /**
+     * Number of licenses waiting to be written.
+     * Anzahl der Lizenzen, die auf das Schreiben warten.
+     */
+    public synchronized int pendingCount() {
+        return pending.size();
+    }
+
+    /**
+     * Stops accepting saves and waits until the waiting ones are written.
+     * Nimmt keine Aufträge mehr an und wartet, bis die wartenden geschrieben sind.
+     */
+    @Override
+    public void close() {
+        synchronized (this) {
+            closed = true;
+            notifyAll();
+        }
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void writeLoop() {
+        while (true) {
+            List<Pending> batch;
+            synchronized (this) {
+                while (pending.isEmpty() && !closed) {
+                    try {
+                        wait();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+                if (pending.isEmpty()) {
+                    return; // Closed and drained / Geschlossen und geleert
+                }
+                batch = new ArrayList<>(pending.values());
+                pending.clear();
+            }
+
+            List<Licence> licences = new ArrayList<>(batch.size());
+            for (Pending save : batch) {
+                licences.add(save.licence);
+            }
+            IOException failure = null;
+            try {
+                batchWriter.write(licences);
+            } catch (IOException e) {
+                failure = e;
+            } catch (RuntimeException e) {
+                failure = new IOException(e.toString(), e);
+            }
+            for (Pending save : batch) {
+                QUEUE_TIME.recordSince(save.submittedAt);
+                Result result = new Result(save.licence, failure, batch.size());
+                for (Consumer<Result> callback : save.callbacks) {
+                    try {
+                        callback.accept(result);
+                    } catch (RuntimeException e) {
+                        System.err.println("Error in license save callback: " + e);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Outcome of a save.
+     * Ergebnis eines Speicherauftrags.
+     */
+    public static final class Result {
+        private final Licence licence;
+        private final IOException error;
+        private final int batchSize;
+
+        private Result(Licence licence, IOException error, int batchSize) {
+            this.licence = licence;
+            this.error = error;
+            this.batchSize = batchSize;
+        }
+
+        /**
+         * The license that was written; newer than the submitted one if a later save replaced it.
+         * Die geschriebene Lizenz; neuer als die übergebene, wenn ein späterer Auftrag sie ersetzt hat.
+         */
+        public Licence getLicence() {
+            return licence;
+        }
+
+        public boolean isSaved() {
+            return error == null;
+        }
+
+        /**
+         * The reason the write failed, or null.
+         * Der Grund, warum das Schreiben fehlschlug, oder null.
+         */
+        public IOException getError() {
+            return error;
+        }
+
+        /**
+         * Number of licenses written together in the same batch.
+         * Anzahl der Lizenzen, die im selben Paket geschrieben wurden.
+         */
+        public int getBatchSize() {
+            return batchSize;
+        }
+    }
+
+    private static final class Pending {
+        final long submittedAt = System.nanoTime();
+        final List<Consumer<Result>> callbacks = new ArrayList<>(1);
+        Licence licence;
+
+        Pending(Licence licence, Consumer<Result> callback) {
+            this.licence = licence;
+            callbacks.add(callback);
+        }
+    }
+}
@@ -0,0 +1,1023 @@
+package org.example;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.zip.CRC32C;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Embedded, crash-safe store for licenses.
+ * Every save is appended to a log file as a checksummed record and is never overwritten in place, so the log
+ * also keeps the history of each device. A record counts as saved only after it was synced to disk; one background
+ * thread syncs for all writers that arrived in the meantime (group commit), so parallel saves share one fsync.
+ * A hash table in a memory-mapped index file points from each serial number to its newest record.
+ * When most of the log consists of old versions, a background compaction rewrites it with only the newest records.
+ * Eingebetteter, absturzsicherer Speicher für Lizenzen.
+ * Jedes Speichern wird als Datensatz mit Prüfsumme an eine Logdatei angehängt und nie an Ort und Stelle überschrieben,
+ * daher enthält das Log auch die Historie jedes Geräts. Ein Datensatz gilt erst als gespeichert, wenn er auf die Platte
+ * synchronisiert wurde; ein Hintergrund-Thread synchronisiert für alle inzwischen eingetroffenen Schreiber (Group Commit),
+ * sodass parallele Speichervorgänge sich ein fsync teilen.
+ * Eine Hashtabelle in einer speicherabgebildeten Indexdatei verweist von jeder Seriennummer auf ihren neuesten Datensatz.
+ * Besteht das Log überwiegend aus alten Versionen, schreibt eine Hintergrund-Kompaktierung es nur mit den neuesten Datensätzen neu.
+ *
+ * <pre>
+ * log    := magic(8) record*
+ * record := length(4) crc32c(4) body          length and CRC cover the body / Länge und CRC beziehen sich auf den Body
+ * body   := type(1) savedAtMillis(8) serialLength(2) serial(UTF-8) licenceJson(UTF-8)
+ * </pre>
+ */
+public class LicenceStore implements Closeable {
+
+    private static final long LOG_MAGIC = 0x4C49434C4F473031L; // "LICLOG01"
+
+    private static final Metrics.Timer SYNC_TIME = Metrics.global().timer("licence_fsync", "Syncing the license log to disk (one sync per group commit)");
+    private static final Metrics.Counter APPENDS = Metrics.global().counter("licence_store_appends", "Licenses appended to the license log");
+    private static final int LOG_HEADER_SIZE = 8;
+    private static final int RECORD_HEADER_SIZE = 8; // length + CRC / Länge + CRC
+    private static final int BODY_SERIAL_OFFSET = 1 + 8; // After type and timestamp / Nach Typ und Zeitstempel
+    private static final int MAX_RECORD_SIZE = (1 << 24) - 1; // Fits the 24-bit length of an index slot / Passt in die 24-Bit-Länge eines Indexplatzes
+    private static final byte TYPE_LICENCE = 1;
+
+    // Index file: header followed by slots of (serial hash, offset << 24 | record size); an empty slot is 0
+    // Indexdatei: Kopf gefolgt von Plätzen aus (Seriennummer-Hash, Offset << 24 | Datensatzgröße); ein leerer Platz ist 0
+    private static final long INDEX_MAGIC = 0x4C49434944583031L; // "LICIDX01"
+    private static final int INDEX_HEADER_SIZE = 64;
+    private static final int IDX_CLEAN = 8; // 1 = closed cleanly and matches the log / 1 = sauber geschlossen und passend zum Log
+    private static final int IDX_CAPACITY = 12;
+    private static final int IDX_COUNT = 16;
+    private static final int IDX_LOG_LENGTH = 24;
+    private static final int IDX_LIVE_BYTES = 32;
+    private static final int SLOT_SIZE = 16;
+    private static final int INITIAL_CAPACITY = 1024;
+
+    // Compact once the log is at least this big and more than half of it is superseded
+    // Kompaktieren, sobald das Log mindestens so groß und mehr als zur Hälfte überholt ist
+    private static final long COMPACTION_MIN_LOG_SIZE = 1 << 20;
+    private static final int STREAM_WINDOW_SIZE = 1 << 20; // Read-ahead of forEachLatest / Vorauslesen von forEachLatest
+
+    private final Path logFile;
+    private final Path indexFile;
+
+    // Readers hold the read lock; appends, index updates and the compaction swap hold the write lock
+    // Leser halten die Lesesperre; Anhängen, Indexänderungen und der Austausch nach dem Kompaktieren halten die Schreibsperre
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Condition commitRequested = lock.writeLock().newCondition();
+    private final Condition committed = lock.writeLock().newCondition();
+    private final ReentrantLock syncLock = new ReentrantLock(); // Held while the log is synced or replaced / Gehalten, während das Log synchronisiert oder ersetzt wird
+    private final ReentrantLock compactionLock = new ReentrantLock();
+
+    private FileChannel log;
+    private long logEnd; // Position of the next record / Position des nächsten Datensatzes
+    private long appendedSeq; // Number of appended records / Anzahl angehängter Datensätze
+    private long durableSeq; // Number of records known to be on disk / Anzahl sicher auf der Platte liegender Datensätze
+    private IOException syncFailure;
+    private boolean closed;
+
+    private final FileChannel indexChannel;
+    private MappedByteBuffer index;
+    private int capacity; // Number of slots, a power of two / Anzahl der Plätze, eine Zweierpotenz
+    private int count; // Number of serial numbers / Anzahl der Seriennummern
+    private long liveBytes; // Bytes of the newest records / Bytes der neuesten Datensätze
+
+    private final Thread committer;
+    private final AtomicBoolean compactionScheduled = new AtomicBoolean();
+    private final ExecutorService compactionExecutor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "licence-store-compaction");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * Opens the store, creating it if necessary. A torn record at the end of the log (crash during a write)
+     * is cut off; the index is rebuilt from the log if it was not closed cleanly.
+     * Öffnet den Speicher und legt ihn bei Bedarf an. Ein abgerissener Datensatz am Ende des Logs (Absturz während
+     * eines Schreibvorgangs) wird abgeschnitten; der Index wird aus dem Log neu aufgebaut, wenn er nicht sauber geschlossen wurde.
+     *
+     * @param logFile Log file; the index is kept next to it as {@code <logFile>.idx} / Logdatei; der Index liegt daneben als {@code <logFile>.idx}
+     * @throws IOException if the files cannot be opened, are not license store files or the log is damaged before its end
+     *                     / wenn die Dateien nicht geöffnet werden können, keine Lizenzspeicherdateien sind oder das Log vor seinem Ende beschädigt ist
+     */
+    public LicenceStore(Path logFile) throws IOException {
+        this.logFile = logFile.toAbsolutePath();
+        this.indexFile = this.logFile.resolveSibling(this.logFile.getFileName() + ".idx");
+        Files.createDirectories(this.logFile.getParent());
+
+        log = openLog(this.logFile);
+        try {
+            logEnd = recover();
+        } catch (IOException e) {
+            log.close();
+            throw e;
+        }
+
+        indexChannel = FileChannel.open(indexFile, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            if (!reuseIndex()) {
+                rebuildIndex();
+            }
+            index.putInt(IDX_CLEAN, 0); // A crash from now on forces a rebuild / Ein Absturz ab jetzt erzwingt einen Neuaufbau
+            index.force();
+        } catch (IOException | RuntimeException e) {
+            indexChannel.close();
+            log.close();
+            throw e;
+        }
+
+        committer = new Thread(this::commitLoop, "licence-store-commit");
+        committer.setDaemon(true);
+        committer.start();
+    }
+
+    public Path getLogFile() {
+        return logFile;
+    }
+
+    /**
+     * Appends a license and returns once it is synced to disk. Saves from several threads share one sync.
+     * Hängt eine Lizenz an und kehrt zurück, sobald sie auf die Platte synchronisiert ist. Speichervorgänge
+     * aus mehreren Threads teilen sich eine Synchronisierung.
+     *
+     * @throws IOException if the record cannot be written or synced / wenn der Datensatz nicht geschrieben oder synchronisiert werden kann
+     */
+    public void put(Licence licence) throws IOException {
+        putAll(List.of(licence));
+    }
+
+    /**
+     * Appends several licenses and returns once all of them are synced to disk with a single sync.
+     * Hängt mehrere Lizenzen an und kehrt zurück, sobald alle mit einer einzigen Synchronisierung auf der Platte sind.
+     *
+     * @throws IOException if a record cannot be written or synced / wenn ein Datensatz nicht geschrieben oder synchronisiert werden kann
+     */
+    public void putAll(List<Licence> licences) throws IOException {
+        if (licences.isEmpty()) {
+            return;
+        }
+        byte[][] records = new byte[licences.size()][];
+        for (int i = 0; i < records.length; i++) {
+            records[i] = encode(licences.get(i));
+        }
+        lock.writeLock().lock();
+        try {
+            ensureOpen();
+            for (int i = 0; i < records.length; i++) {
+                long offset = logEnd;
+                writeFully(log, ByteBuffer.wrap(records[i]), offset);
+                logEnd += records[i].length;
+                indexPut(licences.get(i).getSeriennummer(), offset, records[i].length);
+            }
+            APPENDS.add(records.length);
+
+            long seq = ++appendedSeq;
+            commitRequested.signal();
+            while (durableSeq < seq && syncFailure == null) {
+                committed.await(); // Releases the lock, so other writers can join this sync / Gibt die Sperre frei, damit andere Schreiber sich dieser Synchronisierung anschließen
+            }
+            if (durableSeq < seq) {
+                throw new IOException("License log could not be synced", syncFailure);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for the license log sync");
+        } finally {
+            lock.writeLock().unlock();
+        }
+        scheduleCompactionIfWorthwhile();
+    }
+
+    /**
+     * Returns the newest license of a device, or null if the store has none.
+     * Gibt die neueste Lizenz eines Geräts zurück oder null, wenn der Speicher keine enthält.
+     */
+    public Licence get(String seriennummer) throws IOException {
+        byte[] json = readLicenceJson(seriennummer);
+        return json == null ? null : Licence.fromJSON(json, 0, json.length);
+    }
+
+    /**
+     * Returns all saved versions of a device's license, oldest first, as far as compaction has kept them.
+     * This reads the whole log and is meant for audits, not for lookups.
+     * Gibt alle gespeicherten Versionen der Lizenz eines Geräts zurück, älteste zuerst, soweit die Kompaktierung sie behalten hat.
+     * Dies liest das ganze Log und ist für Prüfungen gedacht, nicht für Abfragen.
+     */
+    public List<Licence> history(String seriennummer) throws IOException {
+        List<Licence> versions = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            ensureOpen();
+            scan(log, logEnd, (offset, size, body) -> {
+                if (seriennummer.equals(serialOf(body))) {
+                    int jsonStart = jsonStart(body);
+                    versions.add(Licence.fromJSON(body, jsonStart, body.length - jsonStart));
+                }
+            });
+        } finally {
+            lock.readLock().unlock();
+        }
+        return versions;
+    }
+
+    /**
+     * Returns the newest license of every device, in the order they were last saved.
+     * Gibt die neueste Lizenz jedes Geräts zurück, in der Reihenfolge ihres letzten Speicherns.
+     */
+    public List<Licence> latest() throws IOException {
+        lock.readLock().lock();
+        try {
+            ensureOpen();
+            long[] live = liveRecords();
+            List<Licence> licences = new ArrayList<>(live.length);
+            for (long packed : live) {
+                byte[] body = readBody(offsetOf(packed), sizeOf(packed));
+                int jsonStart = jsonStart(body);
+                licences.add(Licence.fromJSON(body, jsonStart, body.length - jsonStart));
+            }
+            return licences;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Streams the JSON of the newest license of every device, in log order, without building {@link Licence} objects.
+     * The records are read with a private channel and a fixed read-ahead window, so memory stays bounded however
+     * large the store is; saves and compaction can continue meanwhile and are not part of the result.
+     * Liefert das JSON der neuesten Lizenz jedes Geräts in Logreihenfolge, ohne {@link Licence}-Objekte zu bauen.
+     * Die Datensätze werden mit einem eigenen Kanal und einem festen Vorausleseblock gelesen, sodass der Speicherbedarf
+     * unabhängig von der Größe des Speichers begrenzt bleibt; Speichern und Kompaktierung können währenddessen weiterlaufen
+     * und gehören nicht zum Ergebnis.
+     *
+     * @return Number of licenses / Anzahl der Lizenzen
+     * @throws IOException if a record is corrupt or the visitor fails / wenn ein Datensatz beschädigt ist oder der Besucher fehlschlägt
+     */
+    public int forEachLatest(LicenceJsonVisitor visitor) throws IOException {
+        long[] live;
+        FileChannel source;
+        lock.readLock().lock();
+        try {
+            ensureOpen();
+            live = liveRecords();
+            // Compaction renames a new file over the log; this channel keeps reading the old one
+            // Die Kompaktierung benennt eine neue Datei über das Log um; dieser Kanal liest weiter die alte
+            source = FileChannel.open(logFile, StandardOpenOption.READ);
+        } finally {
+            lock.readLock().unlock();
+        }
+        try (source) {
+            ByteBuffer window = ByteBuffer.allocate(STREAM_WINDOW_SIZE).limit(0);
+            long windowStart = 0;
+            CRC32C crc = new CRC32C();
+            for (long packed : live) {
+                long offset = offsetOf(packed);
+                int recordSize = sizeOf(packed);
+                if (offset < windowStart || offset + recordSize > windowStart + window.limit()) {
+                    if (recordSize > window.capacity()) {
+                        window = ByteBuffer.allocate(recordSize);
+                    }
+                    window.clear();
+                    while (window.position() < recordSize) { // Fill at least the record, more if the file has it / Mindestens den Datensatz füllen, mehr, falls die Datei es hat
+                        int read = source.read(window, offset + window.position());
+                        if (read < 0) {
+                            throw new EOFException("Unexpected end of " + logFile + " at " + (offset + window.position()));
+                        }
+                    }
+                    window.flip();
+                    windowStart = offset;
+                }
+                int position = (int) (offset - windowStart);
+                byte[] bytes = window.array();
+                crc.reset();
+                crc.update(bytes, position + RECORD_HEADER_SIZE, recordSize - RECORD_HEADER_SIZE);
+                if (window.getInt(position) != recordSize - RECORD_HEADER_SIZE || window.getInt(position + 4) != (int) crc.getValue()) {
+                    throw new IOException("Corrupt license record at offset " + offset + " in " + logFile);
+                }
+                int bodyStart = position + RECORD_HEADER_SIZE;
+                int serialLength = window.getShort(bodyStart + BODY_SERIAL_OFFSET) & 0xFFFF;
+                int jsonStart = bodyStart + BODY_SERIAL_OFFSET + 2 + serialLength;
+                visitor.licence(bytes, jsonStart, position + recordSize - jsonStart);
+            }
+        }
+        return live.length;
+    }
+
+    /**
+     * Receives the JSON of one license from {@link #forEachLatest}; the array is reused for later records.
+     * Erhält das JSON einer Lizenz von {@link #forEachLatest}; das Array wird für spätere Datensätze wiederverwendet.
+     */
+    public interface LicenceJsonVisitor {
+        void licence(byte[] buffer, int offset, int length) throws IOException;
+    }
+
+    /**
+     * Number of devices with a license in the store.
+     * Anzahl der Geräte mit einer Lizenz im Speicher.
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return count;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Writes the newest license of a device as a single JSON license file.
+     * The file is written to a temporary file, synced and then renamed over the target, so readers see either
+     * the old or the new file, never a half-written one.
+     * Schreibt die neueste Lizenz eines Geräts als einzelne JSON-Lizenzdatei.
+     * Die Datei wird in eine temporäre Datei geschrieben, synchronisiert und dann über das Ziel umbenannt, sodass Leser
+     * entweder die alte oder die neue Datei sehen, nie eine halb geschriebene.
+     *
+     * @return false if the store has no license for the serial number / false, wenn der Speicher keine Lizenz für die Seriennummer enthält
+     */
+    public boolean export(String seriennummer, Path target) throws IOException {
+        byte[] json = readLicenceJson(seriennummer);
+        if (json == null) {
+            return false;
+        }
+        writeAtomically(target, json);
+        return true;
+    }
+
+    /**
+     * Replaces a file atomically: write to a temporary file in the same directory, sync it, rename it over the target.
+     * Ersetzt eine Datei atomar: in eine temporäre Datei im selben Verzeichnis schreiben, synchronisieren, über das Ziel umbenennen.
+     */
+    public static void writeAtomically(Path target, byte[] content) throws IOException {
+        Path directory = target.toAbsolutePath().getParent();
+        Files.createDirectories(directory);
+        Path temp = Files.createTempFile(directory, target.getFileName() + ".", ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                writeFully(channel, ByteBuffer.wrap(content), 0);
+                channel.force(true);
+            }
+            try {
+                Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+            syncDirectory(directory);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * Syncs a directory, so a file created or renamed in it survives a crash. Where directories cannot be opened
+     * (Windows), this does nothing.
+     * Synchronisiert ein Verzeichnis, damit eine darin angelegte oder umbenannte Datei einen Absturz übersteht. Wo sich
+     * Verzeichnisse nicht öffnen lassen (Windows), geschieht nichts.
+     */
+    static void syncDirectory(Path directory) throws IOException {
+        FileChannel channel;
+        try {
+            channel = FileChannel.open(directory, StandardOpenOption.READ);
+        } catch (IOException e) {
+            return;
+        }
+        try (channel) {
+            channel.force(true);
+        }
+    }
+
+    /**
+     * Rewrites the log with only the newest record of every device and swaps it in atomically.
+     * Saves may continue while the records are copied; they are only blocked for the final swap.
+     * Schreibt das Log nur mit dem neuesten Datensatz jedes Geräts neu und tauscht es atomar aus.
+     * Speichervorgänge können während des Kopierens weiterlaufen; sie werden nur für den abschließenden Austausch blockiert.
+     */
+    public void compact() throws IOException {
+        compactionLock.lock();
+        try {
+            long[] live;
+            long copiedEnd;
+            FileChannel source;
+            lock.readLock().lock();
+            try {
+                ensureOpen();
+                live = liveRecords();
+                copiedEnd = logEnd;
+                source = log;
+            } finally {
+                lock.readLock().unlock();
+            }
+
+            Path compacted = logFile.resolveSibling(logFile.getFileName() + ".compact");
+            try (FileChannel target = FileChannel.open(compacted, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                long position = writeLogHeader(target);
+                for (long packed : live) {
+                    position += transfer(source, offsetOf(packed), sizeOf(packed), target, position);
+                }
+
+                syncLock.lock();
+                lock.writeLock().lock();
+                try {
+                    ensureOpen();
+                    // Records saved during the copy are taken over unchanged; the newest one still wins.
+                    // Während des Kopierens gespeicherte Datensätze werden unverändert übernommen; der neueste gewinnt weiterhin.
+                    transfer(log, copiedEnd, logEnd - copiedEnd, target, position);
+                    target.force(true);
+                    log.close();
+                    boolean replaced = false;
+                    boolean synced = false;
+                    try {
+                        Files.move(compacted, logFile, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+                        replaced = true;
+                        syncDirectory(logFile.getParent()); // Until then a crash may bring back the old log / Bis dahin kann ein Absturz das alte Log zurückbringen
+                        synced = true;
+                    } catch (IOException e) {
+                        if (replaced) {
+                            // Appends copied from the unsynced old log may be lost; fail them like a failed sync
+                            // Aus dem nicht synchronisierten alten Log kopierte Anhänge können verloren sein; wie eine fehlgeschlagene Synchronisierung scheitern lassen
+                            syncFailure = e;
+                            closed = true;
+                            committed.signalAll();
+                        }
+                        throw e;
+                    } finally {
+                        log = openLog(logFile); // The new log, or the old one if the rename failed / Das neue Log oder das alte, falls das Umbenennen fehlschlug
+                        logEnd = log.size();
+                        rebuildIndex();
+                        if (synced) {
+                            durableSeq = appendedSeq; // Everything is in the synced file now / Alles liegt jetzt in der synchronisierten Datei
+                            committed.signalAll();
+                        }
+                        // Otherwise the old log may hold unsynced appends; the committer syncs them as usual
+                        // Sonst kann das alte Log nicht synchronisierte Anhänge enthalten; der Committer synchronisiert sie wie gewohnt
+                    }
+                } finally {
+                    lock.writeLock().unlock();
+                    syncLock.unlock();
+                }
+            } finally {
+                Files.deleteIfExists(compacted);
+            }
+        } finally {
+            compactionLock.unlock();
+        }
+    }
+
+    /**
+     * Waits for pending syncs and compaction, marks the index as clean and closes the files.
+     * Wartet auf ausstehende Synchronisierungen und Kompaktierung, markiert den Index als sauber und schließt die Dateien.
+     */
+    @Override
+    public void close() throws IOException {
+        compactionExecutor.shutdown();
+        try {
+            compactionExecutor.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        lock.writeLock().lock();
+        try {
+            if (!indexChannel.isOpen()) {
+                return;
+            }
+            closed = true;
+            commitRequested.signal();
+        } finally {
+            lock.writeLock().unlock();
+        }
+        try {
+            committer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        lock.writeLock().lock();
+        try {
+            if (syncFailure == null) { // After a failed sync the index is rebuilt on the next open / Nach einer fehlgeschlagenen Synchronisierung wird der Index beim nächsten Öffnen neu aufgebaut
+                log.force(true);
+                writeIndexHeader();
+                index.putInt(IDX_CLEAN, 1);
+                index.force();
+            }
+        } finally {
+            lock.writeLock().unlock();
+            indexChannel.close();
+            log.close();
+        }
+    }
+
+    // ---------------------------------------------------------------- group commit / Group Commit
+
+    /**
+     * Syncs the log whenever records were appended and wakes up their writers.
+     * Synchronisiert das Log, sobald Datensätze angehängt wurden, und weckt deren Schreiber.
+     */
+    private void commitLoop() {
+        while (true) {
+            long target;
+            lock.writeLock().lock();
+            try {
+                while (durableSeq == appendedSeq && !closed) {
+                    commitRequested.awaitUninterruptibly();
+                }
+                if (durableSeq == appendedSeq || syncFailure != null) {
+                    return; // Closed and nothing pending, or failed / Geschlossen und nichts ausstehend, oder gescheitert
+                }
+                target = appendedSeq;
+            } finally {
+                lock.writeLock().unlock();
+            }
+
+            // Writers keep appending while this sync runs; they are covered by the next one.
+            // Schreiber hängen während dieser Synchronisierung weiter an; sie werden von der nächsten erfasst.
+            IOException failure = null;
+            syncLock.lock();
+            try {
+                long started = System.nanoTime();
+                log.force(false);
+                SYNC_TIME.recordSince(started);
+            } catch (IOException e) {
+                failure = e;
+            } finally {
+                syncLock.unlock();
+            }
+
+            lock.writeLock().lock();
+            try {
+                if (failure != null) {
+                    System.err.println("Error syncing license log: " + failure.getMessage());
+                    syncFailure = failure;
+                    closed = true; // The state on disk is unknown now / Der Zustand auf der Platte ist jetzt unbekannt
+                } else {
+                    durableSeq = Math.max(durableSeq, target);
+                }
+                committed.signalAll();
+                if (failure != null) {
+                    return;
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+    }
+
+    private void scheduleCompactionIfWorthwhile() {
+        boolean worthwhile;
+        lock.readLock().lock();
+        try {
+            worthwhile = !closed && logEnd > COMPACTION_MIN_LOG_SIZE && logEnd > 2 * (liveBytes + LOG_HEADER_SIZE);
+        } finally {
+            lock.readLock().unlock();
+        }
+        if (worthwhile && compactionScheduled.compareAndSet(false, true)) {
+            compactionExecutor.execute(() -> {
+                try {
+                    compact();
+                } catch (IOException e) {
+                    System.err.println("Error compacting license log: " + e.getMessage());
+                } finally {
+                    compactionScheduled.set(false);
+                }
+            });
+        }
+    }
+
+    // ---------------------------------------------------------------- log / Log
+
+    private static FileChannel openLog(Path file) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            if (channel.size() == 0) {
+                writeLogHeader(channel);
+                channel.force(true);
+                syncDirectory(file.getParent()); // Records synced later must not vanish with the file / Später synchronisierte Datensätze dürfen nicht mit der Datei verschwinden
+            } else {
+                ByteBuffer magic = ByteBuffer.allocate(LOG_HEADER_SIZE);
+                if (channel.read(magic, 0) != LOG_HEADER_SIZE || magic.getLong(0) != LOG_MAGIC) {
+                    throw new IOException(file + " is not a license log");
+                }
+            }
+            return channel;
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    private static long writeLogHeader(FileChannel channel) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(LOG_HEADER_SIZE).putLong(0, LOG_MAGIC);
+        writeFully(channel, header, 0);
+        return LOG_HEADER_SIZE;
+    }
+
+    /**
+     * Finds the end of the last intact record and cuts off a torn record behind it. Only a record that reaches the end
+     * of the file is cut off, because only the last write can have been interrupted by a crash; a damaged record with
+     * data behind it fails the open and the log is left unchanged, so no intact license behind it is lost.
+     * Findet das Ende des letzten intakten Datensatzes und schneidet einen abgerissenen Datensatz dahinter ab. Nur ein
+     * Datensatz, der bis zum Dateiende reicht, wird abgeschnitten, da nur der letzte Schreibvorgang durch einen Absturz
+     * unterbrochen worden sein kann; ein beschädigter Datensatz mit Daten dahinter lässt das Öffnen fehlschlagen und das
+     * Log bleibt unverändert, damit keine intakte Lizenz dahinter verloren geht.
+     *
+     * @throws IOException if a record before the end of the log is damaged / wenn ein Datensatz vor dem Ende des Logs beschädigt ist
+     */
+    private long recover() throws IOException {
+        long size = log.size();
+        long validEnd = scan(log, size, (offset, recordSize, body) -> {
+        });
+        if (validEnd < size) {
+            if (!isTornTail(validEnd, size)) {
+                throw new IOException("License log " + logFile + " has a damaged record at offset " + validEnd
+                        + " followed by more data; it was left unchanged and must be repaired or restored from a backup");
+            }
+            System.err.println("License log " + logFile + ": discarding " + (size - validEnd)
+                    + " bytes of an incomplete record at offset " + validEnd);
+            log.truncate(validEnd);
+            log.force(true);
+        }
+        return validEnd;
+    }
+
+    /**
+     * True if the bytes from offset to the end of the log can be the remains of one interrupted append: a header cut
+     * short, a record whose length reaches the end of the file, or space the file system extended without data (zeros).
+     * True, wenn die Bytes von offset bis zum Ende des Logs die Reste eines unterbrochenen Anhängens sein können: ein
+     * abgeschnittener Kopf, ein Datensatz, dessen Länge bis zum Dateiende reicht, oder vom Dateisystem ohne Daten
+     * verlängerter Platz (Nullen).
+     */
+    private boolean isTornTail(long offset, long size) throws IOException {
+        if (size - offset < RECORD_HEADER_SIZE) {
+            return true;
+        }
+        ByteBuffer header = ByteBuffer.allocate(RECORD_HEADER_SIZE);
+        readFully(log, header, offset);
+        int length = header.getInt(0);
+        if (length > BODY_SERIAL_OFFSET + 2 && length <= MAX_RECORD_SIZE - RECORD_HEADER_SIZE
+                && offset + RECORD_HEADER_SIZE + length >= size) {
+            return true;
+        }
+        ByteBuffer rest = ByteBuffer.allocate(1 << 16);
+        for (long position = offset; position < size; position += rest.limit()) {
+            rest.clear();
+            if (log.read(rest, position) < 0) {
+                break;
+            }
+            rest.flip();
+            for (int i = 0; i < rest.limit(); i++) {
+                if (rest.get(i) != 0) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private interface RecordVisitor {
+        void record(long offset, int recordSize, byte[] body) throws IOException;
+    }
+
+    /**
+     * Reads the records up to end in order and returns the end of the last intact one.
+     * Liest die Datensätze bis end der Reihe nach und gibt das Ende des letzten intakten zurück.
+     */
+    private static long scan(FileChannel channel, long end, RecordVisitor visitor) throws IOException {
+        long position = LOG_HEADER_SIZE;
+        // A separate stream keeps the shared channel position untouched / Ein eigener Stream lässt die gemeinsame Kanalposition unberührt
+        DataInputStream in = new DataInputStream(new BufferedInputStream(
+                Channels.newInputStream(new PositionalChannelReader(channel, position)), 1 << 16));
+        CRC32C crc = new CRC32C();
+        while (position + RECORD_HEADER_SIZE <= end) {
+            int length;
+            int checksum;
+            byte[] body;
+            try {
+                length = in.readInt();
+                checksum = in.readInt();
+                if (length <= BODY_SERIAL_OFFSET + 2 || length > MAX_RECORD_SIZE - RECORD_HEADER_SIZE
+                        || position + RECORD_HEADER_SIZE + length > end) {
+                    break;
+                }
+                body = new byte[length];
+                in.readFully(body);
+            } catch (EOFException e) {
+                break;
+            }
+            crc.reset();
+            crc.update(body);
+            if ((int) crc.getValue() != checksum) {
+                break;
+            }
+            visitor.record(position, RECORD_HEADER_SIZE + length, body);
+            position += RECORD_HEADER_SIZE + length;
+        }
+        return position;
+    }
+
+    private static byte[] encode(Licence licence) {
+        byte[] serial = licence.getSeriennummer().getBytes(UTF_8);
+        byte[] json = licence.toJSONString().getBytes(UTF_8);
+        int length = BODY_SERIAL_OFFSET + 2 + serial.length + json.length;
+        if (serial.length > Short.MAX_VALUE || RECORD_HEADER_SIZE + length > MAX_RECORD_SIZE) {
+            throw new IllegalArgumentException("License too large for the store: " + licence);
+        }
+        ByteBuffer record = ByteBuffer.allocate(RECORD_HEADER_SIZE + length);
+        record.putInt(length).putInt(0)
+                .put(TYPE_LICENCE).putLong(System.currentTimeMillis())
+                .putShort((short) serial.length).put(serial).put(json);
+        CRC32C crc = new CRC32C();
+        crc.update(record.array(), RECORD_HEADER_SIZE, length);
+        record.putInt(4, (int) crc.getValue());
+        return record.array();
+    }
+
+    private static String serialOf(byte[] body) {
+        int length = ((body[BODY_SERIAL_OFFSET] & 0xFF) << 8) | (body[BODY_SERIAL_OFFSET + 1] & 0xFF);
+        return new String(body, BODY_SERIAL_OFFSET + 2, length, UTF_8);
+    }
+
+    private static int jsonStart(byte[] body) {
+        int length = ((body[BODY_SERIAL_OFFSET] & 0xFF) << 8) | (body[BODY_SERIAL_OFFSET + 1] & 0xFF);
+        return BODY_SERIAL_OFFSET + 2 + length;
+    }
+
+    /**
+     * Reads and verifies the record at offset and returns its body.
+     * Liest und prüft den Datensatz bei offset und gibt seinen Body zurück.
+     */
+    private byte[] readBody(long offset, int recordSize) throws IOException {
+        ByteBuffer record = ByteBuffer.allocate(recordSize);
+        readFully(log, record, offset);
+        CRC32C crc = new CRC32C();
+        crc.update(record.array(), RECORD_HEADER_SIZE, recordSize - RECORD_HEADER_SIZE);
+        if (record.getInt(0) != recordSize - RECORD_HEADER_SIZE || record.getInt(4) != (int) crc.getValue()) {
+            throw new IOException("Corrupt license record at offset " + offset + " in " + logFile);
+        }
+        return Arrays.copyOfRange(record.array(), RECORD_HEADER_SIZE, recordSize);
+    }
+
+    private byte[] readLicenceJson(String seriennummer) throws IOException {
+        lock.readLock().lock();
+        try {
+            ensureOpen();
+            int slot = indexFind(seriennummer, serialHash(seriennummer));
+            if (slot < 0) {
+                return null;
+            }
+            long packed = index.getLong(slotPosition(slot) + 8);
+            byte[] body = readBody(offsetOf(packed), sizeOf(packed));
+            return Arrays.copyOfRange(body, jsonStart(body), body.length);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private String serialAt(long offset) throws IOException {
+        ByteBuffer length = ByteBuffer.allocate(2);
+        readFully(log, length, offset + RECORD_HEADER_SIZE + BODY_SERIAL_OFFSET);
+        ByteBuffer serial = ByteBuffer.allocate(length.getShort(0) & 0xFFFF);
+        readFully(log, serial, offset + RECORD_HEADER_SIZE + BODY_SERIAL_OFFSET + 2);
+        return new String(serial.array(), UTF_8);
+    }
+
+    private void ensureOpen() throws IOException {
+        if (closed) {
+            throw syncFailure != null ? new IOException("License store failed", syncFailure) : new IOException("License store is closed");
+        }
+    }
+
+    // ---------------------------------------------------------------- index / Index
+
+    private boolean reuseIndex() throws IOException {
+        if (indexChannel.size() < INDEX_HEADER_SIZE) {
+            return false;
+        }
+        ByteBuffer header = ByteBuffer.allocate(INDEX_HEADER_SIZE);
+        readFully(indexChannel, header, 0);
+        int storedCapacity = header.getInt(IDX_CAPACITY);
+        if (header.getLong(0) != INDEX_MAGIC || header.getInt(IDX_CLEAN) != 1 || header.getLong(IDX_LOG_LENGTH) != logEnd
+                || storedCapacity < INITIAL_CAPACITY || Integer.bitCount(storedCapacity) != 1
+                || indexChannel.size() < INDEX_HEADER_SIZE + (long) storedCapacity * SLOT_SIZE) {
+            return false;
+        }
+        capacity = storedCapacity;
+        index = indexChannel.map(FileChannel.MapMode.READ_WRITE, 0, INDEX_HEADER_SIZE + (long) capacity * SLOT_SIZE);
+        count = index.getInt(IDX_COUNT);
+        liveBytes = index.getLong(IDX_LIVE_BYTES);
+        return true;
+    }
+
+    /**
+     * Clears the index and fills it by reading the whole log.
+     * Leert den Index und füllt ihn durch Lesen des ganzen Logs.
+     */
+    private void rebuildIndex() throws IOException {
+        mapIndex(INITIAL_CAPACITY);
+        count = 0;
+        liveBytes = 0;
+        scan(log, logEnd, (offset, recordSize, body) -> indexPut(serialOf(body), offset, recordSize));
+        writeIndexHeader();
+    }
+
+    private void mapIndex(int newCapacity) throws IOException {
+        capacity = newCapacity;
+        index = indexChannel.map(FileChannel.MapMode.READ_WRITE, 0, INDEX_HEADER_SIZE + (long) capacity * SLOT_SIZE);
+        for (int i = 0; i < INDEX_HEADER_SIZE + capacity * SLOT_SIZE; i += 8) {
+            index.putLong(i, 0);
+        }
+        index.putLong(0, INDEX_MAGIC);
+        index.putInt(IDX_CAPACITY, capacity);
+    }
+
+    private void writeIndexHeader() {
+        index.putInt(IDX_COUNT, count);
+        index.putLong(IDX_LOG_LENGTH, logEnd);
+        index.putLong(IDX_LIVE_BYTES, liveBytes);
+    }
+
+    /**
+     * Returns the slot of the serial number, or -(free slot) - 1 if it is not in the index.
+     * Gibt den Platz der Seriennummer zurück oder -(freier Platz) - 1, wenn sie nicht im Index ist.
+     */
+    private int indexFind(String seriennummer, long hash) throws IOException {
+        int mask = capacity - 1;
+        int slot = (int) ((hash * 0x9E3779B97F4A7C15L) >>> 32) & mask;
+        while (true) {
+            int position = slotPosition(slot);
+            long packed = index.getLong(position + 8);
+            if (packed == 0) {
+                return -slot - 1;
+            }
+            // Equal 64-bit hashes are confirmed against the record / Gleiche 64-Bit-Hashes werden am Datensatz bestätigt
+            if (index.getLong(position) == hash && seriennummer.equals(serialAt(offsetOf(packed)))) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    private void indexPut(String seriennummer, long offset, int recordSize) throws IOException {
+        if ((count + 1) * 2 > capacity) {
+            growIndex();
+        }
+        long hash = serialHash(seriennummer);
+        int slot = indexFind(seriennummer, hash);
+        if (slot >= 0) {
+            liveBytes -= sizeOf(index.getLong(slotPosition(slot) + 8)); // Older version is superseded / Ältere Version ist überholt
+        } else {
+            slot = -slot - 1;
+            count++;
+        }
+        index.putLong(slotPosition(slot), hash);
+        index.putLong(slotPosition(slot) + 8, (offset << 24) | recordSize);
+        liveBytes += recordSize;
+        writeIndexHeader();
+    }
+
+    private void growIndex() throws IOException {
+        long[] entries = new long[count * 2];
+        int n = 0;
+        for (int slot = 0; slot < capacity; slot++) {
+            long packed = index.getLong(slotPosition(slot) + 8);
+            if (packed != 0) {
+                entries[n++] = index.getLong(slotPosition(slot));
+                entries[n++] = packed;
+            }
+        }
+        mapIndex(capacity * 2);
+        int mask = capacity - 1;
+        for (int i = 0; i < n; i += 2) {
+            // Entries are distinct, so no key comparison is needed / Einträge sind verschieden, daher ist kein Schlüsselvergleich nötig
+            int slot = (int) ((entries[i] * 0x9E3779B97F4A7C15L) >>> 32) & mask;
+            while (index.getLong(slotPosition(slot) + 8) != 0) {
+                slot = (slot + 1) & mask;
+            }
+            index.putLong(slotPosition(slot), entries[i]);
+            index.putLong(slotPosition(slot) + 8, entries[i + 1]);
+        }
+    }
+
+    /**
+     * Returns the packed (offset, size) of the newest record of every device, in log order.
+     * Gibt die gepackten (Offset, Größe) des neuesten Datensatzes jedes Geräts in Logreihenfolge zurück.
+     */
+    private long[] liveRecords() {
+        long[] live = new long[count];
+        int n = 0;
+        for (int slot = 0; slot < capacity; slot++) {
+            long packed = index.getLong(slotPosition(slot) + 8);
+            if (packed != 0) {
+                live[n++] = packed;
+            }
+        }
+        Arrays.sort(live, 0, n); // Offset is in the high bits / Offset liegt in den oberen Bits
+        return n == live.length ? live : Arrays.copyOf(live, n);
+    }
+
+    private static int slotPosition(int slot) {
+        return INDEX_HEADER_SIZE + slot * SLOT_SIZE;
+    }
+
+    private static long offsetOf(long packed) {
+        return packed >>> 24;
+    }
+
+    private static int sizeOf(long packed) {
+        return (int) (packed & MAX_RECORD_SIZE);
+    }
+
+    /**
+     * FNV-1a over the UTF-16 code units of the serial number.
+     * FNV-1a über die UTF-16-Codeeinheiten der Seriennummer.
+     */
+    private static long serialHash(String seriennummer) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < seriennummer.length(); i++) {
+            hash ^= seriennummer.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    // ---------------------------------------------------------------- channel helpers / Kanal-Hilfsmethoden
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position);
+            if (read < 0) {
+                throw new EOFException("Unexpected end of " + channel + " at " + position);
+            }
+            position += read;
+        }
+    }
+
+    private static long transfer(FileChannel source, long position, long length, FileChannel target, long targetPosition) throws IOException {
+        long done = 0;
+        while (done < length) {
+            long copied = source.transferTo(position + done, length - done, target.position(targetPosition + done));
+            if (copied <= 0) {
+                throw new EOFException("Unexpected end of license log at " + (position + done));
+            }
+            done += copied;
+        }
+        return length;
+    }
+
+    /**
+     * Reads a file channel sequentially with positional reads, leaving the channel position alone.
+     * Liest einen Dateikanal sequenziell mit positionsbezogenen Lesevorgängen, ohne die Kanalposition zu ändern.
+     */
+    private static final class PositionalChannelReader implements java.nio.channels.ReadableByteChannel {
+        private final FileChannel channel;
+        private long position;
+
+        PositionalChannelReader(FileChannel channel, long position) {
+            this.channel = channel;
+            this.position = position;
+        }
+
+        @Override
+        public int read(ByteBuffer destination) throws IOException {
+            int read = channel.read(destination, position);
+            if (read > 0) {
+                position += read;
+            }
+            return read;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return channel.isOpen();
+        }
+
+        @Override
+        public void close() {
+            // The channel belongs to the store / Der Kanal gehört dem Speicher
+        }
+    }
+}
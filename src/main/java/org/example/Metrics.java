@@ -0,0 +1,295 @@
+package org.example;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.io.Closeable;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters and timers for the hot paths of the license manager (CSV load, catalog build, license save and sync,
+ * license checks, FX thread). Metrics are created once, usually in a static field, and updating them never
+ * allocates or locks. The current values can be written as a Prometheus text file and are visible over JMX
+ * under {@code org.example:type=Metrics}.
+ * Zähler und Timer für die heißen Pfade des Lizenzmanagers (CSV laden, Katalog bauen, Lizenz speichern und
+ * synchronisieren, Lizenzprüfungen, FX-Thread). Metriken werden einmal erzeugt, meist in einem statischen Feld,
+ * und ihre Aktualisierung erzeugt keine Objekte und sperrt nicht. Die aktuellen Werte können als Prometheus-Textdatei
+ * geschrieben werden und sind per JMX unter {@code org.example:type=Metrics} sichtbar.
+ *
+ * <pre>
+ * private static final Metrics.Timer SAVE_TIME = Metrics.global().timer("licence_save", "Saving a license");
+ * long started = System.nanoTime();
+ * ...
+ * SAVE_TIME.recordSince(started);
+ * </pre>
+ */
+public final class Metrics {
+
+    private static final Metrics GLOBAL = new Metrics("licence_manager");
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999};
+
+    private final String prefix;
+    private final Map<String, Object> metrics = new ConcurrentSkipListMap<>(); // Sorted for stable output / Sortiert für stabile Ausgabe
+    private MBeanServer jmxServer; // Set once exported / Gesetzt, sobald exportiert
+
+    public Metrics(String prefix) {
+        this.prefix = prefix;
+    }
+
+    /**
+     * The metrics of the application.
+     * Die Metriken der Anwendung.
+     */
+    public static Metrics global() {
+        return GLOBAL;
+    }
+
+    /**
+     * Returns the counter with the given name, creating it on first use.
+     * Gibt den Zähler mit dem angegebenen Namen zurück und erzeugt ihn bei der ersten Verwendung.
+     *
+     * @param name Lower case with underscores, without prefix / Kleinbuchstaben mit Unterstrichen, ohne Präfix
+     */
+    public Counter counter(String name, String help) {
+        return metric(name, Counter.class, new Counter(name, help));
+    }
+
+    /**
+     * Returns the timer with the given name, creating it on first use.
+     * Gibt den Timer mit dem angegebenen Namen zurück und erzeugt ihn bei der ersten Verwendung.
+     */
+    public Timer timer(String name, String help) {
+        return metric(name, Timer.class, new Timer(name, help));
+    }
+
+    private <T> T metric(String name, Class<T> type, T created) {
+        Object existing = metrics.putIfAbsent(name, created);
+        if (existing == null) {
+            synchronized (this) {
+                if (jmxServer != null) {
+                    register(name, created);
+                }
+            }
+            return created;
+        }
+        if (!type.isInstance(existing)) {
+            throw new IllegalArgumentException("Metric " + name + " already exists as " + existing.getClass().getSimpleName());
+        }
+        return type.cast(existing);
+    }
+
+    /**
+     * Registers all metrics, including those created later, with the platform MBean server.
+     * Registriert alle Metriken, auch später erzeugte, beim Plattform-MBean-Server.
+     */
+    public synchronized void exportToJmx() {
+        if (jmxServer != null) {
+            return;
+        }
+        jmxServer = ManagementFactory.getPlatformMBeanServer();
+        metrics.forEach(this::register);
+    }
+
+    private void register(String name, Object metric) {
+        try {
+            ObjectName objectName = new ObjectName("org.example:type=Metrics,name=" + prefix + "_" + name);
+            if (!jmxServer.isRegistered(objectName)) {
+                jmxServer.registerMBean(metric, objectName);
+            }
+        } catch (JMException e) {
+            System.err.println("Error registering metric " + name + " with JMX: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Formats all metrics in the Prometheus text format; timers become summaries in seconds.
+     * Formatiert alle Metriken im Prometheus-Textformat; Timer werden zu Summaries in Sekunden.
+     */
+    public String toPrometheusText() {
+        StringBuilder text = new StringBuilder(256 * metrics.size());
+        for (Object metric : metrics.values()) {
+            if (metric instanceof Counter counter) {
+                String name = prefix + "_" + counter.name + "_total";
+                text.append("# HELP ").append(name).append(' ').append(counter.help).append('\n');
+                text.append("# TYPE ").append(name).append(" counter\n");
+                text.append(name).append(' ').append(counter.getCount()).append('\n');
+            } else if (metric instanceof Timer timer) {
+                String name = prefix + "_" + timer.name + "_seconds";
+                LatencyHistogram histogram = timer.histogram;
+                text.append("# HELP ").append(name).append(' ').append(timer.help).append('\n');
+                text.append("# TYPE ").append(name).append(" summary\n");
+                for (double quantile : QUANTILES) {
+                    text.append(name).append("{quantile=\"").append(quantile).append("\"} ")
+                            .append(seconds(histogram.percentileNanos(quantile))).append('\n');
+                }
+                text.append(name).append("_sum ").append(seconds(histogram.sumNanos())).append('\n');
+                text.append(name).append("_count ").append(histogram.count()).append('\n');
+                text.append("# TYPE ").append(name).append("_max gauge\n");
+                text.append(name).append("_max ").append(seconds(histogram.maxNanos())).append('\n');
+            }
+        }
+        return text.toString();
+    }
+
+    /**
+     * Writes a snapshot in the Prometheus text format, e.g. for the node exporter's textfile collector.
+     * The file is replaced atomically, so a scraper never sees half a snapshot.
+     * Schreibt einen Snapshot im Prometheus-Textformat, z. B. für den Textfile-Collector des Node Exporters.
+     * Die Datei wird atomar ersetzt, sodass ein Abrufer nie einen halben Snapshot sieht.
+     */
+    public void writePrometheus(Path file) throws IOException {
+        LicenceStore.writeAtomically(file, toPrometheusText().getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Writes a snapshot file periodically on a daemon thread; closing stops it and writes a final snapshot.
+     * Schreibt periodisch in einem Daemon-Thread eine Snapshot-Datei; Schließen beendet dies und schreibt einen letzten Snapshot.
+     */
+    public Closeable writePrometheusPeriodically(Path file, long periodMillis) {
+        ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "metrics-writer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        Runnable write = () -> {
+            try {
+                writePrometheus(file);
+            } catch (IOException e) {
+                System.err.println("Error writing metrics to " + file + ": " + e.getMessage());
+            }
+        };
+        scheduler.scheduleAtFixedRate(write, periodMillis, periodMillis, TimeUnit.MILLISECONDS);
+        return () -> {
+            scheduler.shutdownNow();
+            write.run();
+        };
+    }
+
+    private static double seconds(long nanos) {
+        return nanos / 1e9;
+    }
+
+    /**
+     * JMX view of a counter.
+     * JMX-Ansicht eines Zählers.
+     */
+    public interface CounterMXBean {
+        long getCount();
+    }
+
+    /**
+     * JMX view of a timer; durations in milliseconds.
+     * JMX-Ansicht eines Timers; Dauern in Millisekunden.
+     */
+    public interface TimerMXBean {
+        long getCount();
+
+        double getMeanMillis();
+
+        double getP50Millis();
+
+        double getP99Millis();
+
+        double getP999Millis();
+
+        double getMaxMillis();
+    }
+
+    /**
+     * Monotonic counter.
+     * Monoton steigender Zähler.
+     */
+    public static final class Counter implements CounterMXBean {
+        private final String name;
+        private final String help;
+        private final LongAdder value = new LongAdder(); // Contended updates go to separate cells / Konkurrierende Updates gehen in getrennte Zellen
+
+        private Counter(String name, String help) {
+            this.name = name;
+            this.help = help;
+        }
+
+        public void increment() {
+            value.increment();
+        }
+
+        public void add(long amount) {
+            value.add(amount);
+        }
+
+        @Override
+        public long getCount() {
+            return value.sum();
+        }
+    }
+
+    /**
+     * Latency distribution of an operation, see {@link LatencyHistogram}.
+     * Latenzverteilung einer Operation, siehe {@link LatencyHistogram}.
+     */
+    public static final class Timer implements TimerMXBean {
+        private final String name;
+        private final String help;
+        private final LatencyHistogram histogram = new LatencyHistogram();
+
+        private Timer(String name, String help) {
+            this.name = name;
+            this.help = help;
+        }
+
+        public void recordNanos(long nanos) {
+            histogram.record(nanos);
+        }
+
+        /**
+         * Records the time since a value of {@link System#nanoTime()} taken at the start of the operation.
+         * Zeichnet die Zeit seit einem zu Beginn der Operation genommenen Wert von {@link System#nanoTime()} auf.
+         */
+        public void recordSince(long startNanos) {
+            histogram.record(System.nanoTime() - startNanos);
+        }
+
+        public LatencyHistogram getHistogram() {
+            return histogram;
+        }
+
+        @Override
+        public long getCount() {
+            return histogram.count();
+        }
+
+        @Override
+        public double getMeanMillis() {
+            return histogram.meanNanos() / 1e6;
+        }
+
+        @Override
+        public double getP50Millis() {
+            return histogram.percentileNanos(0.5) / 1e6;
+        }
+
+        @Override
+        public double getP99Millis() {
+            return histogram.percentileNanos(0.99) / 1e6;
+        }
+
+        @Override
+        public double getP999Millis() {
+            return histogram.percentileNanos(0.999) / 1e6;
+        }
+
+        @Override
+        public double getMaxMillis() {
+            return histogram.maxNanos() / 1e6;
+        }
+    }
+}
@@ -1,12 +1,13 @@
 package org.example;
 
-import org.json.simple.JSONObject;
-import java.io.BufferedReader;
-import java.io.FileReader;
-import java.io.FileWriter;
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.time.LocalDate;
 import java.util.*;
+import java.util.function.Consumer;
 
 /**
  * The `Modell` class is responsible for managing license data and functions.
@@ -16,51 +17,338 @@ import java.util.*;
  */
 
 
-public class Modell {
+public final class Modell {
 
     private String  seriennummer; // Printer serial number / Druckerseriennummer
     private LocalDate startDatum; // License start date / Lizenzstartdatum
     private LocalDate endDatum; // License end date / Lizenzenddatum
-    private final String licenceFilePath = "C:\\Users\\fyurd\\Desktop\\Masaüstü\\selam\\IHK_Project\\licence.file"; // Path to the license file / Pfad zur Lizenzdatei
-    private Map<String, Function> myMapOfPL6Functions; // Stores functions with their IDs as keys / Speichert Funktionen mit ihren IDs als Schlüssel
+    private FunctionSelection enabledFunctions = new FunctionSelection(); // Functions enabled by the license / Durch die Lizenz aktivierte Funktionen
+    private final String licenceFilePath; // Path to the license file / Pfad zur Lizenzdatei
+    private volatile String csvFilePath; // Path to the CSV file of the selected product line / Pfad zur CSV-Datei der gewählten Produktlinie
+    private LicenceStore licenceStore; // Opened on the first save / Beim ersten Speichern geöffnet
+    private LicenceSaveQueue saveQueue; // Started on the first asynchronous save / Beim ersten asynchronen Speichern gestartet
+    private CatalogReloader catalogReloader; // Watches the CSV file once started / Überwacht die CSV-Datei, sobald gestartet
+    private Consumer<CatalogDiff> catalogListener; // Receives the reloads of the selected product line / Erhält die Neuladungen der gewählten Produktlinie
+    private volatile CatalogRegistry catalogRegistry = CatalogRegistry.empty(); // Catalogs of all product lines / Kataloge aller Produktlinien
+    private volatile String productLine; // Name of the selected product line / Name der gewählten Produktlinie
+    private volatile FunctionCatalog myCatalogOfPL6Functions = FunctionCatalog.empty(); // Stores functions in compact columns, addressed by ID or ordinal / Speichert Funktionen in kompakten Spalten, adressiert über ID oder Ordinalzahl
+    private volatile FunctionRules rules = FunctionRules.none(); // Compiled for the current catalog / Für den aktuellen Katalog übersetzt
+
+    private static final Metrics.Timer SAVE_TIME = Metrics.global().timer("licence_save", "Writing a batch of licenses: store append, sync and export of the license file");
+    private static final Metrics.Counter SAVE_FAILURES = Metrics.global().counter("licence_save_failures", "License saves that failed");
+
+    private static final int FLEET_SAVE_BATCH = 4096; // Licenses per store append when saving a fleet / Lizenzen pro Anhängen beim Speichern einer Flotte
+    private static final int CATALOG_BATCH_SIZE = 2048; // Functions per batch reported while loading / Funktionen pro Paket während des Ladens
+    private static final String PRODUCT_LINE_GLOB = "functions*.csv"; // Catalogs of the other product lines, next to the CSV file / Kataloge der anderen Produktlinien, neben der CSV-Datei
+
+    // Parsed license files for "is function X enabled for serial Y today?" checks
+    // Gelesene Lizenzdateien für Prüfungen "Ist Funktion X für Seriennummer Y heute aktiviert?"
+    private static final int LICENCE_CACHE_SIZE = 10_000;
+    private static final long LICENCE_REVALIDATE_MILLIS = 1000;
+    private final LicenceCache licenceCache;
+
+    // Lock-free answers for other tools, updated whenever the catalog or a license changes
+    // Sperrfreie Antworten für andere Werkzeuge, aktualisiert bei jeder Änderung von Katalog oder Lizenz
+    private final LicenceQueryService queryService;
+
+    // Catalog versions licenses were issued for, kept next to the license store
+    // Katalogversionen, für die Lizenzen ausgestellt wurden, neben dem Lizenzspeicher aufbewahrt
+    private final CatalogVersions catalogVersions;
+
+    // Activation, warning and expiry events of all stored licenses, rebuilt by loadStoredLicences()
+    // Aktivierungs-, Warn- und Ablaufereignisse aller gespeicherten Lizenzen, durch loadStoredLicences() neu aufgebaut
+    private static final int EXPIRY_WARNING_DAYS = 30;
+    private final LicenceExpiryScheduler expiryScheduler = new LicenceExpiryScheduler(LocalDate.now(), EXPIRY_WARNING_DAYS);
 
     /**
-     * Constructor initializes the function map and loads the functions from a CSV file.
-     * Der Konstruktor initialisiert die Funktionsmappe und lädt die Funktionen aus einer CSV-Datei.
+     * Constructor creates an empty model. The function catalog is loaded separately
+     * with {@link #loadFunctionsFromCSV(CatalogListener)}, usually on a background thread.
+     * Der Konstruktor erstellt ein leeres Modell. Der Funktionskatalog wird separat
+     * mit {@link #loadFunctionsFromCSV(CatalogListener)} geladen, meist in einem Hintergrund-Thread.
      */
     public Modell() {
-        // LinkedHashMap speichert die Schlüssel-Werte-Paare in der Reihenfolge, in der sie hinzugefügt wurden.
-        this.myMapOfPL6Functions = new LinkedHashMap<>();//Dieses Objekt wird verwendet, um die Funktionen des Geräts als Schlüssel-Wert-Paare zu speichern.
-        loadFunctionsFromCSV();//Daten aus einer CSV-Datei zu lesen und diese in eine geeignete Datenstruktur (z. B. LinkedHashMap) zu laden.
+        this("C:\\Users\\fyurd\\Desktop\\Masaüstü\\selam\\IHK_Project\\functions2.csv",
+                "C:\\Users\\fyurd\\Desktop\\Masaüstü\\selam\\IHK_Project\\licence.file");
+    }
+
+    /**
+     * Creates an empty model that works with other files, e.g. for tools and benchmarks.
+     * Erstellt ein leeres Modell, das mit anderen Dateien arbeitet, z. B. für Werkzeuge und Benchmarks.
+     *
+     * @param csvFilePath     CSV file with the function catalog / CSV-Datei mit dem Funktionskatalog
+     * @param licenceFilePath License file; the license store is created next to it / Lizenzdatei; der Lizenzspeicher wird daneben angelegt
+     */
+    public Modell(String csvFilePath, String licenceFilePath) {
+        this.csvFilePath = csvFilePath;
+        this.licenceFilePath = licenceFilePath;
+        this.productLine = CatalogRegistry.productLineOf(Paths.get(csvFilePath));
+        this.catalogVersions = new CatalogVersions(CatalogVersions.directoryFor(licenceStoreFile()));
+        this.licenceCache = new LicenceCache(this::licenceFileFor, catalogVersions::get, LICENCE_CACHE_SIZE, LICENCE_REVALIDATE_MILLIS);
+        this.queryService = new LicenceQueryService(catalogVersions);
+    }
+
+    /**
+     * Receives the functions of a catalog while it is being loaded.
+     * Empfängt die Funktionen eines Katalogs, während er geladen wird.
+     */
+    public interface CatalogListener {
+        /**
+         * Called with the next functions in load order, as a read-only view of the catalog being built.
+         * Wird mit den nächsten Funktionen in Ladereihenfolge aufgerufen, als schreibgeschützte Ansicht des entstehenden Katalogs.
+         */
+        void onBatch(FunctionCatalog.Rows rows);
+
+        default void onProgress(long bytesDone, long bytesTotal) {
+        }
+    }
+
+    /**
+     * Loads functions from a CSV file and builds the function catalog.
+     * Each function has an ID, name, and description which are stored in the `myCatalogOfPL6Functions` catalog.
+     * While parsing, new functions are passed to the listener in batches, so a UI can show them before the load is finished.
+     * If the {@link CatalogSnapshot} next to the CSV file is up to date, the catalog is mapped from it instead of parsing
+     * the CSV, and no batches are reported; otherwise the snapshot is rewritten after parsing.
+     * Funktionen aus einer CSV-Datei laden und den Funktionskatalog aufbauen.
+     * Jede Funktion hat eine ID, einen Namen und eine Beschreibung, die im Katalog `myCatalogOfPL6Functions` gespeichert werden.
+     * Während des Lesens werden neue Funktionen paketweise an den Listener übergeben, damit eine Oberfläche sie vor Ende des Ladens anzeigen kann.
+     * Ist der {@link CatalogSnapshot} neben der CSV-Datei aktuell, wird der Katalog daraus abgebildet, statt die CSV zu
+     * lesen, und es werden keine Pakete gemeldet; andernfalls wird der Snapshot nach dem Lesen neu geschrieben.
+     *
+     * @param listener Receiver of batches and progress / Empfänger von Paketen und Fortschritt
+     * @return Summary of the load including malformed rows / Zusammenfassung inklusive fehlerhafter Zeilen
+     * @throws IOException if the CSV file cannot be read / wenn die CSV-Datei nicht gelesen werden kann
+     */
+    public CsvCatalogLoader.Report loadFunctionsFromCSV(CatalogListener listener) throws IOException {
+        Path csvFile = Paths.get(csvFilePath);
+        FunctionCatalog snapshot = CatalogSnapshot.load(csvFile);
+        if (snapshot != null) {
+            myCatalogOfPL6Functions = snapshot;
+            queryService.addCatalog(snapshot);
+            rules = loadRules(snapshot);
+            return new CsvCatalogLoader.Report(snapshot.size(), 0, List.of());
+        }
+        CatalogSnapshot.Source source = CatalogSnapshot.Source.of(csvFile); // Before parsing, see Source / Vor dem Lesen, siehe Source
+
+        // The loader reads the file in one piece and understands quoted fields (RFC 4180).
+        // Der Lader liest die Datei am Stück ein und versteht Felder in Anführungszeichen (RFC 4180).
+        CsvCatalogLoader loader = new CsvCatalogLoader();
+        FunctionCatalog.Builder builder = new FunctionCatalog.Builder(); // Receives every parsed row / Empfängt jede gelesene Zeile
+        int[] batchStart = {0};
+
+        CsvCatalogLoader.Report report = loader.load(csvFile, new CsvCatalogLoader.RowSink() {
+            @Override
+            public void row(String id, String name, String descr) {
+                builder.add(id, name, descr); // Repeated ids only update an existing row / Wiederholte Ids ändern nur eine bestehende Zeile
+                if (builder.size() - batchStart[0] == CATALOG_BATCH_SIZE) {
+                    // Only the slot numbers of the batch are copied, the text stays in the builder
+                    // Nur die Slot-Nummern des Pakets werden kopiert, der Text bleibt im Builder
+                    listener.onBatch(builder.rows(batchStart[0]));
+                    batchStart[0] = builder.size();
+                }
+            }
+
+            @Override
+            public void progress(long bytesDone, long bytesTotal) {
+                listener.onProgress(bytesDone, bytesTotal);
+            }
+        });
+        if (builder.size() > batchStart[0]) {
+            listener.onBatch(builder.rows(batchStart[0]));
+        }
+        if (report.getMalformedCount() > 0) {
+            // Malformed rows are skipped and reported instead of aborting the load.
+            // Fehlerhafte Zeilen werden übersprungen und gemeldet, statt das Laden abzubrechen.
+            System.err.println("Skipped " + report.getMalformedCount() + " malformed CSV rows:");
+            report.getMalformedRows().forEach(row -> System.err.println("  " + row));
+        }
+        myCatalogOfPL6Functions = builder.build();
+        queryService.addCatalog(myCatalogOfPL6Functions);
+        rules = loadRules(myCatalogOfPL6Functions);
+        if (report.getMalformedCount() == 0) {
+            // With malformed rows the CSV is parsed again on every start, so the warning stays visible.
+            // Bei fehlerhaften Zeilen wird die CSV bei jedem Start neu gelesen, damit die Warnung sichtbar bleibt.
+            CatalogSnapshot.write(csvFile, myCatalogOfPL6Functions, source);
+        }
+        return report;
     }
 
     /**
-     * Loads functions from a CSV file and populates the map of functions.
-     * Each function has an ID, name, and description which are stored in the `myMapOfPL6Functions` map.
-     * Funktionen aus einer CSV-Datei laden und die Funktionsmappe auffüllen.
-     * Jede Funktion hat eine ID, einen Namen und eine Beschreibung, die in der `myMapOfPL6Functions`-Mappe gespeichert werden.
+     * Dependency and conflict rules between the functions of the current catalog, see {@link FunctionRules}.
+     * Abhängigkeits- und Konfliktregeln zwischen den Funktionen des aktuellen Katalogs, siehe {@link FunctionRules}.
      */
-    private void loadFunctionsFromCSV() {
-        String csvFile = "C:\\Users\\fyurd\\Desktop\\Masaüstü\\selam\\IHK_Project\\functions2.csv"; // Path to the CSV file / Pfad zur CSV-Datei
-        String line; // Holds each line of the CSV file / Hält jede Zeile der CSV-Datei
-        String csvSplitBy = ","; // Delimiter used in the CSV file / Trennzeichen in der CSV-Datei
+    public FunctionRules getRules() {
+        return rules;
+    }
 
-        try (BufferedReader br = new BufferedReader(new FileReader(csvFile))) {//BufferedReader kann eine Datei nicht direkt öffnen. Stattdessen benötigt es ein FileReader objekt
-            br.readLine(); // Skip headers / Kopfzeile überspringen
-            while ((line = br.readLine()) != null) {// Alle Zeilen in der Datei einzeln lesen.
-                String[] fields = line.split(csvSplitBy); // Split each line into fields / Teilt jede Zeile in Felder auf
-                myMapOfPL6Functions.put(fields[0], new Function(fields[0], fields[1], fields[2])); // Add function to the map / Funktion zur Map hinzufügen
+    private FunctionRules loadRules(FunctionCatalog catalog) {
+        try {
+            FunctionRules loaded = FunctionRules.load(Paths.get(csvFilePath), catalog);
+            if (!loaded.isEmpty()) {
+                System.out.println(loaded.ruleCount() + " function rules loaded");
             }
+            return loaded;
+        } catch (IOException e) {
+            System.err.println("Error reading function rules: " + e.getMessage());
+            return FunctionRules.none();
+        }
+    }
+
+    /**
+     * Loads the catalogs of all product lines ({@code functions*.csv} next to the CSV file) in parallel into a
+     * {@link CatalogRegistry}. Call it after {@link #loadFunctionsFromCSV(CatalogListener)}: the loaded catalog is not
+     * read again, and is replaced by the registry's copy, which has the same ordinals.
+     * Afterwards the query service knows the catalogs of all product lines, so it answers for licenses of every line,
+     * whichever one is shown.
+     * Lädt die Kataloge aller Produktlinien ({@code functions*.csv} neben der CSV-Datei) parallel in eine
+     * {@link CatalogRegistry}. Nach {@link #loadFunctionsFromCSV(CatalogListener)} aufrufen: Der geladene Katalog wird
+     * nicht erneut gelesen und durch die Kopie der Registry mit denselben Ordinalzahlen ersetzt.
+     * Der Abfragedienst kennt danach die Kataloge aller Produktlinien, beantwortet also Lizenzen jeder Linie, egal welche
+     * angezeigt wird.
+     *
+     * @return Number of product lines / Anzahl der Produktlinien
+     */
+    public int loadProductLines() {
+        Path csvFile = Paths.get(csvFilePath);
+        String selected = productLine;
+        Map<String, Path> csvFiles = new TreeMap<>();
+        try {
+            csvFiles.putAll(CatalogRegistry.discover(csvFile.toAbsolutePath().getParent(), PRODUCT_LINE_GLOB));
         } catch (IOException e) {
-            System.err.println("Error loading functions from CSV: " + e.getMessage());
+            System.err.println("Error looking for product-line catalogs: " + e.getMessage());
+        }
+        csvFiles.put(selected, csvFile);
+        FunctionCatalog loaded = myCatalogOfPL6Functions;
+        CatalogRegistry registry = CatalogRegistry.load(csvFiles, Map.of(selected, loaded));
+        synchronized (this) {
+            catalogRegistry = registry;
+            if (myCatalogOfPL6Functions == loaded && registry.contains(selected)) {
+                myCatalogOfPL6Functions = registry.get(selected); // Same ordinals, shared text / Gleiche Ordinalzahlen, gemeinsamer Text
+            }
+        }
+        queryService.addCatalogs(registry.names().stream().map(registry::get).toList());
+        return registry.size();
+    }
+
+    /**
+     * Switches to the catalog of another product line, without reading any file except its rules. The enabled
+     * functions are cleared, because they refer to the ordinals of the previous catalog, and the CSV watcher follows
+     * the new product line.
+     * Wechselt zum Katalog einer anderen Produktlinie, ohne eine Datei außer ihren Regeln zu lesen. Die aktivierten
+     * Funktionen werden geleert, da sie sich auf die Ordinalzahlen des vorherigen Katalogs beziehen, und die
+     * CSV-Überwachung folgt der neuen Produktlinie.
+     *
+     * @return false if the product line is unknown / false, wenn die Produktlinie unbekannt ist
+     */
+    public synchronized boolean selectProductLine(String name) {
+        CatalogRegistry registry = catalogRegistry;
+        if (!registry.contains(name)) {
+            return false;
+        }
+        if (name.equals(productLine)) {
+            return true;
+        }
+        FunctionCatalog catalog = registry.get(name);
+        productLine = name;
+        csvFilePath = registry.csvFile(name).toString();
+        rules = loadRules(catalog);
+        myCatalogOfPL6Functions = catalog;
+        enabledFunctions = new FunctionSelection();
+        if (catalogReloader != null) {
+            try {
+                catalogReloader.close();
+                catalogReloader = null;
+                watchCatalog(!registry.isUpToDate(name)); // Changed while another product line was selected / Geändert, während eine andere Produktlinie gewählt war
+            } catch (IOException e) {
+                System.err.println("Changes to the CSV file of " + name + " are not picked up: " + e.getMessage());
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Name of the selected product line; before {@link #loadProductLines()} the name of the CSV file.
+     * Name der gewählten Produktlinie; vor {@link #loadProductLines()} der Name der CSV-Datei.
+     */
+    public String getProductLine() {
+        return productLine;
+    }
+
+    /**
+     * Names of all loaded product lines, sorted.
+     * Namen aller geladenen Produktlinien, sortiert.
+     */
+    public List<String> getProductLines() {
+        return catalogRegistry.names();
+    }
+
+    public CatalogRegistry getCatalogRegistry() {
+        return catalogRegistry;
+    }
+
+    /**
+     * Starts watching the CSV file; the listener receives the differences whenever its content changes.
+     * The listener runs on the watcher thread and is expected to call {@link #applyCatalog(CatalogDiff)}. It is called
+     * while the model is locked and only for the product line that is selected at that moment.
+     * Startet die Überwachung der CSV-Datei; der Listener erhält die Unterschiede, sobald sich ihr Inhalt ändert.
+     * Der Listener läuft im Überwachungs-Thread und soll {@link #applyCatalog(CatalogDiff)} aufrufen. Er wird aufgerufen,
+     * während das Modell gesperrt ist, und nur für die in diesem Moment gewählte Produktlinie.
+     *
+     * @throws IOException if the directory cannot be watched / wenn das Verzeichnis nicht überwacht werden kann
+     */
+    public synchronized void startCatalogWatcher(Consumer<CatalogDiff> listener) throws IOException {
+        if (catalogReloader == null) {
+            catalogListener = listener;
+            watchCatalog(false);
+        }
+    }
+
+    private void watchCatalog(boolean reloadNow) throws IOException {
+        String watched = productLine;
+        catalogReloader = new CatalogReloader(Paths.get(csvFilePath), this::getCatalog, diff -> {
+            synchronized (this) {
+                if (watched.equals(productLine)) { // Drops reloads that finished after a switch / Verwirft Neuladungen, die nach einem Wechsel fertig wurden
+                    catalogListener.accept(diff);
+                }
+            }
+        });
+        if (reloadNow) {
+            catalogReloader.startAndReload();
+        } else {
+            catalogReloader.start();
+        }
+    }
+
+    /**
+     * Swaps in a reloaded catalog in one step. The enabled functions are moved to the new ordinals by id,
+     * functions that no longer exist are dropped.
+     * Tauscht einen neu geladenen Katalog in einem Schritt aus. Die aktivierten Funktionen werden über die Id auf die
+     * neuen Ordinalzahlen verschoben, nicht mehr vorhandene Funktionen entfallen.
+     */
+    public synchronized void applyCatalog(CatalogDiff diff) {
+        rules = loadRules(diff.getAfter()); // Ordinals changed / Ordinalzahlen haben sich geändert
+        myCatalogOfPL6Functions = diff.getAfter();
+        enabledFunctions.remap(diff);
+        queryService.addCatalog(diff.getAfter());
+        if (catalogRegistry.contains(productLine)) {
+            catalogRegistry = catalogRegistry.with(productLine, diff.getAfter());
         }
     }
 
     /**
      * Saves the license data to a file in JSON format.
      * The license includes the printer's serial number, start date, and end date.
+     * The enabled functions are stored as a Base64 bit field (one bit per catalog ordinal) together with
+     * the catalog size and version hash, so they can only be read back against the same catalog.
+     * The license is first appended to the {@link LicenceStore} next to the license file and synced to disk;
+     * the license file is then exported from the store by writing a temporary file and renaming it,
+     * so a crash never leaves a half-written license behind.
      * Speichert die Lizenzdaten in einer Datei im JSON-Format.
      * Die Lizenz enthält die Druckerseriennummer, das Startdatum und das Enddatum.
+     * Die aktivierten Funktionen werden als Base64-Bitfeld (ein Bit pro Katalog-Ordinalzahl) zusammen mit
+     * Kataloggröße und Versions-Hash gespeichert, damit sie nur mit demselben Katalog gelesen werden.
+     * Die Lizenz wird zuerst an den {@link LicenceStore} neben der Lizenzdatei angehängt und auf die Platte synchronisiert;
+     * danach wird die Lizenzdatei aus dem Speicher exportiert, indem eine temporäre Datei geschrieben und umbenannt wird,
+     * sodass ein Absturz nie eine halb geschriebene Lizenz hinterlässt.
      *
      * @return true if the license file was saved successfully, false otherwise.
      * true, wenn die Lizenzdatei erfolgreich gespeichert wurde, andernfalls false.
@@ -68,22 +356,14 @@ public class Modell {
     public boolean saveLicenceFile() {
         if (seriennummer == null || startDatum == null || endDatum == null) {//Wenn eine dieser drei Variablen null (leer, also undefiniert) ist, schlägt der Lizenzierungsprozess aufgrund fehlender Daten fehl.
             System.err.println("Error: License data is incomplete.");
+            SAVE_FAILURES.increment();
             return false;
         }
 
         //JSON organisiert Daten logisch mit Schlüssel-Wert-Paaren.JSON ist ein Format, das sowohl für Menschen als auch für Maschinen lesbar ist.
-        JSONObject jsonObject = new JSONObject(); // Create a JSON object / Ein JSON-Objekt erstellen
-        jsonObject.put("seriennummer", seriennummer); // Add serial number to JSON / Seriennummer zum JSON hinzufügen
-        jsonObject.put("startDatum", startDatum.toString()); // Add start date to JSON / Startdatum zum JSON hinzufügen
-        jsonObject.put("endDatum", endDatum.toString()); // Add end date to JSON / Enddatum zum JSON hinzufügen
-
-
-
-       //Saving license information stored in JSON format to a specified path in the file system.
-        try (FileWriter file = new FileWriter(licenceFilePath)) {
-            file.write(jsonObject.toJSONString()); // Write JSON to file / JSON in die Datei schreiben
-            file.flush(); // Ensure all data is written / Sicherstellen, dass alle Daten geschrieben wurden
-            System.out.println("License saved: " + jsonObject.toJSONString());//Konvertiert das JSON-Objekt in ein Array im JSON-Format:
+        Licence licence = toLicence(); // Serial number, dates and function bit field / Seriennummer, Daten und Funktionsbitfeld
+        try {
+            writeLicences(List.of(licence));
             return true;
         } catch (IOException e) {
             System.err.println("Error saving license file: " + e.getMessage());
@@ -91,13 +371,343 @@ public class Modell {
         }
     }
 
+    /**
+     * Saves the license data like {@link #saveLicenceFile()}, but with the given functions, on the save queue's thread, and returns at once.
+     * The enabled functions are not changed; the caller adopts the functions once the write succeeded.
+     * Speichert die Lizenzdaten wie {@link #saveLicenceFile()}, aber mit den angegebenen Funktionen, im Thread der Speicherwarteschlange, und kehrt sofort zurück.
+     * Die aktivierten Funktionen werden nicht geändert; der Aufrufer übernimmt die Funktionen, sobald das Schreiben gelungen ist.
+     *
+     * @param functions Functions of the license to write / Funktionen der zu schreibenden Lizenz
+     * @param onDone Called on the save thread once the license is written or the write failed
+     *               / Wird im Speicher-Thread aufgerufen, sobald die Lizenz geschrieben ist oder das Schreiben fehlschlug
+     * @return false if the license data is incomplete and nothing was queued / false, wenn die Lizenzdaten unvollständig sind und nichts eingereiht wurde
+     */
+    public boolean saveLicenceFileAsync(FunctionSelection functions, Consumer<LicenceSaveQueue.Result> onDone) {
+        if (seriennummer == null || startDatum == null || endDatum == null) {
+            System.err.println("Error: License data is incomplete.");
+            SAVE_FAILURES.increment();
+            return false;
+        }
+        getSaveQueue().submit(toLicence(functions), onDone);
+        return true;
+    }
+
+    private synchronized LicenceSaveQueue getSaveQueue() {
+        if (saveQueue == null) {
+            saveQueue = new LicenceSaveQueue(this::writeLicences);
+        }
+        return saveQueue;
+    }
+
+    /**
+     * Writes a batch of licenses: one append and sync in the store, then the license file is exported for the last one.
+     * Schreibt ein Paket von Lizenzen: ein Anhängen und Synchronisieren im Speicher, danach wird die Lizenzdatei für die letzte exportiert.
+     */
+    private void writeLicences(List<Licence> licences) throws IOException {
+        long started = System.nanoTime();
+        try {
+            //Saving license information in the store and exporting it as JSON to a specified path in the file system.
+            LicenceStore store = getLicenceStore();
+            store.putAll(licences); // Durable once this returns / Dauerhaft gespeichert, sobald dies zurückkehrt
+            keepCatalogVersions(licences);
+            queryService.publishAll(licences);
+            expiryScheduler.scheduleAll(licences);
+            Licence last = licences.get(licences.size() - 1);
+            store.export(last.getSeriennummer(), Paths.get(licenceFilePath)); // Temp file + atomic rename / Temporäre Datei + atomares Umbenennen
+            for (Licence licence : licences) {
+                licenceCache.invalidate(licence.getSeriennummer());
+                System.out.println("License saved: " + licence.toJSONString());
+            }
+            SAVE_TIME.recordSince(started);
+        } catch (IOException e) {
+            SAVE_FAILURES.increment();
+            throw e;
+        }
+    }
+
+    /**
+     * Returns the license store next to the license file, opening it on first use.
+     * Gibt den Lizenzspeicher neben der Lizenzdatei zurück und öffnet ihn bei der ersten Verwendung.
+     *
+     * @throws IOException if the store cannot be opened / wenn der Speicher nicht geöffnet werden kann
+     */
+    public synchronized LicenceStore getLicenceStore() throws IOException {
+        if (licenceStore == null) {
+            licenceStore = new LicenceStore(licenceStoreFile());
+        }
+        return licenceStore;
+    }
+
+    private Path licenceStoreFile() {
+        return Paths.get(licenceFilePath).resolveSibling("licences.log");
+    }
+
+    /**
+     * Keeps the catalog versions of saved licenses on disk, so they stay readable after a restart.
+     * Bewahrt die Katalogversionen gespeicherter Lizenzen auf der Platte auf, damit sie nach einem Neustart lesbar bleiben.
+     */
+    private void keepCatalogVersions(Collection<Licence> licences) {
+        for (Licence licence : licences) {
+            catalogVersions.persist(licence.getCatalogVersion()); // Cheap once a version is kept / Billig, sobald eine Version aufbewahrt ist
+        }
+    }
+
+    /**
+     * Finishes waiting saves, stops the catalog watcher and closes the license store, if they were started.
+     * Beendet wartende Speicheraufträge, die Katalogüberwachung und schließt den Lizenzspeicher, falls sie gestartet wurden.
+     */
+    public void close() {
+        LicenceSaveQueue queue;
+        synchronized (this) {
+            queue = saveQueue;
+            saveQueue = null;
+        }
+        if (queue != null) {
+            // Outside the lock: the writer thread still needs the license store / Außerhalb der Sperre: Der Schreib-Thread braucht noch den Lizenzspeicher
+            queue.close(); // Writes the saves that are still waiting / Schreibt die noch wartenden Speicheraufträge
+        }
+        expiryScheduler.close();
+        closeFiles();
+    }
+
+    private synchronized void closeFiles() {
+        if (catalogReloader != null) {
+            try {
+                catalogReloader.close();
+            } catch (IOException e) {
+                System.err.println("Error closing catalog watcher: " + e.getMessage());
+            }
+            catalogReloader = null;
+        }
+        if (licenceStore != null) {
+            try {
+                licenceStore.close();
+            } catch (IOException e) {
+                System.err.println("Error closing license store: " + e.getMessage());
+            }
+            licenceStore = null;
+        }
+    }
+
+    /**
+     * Creates an immutable license from the current license data and the loaded catalog.
+     * Erstellt eine unveränderliche Lizenz aus den aktuellen Lizenzdaten und dem geladenen Katalog.
+     */
+    public Licence toLicence() {
+        return toLicence(enabledFunctions);
+    }
+
+    private Licence toLicence(FunctionSelection functions) {
+        FunctionCatalog catalog = myCatalogOfPL6Functions;
+        return new Licence(seriennummer, startDatum, endDatum, functions, catalog.size(), catalog.versionHash());
+    }
+
     /**
      * Loads license data from a file in JSON format.
      * Lädt Lizenzdaten aus einer Datei im JSON-Format.
      *
+     * The file is read with a streaming parser. The bit field refers to the ordinals of the catalog the license was
+     * issued for; if the CSV changed since, the enabled functions are moved to the loaded catalog by id, using the
+     * kept {@link CatalogVersions}, and functions that no longer exist are dropped.
+     * Die Datei wird mit einem Streaming-Parser gelesen. Das Bitfeld bezieht sich auf die Ordinalzahlen des Katalogs, für
+     * den die Lizenz ausgestellt wurde; hat sich die CSV seitdem geändert, werden die aktivierten Funktionen mithilfe der
+     * aufbewahrten {@link CatalogVersions} über die Id auf den geladenen Katalog verschoben, nicht mehr vorhandene
+     * Funktionen entfallen.
+     *
      * @return true if the license file was loaded successfully, false otherwise.
      * true, wenn die Lizenzdatei erfolgreich geladen wurde, andernfalls false.
      */
+    public boolean loadLicenceFile() {
+        try {
+            byte[] content = Files.readAllBytes(Paths.get(licenceFilePath));
+            Licence licence = Licence.fromJSON(content, 0, content.length);
+            seriennummer = licence.getSeriennummer();
+            startDatum = licence.getStartDatum();
+            endDatum = licence.getEndDatum();
+            FunctionCatalog catalog = myCatalogOfPL6Functions;
+            FunctionCatalog issued = licence.getCatalogVersion().equals(catalog.versionHash()) ? catalog
+                    : catalogVersions.get(licence.getCatalogVersion());
+            if (issued == catalog) {
+                enabledFunctions = licence.getFunctions();
+            } else if (issued != null) {
+                // Moved to the loaded catalog by id, like a hot reload / Über die Id auf den geladenen Katalog verschoben, wie beim Neuladen
+                FunctionSelection functions = licence.getFunctions();
+                int count = functions.count();
+                functions.remap(CatalogDiff.compute(issued, catalog));
+                if (functions.count() < count) {
+                    System.err.println("License was issued for catalog " + licence.getCatalogVersion() + "; "
+                            + (count - functions.count()) + " enabled functions no longer exist in catalog " + catalog.versionHash() + ".");
+                }
+                enabledFunctions = functions;
+            } else {
+                System.err.println("License was issued for catalog " + licence.getCatalogVersion() + " (" + licence.getCatalogSize()
+                        + " functions), which is not known, and catalog " + catalog.versionHash() + " is loaded; enabled functions are not restored.");
+                enabledFunctions = new FunctionSelection();
+            }
+            if (queryService.snapshot().getLicence(licence.getSeriennummer()) == null) {
+                queryService.publish(licence); // License file written before the store existed / Lizenzdatei aus der Zeit vor dem Speicher
+            }
+            System.out.println("License loaded: " + licence);
+            return true;
+        } catch (NoSuchFileException e) {
+            System.out.println("No license file found at " + licenceFilePath);
+            return false;
+        } catch (IOException | IllegalArgumentException e) {
+            System.err.println("Error loading license file: " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Publishes the newest license of every device in the license store to the query service.
+     * Veröffentlicht die neueste Lizenz jedes Geräts im Lizenzspeicher an den Abfragedienst.
+     *
+     * @return Number of licenses / Anzahl der Lizenzen
+     */
+    public int loadStoredLicences() {
+        try {
+            List<Licence> licences = getLicenceStore().latest();
+            keepCatalogVersions(licences); // Also for licenses saved before versions were kept / Auch für Lizenzen, die vor dem Aufbewahren von Versionen gespeichert wurden
+            queryService.publishAll(licences);
+            expiryScheduler.scheduleAll(licences);
+            expiryScheduler.start(); // Catches up to today, then ticks at midnight / Holt bis heute auf, danach Takt um Mitternacht
+            return licences.size();
+        } catch (IOException | IllegalArgumentException e) {
+            System.err.println("Error reading license store: " + e.getMessage());
+            return 0;
+        }
+    }
+
+    /**
+     * Builds a {@link LicenceFleet} from the newest stored license of every device, for bulk changes to many devices.
+     * Licenses issued for earlier versions of the CSV are moved to the current catalog by id; licenses of unknown
+     * versions are listed in {@link LicenceFleet#getSkipped()}.
+     * Baut eine {@link LicenceFleet} aus der neuesten gespeicherten Lizenz jedes Geräts, für Massenänderungen an vielen Geräten.
+     * Lizenzen für frühere Versionen der CSV werden über die Id auf den aktuellen Katalog verschoben; Lizenzen unbekannter
+     * Versionen werden in {@link LicenceFleet#getSkipped()} aufgeführt.
+     *
+     * @throws IOException if the license store cannot be read / wenn der Lizenzspeicher nicht gelesen werden kann
+     */
+    public LicenceFleet loadFleet() throws IOException {
+        return LicenceFleet.of(getCatalog(), getLicenceStore().latest(), catalogVersions::get);
+    }
+
+    /**
+     * Saves the devices changed in the fleet to the license store, in batches that share one sync each.
+     * The license file of the single-device view is not touched.
+     * Speichert die in der Flotte geänderten Geräte im Lizenzspeicher, in Paketen, die sich je eine Synchronisierung teilen.
+     * Die Lizenzdatei der Einzelgeräteansicht bleibt unverändert.
+     *
+     * @return Number of saved licenses / Anzahl der gespeicherten Lizenzen
+     * @throws IOException if the store cannot be written; licenses of earlier batches stay saved
+     *                     / wenn der Speicher nicht geschrieben werden kann; Lizenzen früherer Pakete bleiben gespeichert
+     */
+    public int saveFleet(LicenceFleet fleet) throws IOException {
+        List<Licence> licences = fleet.changedLicences();
+        LicenceStore store = getLicenceStore();
+        int saved = 0;
+        try {
+            for (int from = 0; from < licences.size(); from += FLEET_SAVE_BATCH) {
+                List<Licence> batch = licences.subList(from, Math.min(from + FLEET_SAVE_BATCH, licences.size()));
+                long started = System.nanoTime();
+                try {
+                    store.putAll(batch);
+                } catch (IOException e) {
+                    SAVE_FAILURES.increment();
+                    throw e;
+                }
+                saved += batch.size();
+                batch.forEach(licence -> licenceCache.invalidate(licence.getSeriennummer()));
+                keepCatalogVersions(batch);
+                expiryScheduler.scheduleAll(batch);
+                SAVE_TIME.recordSince(started);
+            }
+        } finally {
+            // Saved batches are answered even if a later batch fails, with one snapshot swap instead of one per batch
+            // Gespeicherte Pakete werden auch beantwortet, wenn ein späteres scheitert, mit einem Snapshot-Austausch statt einem pro Paket
+            if (saved > 0) {
+                queryService.publishAll(licences.subList(0, saved));
+            }
+        }
+        fleet.clearChanged();
+        return licences.size();
+    }
+
+    /**
+     * Exports the newest license of every device in the license store to one compressed archive, e.g. at the end of a shift.
+     * Exportiert die neueste Lizenz jedes Geräts im Lizenzspeicher in ein komprimiertes Archiv, z. B. am Schichtende.
+     *
+     * @throws IOException if the store cannot be read or the archive cannot be written / wenn der Speicher nicht gelesen oder das Archiv nicht geschrieben werden kann
+     */
+    public LicenceArchive.Report exportLicences(Path archive) throws IOException {
+        return LicenceArchive.export(getLicenceStore(), catalogVersions, archive);
+    }
+
+    /**
+     * Imports a license archive into the license store, see {@link LicenceArchive#importInto}.
+     * The archive is verified before anything is saved. The query service is refreshed from the store once at the end,
+     * also after a partial import.
+     * Importiert ein Lizenzarchiv in den Lizenzspeicher, siehe {@link LicenceArchive#importInto}.
+     * Das Archiv wird geprüft, bevor etwas gespeichert wird. Der Abfragedienst wird am Ende einmal aus dem Speicher
+     * aktualisiert, auch nach einem teilweisen Import.
+     *
+     * @throws IOException if the archive is damaged, then nothing is saved, or the store cannot be written, then licenses
+     *                     of earlier batches stay saved / wenn das Archiv beschädigt ist, dann wird nichts gespeichert, oder
+     *                     der Speicher nicht geschrieben werden kann, dann bleiben Lizenzen früherer Pakete gespeichert
+     */
+    public LicenceArchive.Report importLicences(Path archive) throws IOException {
+        LicenceStore store = getLicenceStore();
+        boolean[] saved = {false};
+        try {
+            return LicenceArchive.importInto(archive, store, catalogVersions, batch -> {
+                saved[0] = true;
+                batch.forEach(licence -> licenceCache.invalidate(licence.getSeriennummer()));
+                keepCatalogVersions(batch);
+                expiryScheduler.scheduleAll(batch);
+            });
+        } finally {
+            if (saved[0]) {
+                // One snapshot swap instead of one per batch / Ein Snapshot-Austausch statt einem pro Paket
+                queryService.publishAll(store.latest());
+            }
+        }
+    }
+
+    /**
+     * Reports activations, upcoming expirations and expirations of the stored licenses.
+     * Meldet Aktivierungen, bevorstehende Abläufe und Abläufe der gespeicherten Lizenzen.
+     */
+    public LicenceExpiryScheduler getExpiryScheduler() {
+        return expiryScheduler;
+    }
+
+    public LicenceQueryService getQueryService() {
+        return queryService;
+    }
+
+    /**
+     * Checks whether a function is enabled for a device on the given day, using cached license files.
+     * Prüft anhand zwischengespeicherter Lizenzdateien, ob eine Funktion für ein Gerät am angegebenen Tag aktiviert ist.
+     */
+    public boolean isFunctionEnabled(String seriennummer, String functionId, LocalDate day) {
+        return licenceCache.isFunctionEnabled(seriennummer, functionId, day);
+    }
+
+    public LicenceCache getLicenceCache() {
+        return licenceCache;
+    }
+
+    /**
+     * License file of a device: {@code <serial>.licence.file} next to the license file (as written by the batch
+     * generation), otherwise the license file itself.
+     * Lizenzdatei eines Geräts: {@code <Seriennummer>.licence.file} neben der Lizenzdatei (wie von der Stapelerzeugung
+     * geschrieben), sonst die Lizenzdatei selbst.
+     */
+    private Path licenceFileFor(String seriennummer) {
+        Path licenceFile = Paths.get(licenceFilePath);
+        Path deviceFile = licenceFile.resolveSibling(Licence.fileNameFor(seriennummer));
+        return Files.exists(deviceFile) ? deviceFile : licenceFile;
+    }
 
     // Getter and Setter methods...
 
@@ -117,6 +727,14 @@ public class Modell {
         this.startDatum = startDatum;
     }
 
+    public FunctionSelection getEnabledFunctions() {
+        return enabledFunctions;
+    }
+
+    public void setEnabledFunctions(FunctionSelection enabledFunctions) {
+        this.enabledFunctions = enabledFunctions;
+    }
+
     public LocalDate getEndDatum() {
         return endDatum;
     }
@@ -126,9 +744,17 @@ public class Modell {
     }
 
     public Map<String, Function> getPL6Functions() {
-        return myMapOfPL6Functions;}//This method returns a Map object named myMapOfPL6Functions defined inside the class.
+        return myCatalogOfPL6Functions.asMap();}//This method returns a read-only Map view of the myCatalogOfPL6Functions catalog, iterating in CSV order.
     // The Function class is a data structure that represents each function in the license management system.
 
+    public FunctionCatalog getCatalog() {
+        return myCatalogOfPL6Functions;
+    }
+
+    public String getCsvFilePath() {
+        return csvFilePath;
+    }
+
     public String getLicenceFilePath() {
         return licenceFilePath;
     }
@@ -159,7 +785,7 @@ public class Modell {
      *  *
      *  * **Key Benefits of the `Function` Class:**
      *  * - **Modularity:** Each function is treated as an independent object, allowing for easy management and updates.
-     *  * - **Data Organization:** Provides a structured way to store function data in the `myMapOfPL6Functions` map.
+     *  * - **Data Organization:** Provides a structured way to store function data in the `myCatalogOfPL6Functions` catalog.
      *  * - **Flexibility:** New functions can be added dynamically by creating new `Function` objects.
      *  *
      */
@@ -0,0 +1,173 @@
+package org.example;
+
+import javafx.collections.ObservableListBase;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Observable list of catalog ordinals that backs the function table.
+ * The ordinals are kept in an int array, so a table over 100k functions needs no per-row objects.
+ * Beobachtbare Liste von Katalog-Ordinalzahlen, die der Funktionstabelle zugrunde liegt.
+ * Die Ordinalzahlen liegen in einem int-Array, sodass eine Tabelle mit 100k Funktionen keine Objekte pro Zeile braucht.
+ */
+public class OrdinalList extends ObservableListBase<Integer> {
+
+    private int[] ordinals = new int[0];
+    private int size;
+
+    @Override
+    public Integer get(int index) {
+        return ordinalAt(index);
+    }
+
+    /**
+     * Returns the ordinal at the given row without boxing.
+     * Gibt die Ordinalzahl in der angegebenen Zeile ohne Boxing zurück.
+     */
+    public int ordinalAt(int index) {
+        Objects.checkIndex(index, size);
+        return ordinals[index];
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Shows the ordinals 0 to count - 1, i.e. the whole catalog in load order.
+     * Zeigt die Ordinalzahlen 0 bis count - 1, also den ganzen Katalog in Ladereihenfolge.
+     */
+    public void setRange(int count) {
+        int[] all = new int[count];
+        Arrays.setAll(all, i -> i);
+        setAll(all, count);
+    }
+
+    /**
+     * Appends the ordinals from (inclusive) to to (exclusive), e.g. for a batch of newly loaded functions.
+     * Hängt die Ordinalzahlen von from (inklusive) bis to (exklusive) an, z. B. für ein Paket neu geladener Funktionen.
+     */
+    public void appendRange(int from, int to) {
+        int count = to - from;
+        if (count <= 0) {
+            return;
+        }
+        if (size + count > ordinals.length) {
+            ordinals = Arrays.copyOf(ordinals, Math.max(size + count, ordinals.length * 2));
+        }
+        for (int i = 0; i < count; i++) {
+            ordinals[size + i] = from + i;
+        }
+        int oldSize = size;
+        size += count;
+        beginChange();
+        nextAdd(oldSize, size);
+        endChange();
+    }
+
+    /**
+     * Replaces the content with the first `count` entries of the given array.
+     * Ersetzt den Inhalt durch die ersten `count` Einträge des angegebenen Arrays.
+     */
+    public void setAll(int[] newOrdinals, int count) {
+        List<Integer> removed = snapshot(ordinals, size);
+        ordinals = newOrdinals;
+        size = count;
+        beginChange();
+        if (!removed.isEmpty()) {
+            nextRemove(0, removed);
+        }
+        if (count > 0) {
+            nextAdd(0, count);
+        }
+        endChange();
+    }
+
+    /**
+     * Moves the rows to a new catalog version and reports only what changed: rows of removed functions are removed,
+     * rows of changed functions are updated and, if insertAdded is set, added functions are inserted at their position.
+     * Rows whose ordinal only shifted are reported as updated. No row is replaced, so the table keeps its scroll position
+     * and selection and only redraws the visible cells.
+     * If the catalog was reordered, the rows are replaced as a whole.
+     * Verschiebt die Zeilen auf eine neue Katalogversion und meldet nur die Änderungen: Zeilen entfernter Funktionen werden
+     * entfernt, Zeilen geänderter Funktionen aktualisiert und, falls insertAdded gesetzt ist, hinzugefügte Funktionen an
+     * ihrer Position eingefügt. Zeilen, deren Ordinalzahl sich nur verschoben hat, werden als aktualisiert gemeldet. Keine Zeile wird
+     * ersetzt, daher behält die Tabelle Scrollposition und Auswahl und zeichnet nur die sichtbaren Zellen neu.
+     * Wurde der Katalog umsortiert, werden die Zeilen als Ganzes ersetzt.
+     *
+     * @param insertAdded true for the unfiltered list of all functions / true für die ungefilterte Liste aller Funktionen
+     */
+    public void remap(CatalogDiff diff, boolean insertAdded) {
+        int[] added = insertAdded ? diff.getAdded() : new int[0];
+        int[] result = new int[size + added.length];
+        if (!diff.isOrderPreserved()) {
+            int count = 0;
+            for (int i = 0; i < size; i++) {
+                int newOrdinal = diff.newOrdinal(ordinals[i]);
+                if (newOrdinal >= 0) {
+                    result[count++] = newOrdinal;
+                }
+            }
+            if (insertAdded) {
+                setRange(diff.getAfter().size());
+            } else {
+                setAll(result, count);
+            }
+            return;
+        }
+
+        // Index arguments refer to the list as it looks after the previous steps.
+        // Indexargumente beziehen sich auf die Liste nach den vorherigen Schritten.
+        int position = 0;
+        int nextAdded = 0;
+        beginChange();
+        for (int i = 0; i < size; i++) {
+            int newOrdinal = diff.newOrdinal(ordinals[i]);
+            if (newOrdinal < 0) {
+                nextRemove(position, Integer.valueOf(ordinals[i]));
+                continue;
+            }
+            while (nextAdded < added.length && added[nextAdded] < newOrdinal) {
+                result[position] = added[nextAdded++];
+                nextAdd(position, position + 1);
+                position++;
+            }
+            result[position] = newOrdinal;
+            if (newOrdinal != ordinals[i] || diff.isChanged(newOrdinal)) { // Renumbered rows are re-read too / Umnummerierte Zeilen werden ebenfalls neu gelesen
+                nextUpdate(position);
+            }
+            position++;
+        }
+        while (nextAdded < added.length) {
+            result[position] = added[nextAdded++];
+            nextAdd(position, position + 1);
+            position++;
+        }
+        ordinals = result;
+        size = position;
+        endChange();
+    }
+
+    /**
+     * Read-only view of the old content for change events, without copying it.
+     * Schreibgeschützte Ansicht des alten Inhalts für Änderungsereignisse, ohne ihn zu kopieren.
+     */
+    private static List<Integer> snapshot(int[] values, int count) {
+        return new AbstractList<>() {
+            @Override
+            public Integer get(int index) {
+                Objects.checkIndex(index, count);
+                return values[index];
+            }
+
+            @Override
+            public int size() {
+                return count;
+            }
+        };
+    }
+}
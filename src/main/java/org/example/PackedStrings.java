@@ -0,0 +1,357 @@
+package org.example;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Stores many strings back to back in one byte array, addressed by slot number.
+ * Strings that fit into Latin-1 take one byte per character, all others two (UTF-16BE),
+ * so the memory per string is the text itself plus one int offset.
+ * Speichert viele Strings hintereinander in einem Byte-Array, adressiert über eine Slot-Nummer.
+ * Strings, die in Latin-1 passen, belegen ein Byte pro Zeichen, alle anderen zwei (UTF-16BE),
+ * sodass pro String nur der Text selbst und ein int-Offset Speicher belegen.
+ * A read-only instance can also read its characters straight from a memory-mapped file (see {@link CatalogSnapshot}).
+ * Eine schreibgeschützte Instanz kann ihre Zeichen auch direkt aus einer im Speicher abgebildeten Datei lesen (siehe {@link CatalogSnapshot}).
+ */
+public class PackedStrings {
+
+    // The high bit of a start offset marks a UTF-16 string. / Das höchste Bit eines Start-Offsets markiert einen UTF-16-String.
+    private static final int UTF16_FLAG = 0x80000000;
+    private static final int OFFSET_MASK = 0x7FFFFFFF;
+
+    private byte[] data = new byte[1024]; // Packed characters of all strings, null if mapped / Gepackte Zeichen aller Strings, null wenn abgebildet
+    private ByteBuffer mapped; // Read-only characters from a file instead of data / Schreibgeschützte Zeichen aus einer Datei statt data
+    private int[] starts = new int[65]; // starts[k] = begin of slot k, starts[k + 1] = its end / Beginn und Ende von Slot k
+    private int size; // Number of slots / Anzahl der Slots
+    private boolean view; // Shares the arrays of another instance, see view() / Teilt die Arrays einer anderen Instanz, siehe view()
+
+    /**
+     * Creates a read-only instance over packed characters in a buffer, e.g. a mapped file.
+     * Erzeugt eine schreibgeschützte Instanz über gepackten Zeichen in einem Puffer, z. B. einer abgebildeten Datei.
+     *
+     * @param bytes  Packed characters, position 0 = offset 0 / Gepackte Zeichen, Position 0 = Offset 0
+     * @param starts Start offsets as returned by {@link #starts()} / Start-Offsets, wie von {@link #starts()} geliefert
+     */
+    static PackedStrings readOnly(ByteBuffer bytes, int[] starts) {
+        PackedStrings strings = new PackedStrings();
+        strings.data = null;
+        strings.mapped = bytes;
+        strings.starts = starts;
+        strings.size = starts.length - 1;
+        return strings;
+    }
+
+    /**
+     * Returns a read-only instance over the strings added so far that shares this instance's arrays.
+     * Later adds only write behind these strings or into grown copies of the arrays, so the view can be read on
+     * another thread once it was handed over safely, e.g. through a concurrent queue.
+     * Gibt eine schreibgeschützte Instanz über die bisher hinzugefügten Strings zurück, die die Arrays dieser Instanz teilt.
+     * Spätere Aufrufe von add schreiben nur hinter diese Strings oder in vergrößerte Kopien der Arrays, daher kann die Ansicht
+     * in einem anderen Thread gelesen werden, sobald sie sicher übergeben wurde, z. B. über eine nebenläufige Warteschlange.
+     */
+    PackedStrings view() {
+        // add() may later set the UTF-16 flag in starts[size]; views only read that entry as an end offset, which is masked.
+        // add() setzt später eventuell das UTF-16-Flag in starts[size]; Ansichten lesen diesen Eintrag nur maskiert als Endoffset.
+        PackedStrings strings = new PackedStrings();
+        strings.data = data;
+        strings.mapped = mapped;
+        strings.starts = starts;
+        strings.size = size;
+        strings.view = true;
+        return strings;
+    }
+
+    /**
+     * Appends a string and returns its slot number.
+     * Hängt einen String an und gibt seine Slot-Nummer zurück.
+     */
+    public int add(String s) {
+        if (data == null || view) {
+            throw new IllegalStateException("PackedStrings is read-only");
+        }
+        boolean latin1 = isLatin1(s);
+        int length = latin1 ? s.length() : s.length() * 2;
+        int begin = starts[size] & OFFSET_MASK;
+        if ((long) begin + length > OFFSET_MASK) {
+            throw new IllegalStateException("PackedStrings is full (" + begin + " bytes)");
+        }
+        ensureData(begin + length);
+        if (latin1) {
+            for (int i = 0; i < s.length(); i++) {
+                data[begin + i] = (byte) s.charAt(i); // Lossless for Latin-1 text / Verlustfrei für Latin-1-Text
+            }
+        } else {
+            for (int i = 0; i < s.length(); i++) {
+                char c = s.charAt(i);
+                data[begin + 2 * i] = (byte) (c >>> 8);
+                data[begin + 2 * i + 1] = (byte) c;
+            }
+        }
+        if (size + 2 > starts.length) {
+            starts = Arrays.copyOf(starts, starts.length * 2);
+        }
+        starts[size] = latin1 ? begin : begin | UTF16_FLAG;
+        starts[size + 1] = begin + length;
+        return size++;
+    }
+
+    /**
+     * Appends the string of a slot of another PackedStrings by copying its packed bytes, without creating the string.
+     * Hängt den String eines Slots eines anderen PackedStrings an, indem seine gepackten Bytes kopiert werden, ohne den String zu erzeugen.
+     */
+    int addFrom(PackedStrings other, int slot) {
+        if (data == null || view) {
+            throw new IllegalStateException("PackedStrings is read-only");
+        }
+        int otherBegin = other.starts[slot];
+        int from = otherBegin & OFFSET_MASK;
+        int length = (other.starts[slot + 1] & OFFSET_MASK) - from;
+        int begin = starts[size] & OFFSET_MASK;
+        if ((long) begin + length > OFFSET_MASK) {
+            throw new IllegalStateException("PackedStrings is full (" + begin + " bytes)");
+        }
+        ensureData(begin + length);
+        if (other.data != null) {
+            System.arraycopy(other.data, from, data, begin, length);
+        } else {
+            other.mapped.get(from, data, begin, length);
+        }
+        if (size + 2 > starts.length) {
+            starts = Arrays.copyOf(starts, starts.length * 2);
+        }
+        starts[size] = begin | (otherBegin & UTF16_FLAG); // Same encoding as the source / Gleiche Kodierung wie die Quelle
+        starts[size + 1] = begin + length;
+        return size++;
+    }
+
+    /**
+     * Shrinks the internal arrays to their used size once no more strings are added.
+     * Verkleinert die internen Arrays auf die genutzte Größe, sobald keine Strings mehr hinzukommen.
+     */
+    public void trim() {
+        if (data == null || view) {
+            return;
+        }
+        data = Arrays.copyOf(data, starts[size] & OFFSET_MASK);
+        starts = Arrays.copyOf(starts, size + 1);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Materializes the string in the given slot.
+     * Erzeugt den String des angegebenen Slots.
+     */
+    public String get(int slot) {
+        int begin = starts[slot];
+        int end = starts[slot + 1] & OFFSET_MASK;
+        Charset charset = (begin & UTF16_FLAG) == 0 ? StandardCharsets.ISO_8859_1 : StandardCharsets.UTF_16BE;
+        begin &= OFFSET_MASK;
+        if (data != null) {
+            return new String(data, begin, end - begin, charset);
+        }
+        byte[] bytes = new byte[end - begin];
+        mapped.get(begin, bytes);
+        return new String(bytes, charset);
+    }
+
+    /**
+     * Returns the number of characters in the given slot.
+     * Gibt die Anzahl der Zeichen im angegebenen Slot zurück.
+     */
+    public int length(int slot) {
+        int begin = starts[slot];
+        int bytes = (starts[slot + 1] & OFFSET_MASK) - (begin & OFFSET_MASK);
+        return (begin & UTF16_FLAG) == 0 ? bytes : bytes >> 1;
+    }
+
+    /**
+     * Returns one character of a slot without materializing the string.
+     * Gibt ein Zeichen eines Slots zurück, ohne den String zu erzeugen.
+     */
+    public char charAt(int slot, int index) {
+        int begin = starts[slot];
+        if ((begin & UTF16_FLAG) == 0) {
+            return (char) (byteAt(begin + index) & 0xFF);
+        }
+        int p = (begin & OFFSET_MASK) + 2 * index;
+        return (char) (((byteAt(p) & 0xFF) << 8) | (byteAt(p + 1) & 0xFF));
+    }
+
+    /**
+     * Compares a slot with a string without allocating.
+     * Vergleicht einen Slot mit einem String, ohne Objekte anzulegen.
+     */
+    public boolean contentEquals(int slot, String s) {
+        int length = length(slot);
+        if (length != s.length()) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (charAt(slot, i) != s.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Compares a slot with a slot of another (or the same) PackedStrings without allocating.
+     * Vergleicht einen Slot mit einem Slot eines anderen (oder desselben) PackedStrings, ohne Objekte anzulegen.
+     */
+    public boolean contentEquals(int slot, PackedStrings other, int otherSlot) {
+        int length = length(slot);
+        if (length != other.length(otherSlot)) {
+            return false;
+        }
+        int begin = starts[slot];
+        int otherBegin = other.starts[otherSlot];
+        if ((begin & UTF16_FLAG) == (otherBegin & UTF16_FLAG)) {
+            // Same encoding: compare the packed bytes / Gleiche Kodierung: die gepackten Bytes vergleichen
+            int from = begin & OFFSET_MASK;
+            int otherFrom = otherBegin & OFFSET_MASK;
+            int bytes = (starts[slot + 1] & OFFSET_MASK) - from;
+            if (data != null && other.data != null) {
+                return Arrays.equals(data, from, from + bytes, other.data, otherFrom, otherFrom + bytes);
+            }
+            for (int i = 0; i < bytes; i++) {
+                if (byteAt(from + i) != other.byteAt(otherFrom + i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        for (int i = 0; i < length; i++) {
+            if (charAt(slot, i) != other.charAt(otherSlot, i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Tests whether the slot contains the given lower-case text, ignoring case.
+     * Prüft, ob der Slot den angegebenen Text in Kleinbuchstaben enthält, ohne Groß-/Kleinschreibung zu beachten.
+     */
+    public boolean containsIgnoreCase(int slot, String lowerNeedle) {
+        int last = length(slot) - lowerNeedle.length();
+        for (int start = 0; start <= last; start++) {
+            if (regionMatchesIgnoreCase(slot, start, lowerNeedle)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Tests whether the slot starts with the given text, case-sensitive, without allocating.
+     * Prüft ohne Objekte anzulegen, ob der Slot mit dem angegebenen Text beginnt, mit Beachtung der Groß-/Kleinschreibung.
+     */
+    public boolean startsWith(int slot, String prefix) {
+        if (length(slot) < prefix.length()) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length(); i++) {
+            if (charAt(slot, i) != prefix.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Tests whether the slot starts with the given lower-case text, ignoring case.
+     * Prüft, ob der Slot mit dem angegebenen Text in Kleinbuchstaben beginnt, ohne Groß-/Kleinschreibung zu beachten.
+     */
+    public boolean startsWithIgnoreCase(int slot, String lowerPrefix) {
+        return length(slot) >= lowerPrefix.length() && regionMatchesIgnoreCase(slot, 0, lowerPrefix);
+    }
+
+    /**
+     * Compares the lower-case form of a slot with a lower-case string, like {@link String#compareTo(String)}.
+     * Vergleicht die Kleinbuchstabenform eines Slots mit einem String in Kleinbuchstaben, wie {@link String#compareTo(String)}.
+     */
+    public int compareIgnoreCase(int slot, String lower) {
+        int length = length(slot);
+        int common = Math.min(length, lower.length());
+        for (int i = 0; i < common; i++) {
+            int diff = Character.toLowerCase(charAt(slot, i)) - lower.charAt(i);
+            if (diff != 0) {
+                return diff;
+            }
+        }
+        return length - lower.length();
+    }
+
+    private boolean regionMatchesIgnoreCase(int slot, int start, String lower) {
+        for (int i = 0; i < lower.length(); i++) {
+            if (Character.toLowerCase(charAt(slot, start + i)) != lower.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Computes the same value as {@link String#hashCode()} for the slot.
+     * Berechnet denselben Wert wie {@link String#hashCode()} für den Slot.
+     */
+    public int hash(int slot) {
+        int h = 0;
+        int length = length(slot);
+        for (int i = 0; i < length; i++) {
+            h = 31 * h + charAt(slot, i);
+        }
+        return h;
+    }
+
+    /**
+     * Returns the number of bytes used by the packed characters.
+     * Gibt die Anzahl der von den gepackten Zeichen belegten Bytes zurück.
+     */
+    public long byteSize() {
+        return starts[size] & OFFSET_MASK;
+    }
+
+    private byte byteAt(int offset) {
+        return data != null ? data[offset] : mapped.get(offset);
+    }
+
+    // Package-private access to the packed form for writing snapshots.
+    // Paketinterner Zugriff auf die gepackte Form zum Schreiben von Snapshots.
+    int[] starts() {
+        return size + 1 == starts.length ? starts : Arrays.copyOf(starts, size + 1);
+    }
+
+    /**
+     * True if the characters are read from a mapped file and take no heap.
+     * True, wenn die Zeichen aus einer abgebildeten Datei gelesen werden und keinen Heap belegen.
+     */
+    boolean isMapped() {
+        return data == null;
+    }
+
+    ByteBuffer bytes() {
+        int length = starts[size] & OFFSET_MASK;
+        return data != null ? ByteBuffer.wrap(data, 0, length) : mapped.slice(0, length);
+    }
+
+    private void ensureData(int capacity) {
+        if (capacity > data.length) {
+            data = Arrays.copyOf(data, (int) Math.min(OFFSET_MASK, Math.max(capacity, (long) data.length * 2)));
+        }
+    }
+
+    private static boolean isLatin1(String s) {
+        for (int i = 0; i < s.length(); i++) {
+            if (s.charAt(i) > 0xFF) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -1,16 +1,23 @@
 package org.example;
 
 import javafx.application.Application;
+import javafx.application.Platform;
+import javafx.beans.property.ReadOnlyObjectWrapper;
 import javafx.geometry.Insets;
 import javafx.scene.Scene;
 import javafx.scene.control.*;
 import javafx.scene.layout.*;
 import javafx.stage.Stage;
 
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Paths;
 import java.time.LocalDate;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * This class represents the View in the MVC design pattern.
@@ -28,13 +35,58 @@ public class View extends Application {
     // Controller-Objekt zur Verarbeitung von Benutzerinteraktionen und Koordination zwischen Modell und View
     private final Controller controller = new Controller(myModel, this);
 
-    // A list to store all checkboxes for available functions
-    // Eine Liste zum Speichern aller Checkboxen für verfügbare Funktionen
-    private final List<CheckBox> checkBoxes = new ArrayList<>();//ArrayList provides fast index-based access to elements.ArrayList is especially fast when adding elements to the end of the list.
+    // Selection state of all functions, kept outside the table cells
+    // Auswahlzustand aller Funktionen, außerhalb der Tabellenzellen gehalten
+    private final FunctionSelection selection = new FunctionSelection();
+
+    // Rows of the function table (catalog ordinals) and the table itself
+    // Zeilen der Funktionstabelle (Katalog-Ordinalzahlen) und die Tabelle selbst
+    private final OrdinalList functionRows = new OrdinalList();
+    private final TableView<Integer> functionTable = new TableView<>();
+
+    // Batches of rows received so far while the catalog is still loading, in ordinal order; null once the catalog is complete
+    // Bisher empfangene Zeilenpakete in Ordinalzahl-Reihenfolge, solange der Katalog noch lädt; null, sobald der Katalog vollständig ist
+    private List<FunctionCatalog.Rows> loadingRows = new ArrayList<>();
+
+    // Progress and status of the catalog load
+    // Fortschritt und Status des Katalog-Ladevorgangs
+    private final ProgressBar loadProgress = new ProgressBar();
+    private final Label loadStatusLabel = new Label();
+    private final ComboBox<String> productLineBox = new ComboBox<>(); // Shown when there is more than one product line / Sichtbar, wenn es mehr als eine Produktlinie gibt
+    private final Button saveButton = new Button("Save");
+    private final Label saveStatusLabel = new Label(); // Result of the last save, instead of a dialog / Ergebnis des letzten Speicherns, statt eines Dialogs
+    private final Button selectAllButton = new Button("Select All");
+
+    // Search box and the single background thread that builds the search index and runs the queries
+    // Suchfeld und der einzelne Hintergrund-Thread, der den Suchindex aufbaut und die Abfragen ausführt
+    private final TextField searchField = new TextField();
+    private final Label searchResultLabel = new Label();
+    private final Label ruleStatusLabel = new Label(); // Rules broken by the current selection / Von der aktuellen Auswahl verletzte Regeln
+    private final ExecutorService searchExecutor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "function-search");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final AtomicLong searchGeneration = new AtomicLong(); // Newest query wins / Die neueste Abfrage gewinnt
+    private FunctionSearchIndex.Session searchSession; // Only used on the search thread / Nur im Such-Thread verwendet
+    private boolean showingSearchResults; // Rows are a search result, not the whole catalog / Zeilen sind ein Suchergebnis, nicht der ganze Katalog
+
+    // Optional HTTP query endpoint, started when the system property licence.http.port is set
+    // Optionaler HTTP-Abfrageendpunkt, gestartet, wenn die Systemeigenschaft licence.http.port gesetzt ist
+    private LicenceHttpServer httpServer;
+
+    // Reports FX thread stalls; metrics are exported over JMX and, with -Dmetrics.file, as a Prometheus text file
+    // Meldet Hänger des FX-Threads; Metriken werden per JMX und mit -Dmetrics.file als Prometheus-Textdatei exportiert
+    private final FxStallDetector stallDetector = new FxStallDetector(Metrics.global(), FxStallDetector.FRAME_NANOS);
+    private Closeable metricsWriter;
+    private static final long METRICS_WRITE_MILLIS = 10_000;
+    private static final int STATUS_LABEL_ROWS = 3; // Entries named in a status label / In einem Status-Label genannte Einträge
+    private static final int STATUS_TOOLTIP_ROWS = 50; // Entries listed in its tooltip / In seinem Tooltip aufgeführte Einträge
 
     // A label to display license information
     // Ein Label zur Anzeige von Lizenzinformationen
     private final Label licenceInfoLabel = new Label("License Information: Not Available");//final clearly indicates that this Label object will be assigned once and will not be changed.
+    private final Label expiryInfoLabel = new Label(); // Licenses that expire soon, updated by the expiry scheduler / Bald ablaufende Lizenzen, vom Ablaufplaner aktualisiert
 
     /**
      * The main method to launch the application.
@@ -44,6 +96,26 @@ public class View extends Application {
         launch(args);
     }
 
+    /**
+     * Closes the model's files when the application exits.
+     * Schließt die Dateien des Modells, wenn die Anwendung beendet wird.
+     */
+    @Override
+    public void stop() {
+        if (httpServer != null) {
+            httpServer.stop();
+        }
+        stallDetector.close();
+        myModel.close();
+        if (metricsWriter != null) {
+            try {
+                metricsWriter.close(); // Writes the final snapshot / Schreibt den letzten Snapshot
+            } catch (IOException e) {
+                System.err.println("Error writing metrics: " + e.getMessage());
+            }
+        }
+    }
+
     /**
      * Initializes and displays the GUI.
      * Initialisiert und zeigt die grafische Benutzeroberfläche (GUI).
@@ -67,71 +139,66 @@ public class View extends Application {
         Label licenseInfoTitle = new Label("License Information:");
         licenseInfoTitle.setStyle("-fx-font-size: 16px; -fx-font-weight: bold;");
         licenceInfoLabel.setStyle("-fx-font-size: 14px; -fx-text-fill: #555555;");
-        topSection.getChildren().addAll(licenseInfoTitle, licenceInfoLabel);//Adds two components (licenseInfoTitle and licenceInfoLabel) to the previously defined VBox layout manager.
+        expiryInfoLabel.setStyle("-fx-font-size: 12px; -fx-text-fill: #555555;");
+        topSection.getChildren().addAll(licenseInfoTitle, licenceInfoLabel, expiryInfoLabel);//Adds three components (licenseInfoTitle, licenceInfoLabel and expiryInfoLabel) to the previously defined VBox layout manager.
 
         // Scrollable pane for the top section
         // Scrollbereich für den oberen Abschnitt
         ScrollPane topScroll = new ScrollPane(topSection);
         topScroll.setFitToWidth(true);
 
-        // Center Section: Displays available functions with checkboxes
-        // Mittelteil: Zeigt verfügbare Funktionen mit Checkboxen an
-        GridPane centerSection = new GridPane();//A grid creates a layout similar to a table structure. Components are placed in rows and columns in the grid.
+        // Center Section: Displays available functions in a virtualized table
+        // Mittelteil: Zeigt verfügbare Funktionen in einer virtualisierten Tabelle an
+        VBox centerSection = new VBox();
         centerSection.setPadding(new Insets(10));
-        centerSection.setHgap(20);
-        centerSection.setVgap(10);
+        centerSection.setSpacing(10);
         centerSection.setStyle("-fx-background-color: #ffffff; -fx-border-color: #dcdcdc;");
 
         // Label for the function selection section
         // Label für den Abschnitt zur Funktionsauswahl
         Label functionLabel = new Label("Available Functions:");
         functionLabel.setStyle("-fx-font-size: 14px; -fx-font-weight: bold;");
-        centerSection.add(functionLabel, 0, 0, 3, 1); // Title spans three columns / Titel erstreckt sich über drei Spalten.0 (Column Index):0 (Row Index):3 (Column Span):1 (Row Span):
-
-        // Dynamically add functions with checkboxes and descriptions
-        // Dynamisches Hinzufügen von Funktionen mit Checkboxen und Beschreibungen
-       // int rowIndex = 1;
-        int rowIndex = 1; //
-        for (Map.Entry<String, Modell.Function> entry : myModel.getPL6Functions().entrySet()) {//The loop processes each key-value pair in the map, allowing access to:
-           // Key: entry.getKey()
-           // Value: entry.getValue() (a Modell.Function object).
-            //Map.Entry is an interface that represents a key-value pair in Java's Map data structure.
 
-
-
-
-            // Label for the function ID
-            // Label für die Funktions-ID
-            Label idLabel = new Label(entry.getValue().getId());
-            idLabel.setStyle("-fx-font-size: 12px; -fx-font-weight: bold; -fx-text-fill: #333333;");
-
-            // Checkbox for enabling/disabling a function
-            // Checkbox zum Aktivieren/Deaktivieren einer Funktion
-            CheckBox checkBox = new CheckBox(entry.getValue().getName());
-            checkBox.setTooltip(new Tooltip(entry.getValue().getDescr()));
-            checkBoxes.add(checkBox);
-
-            // Label for the function description
-            // Label für die Funktionsbeschreibung
-            Label descriptionLabel = new Label(entry.getValue().getDescr());
-            descriptionLabel.setStyle("-fx-padding: 5; -fx-border-color: lightgray; -fx-border-width: 1; -fx-background-color: #f9f9f9;");
-            descriptionLabel.setWrapText(true);
-            descriptionLabel.setPrefWidth(300);
-
-            // Add components to the grid
-            // Komponenten zum Raster hinzufügen
-            centerSection.add(idLabel, 0, rowIndex);
-            centerSection.add(checkBox, 1, rowIndex);
-            centerSection.add(descriptionLabel, 2, rowIndex);
-            rowIndex++;
-        }
-
-        // Scrollable pane for the center section
-        // Scrollbereich für den Mittelteil
-        //If the content in the centerSection exceeds the dimensions of the screen, this content becomes scrollable both horizontally and vertically.
-        ScrollPane centerScroll = new ScrollPane(centerSection);
-        centerScroll.setFitToWidth(true);
-        centerScroll.setFitToHeight(true);
+        // The TableView only creates cells for the visible rows and reuses them while scrolling.
+        // Each row is just a catalog ordinal; id, name and description are read from the catalog when a cell is shown.
+        // Die TableView erzeugt nur Zellen für sichtbare Zeilen und verwendet sie beim Scrollen wieder.
+        // Jede Zeile ist nur eine Katalog-Ordinalzahl; Id, Name und Beschreibung werden beim Anzeigen aus dem Katalog gelesen.
+        functionTable.setItems(functionRows);
+        functionTable.setFixedCellSize(28); // Constant row height keeps scrolling cheap / Konstante Zeilenhöhe hält das Scrollen günstig
+        functionTable.setPlaceholder(new Label("Loading functions..."));
+        functionTable.setColumnResizePolicy(TableView.CONSTRAINED_RESIZE_POLICY_FLEX_LAST_COLUMN);
+        VBox.setVgrow(functionTable, Priority.ALWAYS);
+
+        TableColumn<Integer, Integer> idColumn = ordinalColumn("ID", 140);
+        idColumn.setCellFactory(column -> new IdCell());
+        TableColumn<Integer, Integer> enabledColumn = ordinalColumn("Function", 260);
+        enabledColumn.setCellFactory(column -> new EnabledCell());
+        TableColumn<Integer, Integer> descrColumn = ordinalColumn("Description", 400);
+        descrColumn.setCellFactory(column -> new DescriptionCell());
+        functionTable.getColumns().setAll(List.of(idColumn, enabledColumn, descrColumn));
+
+        // Progress of the catalog load; rows can be used while the rest is still loading
+        // Fortschritt des Katalog-Ladevorgangs; Zeilen sind nutzbar, während der Rest noch lädt
+        loadProgress.setPrefWidth(200);
+        loadStatusLabel.setStyle("-fx-font-size: 12px; -fx-text-fill: #555555;");
+        productLineBox.setVisible(false);
+        productLineBox.setManaged(false);
+        productLineBox.setOnAction(e -> switchProductLine(productLineBox.getValue()));
+        HBox loadBox = new HBox(10, functionLabel, productLineBox, loadProgress, loadStatusLabel);
+        loadBox.setAlignment(javafx.geometry.Pos.CENTER_LEFT);
+
+        // Search box: filters the table on every keystroke, e.g. "duplex" or "id:PL6-1*"
+        // Suchfeld: filtert die Tabelle bei jedem Tastendruck, z. B. "duplex" oder "id:PL6-1*"
+        searchField.setPromptText("Search functions (e.g. duplex, id:PL6-1*, name:scan, descr:color)");
+        searchField.setDisable(true); // Enabled once the index is built / Aktiviert, sobald der Index aufgebaut ist
+        searchField.textProperty().addListener((observable, oldQuery, newQuery) -> search(newQuery));
+        searchResultLabel.setStyle("-fx-font-size: 12px; -fx-text-fill: #555555;");
+        HBox.setHgrow(searchField, Priority.ALWAYS);
+        HBox searchBox = new HBox(10, searchField, searchResultLabel);
+        searchBox.setAlignment(javafx.geometry.Pos.CENTER_LEFT);
+
+        ruleStatusLabel.setStyle("-fx-font-size: 12px; -fx-text-fill: #c62828;");
+        centerSection.getChildren().addAll(loadBox, searchBox, functionTable, ruleStatusLabel);
 
         // Bottom Section: Buttons for saving and deleting selections
         // Unterer Abschnitt: Schaltflächen zum Speichern und Löschen von Auswahlen
@@ -143,9 +210,9 @@ public class View extends Application {
 
         // Button to save selected functions
         // Schaltfläche zum Speichern ausgewählter Funktionen
-        Button saveButton = new Button("Save");
         saveButton.setStyle("-fx-font-size: 14px; -fx-background-color: linear-gradient(#4CAF50, #2E7D32); -fx-text-fill: white; -fx-border-radius: 5px;");
         saveButton.setPrefWidth(120);
+        saveButton.setDisable(true); // Enabled once the catalog is complete / Aktiviert, sobald der Katalog vollständig ist
 
         // Button to delete selected functions
         // Schaltfläche zum Löschen ausgewählter Funktionen
@@ -153,18 +220,25 @@ public class View extends Application {
         deleteButton.setStyle("-fx-font-size: 14px; -fx-background-color: linear-gradient(#f44336, #c62828); -fx-text-fill: white; -fx-border-radius: 5px;");
         deleteButton.setPrefWidth(120);
 
-        buttonBox.getChildren().addAll(saveButton, deleteButton);//used to add subcomponents
+        // Button to select all functions
+        // Schaltfläche zum Auswählen aller Funktionen
+        selectAllButton.setStyle("-fx-font-size: 14px; -fx-background-color: linear-gradient(#2196F3, #1565C0); -fx-text-fill: white; -fx-border-radius: 5px;");
+        selectAllButton.setPrefWidth(120);
+        selectAllButton.setDisable(true); // Enabled once the catalog is complete / Aktiviert, sobald der Katalog vollständig ist
+
+        buttonBox.getChildren().addAll(saveButton, selectAllButton, deleteButton, saveStatusLabel);//used to add subcomponents
 
         // Connect buttons to Controller actions
         // Schaltflächen mit Controller-Aktionen verbinden
-        saveButton.setOnAction(e -> controller.handleSave(checkBoxes));//e is an ActionEvent object representing the click event.
-        // However, the event object is not used directly here. Instead, the controller.handleSave(checkBoxes) method is called.
-        deleteButton.setOnAction(e -> controller.handleDelete(checkBoxes));
+        saveButton.setOnAction(e -> controller.handleSave(selection));//e is an ActionEvent object representing the click event.
+        // However, the event object is not used directly here. Instead, the controller.handleSave(selection) method is called.
+        selectAllButton.setOnAction(e -> controller.handleSelectAll(selection));
+        deleteButton.setOnAction(e -> controller.handleDelete(selection));
 
         // Add sections to the main layout
         // Abschnitte zum Hauptlayout hinzufügen
         mainLayout.setTop(topScroll);
-        mainLayout.setCenter(centerScroll);
+        mainLayout.setCenter(centerSection);
         mainLayout.setBottom(buttonBox);
 
         // Create and display the scene
@@ -173,6 +247,216 @@ public class View extends Application {
         stage.setScene(scene);
         stage.setTitle("License Manager");
         stage.show();
+
+        // The window is shown first; the catalog is loaded afterwards on a background thread.
+        // Das Fenster wird zuerst angezeigt; der Katalog wird danach in einem Hintergrund-Thread geladen.
+        myModel.getExpiryScheduler().addListener(events -> Platform.runLater(this::showUpcomingExpirations));
+        startCatalogLoad();
+        startHttpServer();
+        startMetrics();
+    }
+
+    /**
+     * Exports the metrics over JMX, watches the FX thread and, if -Dmetrics.file is given, writes a Prometheus snapshot periodically.
+     * Exportiert die Metriken per JMX, überwacht den FX-Thread und schreibt, wenn -Dmetrics.file angegeben ist, regelmäßig einen Prometheus-Snapshot.
+     */
+    private void startMetrics() {
+        Metrics.global().exportToJmx();
+        stallDetector.start();
+        String file = System.getProperty("metrics.file");
+        if (file != null) {
+            metricsWriter = Metrics.global().writePrometheusPeriodically(Paths.get(file), METRICS_WRITE_MILLIS);
+        }
+    }
+
+    /**
+     * Starts the loopback query endpoint if -Dlicence.http.port is given; it answers from the model's query service.
+     * Startet den Loopback-Abfrageendpunkt, wenn -Dlicence.http.port angegeben ist; er antwortet aus dem Abfragedienst des Modells.
+     */
+    private void startHttpServer() {
+        String port = System.getProperty("licence.http.port");
+        if (port == null) {
+            return;
+        }
+        try {
+            httpServer = new LicenceHttpServer(myModel.getQueryService(), Integer.parseInt(port));
+            httpServer.start();
+            System.out.println("License queries on http://localhost:" + httpServer.getPort() + "/licences/");
+        } catch (IOException | NumberFormatException e) {
+            System.err.println("Error starting license query server: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Starts loading the function catalog in the background and fills the table batch by batch.
+     * Startet das Laden des Funktionskatalogs im Hintergrund und füllt die Tabelle paketweise.
+     */
+    private void startCatalogLoad() {
+        CatalogLoadTask task = new CatalogLoadTask(myModel, rows -> {
+            loadingRows.add(rows);
+            functionRows.appendRange(rows.first(), rows.end());
+        });
+        loadProgress.progressProperty().bind(task.progressProperty());
+        loadStatusLabel.textProperty().bind(task.messageProperty());
+
+        task.setOnSucceeded(e -> {
+            task.drain(); // Rows of the last batch / Zeilen des letzten Pakets
+            loadingRows = null; // Cells now read from the finished catalog / Zellen lesen jetzt aus dem fertigen Katalog
+            if (functionRows.size() != myModel.getCatalog().size()) {
+                functionRows.setRange(myModel.getCatalog().size()); // Loaded from the snapshot without batches / Ohne Pakete aus dem Snapshot geladen
+            }
+            functionTable.refresh(); // Picks up rows whose id was repeated later in the file / Übernimmt Zeilen, deren Id später erneut vorkam
+            functionTable.setPlaceholder(new Label("No functions available"));
+            loadProgress.setVisible(false);
+            loadStatusLabel.textProperty().unbind();
+            CsvCatalogLoader.Report report = task.getValue();
+            String status = myModel.getCatalog().size() + " functions loaded";
+            if (report.getMalformedCount() > 0) {
+                status += ", " + report.getMalformedCount() + " malformed rows skipped (first: "
+                        + report.getMalformedRows().get(0) + ")";
+                loadStatusLabel.setStyle("-fx-font-size: 12px; -fx-text-fill: #c62828;");
+            }
+            loadStatusLabel.setText(status);
+            if (myModel.getSeriennummer() != null) {
+                // Shows the saved license and its functions / Zeigt die gespeicherte Lizenz und ihre Funktionen an
+                myModel.getEnabledFunctions().ordinals().forEach(ordinal -> selection.setSelected(ordinal, true));
+                functionTable.refresh();
+                controller.checkRules(selection);
+                updateLicenceInfo(myModel.getSeriennummer(), myModel.getStartDatum(), myModel.getEndDatum());
+            }
+            saveButton.setDisable(false);
+            selectAllButton.setDisable(false);
+            List<String> productLines = myModel.getProductLines();
+            productLineBox.getItems().setAll(productLines);
+            productLineBox.setValue(myModel.getProductLine());
+            productLineBox.setVisible(productLines.size() > 1);
+            productLineBox.setManaged(productLines.size() > 1);
+            buildSearchIndex(myModel.getCatalog());
+            startCatalogWatcher();
+        });
+        task.setOnFailed(e -> {
+            // Load failures are shown in the window, not only on the console.
+            // Ladefehler werden im Fenster angezeigt, nicht nur auf der Konsole.
+            loadProgress.setVisible(false);
+            loadStatusLabel.textProperty().unbind();
+            loadStatusLabel.setStyle("-fx-font-size: 12px; -fx-text-fill: #c62828;");
+            loadStatusLabel.setText("Error loading functions: " + task.getException().getMessage());
+            functionTable.setPlaceholder(new Label("Functions could not be loaded"));
+            System.err.println("Error loading functions from CSV: " + task.getException().getMessage());
+        });
+
+        Thread loader = new Thread(task, "catalog-loader");
+        loader.setDaemon(true);
+        loader.start();
+    }
+
+    /**
+     * Watches the CSV file and applies changes to it while the application is running.
+     * Überwacht die CSV-Datei und übernimmt Änderungen daran, während die Anwendung läuft.
+     */
+    private void startCatalogWatcher() {
+        try {
+            myModel.startCatalogWatcher(diff -> {
+                String productLine = myModel.getProductLine(); // Called while the model is locked / Aufgerufen, während das Modell gesperrt ist
+                Platform.runLater(() -> {
+                    if (productLine.equals(myModel.getProductLine())) { // Not switched in the meantime / Inzwischen nicht gewechselt
+                        applyCatalogChange(diff);
+                    }
+                });
+            });
+        } catch (IOException e) {
+            System.err.println("Changes to the CSV file are not picked up: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Swaps in a reloaded catalog and patches only the affected rows; selections follow their functions by id.
+     * Tauscht einen neu geladenen Katalog aus und passt nur die betroffenen Zeilen an; Auswahlen folgen ihren Funktionen über die Id.
+     */
+    private void applyCatalogChange(CatalogDiff diff) {
+        long started = System.nanoTime();
+        if (diff.getBefore() != myModel.getCatalog()) {
+            diff = CatalogDiff.compute(myModel.getCatalog(), diff.getAfter()); // Another change came first / Eine andere Änderung kam zuerst
+        }
+        searchGeneration.incrementAndGet(); // Drops search results for the old catalog / Verwirft Suchergebnisse für den alten Katalog
+        myModel.applyCatalog(diff);
+        selection.remap(diff);
+        controller.checkRules(selection); // Rules were compiled again for the new catalog / Regeln wurden für den neuen Katalog neu übersetzt
+        functionRows.remap(diff, !showingSearchResults);
+        buildSearchIndex(diff.getAfter()); // Repeats the current search when ready / Wiederholt die aktuelle Suche, sobald bereit
+        long millis = (System.nanoTime() - started) / 1_000_000;
+        loadStatusLabel.setText(diff.getAfter().size() + " functions loaded, CSV reloaded (" + diff + " functions) in " + millis + " ms");
+        System.out.println("Catalog reloaded: " + diff + " in " + millis + " ms");
+    }
+
+    /**
+     * Shows the catalog of another product line. The catalogs of all product lines are already loaded, so only the
+     * rows are replaced; the search index is rebuilt in the background.
+     * Zeigt den Katalog einer anderen Produktlinie. Die Kataloge aller Produktlinien sind bereits geladen, daher werden
+     * nur die Zeilen ersetzt; der Suchindex wird im Hintergrund neu aufgebaut.
+     */
+    private void switchProductLine(String productLine) {
+        if (productLine == null || productLine.equals(myModel.getProductLine())) {
+            return;
+        }
+        long started = System.nanoTime();
+        if (!myModel.selectProductLine(productLine)) {
+            return;
+        }
+        FunctionCatalog catalog = myModel.getCatalog();
+        searchGeneration.incrementAndGet(); // Drops search results for the old catalog / Verwirft Suchergebnisse für den alten Katalog
+        searchField.setDisable(true); // Until the index of the new catalog is built / Bis der Index des neuen Katalogs aufgebaut ist
+        selection.clear(); // The model cleared its enabled functions too / Das Modell hat seine aktivierten Funktionen ebenfalls geleert
+        showingSearchResults = false;
+        functionRows.setRange(catalog.size());
+        functionTable.refresh();
+        controller.checkRules(selection);
+        buildSearchIndex(catalog); // Repeats the current search when ready / Wiederholt die aktuelle Suche, sobald bereit
+        long millis = (System.nanoTime() - started) / 1_000_000;
+        loadStatusLabel.setText(catalog.size() + " functions of " + productLine + " shown in " + millis + " ms");
+    }
+
+    /**
+     * Builds the search index for the loaded catalog on the search thread and enables the search box afterwards.
+     * Baut den Suchindex für den geladenen Katalog im Such-Thread auf und aktiviert danach das Suchfeld.
+     */
+    private void buildSearchIndex(FunctionCatalog catalog) {
+        searchExecutor.execute(() -> {
+            FunctionSearchIndex index = FunctionSearchIndex.build(catalog);
+            searchSession = index.newSession();
+            Platform.runLater(() -> {
+                searchField.setDisable(false);
+                search(searchField.getText());
+            });
+        });
+    }
+
+    /**
+     * Runs a query on the search thread and shows the result if no newer query was typed in the meantime.
+     * Führt eine Abfrage im Such-Thread aus und zeigt das Ergebnis, wenn inzwischen keine neuere Abfrage eingegeben wurde.
+     */
+    private void search(String query) {
+        long generation = searchGeneration.incrementAndGet();
+        searchExecutor.execute(() -> {
+            if (searchSession == null || generation != searchGeneration.get()) {
+                return; // Index not ready or query already outdated / Index nicht bereit oder Abfrage bereits veraltet
+            }
+            int[] matches = searchSession.search(query);
+            Platform.runLater(() -> {
+                if (generation != searchGeneration.get()) {
+                    return;
+                }
+                int total = myModel.getCatalog().size();
+                showingSearchResults = matches != null;
+                if (matches == null) {
+                    functionRows.setRange(total);
+                    searchResultLabel.setText("");
+                } else {
+                    functionRows.setAll(matches, matches.length);
+                    searchResultLabel.setText(matches.length + " of " + total + " functions");
+                }
+            });
+        });
     }
 
     /**
@@ -185,6 +469,80 @@ public class View extends Application {
                 ", End: " + endDatum);
     }
 
+    /**
+     * Shows the licenses whose expiry warning fired, soonest first. Called whenever the expiry scheduler reports events.
+     * Zeigt die Lizenzen, deren Ablaufwarnung ausgelöst wurde, die nächste zuerst. Wird aufgerufen, sobald der Ablaufplaner Ereignisse meldet.
+     */
+    private void showUpcomingExpirations() {
+        List<LicenceExpiryScheduler.Event> upcoming = myModel.getExpiryScheduler().upcomingExpirations();
+        if (upcoming.isEmpty()) {
+            expiryInfoLabel.setText("");
+            expiryInfoLabel.setTooltip(null);
+            return;
+        }
+        StringBuilder text = new StringBuilder("Expiring soon (" + upcoming.size() + "): ");
+        StringBuilder details = new StringBuilder();
+        for (int i = 0; i < upcoming.size() && i < STATUS_TOOLTIP_ROWS; i++) {
+            LicenceExpiryScheduler.Event event = upcoming.get(i);
+            String entry = event.getSeriennummer() + " on " + event.getEndDatum();
+            if (i < STATUS_LABEL_ROWS) {
+                text.append(i > 0 ? ", " : "").append(entry);
+            }
+            details.append(entry).append('\n');
+        }
+        if (upcoming.size() > STATUS_LABEL_ROWS) {
+            text.append(", ...");
+        }
+        expiryInfoLabel.setText(text.toString());
+        expiryInfoLabel.setTooltip(new Tooltip(details.toString().trim()));
+    }
+
+    /**
+     * Shows the rules the current selection breaks below the table; empty if it breaks none.
+     * Zeigt die Regeln, die die aktuelle Auswahl verletzt, unter der Tabelle an; leer, wenn sie keine verletzt.
+     */
+    public void showRuleViolations(List<FunctionRules.Violation> violations) {
+        if (violations.isEmpty()) {
+            ruleStatusLabel.setText("");
+            ruleStatusLabel.setTooltip(null);
+            return;
+        }
+        StringBuilder text = new StringBuilder(violations.size() + (violations.size() == 1 ? " rule broken: " : " rules broken: "));
+        StringBuilder details = new StringBuilder();
+        for (int i = 0; i < violations.size() && i < STATUS_TOOLTIP_ROWS; i++) {
+            if (i < STATUS_LABEL_ROWS) {
+                text.append(i > 0 ? ", " : "").append(violations.get(i));
+            }
+            details.append(violations.get(i)).append('\n');
+        }
+        if (violations.size() > STATUS_LABEL_ROWS) {
+            text.append(", ...");
+        }
+        ruleStatusLabel.setText(text.toString());
+        ruleStatusLabel.setTooltip(new Tooltip(details.toString().trim()));
+    }
+
+    /**
+     * Shows the state of a save next to the buttons, without blocking the window.
+     * Zeigt den Stand eines Speichervorgangs neben den Schaltflächen an, ohne das Fenster zu blockieren.
+     *
+     * @param details Shown as a tooltip, may be null / Wird als Tooltip angezeigt, darf null sein
+     * @param error   Shows the message in red / Zeigt die Nachricht in Rot an
+     */
+    public void showSaveStatus(String message, String details, boolean error) {
+        saveStatusLabel.setStyle("-fx-font-size: 12px; -fx-text-fill: " + (error ? "#c62828" : "#555555") + ";");
+        saveStatusLabel.setText(message);
+        saveStatusLabel.setTooltip(details == null ? null : new Tooltip(details));
+    }
+
+    /**
+     * Redraws the visible function rows, e.g. after the selection was changed outside the table.
+     * Zeichnet die sichtbaren Funktionszeilen neu, z. B. nachdem die Auswahl außerhalb der Tabelle geändert wurde.
+     */
+    public void refreshFunctionRows() {
+        functionTable.refresh();
+    }
+
     /**
      * Clears the license information displayed in the top section.
      * Löscht die im oberen Abschnitt angezeigten Lizenzinformationen.
@@ -192,4 +550,117 @@ public class View extends Application {
     public void clearLicenceInfo() {
         licenceInfoLabel.setText("License Information: Cleared");
     }
+
+    // Row data comes from the batches while loading and from the catalog afterwards.
+    // Zeilendaten stammen während des Ladens aus den Paketen und danach aus dem Katalog.
+    private String functionId(int ordinal) {
+        return loadingRows != null ? loadingRows(ordinal).id(ordinal) : myModel.getCatalog().id(ordinal);
+    }
+
+    private String functionName(int ordinal) {
+        return loadingRows != null ? loadingRows(ordinal).name(ordinal) : myModel.getCatalog().name(ordinal);
+    }
+
+    private String functionDescr(int ordinal) {
+        return loadingRows != null ? loadingRows(ordinal).descr(ordinal) : myModel.getCatalog().descr(ordinal);
+    }
+
+    // Binary search for the batch that contains the ordinal / Binäre Suche nach dem Paket, das die Ordinalzahl enthält
+    private FunctionCatalog.Rows loadingRows(int ordinal) {
+        int low = 0;
+        int high = loadingRows.size() - 1;
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if (loadingRows.get(mid).first() <= ordinal) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return loadingRows.get(low);
+    }
+
+    /**
+     * Creates a table column whose cell value is the row's catalog ordinal.
+     * Erstellt eine Tabellenspalte, deren Zellwert die Katalog-Ordinalzahl der Zeile ist.
+     */
+    private static TableColumn<Integer, Integer> ordinalColumn(String title, double prefWidth) {
+        TableColumn<Integer, Integer> column = new TableColumn<>(title);
+        column.setCellValueFactory(row -> new ReadOnlyObjectWrapper<>(row.getValue()));
+        column.setSortable(false);
+        column.setPrefWidth(prefWidth);
+        return column;
+    }
+
+    /**
+     * Cell showing the function ID.
+     * Zelle, die die Funktions-ID anzeigt.
+     */
+    private final class IdCell extends TableCell<Integer, Integer> {
+        IdCell() {
+            setStyle("-fx-font-size: 12px; -fx-font-weight: bold; -fx-text-fill: #333333;");
+        }
+
+        @Override
+        protected void updateItem(Integer ordinal, boolean empty) {
+            super.updateItem(ordinal, empty);
+            setText(empty || ordinal == null ? null : functionId(ordinal));
+        }
+    }
+
+    /**
+     * Cell with the checkbox for enabling/disabling a function. The tooltip is filled only when it is shown.
+     * Zelle mit der Checkbox zum Aktivieren/Deaktivieren einer Funktion. Der Tooltip wird erst beim Anzeigen befüllt.
+     */
+    private final class EnabledCell extends TableCell<Integer, Integer> {
+        private final CheckBox checkBox = new CheckBox();
+        private Tooltip tooltip; // Created on first hover / Wird beim ersten Überfahren erzeugt
+
+        EnabledCell() {
+            checkBox.setOnAction(e -> {
+                Integer ordinal = getItem();
+                if (ordinal != null) {
+                    controller.handleToggle(selection, ordinal, checkBox.isSelected());
+                }
+            });
+            checkBox.setOnMouseEntered(e -> {
+                if (tooltip == null) {
+                    tooltip = new Tooltip();
+                    tooltip.setOnShowing(s -> {
+                        Integer ordinal = getItem();
+                        tooltip.setText(ordinal == null ? null : functionDescr(ordinal));
+                    });
+                    checkBox.setTooltip(tooltip);
+                }
+            });
+        }
+
+        @Override
+        protected void updateItem(Integer ordinal, boolean empty) {
+            super.updateItem(ordinal, empty);
+            if (empty || ordinal == null) {
+                setGraphic(null);
+                return;
+            }
+            checkBox.setText(functionName(ordinal));
+            checkBox.setSelected(selection.isSelected(ordinal));
+            setGraphic(checkBox);
+        }
+    }
+
+    /**
+     * Cell showing the function description on a single line.
+     * Zelle, die die Funktionsbeschreibung einzeilig anzeigt.
+     */
+    private final class DescriptionCell extends TableCell<Integer, Integer> {
+        DescriptionCell() {
+            setStyle("-fx-text-fill: #555555;");
+        }
+
+        @Override
+        protected void updateItem(Integer ordinal, boolean empty) {
+            super.updateItem(ordinal, empty);
+            setText(empty || ordinal == null ? null : functionDescr(ordinal));
+        }
+    }
 }